@@ -0,0 +1,69 @@
+package com.example.dataprocessor.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+
+/**
+ * Primary and optional read-replica datasources, each with its own pool. Without
+ * dataprocessor.datasource.replica.url everything uses the primary, as before. With it,
+ * {@code @Transactional(readOnly = true)} work reads from the replica (see {@link ReadWriteRoutingDataSource})
+ * so query endpoints do not take connections from ingestion.
+ */
+@Configuration
+public class DataSourceConfig {
+
+    @Bean(name = "primaryDataSource")
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource primaryDataSource(DataSourceProperties properties) {
+        HikariDataSource dataSource = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        dataSource.setPoolName("primary");
+        return dataSource;
+    }
+
+    @Bean(name = "replicaDataSource")
+    @ConditionalOnProperty(name = "dataprocessor.datasource.replica.url")
+    public HikariDataSource replicaDataSource(DataSourceProperties properties,
+                                              @Value("${dataprocessor.datasource.replica.url}") String url,
+                                              @Value("${dataprocessor.datasource.replica.username:${spring.datasource.username:}}") String username,
+                                              @Value("${dataprocessor.datasource.replica.password:${spring.datasource.password:}}") String password,
+                                              @Value("${dataprocessor.datasource.replica.maximum-pool-size:5}") int maximumPoolSize,
+                                              @Value("${dataprocessor.datasource.replica.connection-timeout-ms:1500}") long connectionTimeoutMillis) {
+        HikariDataSource dataSource = new HikariDataSource();
+        dataSource.setPoolName("replica");
+        dataSource.setDriverClassName(properties.determineDriverClassName());
+        dataSource.setJdbcUrl(url);
+        dataSource.setUsername(username);
+        dataSource.setPassword(password);
+        dataSource.setMaximumPoolSize(maximumPoolSize);
+        dataSource.setReadOnly(true);
+        // A read waits this long for a replica connection before falling back to the primary, so keep it
+        // well below Hikari's 30 s default
+        dataSource.setConnectionTimeout(connectionTimeoutMillis);
+        // Start even when the replica is down; reads fall back to the primary until it is back
+        dataSource.setInitializationFailTimeout(-1);
+        return dataSource;
+    }
+
+    @Bean
+    @Primary
+    public DataSource dataSource(@Qualifier("primaryDataSource") DataSource primary,
+                                 @Qualifier("replicaDataSource") ObjectProvider<DataSource> replica,
+                                 @Value("${dataprocessor.datasource.replica.retry-after-ms:30000}") long retryAfterMillis) {
+        DataSource replicaDataSource = replica.getIfAvailable();
+        if (replicaDataSource == null) {
+            return primary;
+        }
+        return new LazyConnectionDataSourceProxy(new ReadWriteRoutingDataSource(primary, replicaDataSource, retryAfterMillis));
+    }
+}
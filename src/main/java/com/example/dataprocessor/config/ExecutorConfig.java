@@ -1,10 +1,12 @@
 package com.example.dataprocessor.config;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
 
 @Configuration
 public class ExecutorConfig {
@@ -13,4 +15,33 @@ public class ExecutorConfig {
     public ExecutorService taskExecutor() {
         return Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
     }
-}
\ No newline at end of file
+
+    // Maps and writes row chunks; tasks here never wait on other tasks
+    @Bean(name = "chunkWriterExecutor")
+    public ExecutorService chunkWriterExecutor() {
+        return Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+    }
+
+    // Reads chunked upload sessions, which block while their next part is in flight. Bounded on its own, so
+    // idle or abandoned sessions cannot take the threads of the job pool; further sessions queue here.
+    @Bean(name = "uploadSessionExecutor")
+    public ExecutorService uploadSessionExecutor(@Value("${dataprocessor.upload.max-ingesting-sessions:4}") int maxSessions) {
+        return Executors.newFixedThreadPool(maxSessions);
+    }
+
+    // Samples the counters of running jobs for progress subscribers; never runs ingestion work
+    @Bean(name = "progressSampler", destroyMethod = "shutdownNow")
+    public ScheduledExecutorService progressSampler() {
+        return Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "progress-sampler");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    // Sends progress events; one virtual thread per send, so a slow client only holds up itself
+    @Bean(name = "progressFanOutExecutor")
+    public ExecutorService progressFanOutExecutor() {
+        return Executors.newVirtualThreadPerTaskExecutor();
+    }
+}
@@ -0,0 +1,85 @@
+package com.example.dataprocessor.config;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * Sends connections taken inside a read-only transaction to the replica and everything else to the
+ * primary. If the replica cannot hand out a connection, reads fall back to the primary and the replica
+ * is left alone for retry-after-ms before it is tried again.
+ * <p>
+ * The routing looks at the transaction's read-only flag, which Spring sets only after the transaction
+ * manager has begun; wrap this in a LazyConnectionDataSourceProxy so the connection is taken at the
+ * first statement.
+ */
+public class ReadWriteRoutingDataSource extends AbstractDataSource {
+
+    private static final Logger logger = LoggerFactory.getLogger(ReadWriteRoutingDataSource.class);
+
+    private final DataSource primary;
+    private final DataSource replica;
+    private final long retryAfterMillis;
+
+    // Until when reads skip the replica after it failed; 0 while it is healthy
+    private volatile long replicaDownUntil;
+
+    public ReadWriteRoutingDataSource(DataSource primary, DataSource replica, long retryAfterMillis) {
+        this.primary = primary;
+        this.replica = replica;
+        this.retryAfterMillis = retryAfterMillis;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        if (!routesToReplica()) {
+            return primary.getConnection();
+        }
+        try {
+            Connection connection = replica.getConnection();
+            replicaDownUntil = 0;
+            return connection;
+        } catch (SQLException e) {
+            markReplicaDown(e);
+            return primary.getConnection();
+        }
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        if (!routesToReplica()) {
+            return primary.getConnection(username, password);
+        }
+        try {
+            Connection connection = replica.getConnection(username, password);
+            replicaDownUntil = 0;
+            return connection;
+        } catch (SQLException e) {
+            markReplicaDown(e);
+            return primary.getConnection(username, password);
+        }
+    }
+
+    /**
+     * Whether reads are currently served by the replica.
+     */
+    public boolean isReplicaAvailable() {
+        return System.currentTimeMillis() >= replicaDownUntil;
+    }
+
+    private boolean routesToReplica() {
+        return TransactionSynchronizationManager.isCurrentTransactionReadOnly() && isReplicaAvailable();
+    }
+
+    private void markReplicaDown(SQLException e) {
+        if (replicaDownUntil == 0) {
+            logger.warn("Read replica unavailable, reading from the primary for {} ms: {}", retryAfterMillis, e.getMessage());
+        }
+        replicaDownUntil = System.currentTimeMillis() + retryAfterMillis;
+    }
+}
@@ -0,0 +1,97 @@
+package com.example.dataprocessor.controller;
+
+import com.example.dataprocessor.model.UploadPart;
+import com.example.dataprocessor.model.UploadSession;
+import com.example.dataprocessor.service.ChunkedUploadService;
+import com.example.dataprocessor.service.IngestionMode;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+
+/**
+ * Resumable chunked upload protocol:
+ * POST /api/upload/sessions?fileName=... -> session (ingestion starts right away)
+ * PUT /api/upload/sessions/{id}/parts/{n} with the raw part bytes and an optional X-Part-Checksum (SHA-256 hex)
+ * GET /api/upload/sessions/{id}/parts -> parts received so far, to resume after a dropped connection
+ * POST /api/upload/sessions/{id}/complete?totalParts=N
+ */
+@RestController
+@RequestMapping("/api/upload/sessions")
+public class ChunkedUploadController {
+
+    @Autowired
+    private ChunkedUploadService chunkedUploadService;
+
+    @PostMapping
+    public ResponseEntity<?> initSession(@RequestParam("fileName") String fileName,
+                                         @RequestParam(value = "mode", required = false) String mode) {
+        try {
+            IngestionMode ingestionMode = mode != null && !mode.isBlank() ? IngestionMode.valueOf(mode.trim().toUpperCase()) : null;
+            return ResponseEntity.status(HttpStatus.CREATED).body(chunkedUploadService.initSession(fileName, ingestionMode));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        } catch (IOException e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body("Could not create upload session: " + e.getMessage());
+        }
+    }
+
+    @PutMapping("/{sessionId}/parts/{partNumber}")
+    public ResponseEntity<?> putPart(@PathVariable String sessionId,
+                                     @PathVariable int partNumber,
+                                     @RequestHeader(value = "X-Part-Checksum", required = false) String checksum,
+                                     InputStream body) {
+        try {
+            UploadPart part = chunkedUploadService.putPart(sessionId, partNumber, body, checksum);
+            return ResponseEntity.ok(part);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(e.getMessage());
+        } catch (IOException e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body("Could not store part: " + e.getMessage());
+        }
+    }
+
+    @GetMapping("/{sessionId}")
+    public ResponseEntity<UploadSession> getSession(@PathVariable String sessionId) {
+        return chunkedUploadService.getSession(sessionId)
+                .map(ResponseEntity::ok)
+                .orElseGet(() -> ResponseEntity.notFound().build());
+    }
+
+    @GetMapping("/{sessionId}/parts")
+    public ResponseEntity<List<UploadPart>> getParts(@PathVariable String sessionId) {
+        if (chunkedUploadService.getSession(sessionId).isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(chunkedUploadService.getParts(sessionId));
+    }
+
+    @PostMapping("/{sessionId}/complete")
+    public ResponseEntity<?> completeSession(@PathVariable String sessionId, @RequestParam("totalParts") int totalParts) {
+        try {
+            return ResponseEntity.ok(chunkedUploadService.completeSession(sessionId, totalParts));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(e.getMessage());
+        }
+    }
+
+    @DeleteMapping("/{sessionId}")
+    public ResponseEntity<?> abortSession(@PathVariable String sessionId) {
+        try {
+            chunkedUploadService.abortSession(sessionId);
+            return ResponseEntity.noContent().build();
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(e.getMessage());
+        }
+    }
+}
@@ -2,21 +2,41 @@ package com.example.dataprocessor.controller;
 
 import com.example.dataprocessor.model.FileProcessingStatus;
 import com.example.dataprocessor.model.ProcessingStats;
+import com.example.dataprocessor.model.SourceProcessingStats;
+import com.example.dataprocessor.repository.WorkUnitJdbcRepository;
+import com.example.dataprocessor.service.AdmissionControlService;
+import com.example.dataprocessor.service.ColumnSketches;
+import com.example.dataprocessor.service.FilePreview;
 import com.example.dataprocessor.service.FileProcessorService;
 import com.example.dataprocessor.service.FileTrackerService;
+import com.example.dataprocessor.service.IngestionMode;
+import com.example.dataprocessor.service.JobProgressService;
 import com.example.dataprocessor.service.ProcessingStatsService;
+import com.example.dataprocessor.service.RejectSinkService;
+import com.example.dataprocessor.service.RetentionService;
+import com.example.dataprocessor.service.StreamingUploadService;
+import com.example.dataprocessor.service.WorkUnitService;
 import com.opencsv.exceptions.CsvValidationException;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.scheduling.annotation.EnableScheduling;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.time.LocalDateTime;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Locale;
 import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
 import java.util.concurrent.ExecutionException;
 
 @RestController
@@ -24,6 +44,8 @@ import java.util.concurrent.ExecutionException;
 @EnableScheduling
 public class FileUploadController {
 
+    private static final int MAX_PREVIEW_ROWS = 1000;
+
     @Autowired
     private FileProcessorService fileProcessorService;
 
@@ -33,21 +55,85 @@ public class FileUploadController {
     @Autowired
     private ProcessingStatsService processingStatsService;
 
+    @Autowired
+    private RejectSinkService rejectSinkService;
+
+    @Autowired
+    private StreamingUploadService streamingUploadService;
+
+    @Autowired
+    private RetentionService retentionService;
+
+    @Autowired
+    private JobProgressService jobProgressService;
+
+    @Autowired
+    private AdmissionControlService admissionControlService;
+
+    @Autowired
+    private WorkUnitService workUnitService;
+
     @PostMapping("/upload/large-file")
-    public ResponseEntity<String> uploadFile(@RequestParam("file") MultipartFile file) {
+    public ResponseEntity<String> uploadFile(@RequestParam("file") MultipartFile file,
+                                             @RequestParam(value = "mode", required = false) String mode,
+                                             @RequestParam(value = "sheets", required = false) String sheets) {
         if (file.isEmpty()) {
             return ResponseEntity.badRequest().body("Please select a file to upload.");
         }
+        if (!fileProcessorService.isSupportedFileName(file.getOriginalFilename())) {
+            return ResponseEntity.badRequest().body("Unsupported file type. Upload .csv, .xlsx, .csv.gz or .zip files.");
+        }
+
+        IngestionMode ingestionMode;
+        try {
+            ingestionMode = parseIngestionMode(mode);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body("Unsupported ingestion mode: " + mode);
+        }
 
-        FileProcessingStatus status = fileTrackerService.createFileProcessingStatus(file.getOriginalFilename(), file.getOriginalFilename());
-        status.setStatus("PROCESSING"); // Set status to processing immediately
-        fileTrackerService.updateFileStatus(status.getId(), "PROCESSING", null);
+        AdmissionControlService.Permit permit;
+        try {
+            permit = admissionControlService.admit(file.getOriginalFilename(), file.getSize());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body("Upload interrupted while queued.");
+        }
+        if (permit == null) {
+            return tooManyRequests();
+        }
 
+        String contentHash;
         try {
-            // Call the async service method directly
-            fileProcessorService.processFile(file, status.getId());
+            contentHash = fileTrackerService.computeContentHash(file);
+        } catch (IOException e) {
+            permit.close();
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body("File upload failed: " + e.getMessage());
+        }
+
+        // An identical file was already ingested: record the attempt but skip parsing entirely
+        Optional<FileProcessingStatus> previous = fileTrackerService.findCompletedByContentHash(contentHash);
+        if (previous.isPresent()) {
+            permit.close();
+            fileTrackerService.createFileProcessingStatus(file.getOriginalFilename(), file.getOriginalFilename(), contentHash,
+                "DUPLICATE", "Identical to already processed file ID: " + previous.get().getId());
+            return ResponseEntity.ok("File already processed. Tracking ID: " + previous.get().getId());
+        }
+
+        // Registered as PROCESSING straight away: one insert instead of an insert and an update
+        FileProcessingStatus status = fileTrackerService.createFileProcessingStatus(file.getOriginalFilename(), file.getOriginalFilename(), contentHash,
+            "PROCESSING", null);
+
+        try {
+            // Large CSVs are split into work units that every node of the cluster helps with
+            if (workUnitService.trySubmit(file, status, ingestionMode)) {
+                permit.close();
+                return ResponseEntity.ok("File upload initiated across the cluster. Tracking ID: " + status.getId());
+            }
+            // Call the async service method directly; the job releases the permit when it ends
+            fileProcessorService.processFile(file, status.getId(), ingestionMode, parseSheetFilter(sheets), permit);
             // The status update to COMPLETED/FAILED will be handled by FileProcessorService
         } catch (IOException | CsvValidationException | InterruptedException | ExecutionException e) {
+            permit.close();
             fileTrackerService.updateFileStatus(status.getId(), "FAILED", e.getMessage());
             System.err.println("File processing failed for " + file.getOriginalFilename() + ": " + e.getMessage());
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body("File upload failed: " + e.getMessage());
@@ -56,6 +142,119 @@ public class FileUploadController {
         return ResponseEntity.ok("File upload initiated. Tracking ID: " + status.getId());
     }
 
+    /**
+     * Current use of the upload admission budgets: reserved memory, running and queued jobs, and how
+     * many uploads were admitted, queued and shed since startup.
+     */
+    @GetMapping("/upload/admission")
+    public ResponseEntity<AdmissionControlService.AdmissionStats> getAdmissionStats() {
+        return ResponseEntity.ok(admissionControlService.getStats());
+    }
+
+    /**
+     * Dry run: reports how the file would be mapped, with the first mapped rows, the rows that would be
+     * rejected and a projected row count. Only the head of the file is parsed and nothing is stored.
+     */
+    @PostMapping("/upload/preview")
+    public ResponseEntity<?> previewFile(@RequestParam("file") MultipartFile file,
+                                         @RequestParam(value = "rows", defaultValue = "20") int rows) {
+        if (file.isEmpty()) {
+            return ResponseEntity.badRequest().body("Please select a file to upload.");
+        }
+        if (!fileProcessorService.isSupportedFileName(file.getOriginalFilename())) {
+            return ResponseEntity.badRequest().body("Unsupported file type. Upload .csv, .xlsx, .csv.gz or .zip files.");
+        }
+        int sampleRows = Math.max(1, Math.min(rows, MAX_PREVIEW_ROWS));
+        try (InputStream inputStream = file.getInputStream()) {
+            FilePreview preview = fileProcessorService.preview(inputStream, file.getOriginalFilename(), file.getSize(), sampleRows);
+            return ResponseEntity.ok(preview);
+        } catch (IOException | CsvValidationException | RuntimeException e) {
+            return ResponseEntity.status(HttpStatus.UNPROCESSABLE_ENTITY).body("File preview failed: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Single-shot upload of the raw request body (text/csv, the xlsx media type, application/gzip or
+     * application/zip). Bypasses multipart buffering: rows are parsed while the body is still arriving.
+     */
+    @PostMapping(value = "/upload/stream", consumes = {"text/csv", StreamingUploadService.XLSX_MEDIA_TYPE, "application/gzip", "application/zip"})
+    public ResponseEntity<String> uploadStream(@RequestHeader(HttpHeaders.CONTENT_TYPE) String contentType,
+                                               @RequestParam(value = "fileName", required = false) String fileName,
+                                               @RequestHeader(value = HttpHeaders.CONTENT_LENGTH, required = false) Long contentLength,
+                                               @RequestParam(value = "mode", required = false) String mode,
+                                               InputStream body) {
+        String resolvedName = fileName != null && !fileName.isBlank() ? fileName : streamingUploadService.defaultFileName(contentType);
+        if (resolvedName == null || !fileProcessorService.isSupportedFileName(resolvedName)) {
+            return ResponseEntity.badRequest().body("Unsupported file type. Upload .csv, .xlsx, .csv.gz or .zip files.");
+        }
+
+        IngestionMode ingestionMode;
+        try {
+            ingestionMode = parseIngestionMode(mode);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body("Unsupported ingestion mode: " + mode);
+        }
+
+        AdmissionControlService.Permit permit;
+        try {
+            permit = admissionControlService.admit(resolvedName, contentLength != null ? contentLength : -1);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body("Upload interrupted while queued.");
+        }
+        if (permit == null) {
+            return tooManyRequests();
+        }
+
+        try (permit) {
+            FileProcessingStatus status = streamingUploadService.ingestRequestBody(body, resolvedName, ingestionMode);
+            return ResponseEntity.ok("File processed. Tracking ID: " + status.getId());
+        } catch (Exception e) {
+            // The status has already been marked FAILED by FileProcessorService
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body("File upload failed: " + e.getMessage());
+        }
+    }
+
+    @PostMapping("/upload/stream/{fileId}/replay")
+    public ResponseEntity<String> replayStream(@PathVariable Long fileId,
+                                               @RequestParam(value = "mode", required = false) String mode) {
+        Optional<FileProcessingStatus> status = fileTrackerService.getFileStatusById(fileId);
+        if (status.isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+        IngestionMode ingestionMode;
+        try {
+            ingestionMode = parseIngestionMode(mode);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body("Unsupported ingestion mode: " + mode);
+        }
+        String state = status.get().getStatus();
+        if ("PROCESSING".equals(state) || "PENDING".equals(state)) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body("File ID " + fileId + " is still being processed.");
+        }
+        long stagedSize = streamingUploadService.stagedCopySize(status.get());
+        if (stagedSize < 0) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body("No staged copy exists for file ID: " + fileId);
+        }
+
+        AdmissionControlService.Permit permit;
+        try {
+            permit = admissionControlService.admit(status.get().getFilename(), stagedSize);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body("Replay interrupted while queued.");
+        }
+        if (permit == null) {
+            return tooManyRequests();
+        }
+        // The replay closes the permit when it ends
+        if (!streamingUploadService.replay(status.get(), ingestionMode, permit)) {
+            permit.close();
+            return ResponseEntity.status(HttpStatus.CONFLICT).body("File ID " + fileId + " is being processed or has no staged copy.");
+        }
+        return ResponseEntity.ok("Replay initiated. Tracking ID: " + fileId);
+    }
+
     @GetMapping("/file-status/{fileId}")
     public ResponseEntity<FileProcessingStatus> getFileStatus(@PathVariable Long fileId) {
         Optional<FileProcessingStatus> status = fileTrackerService.getFileStatusById(fileId);
@@ -63,12 +262,122 @@ public class FileUploadController {
                 .orElseGet(() -> ResponseEntity.notFound().build());
     }
 
+    /**
+     * Live progress of a file as Server-Sent Events: "progress" events while it is ingested, then one
+     * "complete" event with the final status, after which the stream is closed.
+     */
+    @GetMapping(value = "/file-status/{fileId}/progress", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> streamProgress(@PathVariable Long fileId) {
+        Optional<FileProcessingStatus> status = fileTrackerService.getFileStatusById(fileId);
+        return status.map(s -> ResponseEntity.ok(jobProgressService.subscribe(s)))
+                .orElseGet(() -> ResponseEntity.notFound().build());
+    }
+
+    /**
+     * Removes an upload with all the sales rows it wrote, its rejected rows and its stats. Rows are
+     * deleted in the background in small batches, so this returns before the purge is done.
+     */
+    @DeleteMapping("/file-status/{fileId}")
+    public ResponseEntity<String> purgeUpload(@PathVariable Long fileId) {
+        Optional<FileProcessingStatus> status = fileTrackerService.getFileStatusById(fileId);
+        if (status.isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+        String state = status.get().getStatus();
+        if ("PROCESSING".equals(state) || "PENDING".equals(state)) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body("File ID " + fileId + " is still being processed.");
+        }
+        retentionService.purgeUploadInBackground(fileId);
+        return ResponseEntity.accepted().body("Purge initiated for file ID: " + fileId);
+    }
+
+    /**
+     * The work units of a file split across the cluster, with their leases and row counts; empty for
+     * files ingested on a single node.
+     */
+    @GetMapping("/file-status/{fileId}/work-units")
+    public ResponseEntity<List<WorkUnitJdbcRepository.WorkUnit>> getWorkUnits(@PathVariable Long fileId) {
+        if (fileTrackerService.getFileStatusById(fileId).isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(workUnitService.getWorkUnits(fileId));
+    }
+
+    /**
+     * Row counts and timings per sheet or zip member of a processed file.
+     */
+    @GetMapping("/file-status/{fileId}/sources")
+    public ResponseEntity<List<SourceProcessingStats>> getSourceStats(@PathVariable Long fileId) {
+        if (fileTrackerService.getFileStatusById(fileId).isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(fileTrackerService.getSourceStatsByFileId(fileId));
+    }
+
+    @GetMapping("/file-status/{fileId}/rejects")
+    public ResponseEntity<StreamingResponseBody> downloadRejects(@PathVariable Long fileId) {
+        if (fileTrackerService.getFileStatusById(fileId).isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+        StreamingResponseBody body = outputStream -> rejectSinkService.writeRejectsCsv(fileId, outputStream);
+        return ResponseEntity.ok()
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"rejects-" + fileId + ".csv\"")
+                .contentType(MediaType.parseMediaType("text/csv"))
+                .body(body);
+    }
+
     @GetMapping("/processing-stats")
     public ResponseEntity<List<ProcessingStats>> getAllProcessingStats() {
         List<ProcessingStats> stats = processingStatsService.getAllProcessingStats();
         return ResponseEntity.ok(stats);
     }
 
+    /**
+     * Distinct counts, quantiles and null/min/max per column of one upload, from the sketches taken
+     * while it was ingested.
+     */
+    @GetMapping("/file-status/{fileId}/column-sketches")
+    public ResponseEntity<ColumnSketches.Summary> getColumnSketches(@PathVariable Long fileId) {
+        return processingStatsService.getColumnSketches(fileId)
+                .map(ResponseEntity::ok)
+                .orElseGet(() -> ResponseEntity.notFound().build());
+    }
+
+    /**
+     * The same estimates over the given uploads merged (?fileIds=1,2,3), or over every upload.
+     */
+    @GetMapping("/processing-stats/column-sketches")
+    public ResponseEntity<ColumnSketches.Summary> mergeColumnSketches(@RequestParam(value = "fileIds", required = false) List<Long> fileIds) {
+        return ResponseEntity.ok(processingStatsService.mergeColumnSketches(fileIds));
+    }
+
+    private IngestionMode parseIngestionMode(String mode) {
+        if (mode == null || mode.isBlank()) {
+            return null; // Service default
+        }
+        return IngestionMode.valueOf(mode.trim().toUpperCase());
+    }
+
+    private ResponseEntity<String> tooManyRequests() {
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(admissionControlService.retryAfterSeconds()))
+                .body("Too many uploads in progress. Try again later.");
+    }
+
+    /**
+     * Parses a comma-separated list of sheet names or 0-based sheet indexes.
+     */
+    private Set<String> parseSheetFilter(String sheets) {
+        if (sheets == null || sheets.isBlank()) {
+            return null; // Every sheet
+        }
+        return Arrays.stream(sheets.split(","))
+                .map(String::trim)
+                .filter(sheet -> !sheet.isEmpty())
+                .map(sheet -> sheet.toLowerCase(Locale.ROOT))
+                .collect(Collectors.toSet());
+    }
+
     @GetMapping("/")
     public ResponseEntity<String> healthCheck() {
         return new ResponseEntity<>("Service is up and running!", HttpStatus.OK);
@@ -0,0 +1,75 @@
+package com.example.dataprocessor.controller;
+
+import com.example.dataprocessor.repository.FollowedFileJdbcRepository;
+import com.example.dataprocessor.service.FollowService;
+import com.example.dataprocessor.service.IngestionMode;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+/**
+ * CSV files on the server that keep growing, ingested as lines are appended to them:
+ * POST /api/followed-files with {"path": "...", "mode": "APPEND"} -> follow the file from its start
+ * GET /api/followed-files -> every followed file with its checkpoint
+ * DELETE /api/followed-files/{id} -> stop following; the upload completes with the rows ingested so far
+ */
+@RestController
+@RequestMapping("/api/followed-files")
+public class FollowedFileController {
+
+    @Autowired
+    private FollowService followService;
+
+    public static class FollowRequest {
+        private String path;
+        private IngestionMode mode;
+
+        public String getPath() {
+            return path;
+        }
+
+        public void setPath(String path) {
+            this.path = path;
+        }
+
+        public IngestionMode getMode() {
+            return mode;
+        }
+
+        public void setMode(IngestionMode mode) {
+            this.mode = mode;
+        }
+    }
+
+    @GetMapping
+    public ResponseEntity<List<FollowedFileJdbcRepository.FollowedFile>> getFollowedFiles() {
+        return ResponseEntity.ok(followService.getFollowedFiles());
+    }
+
+    @GetMapping("/{id}")
+    public ResponseEntity<FollowedFileJdbcRepository.FollowedFile> getFollowedFile(@PathVariable long id) {
+        FollowedFileJdbcRepository.FollowedFile followed = followService.getFollowedFile(id);
+        return followed != null ? ResponseEntity.ok(followed) : ResponseEntity.notFound().build();
+    }
+
+    @PostMapping
+    public ResponseEntity<?> follow(@RequestBody FollowRequest request) {
+        try {
+            return ResponseEntity.status(HttpStatus.CREATED).body(followService.follow(request.getPath(), request.getMode()));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(e.getMessage());
+        }
+    }
+
+    @DeleteMapping("/{id}")
+    public ResponseEntity<Void> unfollow(@PathVariable long id) {
+        return followService.unfollow(id)
+                ? ResponseEntity.noContent().build()
+                : ResponseEntity.notFound().build();
+    }
+}
@@ -0,0 +1,74 @@
+package com.example.dataprocessor.controller;
+
+import com.example.dataprocessor.model.ColumnMappingProfile;
+import com.example.dataprocessor.service.ColumnMappingProfileService;
+import com.example.dataprocessor.service.SalesColumn;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Column-mapping profiles for known file layouts:
+ * GET /api/mapping-profiles -> all profiles
+ * PUT /api/mapping-profiles with {"header": [...], "mapping": {"0": "SEGMENT", ...}} -> MANUAL profile for that header
+ * DELETE /api/mapping-profiles/{signature} -> the next file with that header is inferred again
+ */
+@RestController
+@RequestMapping("/api/mapping-profiles")
+public class MappingProfileController {
+
+    @Autowired
+    private ColumnMappingProfileService columnMappingProfileService;
+
+    public static class MappingProfileRequest {
+        private List<String> header;
+        private Map<Integer, SalesColumn> mapping;
+
+        public List<String> getHeader() {
+            return header;
+        }
+
+        public void setHeader(List<String> header) {
+            this.header = header;
+        }
+
+        public Map<Integer, SalesColumn> getMapping() {
+            return mapping;
+        }
+
+        public void setMapping(Map<Integer, SalesColumn> mapping) {
+            this.mapping = mapping;
+        }
+    }
+
+    @GetMapping
+    public ResponseEntity<List<ColumnMappingProfile>> getProfiles() {
+        return ResponseEntity.ok(columnMappingProfileService.findAll());
+    }
+
+    @GetMapping("/{signature}")
+    public ResponseEntity<ColumnMappingProfile> getProfile(@PathVariable String signature) {
+        return columnMappingProfileService.findBySignature(signature)
+                .map(ResponseEntity::ok)
+                .orElseGet(() -> ResponseEntity.notFound().build());
+    }
+
+    @PutMapping
+    public ResponseEntity<?> saveProfile(@RequestBody MappingProfileRequest request) {
+        try {
+            return ResponseEntity.ok(columnMappingProfileService.saveOverride(request.getHeader(), request.getMapping()));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+
+    @DeleteMapping("/{signature}")
+    public ResponseEntity<Void> deleteProfile(@PathVariable String signature) {
+        return columnMappingProfileService.delete(signature)
+                ? ResponseEntity.noContent().build()
+                : ResponseEntity.notFound().build();
+    }
+}
@@ -0,0 +1,99 @@
+package com.example.dataprocessor.controller;
+
+import com.example.dataprocessor.service.SalesColumn;
+import com.example.dataprocessor.service.SalesPartitionService;
+import com.example.dataprocessor.service.SalesQueryService;
+import com.example.dataprocessor.service.ZoneMapService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Date-range queries over the ingested sales rows:
+ * GET /api/sales?from=2014-01-01&to=2014-03-31[&country=..][&product=..][&rangeColumn=PROFIT][&min=..][&max=..][&afterId=..][&limit=..] -> rows in id order
+ * GET /api/sales/zone-maps/explain?(same filters) -> the id ranges the zone maps leave to read
+ * POST /api/sales/zone-maps/backfill -> builds zone maps for rows written before them, in the background
+ * GET /api/sales/summary?from=..&to=..&groupBy=COUNTRY -> row count and totals per value
+ * GET /api/sales/partitions -> the monthly partitions of sales_data with estimated row counts
+ */
+@RestController
+@RequestMapping("/api/sales")
+public class SalesDataController {
+
+    @Autowired
+    private SalesQueryService salesQueryService;
+
+    @Autowired
+    private SalesPartitionService salesPartitionService;
+
+    @Autowired
+    private ZoneMapService zoneMapService;
+
+    @GetMapping
+    public ResponseEntity<?> getRows(@RequestParam("from") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+                                     @RequestParam("to") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+                                     @RequestParam(value = "country", required = false) String country,
+                                     @RequestParam(value = "product", required = false) String product,
+                                     @RequestParam(value = "rangeColumn", required = false) String rangeColumn,
+                                     @RequestParam(value = "min", required = false) BigDecimal min,
+                                     @RequestParam(value = "max", required = false) BigDecimal max,
+                                     @RequestParam(value = "afterId", required = false) Long afterId,
+                                     @RequestParam(value = "limit", defaultValue = "500") int limit) {
+        try {
+            return ResponseEntity.ok(salesQueryService.findRows(from, to, country, product, toColumn(rangeColumn),
+                min, max, afterId, limit));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+
+    @GetMapping("/zone-maps/explain")
+    public ResponseEntity<?> explain(@RequestParam("from") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+                                     @RequestParam("to") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+                                     @RequestParam(value = "country", required = false) String country,
+                                     @RequestParam(value = "product", required = false) String product,
+                                     @RequestParam(value = "rangeColumn", required = false) String rangeColumn,
+                                     @RequestParam(value = "min", required = false) BigDecimal min,
+                                     @RequestParam(value = "max", required = false) BigDecimal max,
+                                     @RequestParam(value = "afterId", required = false) Long afterId) {
+        try {
+            return ResponseEntity.ok(salesQueryService.explain(from, to, country, product, toColumn(rangeColumn),
+                min, max, afterId));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+
+    @PostMapping("/zone-maps/backfill")
+    public ResponseEntity<String> backfillZoneMaps() {
+        zoneMapService.backfill();
+        return ResponseEntity.accepted().body("Zone map backfill started");
+    }
+
+    @GetMapping("/summary")
+    public ResponseEntity<?> getSummary(@RequestParam("from") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+                                        @RequestParam("to") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+                                        @RequestParam(value = "groupBy", defaultValue = "COUNTRY") String groupBy) {
+        try {
+            SalesColumn column = SalesColumn.valueOf(groupBy.trim().toUpperCase(Locale.ROOT));
+            return ResponseEntity.ok(salesQueryService.summarize(from, to, column));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+
+    @GetMapping("/partitions")
+    public ResponseEntity<List<SalesPartitionService.PartitionInfo>> getPartitions() {
+        return ResponseEntity.ok(salesPartitionService.getPartitions());
+    }
+
+    private static SalesColumn toColumn(String name) {
+        return name == null || name.isBlank() ? null : SalesColumn.valueOf(name.trim().toUpperCase(Locale.ROOT));
+    }
+}
@@ -0,0 +1,106 @@
+package com.example.dataprocessor.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import jakarta.persistence.UniqueConstraint;
+import java.time.LocalDateTime;
+
+/**
+ * A known file layout: the column mapping to use for every file whose header row has this signature.
+ */
+@Entity
+@Table(name = "column_mapping_profiles", uniqueConstraints = @UniqueConstraint(name = "uk_mapping_profile_signature", columnNames = "signature"))
+public class ColumnMappingProfile {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    // SHA-256 (hex) of the normalized header row
+    @Column(nullable = false, length = 64)
+    private String signature;
+
+    // The normalized header the signature was computed from, for display
+    @Column(columnDefinition = "TEXT")
+    private String header;
+
+    // Column index to SalesColumn, encoded as "0=SEGMENT;1=COUNTRY;..."
+    @Column(columnDefinition = "TEXT")
+    private String mapping;
+
+    // AUTO (learned from inference) or MANUAL (set through the API; never replaced by inference)
+    private String source;
+
+    private Long hitCount;
+    private LocalDateTime createdAt;
+    private LocalDateTime updatedAt;
+
+    // Getters and Setters
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public String getSignature() {
+        return signature;
+    }
+
+    public void setSignature(String signature) {
+        this.signature = signature;
+    }
+
+    public String getHeader() {
+        return header;
+    }
+
+    public void setHeader(String header) {
+        this.header = header;
+    }
+
+    public String getMapping() {
+        return mapping;
+    }
+
+    public void setMapping(String mapping) {
+        this.mapping = mapping;
+    }
+
+    public String getSource() {
+        return source;
+    }
+
+    public void setSource(String source) {
+        this.source = source;
+    }
+
+    public Long getHitCount() {
+        return hitCount;
+    }
+
+    public void setHitCount(Long hitCount) {
+        this.hitCount = hitCount;
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(LocalDateTime createdAt) {
+        this.createdAt = createdAt;
+    }
+
+    public LocalDateTime getUpdatedAt() {
+        return updatedAt;
+    }
+
+    public void setUpdatedAt(LocalDateTime updatedAt) {
+        this.updatedAt = updatedAt;
+    }
+}
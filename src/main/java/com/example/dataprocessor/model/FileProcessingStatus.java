@@ -1,14 +1,16 @@
 package com.example.dataprocessor.model;
 
+import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
 import jakarta.persistence.Table;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "file_processing_status")
+@Table(name = "file_processing_status", indexes = @Index(name = "idx_file_status_content_hash", columnList = "content_hash"))
 public class FileProcessingStatus {
 
     @Id
@@ -22,6 +24,17 @@ public class FileProcessingStatus {
     private LocalDateTime processTime;
     private String errorMessage;
 
+    // SHA-256 of the uploaded bytes, used to recognise re-uploads of an identical file
+    @Column(name = "content_hash", length = 64)
+    private String contentHash;
+
+    // Progress while processing; flushed periodically, so it may lag the job by up to the flush interval
+    @Column(name = "rows_processed")
+    private Integer rowsProcessed;
+
+    @Column(name = "rows_failed")
+    private Integer rowsFailed;
+
     // Getters and Setters
     public Long getId() {
         return id;
@@ -78,4 +91,28 @@ public class FileProcessingStatus {
     public void setErrorMessage(String errorMessage) {
         this.errorMessage = errorMessage;
     }
-} 
\ No newline at end of file
+
+    public String getContentHash() {
+        return contentHash;
+    }
+
+    public void setContentHash(String contentHash) {
+        this.contentHash = contentHash;
+    }
+
+    public Integer getRowsProcessed() {
+        return rowsProcessed;
+    }
+
+    public void setRowsProcessed(Integer rowsProcessed) {
+        this.rowsProcessed = rowsProcessed;
+    }
+
+    public Integer getRowsFailed() {
+        return rowsFailed;
+    }
+
+    public void setRowsFailed(Integer rowsFailed) {
+        this.rowsFailed = rowsFailed;
+    }
+}
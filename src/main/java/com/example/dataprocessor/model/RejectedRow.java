@@ -0,0 +1,101 @@
+package com.example.dataprocessor.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+
+@Entity
+@Table(name = "rejected_rows", indexes = @Index(name = "idx_rejected_rows_file_id", columnList = "file_id, id"))
+public class RejectedRow {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "file_id", nullable = false)
+    private Long fileId;
+
+    // The distributed work unit that rejected the row; null for files ingested on a single node
+    @Column(name = "work_unit_id")
+    private Long workUnitId;
+
+    private Long lineNumber;
+    private String columnName;
+    private String reasonCode;
+
+    @Column(length = 500)
+    private String detail;
+
+    // The original row, re-encoded as a single CSV line
+    @Column(columnDefinition = "TEXT")
+    private String rawRow;
+
+    // Getters and Setters
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public Long getFileId() {
+        return fileId;
+    }
+
+    public void setFileId(Long fileId) {
+        this.fileId = fileId;
+    }
+
+    public Long getWorkUnitId() {
+        return workUnitId;
+    }
+
+    public void setWorkUnitId(Long workUnitId) {
+        this.workUnitId = workUnitId;
+    }
+
+    public Long getLineNumber() {
+        return lineNumber;
+    }
+
+    public void setLineNumber(Long lineNumber) {
+        this.lineNumber = lineNumber;
+    }
+
+    public String getColumnName() {
+        return columnName;
+    }
+
+    public void setColumnName(String columnName) {
+        this.columnName = columnName;
+    }
+
+    public String getReasonCode() {
+        return reasonCode;
+    }
+
+    public void setReasonCode(String reasonCode) {
+        this.reasonCode = reasonCode;
+    }
+
+    public String getDetail() {
+        return detail;
+    }
+
+    public void setDetail(String detail) {
+        this.detail = detail;
+    }
+
+    public String getRawRow() {
+        return rawRow;
+    }
+
+    public void setRawRow(String rawRow) {
+        this.rawRow = rawRow;
+    }
+}
@@ -0,0 +1,78 @@
+package com.example.dataprocessor.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Lob;
+import jakarta.persistence.Table;
+import java.time.LocalDateTime;
+
+@Entity
+@Table(name = "row_dedup_filter")
+public class RowDedupFilter {
+
+    // Single-row table; the filter is global across uploads
+    public static final Long SINGLETON_ID = 1L;
+
+    @Id
+    private Long id;
+
+    private Long bitCount;
+    private Integer hashFunctions;
+    private Long insertions;
+
+    @Lob
+    @Column(columnDefinition = "LONGBLOB")
+    private byte[] bits;
+
+    private LocalDateTime updatedAt;
+
+    // Getters and Setters
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public Long getBitCount() {
+        return bitCount;
+    }
+
+    public void setBitCount(Long bitCount) {
+        this.bitCount = bitCount;
+    }
+
+    public Integer getHashFunctions() {
+        return hashFunctions;
+    }
+
+    public void setHashFunctions(Integer hashFunctions) {
+        this.hashFunctions = hashFunctions;
+    }
+
+    public Long getInsertions() {
+        return insertions;
+    }
+
+    public void setInsertions(Long insertions) {
+        this.insertions = insertions;
+    }
+
+    public byte[] getBits() {
+        return bits;
+    }
+
+    public void setBits(byte[] bits) {
+        this.bits = bits;
+    }
+
+    public LocalDateTime getUpdatedAt() {
+        return updatedAt;
+    }
+
+    public void setUpdatedAt(LocalDateTime updatedAt) {
+        this.updatedAt = updatedAt;
+    }
+}
@@ -1,15 +1,18 @@
 package com.example.dataprocessor.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
 import jakarta.persistence.Table;
 import java.math.BigDecimal;
 import java.time.LocalDate;
 
 @Entity
-@Table(name = "sales_data")
+@Table(name = "sales_data", indexes = @Index(name = "idx_sales_data_row_hash", columnList = "row_hash"))
 public class SalesData {
 
     @Id
@@ -33,6 +36,32 @@ public class SalesData {
     private String monthName;
     private Integer year;
 
+    // Normalized content hash used for row-level deduplication
+    @Column(name = "row_hash", length = 32)
+    private String rowHash;
+
+    // The row hash while dedup is enabled, under a unique index; null for rows that may repeat
+    @Column(name = "dedup_key", length = 32)
+    private String dedupKey;
+
+    // Bitmask of the validation rules this row breaks; null if it passed or was not checked
+    @Column(name = "rule_violations")
+    private Integer ruleViolations;
+
+    // The upload (FileProcessingStatus) the row was last written by; used to purge an upload's rows
+    @Column(name = "file_id")
+    private Long fileId;
+
+    // The distributed work unit that wrote the row; null for files ingested on a single node
+    @Column(name = "work_unit_id")
+    private Long workUnitId;
+
+    // Partitioning key generated by the database: the date, or 1000-01-01 for undated rows.
+    // Range queries filter on it so MySQL can prune partitions.
+    @JsonIgnore
+    @Column(name = "partition_date", insertable = false, updatable = false)
+    private LocalDate partitionDate;
+
     // Getters and Setters
     public Long getId() {
         return id;
@@ -169,4 +198,48 @@ public class SalesData {
     public void setYear(Integer year) {
         this.year = year;
     }
-} 
\ No newline at end of file
+
+    public String getRowHash() {
+        return rowHash;
+    }
+
+    public void setRowHash(String rowHash) {
+        this.rowHash = rowHash;
+    }
+
+    public String getDedupKey() {
+        return dedupKey;
+    }
+
+    public void setDedupKey(String dedupKey) {
+        this.dedupKey = dedupKey;
+    }
+
+    public Integer getRuleViolations() {
+        return ruleViolations;
+    }
+
+    public void setRuleViolations(Integer ruleViolations) {
+        this.ruleViolations = ruleViolations;
+    }
+
+    public Long getFileId() {
+        return fileId;
+    }
+
+    public void setFileId(Long fileId) {
+        this.fileId = fileId;
+    }
+
+    public Long getWorkUnitId() {
+        return workUnitId;
+    }
+
+    public void setWorkUnitId(Long workUnitId) {
+        this.workUnitId = workUnitId;
+    }
+
+    public LocalDate getPartitionDate() {
+        return partitionDate;
+    }
+}
@@ -0,0 +1,99 @@
+package com.example.dataprocessor.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.JoinColumn;
+import jakarta.persistence.ManyToOne;
+import jakarta.persistence.Table;
+
+/**
+ * Row counts and timing of one source within an upload: a workbook sheet, a zip member or the file itself.
+ */
+@Entity
+@Table(name = "source_processing_stats")
+public class SourceProcessingStats {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @JsonIgnore
+    @ManyToOne
+    @JoinColumn(name = "file_id", referencedColumnName = "id")
+    private FileProcessingStatus fileProcessingStatus;
+
+    private String sourceName;
+    private Integer totalRows;
+    private Integer processedRows;
+    private Integer failedRows;
+    private Integer duplicateRows;
+    private Long durationMillis;
+
+    // Getters and Setters
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public FileProcessingStatus getFileProcessingStatus() {
+        return fileProcessingStatus;
+    }
+
+    public void setFileProcessingStatus(FileProcessingStatus fileProcessingStatus) {
+        this.fileProcessingStatus = fileProcessingStatus;
+    }
+
+    public String getSourceName() {
+        return sourceName;
+    }
+
+    public void setSourceName(String sourceName) {
+        this.sourceName = sourceName;
+    }
+
+    public Integer getTotalRows() {
+        return totalRows;
+    }
+
+    public void setTotalRows(Integer totalRows) {
+        this.totalRows = totalRows;
+    }
+
+    public Integer getProcessedRows() {
+        return processedRows;
+    }
+
+    public void setProcessedRows(Integer processedRows) {
+        this.processedRows = processedRows;
+    }
+
+    public Integer getFailedRows() {
+        return failedRows;
+    }
+
+    public void setFailedRows(Integer failedRows) {
+        this.failedRows = failedRows;
+    }
+
+    public Integer getDuplicateRows() {
+        return duplicateRows;
+    }
+
+    public void setDuplicateRows(Integer duplicateRows) {
+        this.duplicateRows = duplicateRows;
+    }
+
+    public Long getDurationMillis() {
+        return durationMillis;
+    }
+
+    public void setDurationMillis(Long durationMillis) {
+        this.durationMillis = durationMillis;
+    }
+}
@@ -0,0 +1,21 @@
+package com.example.dataprocessor.repository;
+
+import com.example.dataprocessor.model.ColumnMappingProfile;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Optional;
+
+@Repository
+public interface ColumnMappingProfileRepository extends JpaRepository<ColumnMappingProfile, Long> {
+    Optional<ColumnMappingProfile> findBySignature(String signature);
+
+    @Transactional
+    @Modifying
+    @Query("UPDATE ColumnMappingProfile p SET p.hitCount = p.hitCount + :hits WHERE p.signature = :signature")
+    int addHits(@Param("signature") String signature, @Param("hits") long hits);
+}
@@ -0,0 +1,109 @@
+package com.example.dataprocessor.repository;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Targeted column updates of file_processing_status. Unlike a JPA save of the whole entity, these never
+ * write back a stale copy of columns they do not own.
+ */
+@Repository
+public class FileProcessingStatusJdbcRepository {
+
+    // Null parameters leave the column as it is; error_message is only replaced along with the status
+    private static final String APPLY_UPDATE_SQL =
+        "UPDATE file_processing_status SET "
+            + "status = COALESCE(?, status), "
+            + "process_time = COALESCE(?, process_time), "
+            + "error_message = CASE WHEN ? THEN ? ELSE error_message END, "
+            + "rows_processed = COALESCE(?, rows_processed), "
+            + "rows_failed = COALESCE(?, rows_failed) "
+            + "WHERE id = ?";
+
+    /**
+     * Merged changes for one file; null fields are left unchanged.
+     */
+    public static class StatusUpdate {
+        private final long fileId;
+        private final String status;
+        private final LocalDateTime processTime;
+        private final String errorMessage;
+        private final Integer rowsProcessed;
+        private final Integer rowsFailed;
+
+        public StatusUpdate(long fileId, String status, LocalDateTime processTime, String errorMessage,
+                            Integer rowsProcessed, Integer rowsFailed) {
+            this.fileId = fileId;
+            this.status = status;
+            this.processTime = processTime;
+            this.errorMessage = errorMessage;
+            this.rowsProcessed = rowsProcessed;
+            this.rowsFailed = rowsFailed;
+        }
+    }
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    /**
+     * Applies the updates of any number of files as one JDBC batch.
+     */
+    public void applyUpdates(List<StatusUpdate> updates) {
+        if (updates.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.batchUpdate(APPLY_UPDATE_SQL, updates, updates.size(), (ps, update) -> {
+            ps.setString(1, update.status);
+            ps.setTimestamp(2, update.processTime != null ? Timestamp.valueOf(update.processTime) : null);
+            ps.setBoolean(3, update.status != null);
+            ps.setString(4, update.errorMessage);
+            setNullableInt(ps, 5, update.rowsProcessed);
+            setNullableInt(ps, 6, update.rowsFailed);
+            ps.setLong(7, update.fileId);
+        });
+    }
+
+    /**
+     * Moves a file out of PROCESSING into a final state, unless something else already did.
+     *
+     * @return true for the one caller that made the transition.
+     */
+    public boolean finishIfProcessing(long fileId, String status, String message, int rowsProcessed, int rowsFailed) {
+        return jdbcTemplate.update(
+            "UPDATE file_processing_status SET status = ?, process_time = ?, error_message = ?, rows_processed = ?, rows_failed = ? "
+                + "WHERE id = ? AND status = 'PROCESSING'",
+            status, Timestamp.valueOf(LocalDateTime.now()), message, rowsProcessed, rowsFailed, fileId) == 1;
+    }
+
+    /**
+     * Moves a file back into PROCESSING to ingest it again, unless it is PENDING or PROCESSING already.
+     *
+     * @return true for the one caller that made the transition.
+     */
+    public boolean startUnlessProcessing(long fileId) {
+        return jdbcTemplate.update(
+            "UPDATE file_processing_status SET status = 'PROCESSING', process_time = ?, error_message = NULL "
+                + "WHERE id = ? AND status NOT IN ('PENDING', 'PROCESSING')",
+            Timestamp.valueOf(LocalDateTime.now()), fileId) == 1;
+    }
+
+    public void updateContentHash(long fileId, String contentHash) {
+        jdbcTemplate.update("UPDATE file_processing_status SET content_hash = ? WHERE id = ?", contentHash, fileId);
+    }
+
+    private static void setNullableInt(PreparedStatement ps, int index, Integer value) throws SQLException {
+        if (value != null) {
+            ps.setInt(index, value);
+        } else {
+            ps.setNull(index, Types.INTEGER);
+        }
+    }
+}
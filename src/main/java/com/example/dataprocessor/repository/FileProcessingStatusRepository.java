@@ -4,6 +4,15 @@ import com.example.dataprocessor.model.FileProcessingStatus;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
 @Repository
 public interface FileProcessingStatusRepository extends JpaRepository<FileProcessingStatus, Long> {
-} 
\ No newline at end of file
+    Optional<FileProcessingStatus> findFirstByContentHashAndStatusOrderByIdAsc(String contentHash, String status);
+
+    Optional<FileProcessingStatus> findFirstByFilenameAndContentHashAndStatusOrderByIdDesc(String filename, String contentHash, String status);
+
+    List<FileProcessingStatus> findTop100ByIdGreaterThanAndUploadTimeBeforeOrderByIdAsc(Long afterId, LocalDateTime uploadedBefore);
+}
@@ -0,0 +1,319 @@
+package com.example.dataprocessor.repository;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.stereotype.Repository;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Checkpoints of followed files. A followed file is polled by one node at a time, the holder of its lease;
+ * every update of the checkpoint is fenced to that lease, so a node whose lease was taken over cannot move
+ * the checkpoint any more.
+ */
+@Repository
+public class FollowedFileJdbcRepository {
+
+    private static final String OWNED = "id = ? AND active AND lease_owner = ?";
+
+    private static final String SELECT_COLUMNS =
+        "SELECT id, file_id, path, ingestion_mode, active, file_key, byte_offset, pending_end_offset, pending_after_row_id, "
+            + "rows_processed, rows_failed, batches, restarts, lease_owner, lease_expires_at, last_batch_at, error_message, "
+            + "created_at FROM followed_file";
+
+    private static final RowMapper<FollowedFile> FOLLOWED_FILE_MAPPER = (rs, rowNum) -> {
+        FollowedFile file = new FollowedFile();
+        file.id = rs.getLong("id");
+        file.fileId = rs.getLong("file_id");
+        file.path = rs.getString("path");
+        file.ingestionMode = rs.getString("ingestion_mode");
+        file.active = rs.getBoolean("active");
+        file.fileKey = rs.getString("file_key");
+        file.byteOffset = rs.getLong("byte_offset");
+        file.pendingEndOffset = rs.getObject("pending_end_offset", Long.class);
+        file.pendingAfterRowId = rs.getObject("pending_after_row_id", Long.class);
+        file.rowsProcessed = rs.getLong("rows_processed");
+        file.rowsFailed = rs.getLong("rows_failed");
+        file.batches = rs.getLong("batches");
+        file.restarts = rs.getInt("restarts");
+        file.leaseOwner = rs.getString("lease_owner");
+        file.leaseExpiresAt = toLocalDateTime(rs.getTimestamp("lease_expires_at"));
+        file.lastBatchAt = toLocalDateTime(rs.getTimestamp("last_batch_at"));
+        file.errorMessage = rs.getString("error_message");
+        file.createdAt = toLocalDateTime(rs.getTimestamp("created_at"));
+        return file;
+    };
+
+    /**
+     * A followed file and its checkpoint.
+     */
+    public static class FollowedFile {
+        private long id;
+        private long fileId;
+        private String path;
+        private String ingestionMode;
+        private boolean active;
+        private String fileKey;
+        // Start of the first line not ingested yet
+        private long byteOffset;
+        private Long pendingEndOffset;
+        private Long pendingAfterRowId;
+        private long rowsProcessed;
+        private long rowsFailed;
+        private long batches;
+        // Times the file was truncated or rotated and followed again from the start
+        private int restarts;
+        private String leaseOwner;
+        private LocalDateTime leaseExpiresAt;
+        private LocalDateTime lastBatchAt;
+        private String errorMessage;
+        private LocalDateTime createdAt;
+
+        public long getId() {
+            return id;
+        }
+
+        public long getFileId() {
+            return fileId;
+        }
+
+        public String getPath() {
+            return path;
+        }
+
+        public String getIngestionMode() {
+            return ingestionMode;
+        }
+
+        public boolean isActive() {
+            return active;
+        }
+
+        public String getFileKey() {
+            return fileKey;
+        }
+
+        public long getByteOffset() {
+            return byteOffset;
+        }
+
+        public Long getPendingEndOffset() {
+            return pendingEndOffset;
+        }
+
+        public Long getPendingAfterRowId() {
+            return pendingAfterRowId;
+        }
+
+        public long getRowsProcessed() {
+            return rowsProcessed;
+        }
+
+        public long getRowsFailed() {
+            return rowsFailed;
+        }
+
+        public long getBatches() {
+            return batches;
+        }
+
+        public int getRestarts() {
+            return restarts;
+        }
+
+        public String getLeaseOwner() {
+            return leaseOwner;
+        }
+
+        public LocalDateTime getLeaseExpiresAt() {
+            return leaseExpiresAt;
+        }
+
+        public LocalDateTime getLastBatchAt() {
+            return lastBatchAt;
+        }
+
+        public String getErrorMessage() {
+            return errorMessage;
+        }
+
+        public LocalDateTime getCreatedAt() {
+            return createdAt;
+        }
+    }
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private DataSource dataSource;
+
+    private volatile Boolean embeddedDatabase;
+
+    /**
+     * @return The id of the new followed file.
+     */
+    public long create(long fileId, String path, String ingestionMode) {
+        KeyHolder keyHolder = new GeneratedKeyHolder();
+        jdbcTemplate.update(connection -> {
+            PreparedStatement ps = connection.prepareStatement(
+                "INSERT INTO followed_file (file_id, path, ingestion_mode, active, created_at) VALUES (?, ?, ?, TRUE, ?)",
+                Statement.RETURN_GENERATED_KEYS);
+            ps.setLong(1, fileId);
+            ps.setString(2, path);
+            ps.setString(3, ingestionMode);
+            ps.setTimestamp(4, Timestamp.valueOf(LocalDateTime.now()));
+            return ps;
+        }, keyHolder);
+        return keyHolder.getKey().longValue();
+    }
+
+    public List<FollowedFile> findAll() {
+        return jdbcTemplate.query(SELECT_COLUMNS + " ORDER BY id", FOLLOWED_FILE_MAPPER);
+    }
+
+    public FollowedFile findById(long id) {
+        List<FollowedFile> files = jdbcTemplate.query(SELECT_COLUMNS + " WHERE id = ?", FOLLOWED_FILE_MAPPER, id);
+        return files.isEmpty() ? null : files.get(0);
+    }
+
+    public List<Long> findActiveIds() {
+        return jdbcTemplate.queryForList("SELECT id FROM followed_file WHERE active ORDER BY id", Long.class);
+    }
+
+    public boolean isActivePath(String path) {
+        Integer count = jdbcTemplate.queryForObject(
+            "SELECT COUNT(*) FROM followed_file WHERE active AND path = ?", Integer.class, path);
+        return count != null && count > 0;
+    }
+
+    public boolean isActiveFile(long fileId) {
+        Integer count = jdbcTemplate.queryForObject(
+            "SELECT COUNT(*) FROM followed_file WHERE active AND file_id = ?", Integer.class, fileId);
+        return count != null && count > 0;
+    }
+
+    /**
+     * Takes or renews the lease on an active followed file, unless another node holds an unexpired one.
+     *
+     * @return The followed file as of the lease, or null if this node may not poll it.
+     */
+    public FollowedFile tryLease(long id, String owner, LocalDateTime now, LocalDateTime expiresAt) {
+        int updated = jdbcTemplate.update(
+            "UPDATE followed_file SET lease_owner = ?, lease_expires_at = ? "
+                + "WHERE id = ? AND active AND (lease_owner IS NULL OR lease_owner = ? OR lease_expires_at < ?)",
+            owner, Timestamp.valueOf(expiresAt), id, owner, Timestamp.valueOf(now));
+        return updated == 1 ? findById(id) : null;
+    }
+
+    /**
+     * Heartbeat while a batch is being written: pushes the expiry of a lease out.
+     *
+     * @return false if the lease was lost (the file was unfollowed, or another node took it over).
+     */
+    public boolean renewLease(long id, String owner, LocalDateTime expiresAt) {
+        return jdbcTemplate.update("UPDATE followed_file SET lease_expires_at = ? WHERE " + OWNED,
+            Timestamp.valueOf(expiresAt), id, owner) == 1;
+    }
+
+    /**
+     * Whether the lease is still held, checked inside the caller's transaction. As for work units, the row
+     * stays share-locked until that transaction ends, so rows it writes commit under this lease or not at all.
+     */
+    public boolean holdsLease(long id, String owner) {
+        // H2 has no shared row locks; it only serves single-node setups
+        String lock = isEmbeddedDatabase() ? " FOR UPDATE" : " FOR SHARE";
+        return !jdbcTemplate.queryForList("SELECT id FROM followed_file WHERE " + OWNED + lock, Long.class, id, owner).isEmpty();
+    }
+
+    /**
+     * Records the file the checkpoint refers to, and starts over at its first byte if it replaced another
+     * (rotation) or shrank below the checkpoint (truncation).
+     */
+    public boolean restart(long id, String owner, String fileKey, boolean fromStart) {
+        return jdbcTemplate.update(
+            "UPDATE followed_file SET file_key = ?, "
+                + "byte_offset = CASE WHEN ? THEN 0 ELSE byte_offset END, "
+                + "restarts = restarts + CASE WHEN ? THEN 1 ELSE 0 END WHERE " + OWNED,
+            fileKey, fromStart, fromStart, id, owner) == 1;
+    }
+
+    /**
+     * Marks the batch [byte_offset, endOffset) as being written, before its first row is.
+     */
+    public boolean beginBatch(long id, String owner, long endOffset, long afterRowId) {
+        return jdbcTemplate.update(
+            "UPDATE followed_file SET pending_end_offset = ?, pending_after_row_id = ? WHERE " + OWNED,
+            endOffset, afterRowId, id, owner) == 1;
+    }
+
+    /**
+     * Moves the checkpoint past a written batch, adds its counters and renews the lease.
+     */
+    public boolean commitBatch(long id, String owner, long endOffset, long rowsProcessed, long rowsFailed, LocalDateTime leaseExpiresAt) {
+        return jdbcTemplate.update(
+            "UPDATE followed_file SET byte_offset = ?, pending_end_offset = NULL, pending_after_row_id = NULL, "
+                + "rows_processed = rows_processed + ?, rows_failed = rows_failed + ?, batches = batches + 1, "
+                + "last_batch_at = ?, lease_expires_at = ?, error_message = NULL WHERE " + OWNED,
+            endOffset, rowsProcessed, rowsFailed, Timestamp.valueOf(LocalDateTime.now()), Timestamp.valueOf(leaseExpiresAt),
+            id, owner) == 1;
+    }
+
+    /**
+     * Forgets a batch that never reached its checkpoint, once its rows are removed; the checkpoint stays.
+     */
+    public boolean clearPending(long id, String owner) {
+        return jdbcTemplate.update(
+            "UPDATE followed_file SET pending_end_offset = NULL, pending_after_row_id = NULL WHERE " + OWNED,
+            id, owner) == 1;
+    }
+
+    public void recordError(long id, String owner, String errorMessage) {
+        jdbcTemplate.update("UPDATE followed_file SET error_message = ? WHERE " + OWNED, truncate(errorMessage), id, owner);
+    }
+
+    /**
+     * Stops following a file. Its checkpoint and counters are kept for the record.
+     *
+     * @return false if it was not being followed.
+     */
+    public boolean deactivate(long id, String errorMessage) {
+        return jdbcTemplate.update(
+            "UPDATE followed_file SET active = FALSE, lease_owner = NULL, lease_expires_at = NULL, "
+                + "error_message = COALESCE(?, error_message) WHERE id = ? AND active",
+            truncate(errorMessage), id) == 1;
+    }
+
+    public int deleteByFileId(long fileId) {
+        return jdbcTemplate.update("DELETE FROM followed_file WHERE file_id = ?", fileId);
+    }
+
+    private static LocalDateTime toLocalDateTime(Timestamp timestamp) {
+        return timestamp != null ? timestamp.toLocalDateTime() : null;
+    }
+
+    private boolean isEmbeddedDatabase() {
+        if (embeddedDatabase == null) {
+            try (Connection connection = dataSource.getConnection()) {
+                embeddedDatabase = "H2".equalsIgnoreCase(connection.getMetaData().getDatabaseProductName());
+            } catch (SQLException e) {
+                throw new IllegalStateException("Could not determine database type", e);
+            }
+        }
+        return embeddedDatabase;
+    }
+
+    private static String truncate(String message) {
+        return message != null && message.length() > 1024 ? message.substring(0, 1024) : message;
+    }
+}
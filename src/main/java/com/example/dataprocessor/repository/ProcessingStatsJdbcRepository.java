@@ -0,0 +1,58 @@
+package com.example.dataprocessor.repository;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * The column sketches stored with processing_stats. They are not mapped on the entity, so listing the
+ * stats of every upload does not load a blob per upload, and a JPA save of the stats leaves them alone.
+ */
+@Repository
+public class ProcessingStatsJdbcRepository {
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    /**
+     * @return false if the file has no processing_stats row yet.
+     */
+    public boolean updateColumnSketches(long fileId, byte[] columnSketches) {
+        return jdbcTemplate.update("UPDATE processing_stats SET column_sketches = ? WHERE file_id = ?", columnSketches, fileId) > 0;
+    }
+
+    public byte[] findColumnSketches(long fileId) {
+        List<byte[]> sketches = jdbcTemplate.query(
+            "SELECT column_sketches FROM processing_stats WHERE file_id = ? AND column_sketches IS NOT NULL",
+            (rs, rowNum) -> rs.getBytes(1), fileId);
+        return sketches.isEmpty() ? null : sketches.get(0);
+    }
+
+    /**
+     * Streams the sketches of the given files, or of every file if fileIds is null, one row at a time.
+     *
+     * @return How many files had sketches.
+     */
+    public int forEachColumnSketches(List<Long> fileIds, Consumer<byte[]> consumer) {
+        if (fileIds != null && fileIds.isEmpty()) {
+            return 0;
+        }
+        String sql = "SELECT column_sketches FROM processing_stats WHERE column_sketches IS NOT NULL";
+        Object[] params = new Object[0];
+        if (fileIds != null) {
+            sql += " AND file_id IN (" + String.join(", ", Collections.nCopies(fileIds.size(), "?")) + ")";
+            params = fileIds.toArray();
+        }
+        int[] files = {0};
+        jdbcTemplate.query(sql, (RowCallbackHandler) rs -> {
+            consumer.accept(rs.getBytes(1));
+            files[0]++;
+        }, params);
+        return files[0];
+    }
+}
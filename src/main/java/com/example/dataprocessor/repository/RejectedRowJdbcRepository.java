@@ -0,0 +1,84 @@
+package com.example.dataprocessor.repository;
+
+import com.example.dataprocessor.model.RejectedRow;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.List;
+
+/**
+ * Batched inserts into rejected_rows; one JDBC batch per flush instead of one INSERT per rejected row.
+ * Also batched deletes for retention.
+ */
+@Repository
+public class RejectedRowJdbcRepository {
+
+    private static final String INSERT_SQL =
+        "INSERT INTO rejected_rows (file_id, work_unit_id, line_number, column_name, reason_code, detail, raw_row) VALUES (?, ?, ?, ?, ?, ?, ?)";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    public void insertAll(List<RejectedRow> rows) {
+        if (rows.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.batchUpdate(INSERT_SQL, rows, rows.size(), (ps, row) -> {
+            ps.setLong(1, row.getFileId());
+            setNullableLong(ps, 2, row.getWorkUnitId());
+            setNullableLong(ps, 3, row.getLineNumber());
+            ps.setString(4, row.getColumnName());
+            ps.setString(5, row.getReasonCode());
+            ps.setString(6, row.getDetail());
+            ps.setString(7, row.getRawRow());
+        });
+    }
+
+    /**
+     * Deletes the next batch of one upload's rejected rows, in id order after afterId.
+     *
+     * @return The highest id deleted, or null if none remain after afterId.
+     */
+    public Long deleteNextBatchByFileId(long fileId, long afterId, int batchSize) {
+        List<Long> ids = jdbcTemplate.queryForList(
+            "SELECT id FROM rejected_rows WHERE file_id = ? AND id > ? ORDER BY id LIMIT ?",
+            Long.class, fileId, afterId, batchSize);
+        if (ids.isEmpty()) {
+            return null;
+        }
+        long lastId = ids.get(ids.size() - 1);
+        jdbcTemplate.update("DELETE FROM rejected_rows WHERE file_id = ? AND id >= ? AND id <= ?", fileId, ids.get(0), lastId);
+        return lastId;
+    }
+
+    /**
+     * Deletes the next batch of rejects of one work unit of an upload, those of an attempt that lost its
+     * lease. Walks the upload's (file_id, id) index.
+     *
+     * @return The highest id deleted, or null if no rejects of the unit remain after afterId.
+     */
+    public Long deleteNextBatchByWorkUnit(long fileId, long workUnitId, long afterId, int batchSize) {
+        List<Long> ids = jdbcTemplate.queryForList(
+            "SELECT id FROM rejected_rows WHERE file_id = ? AND work_unit_id = ? AND id > ? ORDER BY id LIMIT ?",
+            Long.class, fileId, workUnitId, afterId, batchSize);
+        if (ids.isEmpty()) {
+            return null;
+        }
+        long lastId = ids.get(ids.size() - 1);
+        jdbcTemplate.update("DELETE FROM rejected_rows WHERE file_id = ? AND work_unit_id = ? AND id >= ? AND id <= ?",
+            fileId, workUnitId, ids.get(0), lastId);
+        return lastId;
+    }
+
+    private static void setNullableLong(PreparedStatement ps, int index, Long value) throws SQLException {
+        if (value != null) {
+            ps.setLong(index, value);
+        } else {
+            ps.setNull(index, Types.BIGINT);
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package com.example.dataprocessor.repository;
+
+import com.example.dataprocessor.model.RejectedRow;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface RejectedRowRepository extends JpaRepository<RejectedRow, Long> {
+    List<RejectedRow> findTop1000ByFileIdAndIdGreaterThanOrderByIdAsc(Long fileId, Long afterId);
+
+    long countByFileId(Long fileId);
+}
@@ -0,0 +1,9 @@
+package com.example.dataprocessor.repository;
+
+import com.example.dataprocessor.model.RowDedupFilter;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface RowDedupFilterRepository extends JpaRepository<RowDedupFilter, Long> {
+}
@@ -0,0 +1,322 @@
+package com.example.dataprocessor.repository;
+
+import com.example.dataprocessor.model.SalesData;
+import com.example.dataprocessor.service.SalesColumn;
+import com.example.dataprocessor.service.SalesFilter;
+import com.example.dataprocessor.service.SalesSummary;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.BeanPropertyRowMapper;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Repository;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+/**
+ * Set-based writes to sales_data that bypass the JPA entity lifecycle.
+ * A chunk is sent as a few set-based statements instead of one INSERT (or SELECT + UPDATE) per row.
+ */
+@Repository
+public class SalesDataJdbcRepository {
+
+    private static final String TABLE_NAME = "sales_data";
+    private static final String STAGE_TABLE_NAME = "sales_data_upsert_stage";
+    private static final String PARTITION_COLUMN = "partition_date";
+
+    // Column order used for every generated statement; must match bindRow
+    private static final String[] WRITE_COLUMNS = {
+        "segment", "country", "product", "discount_band", "units_sold", "manufacturing_price",
+        "sale_price", "gross_sales", "discounts", "sales", "cogs", "profit",
+        "date", "month_number", "month_name", "year", "row_hash", "dedup_key", "rule_violations", "file_id",
+        "work_unit_id"
+    };
+
+    // Stay with the upload that inserted a row when an UPSERT updates it
+    private static final List<String> OWNER_COLUMNS = List.of("file_id", "work_unit_id");
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private DataSource dataSource;
+
+    private volatile Boolean embeddedDatabase;
+
+    /**
+     * Inserts or updates a chunk of rows, matching existing rows on the given natural key. The chunk is
+     * staged in sales_data_upsert_stage and resolved with set-based statements: the oldest row with a
+     * staged key is updated, keys without one are inserted. Keys compare null-safe and under the column
+     * collation, as they would in an index; when a key repeats within the chunk its last row wins. Nothing
+     * about sales_data's schema changes, so APPEND uploads may still repeat a key, and only the oldest of
+     * such rows follows later UPSERTs. An updated row keeps the file_id and work_unit_id of the upload that
+     * inserted it, so purging or cleaning up the updating upload never deletes it.
+     * <p>
+     * Must run in a transaction. Resolving the staged keys reads sales_data with locking reads, which lock
+     * the key ranges they looked at, including the gaps of keys that do not exist yet, so two chunks
+     * inserting the same new key deadlock instead of both inserting it; the writer retries the loser, which
+     * then finds the row and updates it.
+     *
+     * @param rows The mapped rows of one chunk.
+     * @param naturalKey The columns that identify a row.
+     * @return The ids of the rows written, inserted or updated. Each row's id is set to the row it wrote.
+     */
+    public List<Long> upsertAll(List<SalesData> rows, List<SalesColumn> naturalKey) {
+        if (rows.isEmpty()) {
+            return List.of();
+        }
+        String batchId = UUID.randomUUID().toString();
+        StringBuilder stageSql = new StringBuilder("INSERT INTO ").append(STAGE_TABLE_NAME)
+            .append(" (batch_id, row_index, ").append(String.join(", ", WRITE_COLUMNS)).append(") VALUES ");
+        String rowPlaceholder = "(?, ?, " + String.join(", ", Collections.nCopies(WRITE_COLUMNS.length, "?")) + ")";
+        List<Object> params = new ArrayList<>(rows.size() * (WRITE_COLUMNS.length + 2));
+        for (int i = 0; i < rows.size(); i++) {
+            stageSql.append(i > 0 ? ", " : "").append(rowPlaceholder);
+            params.add(batchId);
+            params.add(i);
+            bindRow(rows.get(i), params);
+        }
+        jdbcTemplate.update(stageSql.toString(), params.toArray());
+
+        List<String> keyColumns = toColumnNames(naturalKey);
+        List<String> valueColumns = new ArrayList<>();
+        for (String column : WRITE_COLUMNS) {
+            if (!keyColumns.contains(column) && !OWNER_COLUMNS.contains(column)) {
+                valueColumns.add(column);
+            }
+        }
+        String columns = String.join(", ", WRITE_COLUMNS);
+        String stagedColumns = Arrays.stream(WRITE_COLUMNS).map(column -> "k." + column).collect(Collectors.joining(", "));
+        // The last row of the chunk with each key
+        String lastOfKey = "k.batch_id = ? AND NOT EXISTS (SELECT 1 FROM " + STAGE_TABLE_NAME + " later "
+            + "WHERE later.batch_id = k.batch_id AND later.row_index > k.row_index AND " + keyMatch("later", "k", keyColumns) + ")";
+        // Resolved before writing, since MySQL cannot read sales_data in a subquery of its own UPDATE
+        String oldestOfKey = "(SELECT MIN(s.id) FROM " + TABLE_NAME + " s WHERE " + rowKeyMatch("s", "k", keyColumns) + ")";
+        jdbcTemplate.update("UPDATE " + STAGE_TABLE_NAME + " k SET target_id = " + oldestOfKey + " WHERE k.batch_id = ?", batchId);
+        String target = "s.id = k.target_id" + (keyColumns.contains("date") ? " AND " + partitionMatch("s", "k") : "");
+        if (isEmbeddedDatabase()) {
+            jdbcTemplate.update("MERGE INTO " + TABLE_NAME + " s USING (SELECT * FROM " + STAGE_TABLE_NAME + " k WHERE " + lastOfKey + ") k"
+                + " ON (" + target + ")"
+                + " WHEN MATCHED THEN UPDATE SET " + valueColumns.stream().map(column -> column + " = k." + column).collect(Collectors.joining(", "))
+                + " WHEN NOT MATCHED THEN INSERT (" + columns + ") VALUES (" + stagedColumns + ")", batchId);
+        } else {
+            jdbcTemplate.update("UPDATE " + TABLE_NAME + " s JOIN " + STAGE_TABLE_NAME + " k ON " + target
+                + " SET " + valueColumns.stream().map(column -> "s." + column + " = k." + column).collect(Collectors.joining(", "))
+                + " WHERE " + lastOfKey, batchId);
+            jdbcTemplate.update("INSERT INTO " + TABLE_NAME + " (" + columns + ") SELECT " + stagedColumns
+                + " FROM " + STAGE_TABLE_NAME + " k WHERE " + lastOfKey + " AND k.target_id IS NULL"
+                + " ORDER BY k.row_index", batchId);
+        }
+
+        List<Long> ids = new ArrayList<>(rows.size());
+        jdbcTemplate.query("SELECT k.row_index, " + oldestOfKey + " FROM " + STAGE_TABLE_NAME + " k WHERE k.batch_id = ?",
+            (RowCallbackHandler) rs -> {
+                rows.get(rs.getInt(1)).setId(rs.getLong(2));
+                ids.add(rs.getLong(2));
+            }, batchId);
+        jdbcTemplate.update("DELETE FROM " + STAGE_TABLE_NAME + " WHERE batch_id = ?", batchId);
+        return ids;
+    }
+
+    /**
+     * Row count and totals per value of one column, over rows dated within [from, toExclusive).
+     * Filters on partition_date so only the partitions of the range are read.
+     */
+    public List<SalesSummary> summarize(LocalDate from, LocalDate toExclusive, SalesColumn groupBy) {
+        String column = toColumnNames(List.of(groupBy)).get(0);
+        String sql = "SELECT " + column + ", COUNT(*), SUM(units_sold), SUM(sales), SUM(profit) FROM " + TABLE_NAME
+            + " WHERE " + PARTITION_COLUMN + " >= ? AND " + PARTITION_COLUMN + " < ?"
+            + " GROUP BY " + column + " ORDER BY " + column;
+        return jdbcTemplate.query(sql,
+            (rs, rowNum) -> new SalesSummary(rs.getString(1), rs.getLong(2), rs.getBigDecimal(3), rs.getBigDecimal(4), rs.getBigDecimal(5)),
+            Date.valueOf(from), Date.valueOf(toExclusive));
+    }
+
+    /**
+     * Deletes the next batch of one upload's rows, in id order after afterId. Each call is its own short
+     * statement over the (file_id, id) index, so row locks are held only for one batch.
+     *
+     * @return The highest id deleted, or null if no rows of the upload remain after afterId.
+     */
+    public Long deleteNextBatchByFileId(long fileId, long afterId, int batchSize) {
+        return deleteNextBatch(TABLE_NAME, "file_id = ?", afterId, batchSize, fileId);
+    }
+
+    /**
+     * Deletes the next batch of rows written by one work unit of an upload, the partial output of an
+     * attempt that lost its lease. Walks the upload's (file_id, id) index.
+     *
+     * @return The highest id deleted, or null if no rows of the unit remain after afterId.
+     */
+    public Long deleteNextBatchByWorkUnit(long fileId, long workUnitId, long afterId, int batchSize) {
+        return deleteNextBatch(TABLE_NAME, "file_id = ? AND work_unit_id = ?", afterId, batchSize, fileId, workUnitId);
+    }
+
+    /**
+     * The lowest and highest id of the rows written by one work unit of an upload, or null if it wrote none.
+     */
+    public long[] findIdRangeByWorkUnit(long fileId, long workUnitId) {
+        List<long[]> range = jdbcTemplate.query(
+            "SELECT MIN(id), MAX(id) FROM " + TABLE_NAME + " WHERE file_id = ? AND work_unit_id = ? HAVING COUNT(*) > 0",
+            (rs, rowNum) -> new long[] {rs.getLong(1), rs.getLong(2)}, fileId, workUnitId);
+        return range.isEmpty() ? null : range.get(0);
+    }
+
+    /**
+     * The highest row id so far, 0 for an empty table. Rows inserted later get higher ids, so it marks
+     * where a batch started (see {@link com.example.dataprocessor.service.FollowService}).
+     */
+    public long findMaxId() {
+        Long maxId = jdbcTemplate.queryForObject("SELECT COALESCE(MAX(id), 0) FROM " + TABLE_NAME, Long.class);
+        return maxId != null ? maxId : 0;
+    }
+
+    /**
+     * Rows matching the filter with ids in [idFrom, idTo], in id order. The id range is what a zone map
+     * left to read (see {@link com.example.dataprocessor.service.ZoneMapService}); the partition_date
+     * range still prunes partitions within it.
+     */
+    public List<SalesData> findRows(SalesFilter filter, long idFrom, long idTo, int limit) {
+        StringBuilder sql = new StringBuilder("SELECT * FROM ").append(TABLE_NAME)
+            .append(" WHERE id >= ? AND id <= ? AND ").append(PARTITION_COLUMN).append(" >= ? AND ")
+            .append(PARTITION_COLUMN).append(" < ?");
+        List<Object> params = new ArrayList<>(List.of(idFrom, idTo, Date.valueOf(filter.getFrom()), Date.valueOf(filter.getToExclusive())));
+        if (filter.getCountry() != null) {
+            sql.append(" AND country = ?");
+            params.add(filter.getCountry());
+        }
+        if (filter.getProduct() != null) {
+            sql.append(" AND product = ?");
+            params.add(filter.getProduct());
+        }
+        if (filter.hasRange()) {
+            String column = toColumnNames(List.of(filter.getRangeColumn())).get(0);
+            if (filter.getMin() != null) {
+                sql.append(" AND ").append(column).append(" >= ?");
+                params.add(filter.getMin());
+            }
+            if (filter.getMax() != null) {
+                sql.append(" AND ").append(column).append(" <= ?");
+                params.add(filter.getMax());
+            }
+        }
+        sql.append(" ORDER BY id LIMIT ?");
+        params.add(limit);
+        return jdbcTemplate.query(sql.toString(), new BeanPropertyRowMapper<>(SalesData.class), params.toArray());
+    }
+
+    /**
+     * All rows with ids in [idFrom, idTo], for building the zone maps of rows written before them.
+     */
+    public List<SalesData> findInIdRange(long idFrom, long idTo) {
+        return jdbcTemplate.query("SELECT * FROM " + TABLE_NAME + " WHERE id >= ? AND id <= ?",
+            new BeanPropertyRowMapper<>(SalesData.class), idFrom, idTo);
+    }
+
+    /**
+     * Deletes the next batch of rows dated before the cutoff, for tables without partitions to drop.
+     *
+     * @return The highest id deleted, or null if no such rows remain after afterId.
+     */
+    public Long deleteNextBatchDatedBefore(LocalDate cutoff, long afterId, int batchSize) {
+        return deleteNextBatch(TABLE_NAME, "date < ?", afterId, batchSize, Date.valueOf(cutoff));
+    }
+
+    /**
+     * Keyset batch delete: reads the ids of the next batch, then deletes exactly that id range.
+     */
+    private Long deleteNextBatch(String table, String predicate, long afterId, int batchSize, Object... predicateValues) {
+        List<Object> selectParams = new ArrayList<>(Arrays.asList(predicateValues));
+        selectParams.add(afterId);
+        selectParams.add(batchSize);
+        List<Long> ids = jdbcTemplate.queryForList(
+            "SELECT id FROM " + table + " WHERE " + predicate + " AND id > ? ORDER BY id LIMIT ?",
+            Long.class, selectParams.toArray());
+        if (ids.isEmpty()) {
+            return null;
+        }
+        long lastId = ids.get(ids.size() - 1);
+        List<Object> deleteParams = new ArrayList<>(Arrays.asList(predicateValues));
+        deleteParams.add(ids.get(0));
+        deleteParams.add(lastId);
+        jdbcTemplate.update("DELETE FROM " + table + " WHERE " + predicate + " AND id >= ? AND id <= ?",
+            deleteParams.toArray());
+        return lastId;
+    }
+
+    /**
+     * Matches sales_data rows to staged rows. A key with DATE also matches partition_date, so the lookup
+     * uses the natural key index and only reads the row's partition.
+     */
+    private String rowKeyMatch(String row, String staged, List<String> keyColumns) {
+        String match = keyMatch(row, staged, keyColumns);
+        return keyColumns.contains("date") ? match + " AND " + partitionMatch(row, staged) : match;
+    }
+
+    // partition_date as V2__partition_sales_data.sql generates it
+    private static String partitionMatch(String row, String staged) {
+        return row + "." + PARTITION_COLUMN + " = COALESCE(" + staged + ".date, DATE '1000-01-01')";
+    }
+
+    private String keyMatch(String left, String right, List<String> keyColumns) {
+        String nullSafeEquals = isEmbeddedDatabase() ? " IS NOT DISTINCT FROM " : " <=> ";
+        return keyColumns.stream()
+            .map(column -> left + "." + column + nullSafeEquals + right + "." + column)
+            .collect(Collectors.joining(" AND "));
+    }
+
+    private void bindRow(SalesData row, List<Object> params) {
+        params.add(row.getSegment());
+        params.add(row.getCountry());
+        params.add(row.getProduct());
+        params.add(row.getDiscountBand());
+        params.add(row.getUnitsSold());
+        params.add(row.getManufacturingPrice());
+        params.add(row.getSalePrice());
+        params.add(row.getGrossSales());
+        params.add(row.getDiscounts());
+        params.add(row.getSales());
+        params.add(row.getCogs());
+        params.add(row.getProfit());
+        params.add(row.getDate() != null ? Date.valueOf(row.getDate()) : null);
+        params.add(row.getMonthNumber());
+        params.add(row.getMonthName());
+        params.add(row.getYear());
+        params.add(row.getRowHash());
+        params.add(row.getDedupKey());
+        params.add(row.getRuleViolations());
+        params.add(row.getFileId());
+        params.add(row.getWorkUnitId());
+    }
+
+    /**
+     * Maps SalesColumn constants to the physical sales_data column names (UNITS_SOLD -> units_sold).
+     */
+    public static List<String> toColumnNames(List<SalesColumn> columns) {
+        return columns.stream()
+            .map(column -> column.name().toLowerCase(Locale.ROOT))
+            .collect(Collectors.toList());
+    }
+
+    private boolean isEmbeddedDatabase() {
+        if (embeddedDatabase == null) {
+            try (Connection connection = dataSource.getConnection()) {
+                String product = connection.getMetaData().getDatabaseProductName();
+                embeddedDatabase = "H2".equalsIgnoreCase(product);
+            } catch (SQLException e) {
+                throw new IllegalStateException("Could not determine database type", e);
+            }
+        }
+        return embeddedDatabase;
+    }
+}
@@ -1,9 +1,37 @@
 package com.example.dataprocessor.repository;
 
 import com.example.dataprocessor.model.SalesData;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+
 @Repository
 public interface SalesDataRepository extends JpaRepository<SalesData, Long> {
-} 
\ No newline at end of file
+
+    @Query("SELECT s.rowHash FROM SalesData s WHERE s.rowHash IN :rowHashes")
+    List<String> findExistingRowHashes(@Param("rowHashes") Collection<String> rowHashes);
+
+    @Query("SELECT s.rowHash FROM SalesData s WHERE s.id > :fromId AND s.id <= :toId AND s.rowHash IS NOT NULL")
+    List<String> findRowHashesInIdRange(@Param("fromId") Long fromId, @Param("toId") Long toId);
+
+    @Query("SELECT MAX(s.id) FROM SalesData s")
+    Long findMaxId();
+
+    /**
+     * Rows dated within [from, toExclusive), in id order after afterId (keyset paging).
+     * The half-open range on partitionDate, with no function around the column, lets MySQL prune
+     * every partition outside the range.
+     */
+    @Query("SELECT s FROM SalesData s WHERE s.partitionDate >= :from AND s.partitionDate < :toExclusive "
+        + "AND s.id > :afterId AND (:country IS NULL OR s.country = :country) "
+        + "AND (:product IS NULL OR s.product = :product) ORDER BY s.id")
+    List<SalesData> findInDateRange(@Param("from") LocalDate from, @Param("toExclusive") LocalDate toExclusive,
+                                    @Param("afterId") Long afterId, @Param("country") String country,
+                                    @Param("product") String product, Pageable limit);
+}
@@ -0,0 +1,12 @@
+package com.example.dataprocessor.repository;
+
+import com.example.dataprocessor.model.SourceProcessingStats;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface SourceProcessingStatsRepository extends JpaRepository<SourceProcessingStats, Long> {
+    List<SourceProcessingStats> findByFileProcessingStatusIdOrderByIdAsc(Long fileId);
+}
@@ -0,0 +1,15 @@
+package com.example.dataprocessor.repository;
+
+import com.example.dataprocessor.model.UploadPart;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface UploadPartRepository extends JpaRepository<UploadPart, Long> {
+    List<UploadPart> findBySessionIdOrderByPartNumberAsc(String sessionId);
+
+    Optional<UploadPart> findBySessionIdAndPartNumber(String sessionId, Integer partNumber);
+}
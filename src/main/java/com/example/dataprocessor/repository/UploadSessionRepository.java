@@ -0,0 +1,9 @@
+package com.example.dataprocessor.repository;
+
+import com.example.dataprocessor.model.UploadSession;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface UploadSessionRepository extends JpaRepository<UploadSession, String> {
+}
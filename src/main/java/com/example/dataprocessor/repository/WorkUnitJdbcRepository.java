@@ -0,0 +1,362 @@
+package com.example.dataprocessor.repository;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Repository;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Leases on ingestion_work_unit. Every state change is a single conditional UPDATE, so two nodes racing
+ * for the same unit cannot both win, and a node whose lease was taken over (attempts moved on) can no
+ * longer renew or complete it.
+ */
+@Repository
+public class WorkUnitJdbcRepository {
+
+    // Units are PENDING, LEASED, DONE, FAILED (out of attempts) or CANCELLED (their file failed)
+    private static final String CLAIMABLE = "(status = 'PENDING' OR (status = 'LEASED' AND lease_expires_at < ?))";
+    // Fences every update of a leased unit to the lease it was taken under
+    private static final String OWNED = "id = ? AND status = 'LEASED' AND lease_owner = ? AND attempts = ?";
+
+    private static final String SELECT_COLUMNS =
+        "SELECT id, file_id, unit_index, source_path, ingestion_mode, start_offset, end_offset, status, "
+            + "lease_owner, lease_expires_at, attempts, total_rows, processed_rows, failed_rows, duplicate_rows, "
+            + "error_message FROM ingestion_work_unit";
+
+    private static final RowMapper<WorkUnit> WORK_UNIT_MAPPER = (rs, rowNum) -> {
+        WorkUnit unit = new WorkUnit();
+        unit.id = rs.getLong("id");
+        unit.fileId = rs.getLong("file_id");
+        unit.unitIndex = rs.getInt("unit_index");
+        unit.sourcePath = rs.getString("source_path");
+        unit.ingestionMode = rs.getString("ingestion_mode");
+        unit.startOffset = rs.getLong("start_offset");
+        unit.endOffset = rs.getLong("end_offset");
+        unit.status = rs.getString("status");
+        unit.leaseOwner = rs.getString("lease_owner");
+        Timestamp expiresAt = rs.getTimestamp("lease_expires_at");
+        unit.leaseExpiresAt = expiresAt != null ? expiresAt.toLocalDateTime() : null;
+        unit.attempts = rs.getInt("attempts");
+        unit.totalRows = (Integer) rs.getObject("total_rows");
+        unit.processedRows = (Integer) rs.getObject("processed_rows");
+        unit.failedRows = (Integer) rs.getObject("failed_rows");
+        unit.duplicateRows = (Integer) rs.getObject("duplicate_rows");
+        unit.errorMessage = rs.getString("error_message");
+        return unit;
+    };
+
+    /**
+     * One byte range of a staged file and the state of its lease.
+     */
+    public static class WorkUnit {
+        private long id;
+        private long fileId;
+        private int unitIndex;
+        private String sourcePath;
+        private String ingestionMode;
+        private long startOffset;
+        // Exclusive
+        private long endOffset;
+        private String status;
+        private String leaseOwner;
+        private LocalDateTime leaseExpiresAt;
+        private int attempts;
+        private Integer totalRows;
+        private Integer processedRows;
+        private Integer failedRows;
+        private Integer duplicateRows;
+        private String errorMessage;
+
+        public long getId() {
+            return id;
+        }
+
+        public long getFileId() {
+            return fileId;
+        }
+
+        public int getUnitIndex() {
+            return unitIndex;
+        }
+
+        public String getSourcePath() {
+            return sourcePath;
+        }
+
+        public String getIngestionMode() {
+            return ingestionMode;
+        }
+
+        public long getStartOffset() {
+            return startOffset;
+        }
+
+        public long getEndOffset() {
+            return endOffset;
+        }
+
+        public String getStatus() {
+            return status;
+        }
+
+        public String getLeaseOwner() {
+            return leaseOwner;
+        }
+
+        public LocalDateTime getLeaseExpiresAt() {
+            return leaseExpiresAt;
+        }
+
+        public int getAttempts() {
+            return attempts;
+        }
+
+        public Integer getTotalRows() {
+            return totalRows;
+        }
+
+        public Integer getProcessedRows() {
+            return processedRows;
+        }
+
+        public Integer getFailedRows() {
+            return failedRows;
+        }
+
+        public Integer getDuplicateRows() {
+            return duplicateRows;
+        }
+
+        public String getErrorMessage() {
+            return errorMessage;
+        }
+    }
+
+    /**
+     * Row counts summed over the finished units of one file.
+     */
+    public static class UnitTotals {
+        private final int totalRows;
+        private final int processedRows;
+        private final int failedRows;
+        private final int duplicateRows;
+        private final LocalDateTime firstCreatedAt;
+
+        public UnitTotals(int totalRows, int processedRows, int failedRows, int duplicateRows, LocalDateTime firstCreatedAt) {
+            this.totalRows = totalRows;
+            this.processedRows = processedRows;
+            this.failedRows = failedRows;
+            this.duplicateRows = duplicateRows;
+            this.firstCreatedAt = firstCreatedAt;
+        }
+
+        public int getTotalRows() {
+            return totalRows;
+        }
+
+        public int getProcessedRows() {
+            return processedRows;
+        }
+
+        public int getFailedRows() {
+            return failedRows;
+        }
+
+        public int getDuplicateRows() {
+            return duplicateRows;
+        }
+
+        public LocalDateTime getFirstCreatedAt() {
+            return firstCreatedAt;
+        }
+    }
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private DataSource dataSource;
+
+    private volatile Boolean embeddedDatabase;
+
+    /**
+     * Records the units of a file as PENDING, one per [start, end) byte range, in one batch.
+     */
+    public void createUnits(long fileId, String sourcePath, String ingestionMode, List<long[]> ranges) {
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        jdbcTemplate.batchUpdate(
+            "INSERT INTO ingestion_work_unit (file_id, unit_index, source_path, ingestion_mode, start_offset, end_offset, "
+                + "status, attempts, created_at) VALUES (?, ?, ?, ?, ?, ?, 'PENDING', 0, ?)",
+            new BatchPreparedStatementSetter() {
+                @Override
+                public void setValues(PreparedStatement ps, int index) throws SQLException {
+                    long[] range = ranges.get(index);
+                    ps.setLong(1, fileId);
+                    ps.setInt(2, index);
+                    ps.setString(3, sourcePath);
+                    ps.setString(4, ingestionMode);
+                    ps.setLong(5, range[0]);
+                    ps.setLong(6, range[1]);
+                    ps.setTimestamp(7, now);
+                }
+
+                @Override
+                public int getBatchSize() {
+                    return ranges.size();
+                }
+            });
+    }
+
+    /**
+     * Ids of units that are free to lease at the given time, oldest first. Only candidates: the lease
+     * itself is taken by {@link #tryLease}.
+     */
+    public List<Long> findClaimable(LocalDateTime now, int limit) {
+        return jdbcTemplate.queryForList("SELECT id FROM ingestion_work_unit WHERE " + CLAIMABLE + " ORDER BY id LIMIT ?",
+            Long.class, Timestamp.valueOf(now), limit);
+    }
+
+    /**
+     * Leases a unit if it is still claimable.
+     *
+     * @return The leased unit with its new attempt number, or null if another node got it first.
+     */
+    public WorkUnit tryLease(long id, String owner, LocalDateTime now, LocalDateTime expiresAt) {
+        int updated = jdbcTemplate.update(
+            "UPDATE ingestion_work_unit SET status = 'LEASED', lease_owner = ?, lease_expires_at = ?, attempts = attempts + 1 "
+                + "WHERE id = ? AND " + CLAIMABLE,
+            owner, Timestamp.valueOf(expiresAt), id, Timestamp.valueOf(now));
+        if (updated == 0) {
+            return null;
+        }
+        List<WorkUnit> units = jdbcTemplate.query(SELECT_COLUMNS + " WHERE id = ? AND lease_owner = ?", WORK_UNIT_MAPPER, id, owner);
+        return units.isEmpty() ? null : units.get(0);
+    }
+
+    /**
+     * Heartbeat: pushes the expiry of a lease out.
+     *
+     * @return false if the lease was lost (it expired and another node took the unit over).
+     */
+    public boolean renewLease(long id, String owner, int attempts, LocalDateTime expiresAt) {
+        return jdbcTemplate.update("UPDATE ingestion_work_unit SET lease_expires_at = ? WHERE " + OWNED,
+            Timestamp.valueOf(expiresAt), id, owner, attempts) == 1;
+    }
+
+    /**
+     * Whether the lease is still held, checked inside the caller's transaction. The unit row stays
+     * share-locked until that transaction ends, so no other node can lease the unit in between: rows the
+     * transaction writes either commit under this lease, where a later owner's cleanup finds them, or not at all.
+     */
+    public boolean holdsLease(long id, String owner, int attempts) {
+        // H2 has no shared row locks; it only serves single-node setups
+        String lock = isEmbeddedDatabase() ? " FOR UPDATE" : " FOR SHARE";
+        return !jdbcTemplate.queryForList("SELECT id FROM ingestion_work_unit WHERE " + OWNED + lock, Long.class,
+            id, owner, attempts).isEmpty();
+    }
+
+    /**
+     * Marks a leased unit DONE with its row counts and column sketches.
+     *
+     * @return false if the lease was lost before the unit finished.
+     */
+    public boolean complete(long id, String owner, int attempts, int totalRows, int processedRows, int failedRows, int duplicateRows,
+                            byte[] columnSketches) {
+        return jdbcTemplate.update(
+            "UPDATE ingestion_work_unit SET status = 'DONE', lease_owner = NULL, lease_expires_at = NULL, total_rows = ?, "
+                + "processed_rows = ?, failed_rows = ?, duplicate_rows = ?, column_sketches = ?, error_message = NULL, "
+                + "finished_at = ? WHERE " + OWNED,
+            totalRows, processedRows, failedRows, duplicateRows, columnSketches, Timestamp.valueOf(LocalDateTime.now()),
+            id, owner, attempts) == 1;
+    }
+
+    /**
+     * Gives a leased unit back for another attempt, by any node.
+     */
+    public boolean release(long id, String owner, int attempts, String errorMessage) {
+        return jdbcTemplate.update(
+            "UPDATE ingestion_work_unit SET status = 'PENDING', lease_owner = NULL, lease_expires_at = NULL, error_message = ? "
+                + "WHERE " + OWNED,
+            truncate(errorMessage), id, owner, attempts) == 1;
+    }
+
+    /**
+     * Marks a leased unit FAILED for good.
+     */
+    public boolean fail(long id, String owner, int attempts, String errorMessage) {
+        return jdbcTemplate.update(
+            "UPDATE ingestion_work_unit SET status = 'FAILED', lease_owner = NULL, lease_expires_at = NULL, error_message = ?, "
+                + "finished_at = ? WHERE " + OWNED,
+            truncate(errorMessage), Timestamp.valueOf(LocalDateTime.now()), id, owner, attempts) == 1;
+    }
+
+    /**
+     * Withdraws the units of a file that have not finished, so no node picks them up any more.
+     */
+    public int cancelUnfinished(long fileId) {
+        return jdbcTemplate.update(
+            "UPDATE ingestion_work_unit SET status = 'CANCELLED', lease_owner = NULL, lease_expires_at = NULL "
+                + "WHERE file_id = ? AND status IN ('PENDING', 'LEASED')",
+            fileId);
+    }
+
+    public int countNotDone(long fileId) {
+        Integer count = jdbcTemplate.queryForObject(
+            "SELECT COUNT(*) FROM ingestion_work_unit WHERE file_id = ? AND status <> 'DONE'", Integer.class, fileId);
+        return count != null ? count : 0;
+    }
+
+    public UnitTotals sumTotals(long fileId) {
+        return jdbcTemplate.queryForObject(
+            "SELECT COALESCE(SUM(total_rows), 0), COALESCE(SUM(processed_rows), 0), COALESCE(SUM(failed_rows), 0), "
+                + "COALESCE(SUM(duplicate_rows), 0), MIN(created_at) FROM ingestion_work_unit WHERE file_id = ?",
+            (rs, rowNum) -> {
+                Timestamp firstCreatedAt = rs.getTimestamp(5);
+                return new UnitTotals(rs.getInt(1), rs.getInt(2), rs.getInt(3), rs.getInt(4),
+                    firstCreatedAt != null ? firstCreatedAt.toLocalDateTime() : null);
+            },
+            fileId);
+    }
+
+    /**
+     * The column sketches of the finished units of a file, one unit at a time.
+     */
+    public void forEachColumnSketches(long fileId, Consumer<byte[]> consumer) {
+        jdbcTemplate.query("SELECT column_sketches FROM ingestion_work_unit WHERE file_id = ? AND column_sketches IS NOT NULL",
+            (RowCallbackHandler) rs -> consumer.accept(rs.getBytes(1)), fileId);
+    }
+
+    public List<WorkUnit> findByFileId(long fileId) {
+        return jdbcTemplate.query(SELECT_COLUMNS + " WHERE file_id = ? ORDER BY unit_index", WORK_UNIT_MAPPER, fileId);
+    }
+
+    public int deleteByFileId(long fileId) {
+        return jdbcTemplate.update("DELETE FROM ingestion_work_unit WHERE file_id = ?", fileId);
+    }
+
+    private boolean isEmbeddedDatabase() {
+        if (embeddedDatabase == null) {
+            try (Connection connection = dataSource.getConnection()) {
+                embeddedDatabase = "H2".equalsIgnoreCase(connection.getMetaData().getDatabaseProductName());
+            } catch (SQLException e) {
+                throw new IllegalStateException("Could not determine database type", e);
+            }
+        }
+        return embeddedDatabase;
+    }
+
+    private static String truncate(String message) {
+        return message != null && message.length() > 1024 ? message.substring(0, 1024) : message;
+    }
+}
@@ -0,0 +1,220 @@
+package com.example.dataprocessor.repository;
+
+import com.example.dataprocessor.service.SalesColumn;
+import com.example.dataprocessor.service.SalesFilter;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * sales_zone_map: one row per zone, see {@link com.example.dataprocessor.service.ZoneMapService}.
+ * The min/max checks of a query run in the database, so only the Bloom filters of zones that pass
+ * them are read.
+ */
+@Repository
+public class ZoneMapJdbcRepository {
+
+    // Numeric columns with a min/max pair in sales_zone_map, named <column>_min and <column>_max
+    public static final List<SalesColumn> RANGE_COLUMNS = List.of(
+        SalesColumn.UNITS_SOLD, SalesColumn.MANUFACTURING_PRICE, SalesColumn.SALE_PRICE, SalesColumn.GROSS_SALES,
+        SalesColumn.DISCOUNTS, SalesColumn.SALES, SalesColumn.COGS, SalesColumn.PROFIT,
+        SalesColumn.MONTH_NUMBER, SalesColumn.YEAR);
+
+    /**
+     * What one zone records about the rows it describes.
+     */
+    public static class ZoneMap {
+        private final Long fileId;
+        private final String kind;
+        private final long idFrom;
+        private final long idTo;
+        private final int rowCount;
+        private final LocalDate minDate;
+        private final LocalDate maxDate;
+        // min, max; null when the column was null in every row
+        private final Map<SalesColumn, BigDecimal[]> ranges;
+        private final byte[] dimensionBloom;
+        private final int bloomHashFunctions;
+
+        public ZoneMap(Long fileId, String kind, long idFrom, long idTo, int rowCount, LocalDate minDate, LocalDate maxDate,
+                       Map<SalesColumn, BigDecimal[]> ranges, byte[] dimensionBloom, int bloomHashFunctions) {
+            this.fileId = fileId;
+            this.kind = kind;
+            this.idFrom = idFrom;
+            this.idTo = idTo;
+            this.rowCount = rowCount;
+            this.minDate = minDate;
+            this.maxDate = maxDate;
+            this.ranges = ranges;
+            this.dimensionBloom = dimensionBloom;
+            this.bloomHashFunctions = bloomHashFunctions;
+        }
+    }
+
+    /**
+     * A zone as seen by one query: its id range, whether its min/max allow a match, and if so its
+     * Bloom filter for the equality predicates.
+     */
+    public static class ZoneMatch {
+        private final long idFrom;
+        private final long idTo;
+        private final boolean inRange;
+        private final byte[] dimensionBloom;
+        private final int bloomHashFunctions;
+
+        public ZoneMatch(long idFrom, long idTo, boolean inRange, byte[] dimensionBloom, int bloomHashFunctions) {
+            this.idFrom = idFrom;
+            this.idTo = idTo;
+            this.inRange = inRange;
+            this.dimensionBloom = dimensionBloom;
+            this.bloomHashFunctions = bloomHashFunctions;
+        }
+
+        public long getIdFrom() {
+            return idFrom;
+        }
+
+        public long getIdTo() {
+            return idTo;
+        }
+
+        public boolean isInRange() {
+            return inRange;
+        }
+
+        public byte[] getDimensionBloom() {
+            return dimensionBloom;
+        }
+
+        public int getBloomHashFunctions() {
+            return bloomHashFunctions;
+        }
+    }
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    public void insert(ZoneMap zone) {
+        List<String> columns = new ArrayList<>(List.of("file_id", "kind", "id_from", "id_to", "row_count", "min_date", "max_date"));
+        // Nullable values, so no List.of
+        List<Object> params = new ArrayList<>();
+        Collections.addAll(params, zone.fileId, zone.kind, zone.idFrom, zone.idTo, zone.rowCount, toDate(zone.minDate), toDate(zone.maxDate));
+        for (SalesColumn column : RANGE_COLUMNS) {
+            BigDecimal[] range = zone.ranges.get(column);
+            columns.add(columnName(column) + "_min");
+            columns.add(columnName(column) + "_max");
+            params.add(range != null ? range[0] : null);
+            params.add(range != null ? range[1] : null);
+        }
+        columns.addAll(List.of("dimension_bloom", "bloom_hash_functions", "created_at"));
+        Collections.addAll(params, zone.dimensionBloom, zone.bloomHashFunctions, Timestamp.valueOf(LocalDateTime.now()));
+        jdbcTemplate.update("INSERT INTO sales_zone_map (" + String.join(", ", columns) + ") VALUES ("
+            + String.join(", ", Collections.nCopies(columns.size(), "?")) + ")", params.toArray());
+    }
+
+    /**
+     * Every zone that reaches past afterId, in id_from order, with its min/max checked against the filter.
+     */
+    public List<ZoneMatch> findZones(long afterId, SalesFilter filter) {
+        List<String> predicates = new ArrayList<>();
+        List<Object> params = new ArrayList<>();
+        predicates.add("max_date >= ? AND min_date < ?");
+        params.add(Date.valueOf(filter.getFrom()));
+        params.add(Date.valueOf(filter.getToExclusive()));
+        if (filter.hasRange()) {
+            String column = columnName(filter.getRangeColumn());
+            if (filter.getMin() != null) {
+                predicates.add(column + "_max >= ?");
+                params.add(filter.getMin());
+            }
+            if (filter.getMax() != null) {
+                predicates.add(column + "_min <= ?");
+                params.add(filter.getMax());
+            }
+        }
+        // A null min/max (no values in the zone) cannot match a range
+        String inRange = "COALESCE((" + String.join(" AND ", predicates) + "), FALSE)";
+        List<Object> allParams = new ArrayList<>(params);
+        allParams.addAll(params);
+        allParams.add(afterId);
+        return jdbcTemplate.query(
+            "SELECT id_from, id_to, " + inRange + " AS in_range, CASE WHEN " + inRange + " THEN dimension_bloom END, "
+                + "bloom_hash_functions FROM sales_zone_map WHERE id_to > ? ORDER BY id_from",
+            (rs, rowNum) -> new ZoneMatch(rs.getLong(1), rs.getLong(2), rs.getBoolean(3), rs.getBytes(4), rs.getInt(5)),
+            allParams.toArray());
+    }
+
+    /**
+     * The highest id that may lie in no zone describing it: rows written before zone maps, and the ones
+     * a backfill has not reached yet. 0 once every row is described.
+     */
+    public long findLegacyEnd() {
+        List<Long> legacyEnd = jdbcTemplate.queryForList("SELECT legacy_end FROM sales_zone_map_state WHERE id = 1", Long.class);
+        return legacyEnd.isEmpty() ? 0 : legacyEnd.get(0);
+    }
+
+    public void lowerLegacyEnd(long legacyEnd) {
+        jdbcTemplate.update("UPDATE sales_zone_map_state SET legacy_end = ? WHERE id = 1 AND legacy_end > ?",
+            legacyEnd, legacyEnd);
+    }
+
+    /**
+     * The lowest blocks of blockIds ids, all ending at or below idTo, that hold a zone written by a chunk.
+     * Block n spans ids n * blockIds + 1 to (n + 1) * blockIds.
+     */
+    public List<Long> findBlocksWithChunkZones(long blockIds, long idTo, int limit) {
+        return jdbcTemplate.queryForList(
+            "SELECT DISTINCT FLOOR((id_from - 1) / ?) FROM sales_zone_map WHERE kind IN ('APPEND', 'UPSERT') "
+                + "AND id_to <= ? AND FLOOR((id_from - 1) / ?) = FLOOR((id_to - 1) / ?) ORDER BY 1 LIMIT ?",
+            Long.class, blockIds, idTo, blockIds, blockIds, limit);
+    }
+
+    /**
+     * The zones lying entirely within [idFrom, idTo].
+     */
+    public List<Long> findZoneIdsWithin(long idFrom, long idTo) {
+        return jdbcTemplate.queryForList("SELECT id FROM sales_zone_map WHERE id_from >= ? AND id_to <= ?",
+            Long.class, idFrom, idTo);
+    }
+
+    public void deleteByIds(List<Long> ids) {
+        if (!ids.isEmpty()) {
+            jdbcTemplate.update("DELETE FROM sales_zone_map WHERE id IN ("
+                + String.join(", ", Collections.nCopies(ids.size(), "?")) + ")", ids.toArray());
+        }
+    }
+
+    /**
+     * Removes the zones of an upload once its rows are gone. UPSERT zones have no file_id: the rows they
+     * describe include rows that other uploads inserted and still own.
+     */
+    public int deleteByFileId(long fileId) {
+        return jdbcTemplate.update("DELETE FROM sales_zone_map WHERE file_id = ?", fileId);
+    }
+
+    /**
+     * Removes the zones whose rows were all dated within [from, toExclusive), once such rows are gone.
+     */
+    public int deleteDatedBetween(LocalDate from, LocalDate toExclusive) {
+        return jdbcTemplate.update("DELETE FROM sales_zone_map WHERE min_date >= ? AND max_date < ?",
+            Date.valueOf(from), Date.valueOf(toExclusive));
+    }
+
+    public static String columnName(SalesColumn column) {
+        return SalesDataJdbcRepository.toColumnNames(List.of(column)).get(0);
+    }
+
+    private static Date toDate(LocalDate date) {
+        return date != null ? Date.valueOf(date) : null;
+    }
+}
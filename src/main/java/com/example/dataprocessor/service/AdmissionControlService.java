@@ -0,0 +1,345 @@
+package com.example.dataprocessor.service;
+
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Admission control for uploads. Each upload is given an estimated memory cost from its size and type
+ * and must fit the memory budget, the concurrent job limit and the current heap headroom before its
+ * job starts. An upload that does not fit waits in a bounded FIFO queue for up to queue-wait-ms; when the
+ * queue is full or the wait runs out it is shed, and the caller answers 429 with a Retry-After.
+ * <p>
+ * The concurrent job limit defaults to the size of the job pool, so an admitted job never sits in the
+ * executor's own (unbounded) queue.
+ */
+@Service
+public class AdmissionControlService {
+
+    private static final Logger logger = LoggerFactory.getLogger(AdmissionControlService.class);
+
+    private static final long MB = 1024L * 1024;
+
+    // Bounds of the Retry-After hint
+    private static final long MIN_RETRY_AFTER_SECONDS = 1;
+    private static final long MAX_RETRY_AFTER_SECONDS = 300;
+    // Used until a job has finished and its duration is known
+    private static final long DEFAULT_RETRY_AFTER_SECONDS = 30;
+
+    // Weight of the newest job in the average job duration
+    private static final double DURATION_SMOOTHING = 0.2;
+
+    @Value("${dataprocessor.admission.enabled:true}")
+    private boolean enabled;
+
+    // 0 uses half of the maximum heap
+    @Value("${dataprocessor.admission.memory-budget-mb:0}")
+    private long memoryBudgetMb;
+
+    // 0 uses the size of the job pool
+    @Value("${dataprocessor.admission.max-concurrent-jobs:0}")
+    private int maxConcurrentJobs;
+
+    @Value("${dataprocessor.admission.max-queued:16}")
+    private int maxQueued;
+
+    @Value("${dataprocessor.admission.queue-wait-ms:30000}")
+    private long queueWaitMillis;
+
+    // Uploads are held back while less than this share of the heap is free
+    @Value("${dataprocessor.admission.min-free-heap-percent:15}")
+    private int minFreeHeapPercent;
+
+    // Fixed cost of any job: the in-flight chunk window, parser buffers and batch statements
+    @Value("${dataprocessor.admission.job-base-mb:32}")
+    private long jobBaseMb;
+
+    // Heap per byte of a workbook (shared strings and styles are held for the whole file)
+    @Value("${dataprocessor.admission.workbook-factor:4.0}")
+    private double workbookFactor;
+
+    // Heap per byte of a CSV; rows are streamed, so only a little of the file is resident at a time
+    @Value("${dataprocessor.admission.csv-factor:0.05}")
+    private double csvFactor;
+
+    // Compressed input expands by about this much before it is parsed
+    @Value("${dataprocessor.admission.compression-ratio:8.0}")
+    private double compressionRatio;
+
+    private long memoryBudgetBytes;
+    private int concurrencyLimit;
+
+    private final ReentrantLock lock = new ReentrantLock(true);
+    private final Condition released = lock.newCondition();
+    // Waiting uploads in arrival order; only the head may be admitted, so a large upload is not starved
+    private final Deque<Object> waiting = new ArrayDeque<>();
+
+    // Guarded by lock
+    private long memoryInUse;
+    private int activeJobs;
+    private long admittedTotal;
+    private long queuedTotal;
+    private long rejectedTotal;
+    private double averageJobMillis = -1;
+
+    /**
+     * A budget reservation held for the lifetime of one job. Closing it more than once is harmless.
+     */
+    public final class Permit implements AutoCloseable {
+        private final long cost;
+        private final long admittedAt = System.currentTimeMillis();
+        private final AtomicBoolean closed = new AtomicBoolean();
+
+        private Permit(long cost) {
+            this.cost = cost;
+        }
+
+        public long getCost() {
+            return cost;
+        }
+
+        @Override
+        public void close() {
+            if (closed.compareAndSet(false, true)) {
+                release(this);
+            }
+        }
+    }
+
+    /**
+     * Current budget use, for the admission endpoint.
+     */
+    public static class AdmissionStats {
+        private final boolean enabled;
+        private final long memoryBudgetBytes;
+        private final long memoryInUseBytes;
+        private final int maxConcurrentJobs;
+        private final int activeJobs;
+        private final int maxQueued;
+        private final int queued;
+        private final long admittedTotal;
+        private final long queuedTotal;
+        private final long rejectedTotal;
+        private final long heapUsedBytes;
+        private final long heapMaxBytes;
+        private final long averageJobMillis;
+
+        public AdmissionStats(boolean enabled, long memoryBudgetBytes, long memoryInUseBytes, int maxConcurrentJobs,
+                              int activeJobs, int maxQueued, int queued, long admittedTotal, long queuedTotal,
+                              long rejectedTotal, long heapUsedBytes, long heapMaxBytes, long averageJobMillis) {
+            this.enabled = enabled;
+            this.memoryBudgetBytes = memoryBudgetBytes;
+            this.memoryInUseBytes = memoryInUseBytes;
+            this.maxConcurrentJobs = maxConcurrentJobs;
+            this.activeJobs = activeJobs;
+            this.maxQueued = maxQueued;
+            this.queued = queued;
+            this.admittedTotal = admittedTotal;
+            this.queuedTotal = queuedTotal;
+            this.rejectedTotal = rejectedTotal;
+            this.heapUsedBytes = heapUsedBytes;
+            this.heapMaxBytes = heapMaxBytes;
+            this.averageJobMillis = averageJobMillis;
+        }
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public long getMemoryBudgetBytes() {
+            return memoryBudgetBytes;
+        }
+
+        public long getMemoryInUseBytes() {
+            return memoryInUseBytes;
+        }
+
+        public int getMaxConcurrentJobs() {
+            return maxConcurrentJobs;
+        }
+
+        public int getActiveJobs() {
+            return activeJobs;
+        }
+
+        public int getMaxQueued() {
+            return maxQueued;
+        }
+
+        public int getQueued() {
+            return queued;
+        }
+
+        public long getAdmittedTotal() {
+            return admittedTotal;
+        }
+
+        public long getQueuedTotal() {
+            return queuedTotal;
+        }
+
+        public long getRejectedTotal() {
+            return rejectedTotal;
+        }
+
+        public long getHeapUsedBytes() {
+            return heapUsedBytes;
+        }
+
+        public long getHeapMaxBytes() {
+            return heapMaxBytes;
+        }
+
+        public long getAverageJobMillis() {
+            return averageJobMillis;
+        }
+    }
+
+    @PostConstruct
+    void resolveBudgets() {
+        memoryBudgetBytes = memoryBudgetMb > 0 ? memoryBudgetMb * MB : Runtime.getRuntime().maxMemory() / 2;
+        // Matches the taskExecutor pool in AsyncConfig
+        concurrencyLimit = maxConcurrentJobs > 0 ? maxConcurrentJobs : Runtime.getRuntime().availableProcessors() * 2;
+    }
+
+    /**
+     * Estimated heap an ingestion job of this file needs at its peak.
+     *
+     * @param sizeBytes The upload size; -1 if unknown, which is costed as the base job alone.
+     */
+    public long estimateCost(String fileName, long sizeBytes) {
+        String name = fileName != null ? fileName.toLowerCase(Locale.ROOT) : "";
+        long size = Math.max(0, sizeBytes);
+        double expanded = size;
+        if (name.endsWith(".gz") || name.endsWith(".zip")) {
+            expanded = size * compressionRatio;
+            name = name.endsWith(".gz") ? name.substring(0, name.length() - 3) : name;
+        }
+        // A zip may hold workbooks; without opening it, assume the costlier format
+        double factor = name.endsWith(".xlsx") || name.endsWith(".zip") ? workbookFactor : csvFactor;
+        return jobBaseMb * MB + (long) (expanded * factor);
+    }
+
+    /**
+     * Reserves budget for one upload, waiting in the queue if the budget is taken.
+     *
+     * @return The permit to close when the job ends, or null if the upload was shed; see
+     *         {@link #retryAfterSeconds()} for when to try again.
+     */
+    public Permit admit(String fileName, long sizeBytes) throws InterruptedException {
+        // An upload larger than the whole budget can still run, just alone
+        long cost = Math.min(estimateCost(fileName, sizeBytes), memoryBudgetBytes);
+        if (!enabled) {
+            return new Permit(0);
+        }
+        lock.lock();
+        try {
+            if (waiting.isEmpty() && fits(cost)) {
+                return grant(cost);
+            }
+            if (waiting.size() >= maxQueued) {
+                rejectedTotal++;
+                logger.warn("Upload {} shed: {} uploads already queued", fileName, waiting.size());
+                return null;
+            }
+            Object ticket = new Object();
+            waiting.addLast(ticket);
+            queuedTotal++;
+            try {
+                long remaining = TimeUnit.MILLISECONDS.toNanos(queueWaitMillis);
+                while (waiting.peekFirst() != ticket || !fits(cost)) {
+                    if (remaining <= 0) {
+                        rejectedTotal++;
+                        logger.warn("Upload {} shed after waiting {} ms for {} MB of budget", fileName, queueWaitMillis, cost / MB);
+                        return null;
+                    }
+                    remaining = released.awaitNanos(remaining);
+                }
+                return grant(cost);
+            } finally {
+                waiting.remove(ticket);
+                // The next in line may fit too
+                released.signalAll();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * How long a shed upload should wait before trying again: the queue ahead of it, worked off at the
+     * average job duration by the allowed number of concurrent jobs.
+     */
+    public long retryAfterSeconds() {
+        lock.lock();
+        try {
+            if (averageJobMillis < 0) {
+                return DEFAULT_RETRY_AFTER_SECONDS;
+            }
+            double rounds = (double) (waiting.size() + 1) / concurrencyLimit;
+            long seconds = (long) Math.ceil(rounds * averageJobMillis / 1000);
+            return Math.max(MIN_RETRY_AFTER_SECONDS, Math.min(MAX_RETRY_AFTER_SECONDS, seconds));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public AdmissionStats getStats() {
+        Runtime runtime = Runtime.getRuntime();
+        lock.lock();
+        try {
+            return new AdmissionStats(enabled, memoryBudgetBytes, memoryInUse, concurrencyLimit, activeJobs, maxQueued,
+                waiting.size(), admittedTotal, queuedTotal, rejectedTotal, runtime.totalMemory() - runtime.freeMemory(),
+                runtime.maxMemory(), Math.round(Math.max(0, averageJobMillis)));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private boolean fits(long cost) {
+        if (activeJobs == 0) {
+            // Nothing to wait for; an idle node always takes the next upload
+            return true;
+        }
+        if (activeJobs >= concurrencyLimit || memoryInUse + cost > memoryBudgetBytes) {
+            return false;
+        }
+        Runtime runtime = Runtime.getRuntime();
+        long freeHeap = runtime.maxMemory() - (runtime.totalMemory() - runtime.freeMemory());
+        return freeHeap - cost >= runtime.maxMemory() * minFreeHeapPercent / 100;
+    }
+
+    private Permit grant(long cost) {
+        memoryInUse += cost;
+        activeJobs++;
+        admittedTotal++;
+        return new Permit(cost);
+    }
+
+    private void release(Permit permit) {
+        long duration = System.currentTimeMillis() - permit.admittedAt;
+        lock.lock();
+        try {
+            if (enabled) {
+                memoryInUse -= permit.cost;
+                activeJobs--;
+            }
+            averageJobMillis = averageJobMillis < 0
+                ? duration
+                : DURATION_SMOOTHING * duration + (1 - DURATION_SMOOTHING) * averageJobMillis;
+            released.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+}
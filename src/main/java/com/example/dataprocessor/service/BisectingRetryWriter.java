@@ -0,0 +1,137 @@
+package com.example.dataprocessor.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.TransientDataAccessException;
+import org.springframework.stereotype.Service;
+
+import java.sql.SQLException;
+import java.sql.SQLTransientException;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+/**
+ * Writes a batch and, instead of dropping it on failure, recovers as many rows as possible.
+ * Transient failures (deadlocks, lock wait timeouts, connection blips) are retried with exponential
+ * backoff and jitter. A failure caused by the data (SQLSTATE class 22 or 23: bad values, constraint
+ * violations) means a bad row somewhere in the batch: the batch is split in half and each half written on
+ * its own, recursively, so a single bad row is isolated in O(log n) extra round trips and every other row
+ * is committed. Any other failure (lost connection, missing table, retries exhausted) would fail every
+ * half just the same, so the whole batch is rejected with it at once.
+ * The writer must be atomic per call (one transaction or one statement) for this to be correct.
+ */
+@Service
+public class BisectingRetryWriter {
+
+    private static final Logger logger = LoggerFactory.getLogger(BisectingRetryWriter.class);
+
+    // MySQL: ER_LOCK_DEADLOCK, ER_LOCK_WAIT_TIMEOUT
+    private static final int MYSQL_DEADLOCK = 1213;
+    private static final int MYSQL_LOCK_WAIT_TIMEOUT = 1205;
+
+    @Value("${dataprocessor.write.max-retries:3}")
+    private int maxRetries;
+
+    @Value("${dataprocessor.write.initial-backoff-ms:100}")
+    private long initialBackoffMillis;
+
+    @Value("${dataprocessor.write.max-backoff-ms:2000}")
+    private long maxBackoffMillis;
+
+    /**
+     * Writes the rows, retrying and bisecting as needed.
+     *
+     * @param rows The batch to write.
+     * @param writer Writes a sub-batch atomically; throws if the sub-batch could not be written.
+     * @param onRejected Called once for every row that could not be written, with the failure that isolated it.
+     * @return The number of rows that were written.
+     */
+    public <T> int write(List<T> rows, Consumer<List<T>> writer, BiConsumer<T, Exception> onRejected) {
+        if (rows.isEmpty()) {
+            return 0;
+        }
+        Exception failure = writeWithRetry(rows, writer);
+        if (failure == null) {
+            return rows.size();
+        }
+        if (rows.size() == 1 || !isRowLevel(failure)) {
+            if (rows.size() > 1) {
+                logger.warn("Write of {} rows failed ({}); rejecting the batch", rows.size(), failure.getMessage());
+            }
+            rows.forEach(row -> onRejected.accept(row, failure));
+            return 0;
+        }
+        logger.debug("Write of {} rows failed ({}); bisecting", rows.size(), failure.getMessage());
+        int mid = rows.size() / 2;
+        return write(rows.subList(0, mid), writer, onRejected) + write(rows.subList(mid, rows.size()), writer, onRejected);
+    }
+
+    private <T> Exception writeWithRetry(List<T> rows, Consumer<List<T>> writer) {
+        long backoff = initialBackoffMillis;
+        for (int attempt = 0; ; attempt++) {
+            try {
+                writer.accept(rows);
+                return null;
+            } catch (Exception e) {
+                if (!isTransient(e) || attempt >= maxRetries) {
+                    return e;
+                }
+                logger.info("Transient failure writing {} rows (attempt {} of {}): {}", rows.size(), attempt + 1, maxRetries, e.getMessage());
+                try {
+                    Thread.sleep(backoff + ThreadLocalRandom.current().nextLong(backoff / 2 + 1));
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    return e;
+                }
+                backoff = Math.min(backoff * 2, maxBackoffMillis);
+            }
+        }
+    }
+
+    /**
+     * Whether a failure points at the data of some row rather than at the database or the connection.
+     */
+    static boolean isRowLevel(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof DataIntegrityViolationException) {
+                return true;
+            }
+            if (cause instanceof SQLException sqlException) {
+                String sqlState = sqlException.getSQLState();
+                // SQLSTATE class 22 = data exception, 23 = integrity constraint violation
+                if (sqlState != null && (sqlState.startsWith("22") || sqlState.startsWith("23"))) {
+                    return true;
+                }
+            }
+            if (cause.getCause() == cause) {
+                break;
+            }
+        }
+        return false;
+    }
+
+    static boolean isTransient(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof TransientDataAccessException || cause instanceof SQLTransientException) {
+                return true;
+            }
+            if (cause instanceof SQLException sqlException) {
+                String sqlState = sqlException.getSQLState();
+                int errorCode = sqlException.getErrorCode();
+                // SQLSTATE class 40 = transaction rollback (serialization failure, deadlock)
+                if ((sqlState != null && sqlState.startsWith("40"))
+                    || errorCode == MYSQL_DEADLOCK || errorCode == MYSQL_LOCK_WAIT_TIMEOUT) {
+                    return true;
+                }
+            }
+            if (cause.getCause() == cause) {
+                break;
+            }
+        }
+        return false;
+    }
+}
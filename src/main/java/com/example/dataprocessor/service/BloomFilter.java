@@ -0,0 +1,101 @@
+package com.example.dataprocessor.service;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A compact, fixed-size Bloom filter backed by a long[] bit set.
+ * Callers supply a 128-bit hash as two longs; the k probe positions are derived from them
+ * with double hashing (h1 + i * h2), so no extra hashing is done per probe.
+ * Not thread-safe: callers are expected to synchronize.
+ */
+public class BloomFilter {
+
+    private final long[] bits;
+    private final long bitCount;
+    private final int hashFunctions;
+
+    public BloomFilter(long bitCount, int hashFunctions) {
+        this(new long[(int) ((bitCount + 63) / 64)], hashFunctions);
+    }
+
+    private BloomFilter(long[] bits, int hashFunctions) {
+        this.bits = bits;
+        this.bitCount = (long) bits.length * 64;
+        this.hashFunctions = hashFunctions;
+    }
+
+    /**
+     * Creates a filter sized for the expected number of insertions at the given false positive rate.
+     *
+     * @param expectedInsertions The number of distinct values the filter should hold.
+     * @param falsePositiveRate The acceptable false positive probability, e.g. 0.01.
+     * @return An empty, optimally sized BloomFilter.
+     */
+    public static BloomFilter create(long expectedInsertions, double falsePositiveRate) {
+        long n = Math.max(1, expectedInsertions);
+        long m = (long) Math.ceil(-n * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+        int k = Math.max(1, (int) Math.round((double) m / n * Math.log(2)));
+        return new BloomFilter(Math.max(64, m), k);
+    }
+
+    /**
+     * Restores a filter from the byte form produced by {@link #toByteArray()}.
+     */
+    public static BloomFilter fromByteArray(byte[] data, int hashFunctions) {
+        ByteBuffer buffer = ByteBuffer.wrap(data);
+        long[] bits = new long[data.length / Long.BYTES];
+        for (int i = 0; i < bits.length; i++) {
+            bits[i] = buffer.getLong();
+        }
+        return new BloomFilter(bits, hashFunctions);
+    }
+
+    /**
+     * Sets the bits for the given hash.
+     *
+     * @return true if at least one bit changed, i.e. the value was definitely not present before.
+     */
+    public boolean put(long hash1, long hash2) {
+        boolean changed = false;
+        long combined = hash1;
+        for (int i = 0; i < hashFunctions; i++) {
+            long index = (combined & Long.MAX_VALUE) % bitCount;
+            int word = (int) (index >>> 6);
+            long mask = 1L << index;
+            if ((bits[word] & mask) == 0) {
+                bits[word] |= mask;
+                changed = true;
+            }
+            combined += hash2;
+        }
+        return changed;
+    }
+
+    public boolean mightContain(long hash1, long hash2) {
+        long combined = hash1;
+        for (int i = 0; i < hashFunctions; i++) {
+            long index = (combined & Long.MAX_VALUE) % bitCount;
+            if ((bits[(int) (index >>> 6)] & (1L << index)) == 0) {
+                return false;
+            }
+            combined += hash2;
+        }
+        return true;
+    }
+
+    public byte[] toByteArray() {
+        ByteBuffer buffer = ByteBuffer.allocate(bits.length * Long.BYTES);
+        for (long word : bits) {
+            buffer.putLong(word);
+        }
+        return buffer.array();
+    }
+
+    public long getBitCount() {
+        return bitCount;
+    }
+
+    public int getHashFunctions() {
+        return hashFunctions;
+    }
+}
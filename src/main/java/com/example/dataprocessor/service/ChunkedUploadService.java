@@ -0,0 +1,272 @@
+package com.example.dataprocessor.service;
+
+import com.example.dataprocessor.model.FileProcessingStatus;
+import com.example.dataprocessor.model.UploadPart;
+import com.example.dataprocessor.model.UploadSession;
+import com.example.dataprocessor.repository.UploadPartRepository;
+import com.example.dataprocessor.repository.UploadSessionRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Resumable chunked uploads: init a session, PUT numbered parts in any order (each verified against
+ * its SHA-256 and staged on disk), then complete. Ingestion starts once part 1 is staged and reads the
+ * contiguous prefix of staged parts, blocking for the next part while it is still in flight. It runs on
+ * the bounded uploadSessionExecutor, not the job pool, and holds an admission permit like any upload.
+ */
+@Service
+public class ChunkedUploadService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ChunkedUploadService.class);
+
+    @Autowired
+    private UploadSessionRepository uploadSessionRepository;
+
+    @Autowired
+    private UploadPartRepository uploadPartRepository;
+
+    @Autowired
+    private FileTrackerService fileTrackerService;
+
+    @Autowired
+    private FileProcessorService fileProcessorService;
+
+    @Autowired
+    private RetentionService retentionService;
+
+    @Autowired
+    private AdmissionControlService admissionControlService;
+
+    @Autowired
+    @Qualifier("uploadSessionExecutor")
+    private ExecutorService uploadSessionExecutor;
+
+    @Value("${dataprocessor.upload.staging-dir:${java.io.tmpdir}/dataprocessor-staging}")
+    private String stagingDir;
+
+    @Value("${dataprocessor.upload.part-timeout-minutes:60}")
+    private long partTimeoutMinutes;
+
+    private final Map<String, StagedUpload> activeUploads = new ConcurrentHashMap<>();
+
+    /**
+     * Opens an upload session and registers the file; ingestion starts with the first part.
+     */
+    public UploadSession initSession(String fileName, IngestionMode mode) throws IOException {
+        if (!fileProcessorService.isSupportedFileName(fileName)) {
+            throw new IllegalArgumentException("Unsupported file type: " + fileName);
+        }
+        FileProcessingStatus status = fileTrackerService.createFileProcessingStatus(fileName, fileName, null, "PROCESSING", null);
+
+        UploadSession session = new UploadSession();
+        session.setId(UUID.randomUUID().toString());
+        session.setFileId(status.getId());
+        session.setFileName(fileName);
+        session.setIngestionMode(mode != null ? mode.name() : null);
+        session.setStatus("OPEN");
+        session.setCreatedAt(LocalDateTime.now());
+        uploadSessionRepository.save(session);
+
+        Files.createDirectories(getStagedUpload(session).getDirectory());
+        return session;
+    }
+
+    /**
+     * Stages one part. The body is streamed to a temp file while its SHA-256 is computed, then moved into
+     * place atomically, so a reader never sees a partial part. Re-sending an identical part is a no-op.
+     *
+     * @param expectedSha256 The checksum sent by the client, or null to skip verification.
+     */
+    public UploadPart putPart(String sessionId, int partNumber, InputStream body, String expectedSha256) throws IOException {
+        if (partNumber < 1) {
+            throw new IllegalArgumentException("Part numbers start at 1");
+        }
+        UploadSession session = getOpenSession(sessionId);
+        StagedUpload upload = getStagedUpload(session);
+
+        Optional<UploadPart> existing = uploadPartRepository.findBySessionIdAndPartNumber(sessionId, partNumber);
+        Path tempFile = Files.createTempFile(upload.getDirectory(), "incoming-", ".tmp");
+        try {
+            MessageDigest digest = sha256();
+            long size;
+            try (DigestInputStream in = new DigestInputStream(body, digest)) {
+                size = Files.copy(in, tempFile, StandardCopyOption.REPLACE_EXISTING);
+            }
+            String actualSha256 = HexFormat.of().formatHex(digest.digest());
+            if (expectedSha256 != null && !expectedSha256.equalsIgnoreCase(actualSha256)) {
+                throw new IllegalArgumentException("Checksum mismatch for part " + partNumber + ": expected "
+                    + expectedSha256 + ", got " + actualSha256);
+            }
+            if (existing.isPresent()) {
+                if (existing.get().getSha256().equals(actualSha256)) {
+                    return existing.get();
+                }
+                throw new IllegalStateException("Part " + partNumber + " was already uploaded with different content");
+            }
+
+            Files.move(tempFile, upload.partPath(partNumber), StandardCopyOption.ATOMIC_MOVE);
+
+            UploadPart part = new UploadPart();
+            part.setSessionId(sessionId);
+            part.setPartNumber(partNumber);
+            part.setSize(size);
+            part.setSha256(actualSha256);
+            part.setReceivedAt(LocalDateTime.now());
+            uploadPartRepository.save(part);
+            upload.partReceived(partNumber);
+            if (upload.hasPart(1)) {
+                startIngestion(session, upload);
+            }
+            return part;
+        } finally {
+            Files.deleteIfExists(tempFile);
+        }
+    }
+
+    /**
+     * Declares the upload finished. Fails if any of parts 1..totalParts is missing, so the client can
+     * re-send it and complete again.
+     */
+    public UploadSession completeSession(String sessionId, int totalParts) {
+        UploadSession session = getOpenSession(sessionId);
+        StagedUpload upload = getStagedUpload(session);
+        int firstMissing = upload.complete(totalParts);
+        if (firstMissing != 0) {
+            throw new IllegalStateException("Part " + firstMissing + " has not been uploaded");
+        }
+        session.setTotalParts(totalParts);
+        session.setStatus("COMPLETED");
+        session.setCompletedAt(LocalDateTime.now());
+        uploadSessionRepository.save(session);
+        // After a restart nothing is reading the session yet; replay it from the staged parts
+        startIngestion(session, upload);
+        return session;
+    }
+
+    public void abortSession(String sessionId) {
+        UploadSession session = getOpenSession(sessionId);
+        getStagedUpload(session).abort();
+        session.setStatus("ABORTED");
+        uploadSessionRepository.save(session);
+    }
+
+    public Optional<UploadSession> getSession(String sessionId) {
+        return uploadSessionRepository.findById(sessionId);
+    }
+
+    public List<UploadPart> getParts(String sessionId) {
+        return uploadPartRepository.findBySessionIdOrderByPartNumberAsc(sessionId);
+    }
+
+    private void startIngestion(UploadSession session, StagedUpload upload) {
+        if (!upload.markIngestionStarted()) {
+            return;
+        }
+        IngestionMode mode = session.getIngestionMode() != null ? IngestionMode.valueOf(session.getIngestionMode()) : null;
+        CompletableFuture.runAsync(() -> {
+            MessageDigest digest = sha256();
+            try (AdmissionControlService.Permit permit = awaitPermit(session);
+                 InputStream in = new DigestInputStream(upload.openStream(), digest)) {
+                // A replay after a restart or a failed attempt starts over at part 1, so the rows an earlier
+                // attempt wrote go first. Rows an UPSERT updated stay with the upload that inserted them.
+                if (retentionService.deleteWrittenRows(session.getFileId()) > 0) {
+                    logger.info("Deleted the rows of an earlier attempt at upload session {} before replaying it", session.getId());
+                }
+                fileProcessorService.processStream(in, session.getFileName(), session.getFileId(), mode);
+                in.transferTo(OutputStream.nullOutputStream()); // Hash any trailing bytes the parser did not need
+                fileTrackerService.updateContentHash(session.getFileId(), HexFormat.of().formatHex(digest.digest()));
+                deleteStagedParts(upload);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                fileTrackerService.updateFileStatus(session.getFileId(), "FAILED", "Interrupted before ingestion");
+            } catch (Exception e) {
+                // processStream has already marked the file as FAILED; staged parts are kept for a retry
+                logger.error("Ingestion of upload session {} failed: {}", session.getId(), e.getMessage());
+            } finally {
+                activeUploads.remove(session.getId());
+            }
+        }, uploadSessionExecutor);
+    }
+
+    /**
+     * Waits for admission. The session was accepted long ago, so a shed attempt is retried after the
+     * suggested delay instead of failing the upload.
+     */
+    private AdmissionControlService.Permit awaitPermit(UploadSession session) throws InterruptedException {
+        while (true) {
+            // The total size is unknown until the session completes
+            AdmissionControlService.Permit permit = admissionControlService.admit(session.getFileName(), -1);
+            if (permit != null) {
+                return permit;
+            }
+            TimeUnit.SECONDS.sleep(admissionControlService.retryAfterSeconds());
+        }
+    }
+
+    private UploadSession getOpenSession(String sessionId) {
+        UploadSession session = uploadSessionRepository.findById(sessionId)
+            .orElseThrow(() -> new IllegalArgumentException("Unknown upload session: " + sessionId));
+        if (!"OPEN".equals(session.getStatus())) {
+            throw new IllegalStateException("Upload session " + sessionId + " is " + session.getStatus());
+        }
+        return session;
+    }
+
+    /**
+     * Returns the live state of a session, rebuilding it from upload_parts after a restart.
+     */
+    private StagedUpload getStagedUpload(UploadSession session) {
+        return activeUploads.computeIfAbsent(session.getId(), id -> {
+            StagedUpload upload = new StagedUpload(id, Paths.get(stagingDir, id), partTimeoutMinutes * 60_000);
+            for (UploadPart part : uploadPartRepository.findBySessionIdOrderByPartNumberAsc(id)) {
+                if (Files.exists(upload.partPath(part.getPartNumber()))) {
+                    upload.partReceived(part.getPartNumber());
+                }
+            }
+            return upload;
+        });
+    }
+
+    private void deleteStagedParts(StagedUpload upload) throws IOException {
+        try (Stream<Path> files = Files.walk(upload.getDirectory())) {
+            for (Path path : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
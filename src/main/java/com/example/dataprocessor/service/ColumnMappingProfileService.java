@@ -0,0 +1,259 @@
+package com.example.dataprocessor.service;
+
+import com.example.dataprocessor.model.ColumnMappingProfile;
+import com.example.dataprocessor.repository.ColumnMappingProfileRepository;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * Column-mapping profiles keyed by a hash of the normalized header row.
+ * A file whose header matches a profile is mapped straight from it, skipping header detection and
+ * column guessing, so the same layout always gets the same mapping. Mappings inferred for new headers
+ * are stored as AUTO profiles; MANUAL profiles set through the API take precedence and are never
+ * replaced by inference.
+ * <p>
+ * Profiles found are cached for cache-ttl-ms, so a profile saved or deleted through another node that
+ * shares the database applies here within that time. Hits are counted in memory and added to the table
+ * on each flush.
+ */
+@Service
+public class ColumnMappingProfileService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ColumnMappingProfileService.class);
+
+    public static final String SOURCE_AUTO = "AUTO";
+    public static final String SOURCE_MANUAL = "MANUAL";
+
+    // Unit separator; cannot occur in a trimmed header cell
+    private static final String HEADER_DELIMITER = "\u001F";
+
+    @Autowired
+    private ColumnMappingProfileRepository columnMappingProfileRepository;
+
+    @Value("${dataprocessor.mapping-profiles.enabled:true}")
+    private boolean enabled;
+
+    // Whether mappings inferred for unknown headers are stored as AUTO profiles
+    @Value("${dataprocessor.mapping-profiles.learn:true}")
+    private boolean learn;
+
+    @Value("${dataprocessor.mapping-profiles.cache-ttl-ms:30000}")
+    private long cacheTtlMillis;
+
+    // Only profiles that exist are cached; a header without one is looked up again every time
+    private final Map<String, CachedMapping> cache = new ConcurrentHashMap<>();
+
+    // Hits per signature not yet added to hit_count
+    private final Map<String, Long> pendingHits = new ConcurrentHashMap<>();
+
+    private static final class CachedMapping {
+        final Map<Integer, SalesColumn> mapping;
+        final long loadedAt;
+
+        CachedMapping(Map<Integer, SalesColumn> mapping, long loadedAt) {
+            this.mapping = mapping;
+            this.loadedAt = loadedAt;
+        }
+    }
+
+    /**
+     * Looks up the mapping for a possible header row.
+     *
+     * @return The profile's mapping, or empty if the row matches no profile.
+     */
+    public Optional<Map<Integer, SalesColumn>> findMapping(List<String> headerRow) {
+        if (!enabled || headerRow.isEmpty()) {
+            return Optional.empty();
+        }
+        String signature = signature(headerRow);
+        long now = System.currentTimeMillis();
+        CachedMapping cached = cache.get(signature);
+        if (cached == null || now - cached.loadedAt >= cacheTtlMillis) {
+            Optional<ColumnMappingProfile> profile = columnMappingProfileRepository.findBySignature(signature);
+            if (profile.isEmpty()) {
+                cache.remove(signature);
+                return Optional.empty();
+            }
+            cached = new CachedMapping(decodeMapping(profile.get().getMapping()), now);
+            cache.put(signature, cached);
+        }
+        return Optional.of(cached.mapping);
+    }
+
+    /**
+     * Stores an inferred mapping as an AUTO profile, unless a profile for the header already exists.
+     */
+    public void learn(List<String> headerRow, Map<Integer, SalesColumn> mapping) {
+        if (!enabled || !learn || mapping.isEmpty()) {
+            return;
+        }
+        String signature = signature(headerRow);
+        if (cache.containsKey(signature) || columnMappingProfileRepository.findBySignature(signature).isPresent()) {
+            return;
+        }
+        try {
+            columnMappingProfileRepository.save(newProfile(signature, headerRow, mapping, SOURCE_AUTO));
+            cacheMapping(signature, mapping);
+            logger.info("Stored mapping profile {} for header {}", signature, headerRow);
+        } catch (DataIntegrityViolationException e) {
+            // Another upload with the same layout stored it first; keep that one
+            logger.debug("Mapping profile {} was stored concurrently", signature);
+        }
+    }
+
+    /**
+     * Creates or replaces the profile for a header with a MANUAL mapping.
+     *
+     * @throws IllegalArgumentException if the mapping does not fit the header.
+     */
+    public ColumnMappingProfile saveOverride(List<String> headerRow, Map<Integer, SalesColumn> mapping) {
+        if (headerRow == null || headerRow.isEmpty()) {
+            throw new IllegalArgumentException("A header row is required");
+        }
+        if (mapping == null || mapping.isEmpty()) {
+            throw new IllegalArgumentException("A mapping is required");
+        }
+        Set<SalesColumn> seen = EnumSet.noneOf(SalesColumn.class);
+        for (Map.Entry<Integer, SalesColumn> entry : mapping.entrySet()) {
+            if (entry.getKey() == null || entry.getKey() < 0 || entry.getKey() >= headerRow.size()) {
+                throw new IllegalArgumentException("Column index " + entry.getKey() + " is outside the header");
+            }
+            if (entry.getValue() == null || !seen.add(entry.getValue())) {
+                throw new IllegalArgumentException("Each column may be mapped only once: " + entry.getValue());
+            }
+        }
+
+        String signature = signature(headerRow);
+        ColumnMappingProfile profile = columnMappingProfileRepository.findBySignature(signature)
+            .orElseGet(() -> newProfile(signature, headerRow, mapping, SOURCE_MANUAL));
+        profile.setMapping(encodeMapping(mapping));
+        profile.setSource(SOURCE_MANUAL);
+        profile.setUpdatedAt(LocalDateTime.now());
+        ColumnMappingProfile saved = columnMappingProfileRepository.save(profile);
+        cacheMapping(signature, mapping);
+        return saved;
+    }
+
+    /**
+     * Records that a file was mapped with the profile; counted in memory until the next flush.
+     */
+    public void recordHit(List<String> headerRow) {
+        pendingHits.merge(signature(headerRow), 1L, Long::sum);
+    }
+
+    /**
+     * Adds the hits counted since the last flush, one UPDATE per profile hit. Hits of a profile deleted
+     * meanwhile update nothing and are dropped.
+     */
+    @Scheduled(fixedDelayString = "${dataprocessor.mapping-profiles.hit-flush-interval-ms:10000}")
+    public synchronized void flushHits() {
+        for (String signature : List.copyOf(pendingHits.keySet())) {
+            Long count = pendingHits.remove(signature);
+            if (count == null) {
+                continue;
+            }
+            try {
+                columnMappingProfileRepository.addHits(signature, count);
+            } catch (RuntimeException e) {
+                logger.warn("Could not add {} hits to mapping profile {}; retrying on the next flush: {}", count, signature, e.getMessage());
+                pendingHits.merge(signature, count, Long::sum);
+            }
+        }
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        flushHits();
+    }
+
+    public List<ColumnMappingProfile> findAll() {
+        return columnMappingProfileRepository.findAll();
+    }
+
+    public Optional<ColumnMappingProfile> findBySignature(String signature) {
+        return columnMappingProfileRepository.findBySignature(signature);
+    }
+
+    public boolean delete(String signature) {
+        Optional<ColumnMappingProfile> profile = columnMappingProfileRepository.findBySignature(signature);
+        cache.remove(signature);
+        profile.ifPresent(columnMappingProfileRepository::delete);
+        return profile.isPresent();
+    }
+
+    /**
+     * SHA-256 of the header with cells trimmed, lower-cased and inner whitespace collapsed, so cosmetic
+     * differences (case, padding, a UTF-8 BOM) do not make a new layout.
+     */
+    public static String signature(List<String> headerRow) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+        return HexFormat.of().formatHex(digest.digest(normalizeHeader(headerRow).getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private static String normalizeHeader(List<String> headerRow) {
+        return headerRow.stream()
+            .map(cell -> cell == null ? "" : cell.replace("\uFEFF", "").trim().replaceAll("\\s+", " ").toLowerCase(Locale.ROOT))
+            .collect(Collectors.joining(HEADER_DELIMITER));
+    }
+
+    private void cacheMapping(String signature, Map<Integer, SalesColumn> mapping) {
+        cache.put(signature, new CachedMapping(Collections.unmodifiableMap(new TreeMap<>(mapping)), System.currentTimeMillis()));
+    }
+
+    private ColumnMappingProfile newProfile(String signature, List<String> headerRow, Map<Integer, SalesColumn> mapping, String source) {
+        ColumnMappingProfile profile = new ColumnMappingProfile();
+        profile.setSignature(signature);
+        profile.setHeader(String.join(", ", normalizeHeader(headerRow).split(HEADER_DELIMITER, -1)));
+        profile.setMapping(encodeMapping(mapping));
+        profile.setSource(source);
+        profile.setHitCount(0L);
+        profile.setCreatedAt(LocalDateTime.now());
+        profile.setUpdatedAt(profile.getCreatedAt());
+        return profile;
+    }
+
+    static String encodeMapping(Map<Integer, SalesColumn> mapping) {
+        return new TreeMap<>(mapping).entrySet().stream()
+            .map(entry -> entry.getKey() + "=" + entry.getValue().name())
+            .collect(Collectors.joining(";"));
+    }
+
+    static Map<Integer, SalesColumn> decodeMapping(String encoded) {
+        Map<Integer, SalesColumn> mapping = new LinkedHashMap<>();
+        if (encoded != null && !encoded.isBlank()) {
+            for (String pair : encoded.split(";")) {
+                String[] parts = pair.split("=", 2);
+                mapping.put(Integer.parseInt(parts[0].trim()), SalesColumn.valueOf(parts[1].trim()));
+            }
+        }
+        return Collections.unmodifiableMap(mapping);
+    }
+}
@@ -0,0 +1,324 @@
+package com.example.dataprocessor.service;
+
+import com.example.dataprocessor.model.SalesData;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Mergeable summaries of every column of the rows of an upload: null counts for all of them, plus a
+ * HyperLogLog of distinct values for text columns and dates, a quantile sketch for numbers, and the
+ * min and max of numbers and dates. Chunks sketch their rows on their own and merge into the job; the
+ * result is stored with the file's processing stats, and the sketches of several files merge into
+ * estimates over all of them without going back to sales_data.
+ * Not thread-safe: callers are expected to synchronize.
+ */
+public class ColumnSketches {
+
+    private static final int FORMAT_VERSION = 1;
+    private static final int HLL_PRECISION = 12;
+    private static final double QUANTILE_ACCURACY = 0.01;
+    private static final double[] SUMMARY_QUANTILES = {0.5, 0.9, 0.95, 0.99};
+
+    private long rows;
+    private final Map<SalesColumn, ColumnSketch> columns = new EnumMap<>(SalesColumn.class);
+
+    private static final class ColumnSketch {
+        final SalesColumn column;
+        long values;
+        long nulls;
+        double min = Double.POSITIVE_INFINITY;
+        double max = Double.NEGATIVE_INFINITY;
+        // Text columns and dates
+        HyperLogLog distinct;
+        // Numbers
+        QuantileSketch quantiles;
+
+        ColumnSketch(SalesColumn column) {
+            this.column = column;
+            if (isNumeric(column)) {
+                quantiles = new QuantileSketch(QUANTILE_ACCURACY);
+            } else {
+                distinct = new HyperLogLog(HLL_PRECISION);
+            }
+        }
+
+        void add(Object value) {
+            if (value == null) {
+                nulls++;
+                return;
+            }
+            values++;
+            if (value instanceof String text) {
+                distinct.add(HyperLogLog.hash(text));
+            } else if (value instanceof LocalDate date) {
+                long epochDay = date.toEpochDay();
+                distinct.add(HyperLogLog.hash(epochDay));
+                updateRange(epochDay);
+            } else {
+                double number = ((Number) value).doubleValue();
+                quantiles.add(number);
+                updateRange(number);
+            }
+        }
+
+        void merge(ColumnSketch other) {
+            values += other.values;
+            nulls += other.nulls;
+            min = Math.min(min, other.min);
+            max = Math.max(max, other.max);
+            if (distinct != null && other.distinct != null) {
+                distinct.merge(other.distinct);
+            }
+            if (quantiles != null && other.quantiles != null) {
+                quantiles.merge(other.quantiles);
+            }
+        }
+
+        private void updateRange(double value) {
+            min = Math.min(min, value);
+            max = Math.max(max, value);
+        }
+    }
+
+    /**
+     * What the sketches of one file, or the merge of several, estimate.
+     */
+    public static class Summary {
+        private final int files;
+        private final long rows;
+        private final List<ColumnSummary> columns;
+
+        public Summary(int files, long rows, List<ColumnSummary> columns) {
+            this.files = files;
+            this.rows = rows;
+            this.columns = columns;
+        }
+
+        public int getFiles() {
+            return files;
+        }
+
+        public long getRows() {
+            return rows;
+        }
+
+        public List<ColumnSummary> getColumns() {
+            return columns;
+        }
+    }
+
+    /**
+     * One column: exact counts and min/max, estimated distinct count (text and dates) and quantiles
+     * (numbers, within 1% of the value at that rank). Fields that do not apply to the column are null.
+     */
+    public static class ColumnSummary {
+        private final SalesColumn column;
+        private final long values;
+        private final long nulls;
+        private Long distinct;
+        private Object min;
+        private Object max;
+        private Map<String, Double> quantiles;
+
+        ColumnSummary(SalesColumn column, long values, long nulls) {
+            this.column = column;
+            this.values = values;
+            this.nulls = nulls;
+        }
+
+        public SalesColumn getColumn() {
+            return column;
+        }
+
+        public long getValues() {
+            return values;
+        }
+
+        public long getNulls() {
+            return nulls;
+        }
+
+        public Long getDistinct() {
+            return distinct;
+        }
+
+        public Object getMin() {
+            return min;
+        }
+
+        public Object getMax() {
+            return max;
+        }
+
+        public Map<String, Double> getQuantiles() {
+            return quantiles;
+        }
+    }
+
+    public ColumnSketches() {
+        for (SalesColumn column : SalesColumn.values()) {
+            columns.put(column, new ColumnSketch(column));
+        }
+    }
+
+    /**
+     * Restores sketches from the byte form produced by {@link #toByteArray()}. Columns that no longer
+     * exist are skipped.
+     */
+    public static ColumnSketches fromByteArray(byte[] data) {
+        ColumnSketches sketches = new ColumnSketches();
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(data))) {
+            int version = in.readByte();
+            if (version != FORMAT_VERSION) {
+                throw new IllegalArgumentException("Unknown column sketch format " + version);
+            }
+            sketches.rows = in.readLong();
+            int columnCount = in.readInt();
+            for (int i = 0; i < columnCount; i++) {
+                SalesColumn column = columnNamed(in.readUTF());
+                long values = in.readLong();
+                long nulls = in.readLong();
+                double min = in.readDouble();
+                double max = in.readDouble();
+                HyperLogLog distinct = in.readBoolean() ? HyperLogLog.fromByteArray(in.readNBytes(in.readInt())) : null;
+                QuantileSketch quantiles = in.readBoolean() ? QuantileSketch.fromByteArray(in.readNBytes(in.readInt())) : null;
+                if (column != null) {
+                    ColumnSketch sketch = sketches.columns.get(column);
+                    sketch.values = values;
+                    sketch.nulls = nulls;
+                    sketch.min = min;
+                    sketch.max = max;
+                    sketch.distinct = distinct;
+                    sketch.quantiles = quantiles;
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return sketches;
+    }
+
+    public void add(SalesData row) {
+        rows++;
+        for (ColumnSketch sketch : columns.values()) {
+            sketch.add(value(sketch.column, row));
+        }
+    }
+
+    public void merge(ColumnSketches other) {
+        rows += other.rows;
+        for (ColumnSketch sketch : columns.values()) {
+            sketch.merge(other.columns.get(sketch.column));
+        }
+    }
+
+    public long getRows() {
+        return rows;
+    }
+
+    public Summary summarize(int files) {
+        List<ColumnSummary> summaries = new ArrayList<>(columns.size());
+        for (ColumnSketch sketch : columns.values()) {
+            ColumnSummary summary = new ColumnSummary(sketch.column, sketch.values, sketch.nulls);
+            if (sketch.distinct != null) {
+                summary.distinct = sketch.distinct.estimate();
+            }
+            if (sketch.values > 0 && sketch.column.getDataType() == LocalDate.class) {
+                summary.min = LocalDate.ofEpochDay((long) sketch.min);
+                summary.max = LocalDate.ofEpochDay((long) sketch.max);
+            } else if (sketch.values > 0 && sketch.quantiles != null) {
+                summary.min = sketch.min;
+                summary.max = sketch.max;
+                summary.quantiles = new LinkedHashMap<>();
+                for (double quantile : SUMMARY_QUANTILES) {
+                    summary.quantiles.put("p" + Math.round(quantile * 100), sketch.quantiles.quantile(quantile));
+                }
+            }
+            summaries.add(summary);
+        }
+        return new Summary(files, rows, summaries);
+    }
+
+    public byte[] toByteArray() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(FORMAT_VERSION);
+            out.writeLong(rows);
+            out.writeInt(columns.size());
+            for (ColumnSketch sketch : columns.values()) {
+                out.writeUTF(sketch.column.name());
+                out.writeLong(sketch.values);
+                out.writeLong(sketch.nulls);
+                out.writeDouble(sketch.min);
+                out.writeDouble(sketch.max);
+                writeOptional(out, sketch.distinct != null ? sketch.distinct.toByteArray() : null);
+                writeOptional(out, sketch.quantiles != null ? sketch.quantiles.toByteArray() : null);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static boolean isNumeric(SalesColumn column) {
+        return column.getDataType() == BigDecimal.class || column.getDataType() == Integer.class;
+    }
+
+    /**
+     * The value of a column, with text trimmed and case-folded as for the row hash; null if blank.
+     */
+    private static Object value(SalesColumn column, SalesData row) {
+        Object value = switch (column) {
+            case SEGMENT -> row.getSegment();
+            case COUNTRY -> row.getCountry();
+            case PRODUCT -> row.getProduct();
+            case DISCOUNT_BAND -> row.getDiscountBand();
+            case UNITS_SOLD -> row.getUnitsSold();
+            case MANUFACTURING_PRICE -> row.getManufacturingPrice();
+            case SALE_PRICE -> row.getSalePrice();
+            case GROSS_SALES -> row.getGrossSales();
+            case DISCOUNTS -> row.getDiscounts();
+            case SALES -> row.getSales();
+            case COGS -> row.getCogs();
+            case PROFIT -> row.getProfit();
+            case DATE -> row.getDate();
+            case MONTH_NUMBER -> row.getMonthNumber();
+            case MONTH_NAME -> row.getMonthName();
+            case YEAR -> row.getYear();
+        };
+        if (value instanceof String text) {
+            String normalized = text.trim().toLowerCase(Locale.ROOT);
+            return normalized.isEmpty() ? null : normalized;
+        }
+        return value;
+    }
+
+    private static SalesColumn columnNamed(String name) {
+        try {
+            return SalesColumn.valueOf(name);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static void writeOptional(DataOutputStream out, byte[] data) throws IOException {
+        out.writeBoolean(data != null);
+        if (data != null) {
+            out.writeInt(data.length);
+            out.write(data);
+        }
+    }
+}
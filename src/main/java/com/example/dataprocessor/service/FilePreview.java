@@ -0,0 +1,195 @@
+package com.example.dataprocessor.service;
+
+import com.example.dataprocessor.model.SalesData;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Result of a dry run over the head of a file: how each source would be mapped, a few mapped rows and
+ * the projected size of the full load. Nothing is persisted while building it.
+ */
+public class FilePreview {
+
+    private final String fileName;
+    private final long sizeBytes;
+    private final List<SourcePreview> sources = new ArrayList<>();
+    private long elapsedMillis;
+
+    public FilePreview(String fileName, long sizeBytes) {
+        this.fileName = fileName;
+        this.sizeBytes = sizeBytes;
+    }
+
+    public String getFileName() {
+        return fileName;
+    }
+
+    public long getSizeBytes() {
+        return sizeBytes;
+    }
+
+    public List<SourcePreview> getSources() {
+        return sources;
+    }
+
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    public void setElapsedMillis(long elapsedMillis) {
+        this.elapsedMillis = elapsedMillis;
+    }
+
+    /**
+     * Preview of one source: the file itself, a zip member or a workbook sheet.
+     */
+    public static class SourcePreview {
+        private final String sourceName;
+        private boolean hasHeader;
+        // PROFILE if a stored mapping profile matched the header, otherwise INFERRED
+        private String mappingSource;
+        // Mean of the column confidences
+        private double confidence;
+        private final List<ColumnPreview> columns = new ArrayList<>();
+        private final List<SalesData> sampleRows = new ArrayList<>();
+        private final List<RejectPreview> rejects = new ArrayList<>();
+        private Long projectedRowCount;
+        // True if the whole source was read, so the count is exact rather than projected
+        private boolean rowCountExact;
+
+        public SourcePreview(String sourceName) {
+            this.sourceName = sourceName;
+        }
+
+        public String getSourceName() {
+            return sourceName;
+        }
+
+        public boolean isHasHeader() {
+            return hasHeader;
+        }
+
+        public void setHasHeader(boolean hasHeader) {
+            this.hasHeader = hasHeader;
+        }
+
+        public String getMappingSource() {
+            return mappingSource;
+        }
+
+        public void setMappingSource(String mappingSource) {
+            this.mappingSource = mappingSource;
+        }
+
+        public double getConfidence() {
+            return confidence;
+        }
+
+        public void setConfidence(double confidence) {
+            this.confidence = confidence;
+        }
+
+        public List<ColumnPreview> getColumns() {
+            return columns;
+        }
+
+        public List<SalesData> getSampleRows() {
+            return sampleRows;
+        }
+
+        public List<RejectPreview> getRejects() {
+            return rejects;
+        }
+
+        public Long getProjectedRowCount() {
+            return projectedRowCount;
+        }
+
+        public void setProjectedRowCount(Long projectedRowCount) {
+            this.projectedRowCount = projectedRowCount;
+        }
+
+        public boolean isRowCountExact() {
+            return rowCountExact;
+        }
+
+        public void setRowCountExact(boolean rowCountExact) {
+            this.rowCountExact = rowCountExact;
+        }
+    }
+
+    /**
+     * One mapped column and how well the sampled values fit its type.
+     */
+    public static class ColumnPreview {
+        private final int index;
+        private final String header;
+        private final SalesColumn column;
+        // PROFILE, HEADER (the header names the column) or DATA (guessed from the values)
+        private final String matchedBy;
+        // Share of the sampled non-blank values that parse as the column's type
+        private final double confidence;
+
+        public ColumnPreview(int index, String header, SalesColumn column, String matchedBy, double confidence) {
+            this.index = index;
+            this.header = header;
+            this.column = column;
+            this.matchedBy = matchedBy;
+            this.confidence = confidence;
+        }
+
+        public int getIndex() {
+            return index;
+        }
+
+        public String getHeader() {
+            return header;
+        }
+
+        public SalesColumn getColumn() {
+            return column;
+        }
+
+        public String getMatchedBy() {
+            return matchedBy;
+        }
+
+        public double getConfidence() {
+            return confidence;
+        }
+    }
+
+    /**
+     * A sampled row that would be rejected.
+     */
+    public static class RejectPreview {
+        private final long lineNumber;
+        private final SalesColumn column;
+        private final RejectReason reason;
+        private final String value;
+
+        public RejectPreview(long lineNumber, SalesColumn column, RejectReason reason, String value) {
+            this.lineNumber = lineNumber;
+            this.column = column;
+            this.reason = reason;
+            this.value = value;
+        }
+
+        public long getLineNumber() {
+            return lineNumber;
+        }
+
+        public SalesColumn getColumn() {
+            return column;
+        }
+
+        public RejectReason getReason() {
+            return reason;
+        }
+
+        public String getValue() {
+            return value;
+        }
+    }
+}
@@ -1,381 +1,1121 @@
 package com.example.dataprocessor.service;
-import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.beans.factory.annotation.Qualifier;
-import org.springframework.stereotype.Service;
-import java.util.concurrent.atomic.AtomicInteger;
-import java.util.concurrent.ExecutorService;
+
 import com.example.dataprocessor.model.SalesData;
+import com.example.dataprocessor.repository.SalesDataJdbcRepository;
 import com.example.dataprocessor.repository.SalesDataRepository;
-import org.apache.poi.ss.usermodel.*;
-import org.apache.poi.xssf.usermodel.XSSFWorkbook;
 import com.opencsv.CSVReader;
 import com.opencsv.exceptions.CsvValidationException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.multipart.MultipartFile;
-import org.springframework.scheduling.annotation.Async;
-import java.time.format.TextStyle;
-import java.util.Locale;
-import java.time.format.DateTimeFormatter;
+
 import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.FilterInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.SequenceInputStream;
 import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.time.LocalDate;
-import java.time.format.DateTimeFormatter;
-import java.time.format.DateTimeParseException;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Iterator;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.TimeUnit;
-import java.util.stream.Collectors;
 import java.util.Optional;
-import java.io.InputStream;
-import java.util.HashMap;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.CompletableFuture;
-import java.util.ArrayList;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import java.util.function.LongUnaryOperator;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
 
 @Service
 @org.springframework.scheduling.annotation.EnableAsync
 public class FileProcessorService {
     private static final Logger logger = LoggerFactory.getLogger(FileProcessorService.class);
     
-    // Add these field declarations
-    private final AtomicInteger totalProcessedRows = new AtomicInteger(0);
-    private final AtomicInteger totalFailedRows = new AtomicInteger(0);
-    
-    // Replace logProcess with this method
-    private void logProgress(int currentRow, int totalRows) {
-        if (currentRow % 5000 == 0) {  // Changed from 500 to 5000 to reduce logging frequency
-            logger.info("Processing progress: {} of {} rows ({} failed)", 
-                currentRow, 
-                totalRows,
-                totalFailedRows.get());
+    private void logProgress(IngestionJob job, int previousRows, int currentRows) {
+        if (previousRows / 5000 != currentRows / 5000) {  // Changed from 500 to 5000 to reduce logging frequency
+            logger.info("File {}: processing progress: {} rows ({} failed)", 
+                job.getFileId(),
+                currentRows, 
+                job.getFailedRows().get());
         }
     }
     private static final int CHUNK_SIZE = 500;
     private static final int HEADER_SAMPLE_ROWS = 10;
+    private static final int STREAM_BUFFER_SIZE = 64 * 1024;
+    // Head of a text source read by a preview; enough for the sample and a bytes-per-row estimate
+    private static final int PREVIEW_SAMPLE_BYTES = 256 * 1024;
+    // A longer first line of a work unit's file is not a header
+    private static final int MAX_HEADER_LINE_BYTES = 1024 * 1024;
 
-    // Add missing field declarations
-    private final AtomicInteger processedRowsCounter;
-    private final AtomicInteger failedRowsCounter;
-    
     @Autowired
     private SalesDataRepository salesDataRepository;
 
+    @Autowired
+    private SalesDataJdbcRepository salesDataJdbcRepository;
+
+    @Autowired
+    private RowDeduplicationService rowDeduplicationService;
+
+    @Autowired
+    private RejectSinkService rejectSinkService;
+
+    @Autowired
+    private BisectingRetryWriter bisectingRetryWriter;
+
+    @Autowired
+    private ZoneMapService zoneMapService;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private ValidationRulesService validationRulesService;
+
+    @Value("${dataprocessor.ingest.mode:APPEND}")
+    private IngestionMode defaultIngestionMode;
+
+    // Columns that identify a sales row in UPSERT mode
+    @Value("${dataprocessor.ingest.natural-key:DATE,COUNTRY,PRODUCT,SEGMENT}")
+    private SalesColumn[] naturalKey;
+
+    @Value("${dataprocessor.ingest.max-inflight-chunks:4}")
+    private int maxInFlightChunks;
+
+    // Hold queued chunks in native memory instead of on the heap
+    @Value("${dataprocessor.ingest.off-heap-staging:false}")
+    private boolean offHeapStaging;
+
     @Autowired
     private ColumnGuessingService columnGuessingService;
 
+    @Autowired
+    private ColumnMappingProfileService columnMappingProfileService;
+
     @Autowired
     private FileTrackerService fileTrackerService;
 
-    // Define ExecutorService bean
-    private final ExecutorService taskExecutor;
+    @Autowired
+    private JobProgressService jobProgressService;
+
+    // Jobs run on the @Async pool, sources (zip members, sheets) on the parse pool and chunks on the writer pool.
+    // Each layer only waits on the one below it, so a saturated pool can never deadlock on itself.
+    private final ExecutorService parseExecutor;
+    private final ExecutorService chunkExecutor;
+
+    // Jobs currently inside processStream; background maintenance backs off while this is non-zero
+    private final AtomicInteger activeJobs = new AtomicInteger();
 
-    // Add constructor to initialize counters and executor
     @Autowired
-    public FileProcessorService(@Qualifier("taskExecutor") ExecutorService taskExecutor) {
-        this.taskExecutor = taskExecutor;
-        this.processedRowsCounter = new AtomicInteger(0);
-        this.failedRowsCounter = new AtomicInteger(0);
+    public FileProcessorService(@Qualifier("secondaryTaskExecutor") ExecutorService parseExecutor,
+                                @Qualifier("chunkWriterExecutor") ExecutorService chunkExecutor) {
+        this.parseExecutor = parseExecutor;
+        this.chunkExecutor = chunkExecutor;
+    }
+
+    /**
+     * Number of files being ingested right now.
+     */
+    public int getActiveJobCount() {
+        return activeJobs.get();
+    }
+
+    /**
+     * Reads rows one at a time from a parsed source; returns null at the end.
+     */
+    private interface RowReader extends Closeable {
+        List<String> next() throws IOException, CsvValidationException;
     }
 
     @Async
     public void processFile(MultipartFile file, Long fileStatusId) throws IOException, CsvValidationException, InterruptedException, ExecutionException {
-        // Reset counters at start
-        totalProcessedRows.set(0);
-        totalFailedRows.set(0);
-        processedRowsCounter.set(0);
-        failedRowsCounter.set(0);
-        
-        long startTime = System.currentTimeMillis();
-        logger.info("Starting to process file: {} with ID: {}", file.getOriginalFilename(), fileStatusId);
-        
-        try {
-            List<List<String>> allRows = new ArrayList<>();
-            String fileExtension = getFileExtension(file.getOriginalFilename());
-
-            boolean hasHeader = false;
-            List<List<String>> rawRows = new ArrayList<>();
-
-            if ("xlsx".equalsIgnoreCase(fileExtension)) {
-                logger.info("Reading Excel file raw data.");
-                rawRows = readExcelFileRaw(file);
-            } else if ("csv".equalsIgnoreCase(fileExtension)) {
-                logger.info("Reading CSV file raw data.");
-                rawRows = readCsvFileRaw(file);
-            } else {
-                logger.error("Unsupported file type: {}", fileExtension);
-                throw new IllegalArgumentException("Unsupported file type: " + fileExtension);
+        processFile(file, fileStatusId, null);
+    }
+
+    /**
+     * Processes an uploaded file in the given ingestion mode.
+     *
+     * @param mode APPEND or UPSERT; null uses dataprocessor.ingest.mode.
+     */
+    @Async
+    public void processFile(MultipartFile file, Long fileStatusId, IngestionMode mode) throws IOException, CsvValidationException, InterruptedException, ExecutionException {
+        processFile(file, fileStatusId, mode, null);
+    }
+
+    /**
+     * Processes an uploaded file, limiting workbooks to the selected sheets.
+     *
+     * @param sheets Lower-cased sheet names or 0-based sheet indexes; null ingests every sheet.
+     */
+    @Async
+    public void processFile(MultipartFile file, Long fileStatusId, IngestionMode mode, Set<String> sheets) throws IOException, CsvValidationException, InterruptedException, ExecutionException {
+        try (InputStream inputStream = file.getInputStream()) {
+            processStream(inputStream, file.getOriginalFilename(), fileStatusId, mode, sheets, file.getSize());
+        }
+    }
+
+    /**
+     * Processes an uploaded file admitted by {@link AdmissionControlService}; the permit is released
+     * when the job ends, however it ends.
+     */
+    @Async
+    public void processFile(MultipartFile file, Long fileStatusId, IngestionMode mode, Set<String> sheets, AdmissionControlService.Permit permit) throws IOException, CsvValidationException, InterruptedException, ExecutionException {
+        try (permit) {
+            processFile(file, fileStatusId, mode, sheets);
+        }
+    }
+
+    /**
+     * The mode of uploads that do not choose one.
+     */
+    public IngestionMode getDefaultIngestionMode() {
+        return defaultIngestionMode;
+    }
+
+    /**
+     * Whether a file name has a format this service can ingest: .csv, .xlsx, either of them gzipped,
+     * or a .zip archive of them.
+     */
+    public boolean isSupportedFileName(String fileName) {
+        String extension = getFileExtension(fileName).toLowerCase(Locale.ROOT);
+        if ("gz".equals(extension)) {
+            return isSupportedFileName(fileName.substring(0, fileName.length() - 3));
+        }
+        return "csv".equals(extension) || "xlsx".equals(extension) || "zip".equals(extension);
+    }
+
+    /**
+     * Ingests a file from a stream, decompressing .gz and .zip input on the fly.
+     * Nothing is written to disk; rows are parsed as the bytes arrive and written in chunks.
+     *
+     * @param inputStream The (possibly compressed) file content; not closed by this method.
+     * @param fileName The file name, used to detect the format.
+     * @param fileStatusId The FileProcessingStatus to report to.
+     * @param mode APPEND or UPSERT; null uses dataprocessor.ingest.mode.
+     */
+    public void processStream(InputStream inputStream, String fileName, Long fileStatusId, IngestionMode mode) throws IOException, CsvValidationException, InterruptedException, ExecutionException {
+        processStream(inputStream, fileName, fileStatusId, mode, null);
+    }
+
+    /**
+     * Ingests a file from a stream, limiting workbooks to the selected sheets.
+     *
+     * @param sheets Lower-cased sheet names or 0-based sheet indexes; null ingests every sheet.
+     */
+    public void processStream(InputStream inputStream, String fileName, Long fileStatusId, IngestionMode mode, Set<String> sheets) throws IOException, CsvValidationException, InterruptedException, ExecutionException {
+        processStream(inputStream, fileName, fileStatusId, mode, sheets, -1);
+    }
+
+    /**
+     * Ingests a file from a stream of known size.
+     *
+     * @param expectedBytes The size of the (possibly compressed) input, for progress estimates; -1 if unknown.
+     */
+    public void processStream(InputStream inputStream, String fileName, Long fileStatusId, IngestionMode mode, Set<String> sheets, long expectedBytes) throws IOException, CsvValidationException, InterruptedException, ExecutionException {
+        IngestionMode ingestionMode = mode != null ? mode : defaultIngestionMode;
+        logger.info("Starting to process file: {} with ID: {}", fileName, fileStatusId);
+
+        activeJobs.incrementAndGet();
+        try (RejectSink rejectSink = rejectSinkService.open(fileStatusId)) {
+            IngestionJob job = new IngestionJob(fileStatusId, ingestionMode, Arrays.asList(naturalKey), rejectSink, maxInFlightChunks, sheets);
+            CountingInputStream countingInput = new CountingInputStream(inputStream);
+            job.trackInput(countingInput::getCount, expectedBytes);
+            jobProgressService.jobStarted(job);
+            String finalMessage = null;
+            try {
+                ingestSource(countingInput, fileName, job, false);
+                changeStage(job, IngestionJob.Stage.WRITING);
+                job.awaitCompletion();
+                changeStage(job, IngestionJob.Stage.FINALIZING);
+                fileTrackerService.saveProcessingStats(job);
+
+                if (job.getTotalRows().get() == 0) {
+                    logger.warn("No data found in file: {}", fileName);
+                    finalMessage = "No data found in file.";
+                    job.setStage(IngestionJob.Stage.COMPLETED);
+                    fileTrackerService.updateFileStatus(fileStatusId, "COMPLETED", finalMessage);
+                    return;
+                }
+
+                long duration = System.currentTimeMillis() - job.getStartTime();
+                String durationMessage = String.format(
+                    "File processing completed in %d seconds. Processed %d rows, %d failed rows, %d duplicate rows skipped.",
+                    duration / 1000,
+                    job.getProcessedRows().get(),
+                    job.getFailedRows().get(),
+                    job.getDuplicateRows().get()
+                );
+
+                finalMessage = durationMessage;
+                job.setStage(IngestionJob.Stage.COMPLETED);
+                fileTrackerService.updateFileStatus(fileStatusId, "COMPLETED", durationMessage);
+                logger.info(durationMessage);
+
+            } catch (Exception e) {
+                // Chunks still being written would report to a closed reject sink after FAILED
+                job.cancelAndDrain();
+                long duration = System.currentTimeMillis() - job.getStartTime();
+                String errorMessage = String.format(
+                    "File processing failed after %d seconds. Error: %s",
+                    duration / 1000,
+                    e.getMessage()
+                );
+
+                finalMessage = errorMessage;
+                job.setStage(IngestionJob.Stage.FAILED);
+                fileTrackerService.updateFileStatus(fileStatusId, "FAILED", errorMessage);
+                logger.error(errorMessage);
+                throw e;
+            } finally {
+                jobProgressService.jobFinished(job, finalMessage);
+            }
+        } finally {
+            activeJobs.decrementAndGet();
+        }
+    }
+
+    /**
+     * Ingests one leased work unit of a staged CSV: the lines that start inside [startOffset, endOffset),
+     * parsed under the file's header line so every unit maps its columns the same way. The offsets are
+     * record starts found by {@link WorkUnitService} with quoting taken into account, so each record
+     * belongs to exactly one unit. The counters are returned, not reported; {@link WorkUnitService}
+     * settles the file once all of its units are done. Line numbers of rejected rows are relative to the unit.
+     *
+     * @param leaseHeld Checked before every read; once false the unit stops with an IOException.
+     * @param writeFence Checked inside every chunk transaction; once false no further rows commit.
+     */
+    public IngestionJob ingestWorkUnit(Path file, Long fileStatusId, IngestionMode mode, long workUnitId, long startOffset, long endOffset, BooleanSupplier leaseHeld, BooleanSupplier writeFence) throws IOException, CsvValidationException, InterruptedException, ExecutionException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return ingestRange(channel, file.getFileName().toString(), fileStatusId, mode, workUnitId, startOffset, endOffset, leaseHeld, writeFence);
+        }
+    }
+
+    /**
+     * Ingests the lines of a CSV that start inside [startOffset, endOffset), under the file's header line,
+     * as for a work unit. Used directly by {@link FollowService} for the lines appended to a followed file
+     * since its checkpoint. The channel is left open and its position is undefined afterwards.
+     *
+     * @param workUnitId Stamped on every row written and every reject; null outside of work units.
+     * @param writeFence Checked inside every chunk transaction before it commits; null for none.
+     */
+    public IngestionJob ingestRange(FileChannel channel, String fileName, Long fileStatusId, IngestionMode mode, Long workUnitId, long startOffset, long endOffset, BooleanSupplier leaseHeld, BooleanSupplier writeFence) throws IOException, CsvValidationException, InterruptedException, ExecutionException {
+        IngestionMode ingestionMode = mode != null ? mode : defaultIngestionMode;
+        activeJobs.incrementAndGet();
+        try (RejectSink rejectSink = rejectSinkService.open(fileStatusId, workUnitId)) {
+            IngestionJob job = new IngestionJob(fileStatusId, ingestionMode, Arrays.asList(naturalKey), rejectSink, maxInFlightChunks, null);
+            job.setWorkUnitId(workUnitId);
+            job.setWriteFence(writeFence);
+            job.setPartial(true);
+
+            long start = alignToLineStart(channel, startOffset);
+            long end = alignToLineStart(channel, endOffset);
+            // The sequence closes each stream it finishes, which must not close the caller's channel
+            InputStream lines = new LeasedRangeInputStream(new NonClosingInputStream(Channels.newInputStream(channel.position(start))), end - start, leaseHeld);
+            InputStream input = start > 0
+                ? new SequenceInputStream(new ByteArrayInputStream(readFirstLine(channel)), lines)
+                : lines;
+            try {
+                ingestSource(input, fileName, job, false);
+                job.awaitCompletion();
+            } catch (Exception e) {
+                job.cancelAndDrain();
+                throw e;
             }
+            return job;
+        } finally {
+            activeJobs.decrementAndGet();
+        }
+    }
 
-            if (rawRows.isEmpty()) {
-                logger.warn("No data found in file: {}", file.getOriginalFilename());
-                fileTrackerService.updateFileStatus(fileStatusId, "COMPLETED", "No data found in file.");
+    /**
+     * The offset of the first line starting at or after offset: offset itself if a line ends just
+     * before it, otherwise the byte after the next newline. Quoting is not considered, so callers pass
+     * offsets that are already record starts (work unit edges, follow checkpoints) or the end of the file.
+     */
+    private static long alignToLineStart(FileChannel channel, long offset) throws IOException {
+        long size = channel.size();
+        if (offset <= 0 || offset >= size) {
+            return Math.max(0, Math.min(offset, size));
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(STREAM_BUFFER_SIZE);
+        long position = offset - 1;
+        while (position < size) {
+            buffer.clear();
+            int read = channel.read(buffer, position);
+            if (read <= 0) {
+                break;
+            }
+            for (int i = 0; i < read; i++) {
+                if (buffer.get(i) == '\n') {
+                    return position + i + 1;
+                }
+            }
+            position += read;
+        }
+        return size;
+    }
+
+    /**
+     * The header line of a staged CSV, newline included.
+     */
+    private static byte[] readFirstLine(FileChannel channel) throws IOException {
+        long end = alignToLineStart(channel, 1);
+        if (end > MAX_HEADER_LINE_BYTES) {
+            throw new IOException("Header line longer than " + MAX_HEADER_LINE_BYTES + " bytes");
+        }
+        ByteBuffer buffer = ByteBuffer.allocate((int) end);
+        // Positional reads leave the channel position alone
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, buffer.position()) <= 0) {
+                break;
+            }
+        }
+        return buffer.array();
+    }
+
+    private void changeStage(IngestionJob job, IngestionJob.Stage stage) {
+        job.setStage(stage);
+        jobProgressService.stageChanged(job);
+    }
+
+    /**
+     * Dry run over the head of a file: detects the header and mapping of each source, maps the first rows
+     * and projects the total row count from the file size. Nothing is written and the rest of the file
+     * is never parsed; for a zip only the first supported member is previewed.
+     *
+     * @param inputStream The (possibly compressed) file content; not closed by this method.
+     * @param sizeBytes The size of the whole file, used for the row count projection; negative if unknown.
+     * @param sampleRows How many mapped rows to return per source.
+     */
+    public FilePreview preview(InputStream inputStream, String fileName, long sizeBytes, int sampleRows) throws IOException, CsvValidationException {
+        long start = System.currentTimeMillis();
+        FilePreview preview = new FilePreview(fileName, sizeBytes);
+        previewSource(inputStream, fileName, read -> sizeBytes, sampleRows, preview);
+        preview.setElapsedMillis(System.currentTimeMillis() - start);
+        return preview;
+    }
+
+    /**
+     * @param sourceSize Estimates the total (uncompressed) size of this source from how many of its bytes
+     *                   have been read so far; negative if unknown. Each compression layer rescales the
+     *                   estimate of the layer around it by the compression ratio observed so far.
+     */
+    private void previewSource(InputStream inputStream, String fileName, LongUnaryOperator sourceSize, int sampleRows, FilePreview preview) throws IOException, CsvValidationException {
+        String fileExtension = getFileExtension(fileName);
+
+        if ("gz".equalsIgnoreCase(fileExtension)) {
+            CountingInputStream compressed = new CountingInputStream(new NonClosingInputStream(inputStream));
+            previewSource(new GZIPInputStream(compressed), fileName.substring(0, fileName.length() - 3),
+                read -> scaleByRatio(sourceSize, compressed.getCount(), read), sampleRows, preview);
+        } else if ("zip".equalsIgnoreCase(fileExtension)) {
+            CountingInputStream compressed = new CountingInputStream(new NonClosingInputStream(inputStream));
+            ZipInputStream zipInputStream = new ZipInputStream(compressed);
+            ZipEntry entry;
+            while ((entry = zipInputStream.getNextEntry()) != null) {
+                String memberName = entry.getName();
+                if (entry.isDirectory() || memberName.startsWith("__MACOSX/") || !isSupportedFileName(memberName)
+                        || "zip".equalsIgnoreCase(getFileExtension(memberName))) {
+                    continue;
+                }
+                long memberSize = entry.getSize();
+                LongUnaryOperator memberSizeEstimate = memberSize >= 0
+                    ? read -> memberSize
+                    : read -> scaleByRatio(sourceSize, compressed.getCount(), read);
+                previewSource(new NonClosingInputStream(zipInputStream), memberName, memberSizeEstimate, sampleRows, preview);
                 return;
             }
+        } else if ("xlsx".equalsIgnoreCase(fileExtension)) {
+            previewWorkbook(inputStream, fileName, sampleRows, preview);
+        } else if ("csv".equalsIgnoreCase(fileExtension)) {
+            previewCsv(inputStream, fileName, sourceSize, sampleRows, preview);
+        } else {
+            throw new IllegalArgumentException("Unsupported file type: " + fileExtension);
+        }
+    }
+
+    /**
+     * Total size of an inner (decompressed) source, from the outer size and the ratio seen so far.
+     */
+    private static long scaleByRatio(LongUnaryOperator outerSize, long outerRead, long innerRead) {
+        long outerTotal = outerSize.applyAsLong(outerRead);
+        if (outerTotal < 0 || outerRead <= 0) {
+            return -1;
+        }
+        return (long) ((double) outerTotal * innerRead / outerRead);
+    }
+
+    private void previewCsv(InputStream inputStream, String fileName, LongUnaryOperator sourceSize, int sampleRows, FilePreview preview) throws IOException, CsvValidationException {
+        byte[] head = inputStream.readNBytes(PREVIEW_SAMPLE_BYTES);
+        boolean complete = head.length < PREVIEW_SAMPLE_BYTES || inputStream.read() == -1;
+        int length = head.length;
+        if (!complete) {
+            // Only whole lines, so the parser never sees a row cut in half
+            while (length > 0 && head[length - 1] != '\n') {
+                length--;
+            }
+        }
 
-            List<String> firstRow = rawRows.get(0);
-            if (columnGuessingService.isLikelyHeader(firstRow)) {
-                hasHeader = true;
-                allRows.addAll(rawRows.subList(1, rawRows.size()));
-            } else {
-                allRows.addAll(rawRows);
-            }
-
-            // Get column mapping
-            Map<Integer, SalesColumn> columnMapping = columnGuessingService.guessColumns(
-                allRows.subList(0, Math.min(HEADER_SAMPLE_ROWS, allRows.size())),
-                hasHeader ? Optional.of(firstRow) : Optional.empty()
-            );
-
-            // Process in chunks
-            for (int i = 0; i < allRows.size(); i += CHUNK_SIZE) {
-                List<List<String>> chunk = allRows.subList(i, Math.min(i + CHUNK_SIZE, allRows.size()));
-                final int chunkStartIndex = i;
-                
-                CompletableFuture<Void> future = CompletableFuture.runAsync(() -> {
-                    List<SalesData> salesDataList = new ArrayList<>();
-                    
-                    for (List<String> row : chunk) {
-                        try {
-                            SalesData salesData = mapRowToSalesData(row, columnMapping);
-                            if (salesData != null) {
-                                salesDataList.add(salesData);
-                                processedRowsCounter.incrementAndGet();
-                            } else {
-                                failedRowsCounter.incrementAndGet();
-                            }
-                            
-                            logProgress(processedRowsCounter.get(), allRows.size());
-                            
-                        } catch (Exception e) {
-                            failedRowsCounter.incrementAndGet();
+        int wantedRows = Math.max(sampleRows, HEADER_SAMPLE_ROWS) + 1;
+        List<List<String>> rows = new ArrayList<>();
+        long rowCount = 0;
+        try (RowReader reader = openCsvReader(new ByteArrayInputStream(head, 0, length))) {
+            List<String> row;
+            while ((complete || rows.size() < wantedRows) && (row = reader.next()) != null) {
+                if (rows.size() < wantedRows) {
+                    rows.add(row);
+                }
+                rowCount++;
+            }
+        }
+
+        FilePreview.SourcePreview source = previewRows(fileName, rows, sampleRows);
+        long headerRows = source.isHasHeader() ? 1 : 0;
+        if (complete) {
+            source.setProjectedRowCount(rowCount - headerRows);
+            source.setRowCountExact(true);
+        } else {
+            int lines = 0;
+            for (int i = 0; i < length; i++) {
+                if (head[i] == '\n') {
+                    lines++;
+                }
+            }
+            long totalBytes = sourceSize.applyAsLong(head.length);
+            if (lines > 0 && totalBytes >= 0) {
+                double bytesPerLine = (double) length / lines;
+                source.setProjectedRowCount(Math.max(0, Math.round(totalBytes / bytesPerLine) - headerRows));
+            }
+        }
+        preview.getSources().add(source);
+    }
+
+    private void previewWorkbook(InputStream inputStream, String fileName, int sampleRows, FilePreview preview) throws IOException {
+        int wantedRows = Math.max(sampleRows, HEADER_SAMPLE_ROWS) + 1;
+        try (XlsxWorkbookReader workbook = new XlsxWorkbookReader(new NonClosingInputStream(inputStream))) {
+            for (XlsxWorkbookReader.SheetRef sheet : workbook.getSheets()) {
+                List<List<String>> rows = new ArrayList<>();
+                long[] lastRowNumber = {-1};
+                boolean[] stopped = {false};
+                try {
+                    workbook.parseSheet(sheet, new XlsxWorkbookReader.RowConsumer() {
+                        @Override
+                        public void accept(SheetRow row) {
+                            rows.add(row);
                         }
-                    }
-                    
+
+                        @Override
+                        public boolean wantsMoreRows() {
+                            stopped[0] = rows.size() >= wantedRows;
+                            return !stopped[0];
+                        }
+
+                        @Override
+                        public void dimension(int lastRow) {
+                            lastRowNumber[0] = lastRow;
+                        }
+                    });
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrupted while previewing sheet " + sheet.getName(), e);
+                }
+
+                FilePreview.SourcePreview source = previewRows(fileName + "[" + sheet.getName() + "]", rows, sampleRows);
+                long headerRows = source.isHasHeader() ? 1 : 0;
+                if (!stopped[0]) {
+                    source.setProjectedRowCount(rows.size() - headerRows);
+                    source.setRowCountExact(true);
+                } else if (lastRowNumber[0] > 0) {
+                    // The declared dimension; blank formatted rows at the end make it an upper bound
+                    source.setProjectedRowCount(lastRowNumber[0] - headerRows);
+                }
+                preview.getSources().add(source);
+            }
+        }
+    }
+
+    /**
+     * Builds the preview of one source from its first rows, the same way ingestion would map them.
+     */
+    private FilePreview.SourcePreview previewRows(String sourceName, List<List<String>> rows, int sampleRows) {
+        FilePreview.SourcePreview source = new FilePreview.SourcePreview(sourceName);
+        if (rows.isEmpty()) {
+            return source;
+        }
+        ColumnLayout layout = detectLayout(rows.subList(0, Math.min(rows.size(), HEADER_SAMPLE_ROWS + 1)), sourceName, false);
+        List<String> header = layout.hasHeader ? rows.get(0) : null;
+        List<List<String>> dataRows = layout.hasHeader ? rows.subList(1, rows.size()) : rows;
+        source.setHasHeader(layout.hasHeader);
+        source.setMappingSource(layout.fromProfile ? "PROFILE" : "INFERRED");
+
+        double confidenceSum = 0;
+        for (Map.Entry<Integer, SalesColumn> entry : new TreeMap<>(layout.mapping).entrySet()) {
+            int index = entry.getKey();
+            SalesColumn column = entry.getValue();
+            String headerName = header != null && index < header.size() ? header.get(index) : null;
+            String matchedBy = layout.fromProfile ? "PROFILE"
+                : headerName != null && headerName.trim().equalsIgnoreCase(column.getColumnName()) ? "HEADER" : "DATA";
+            double confidence = columnConfidence(dataRows, index, column);
+            confidenceSum += confidence;
+            source.getColumns().add(new FilePreview.ColumnPreview(index, headerName, column, matchedBy, confidence));
+        }
+        source.setConfidence(layout.mapping.isEmpty() ? 0 : confidenceSum / layout.mapping.size());
+
+        SalesRowMapper rowMapper = new SalesRowMapper(layout.mapping);
+        SalesRowMapper.RejectHandler rejectHandler = (lineNumber, row, column, reason, detail) ->
+            source.getRejects().add(new FilePreview.RejectPreview(lineNumber, column, reason, detail));
+        long firstLine = layout.hasHeader ? 2 : 1;
+        for (int i = 0; i < Math.min(sampleRows, dataRows.size()); i++) {
+            SalesData salesData = rowMapper.map(dataRows.get(i), firstLine + i, rejectHandler);
+            if (salesData != null) {
+                source.getSampleRows().add(salesData);
+            }
+        }
+        return source;
+    }
+
+    /**
+     * Share of the non-blank sampled values of a column that parse as the mapped column's type.
+     */
+    private static double columnConfidence(List<List<String>> rows, int index, SalesColumn column) {
+        int values = 0;
+        int valid = 0;
+        for (List<String> row : rows) {
+            if (index >= row.size()) {
+                continue;
+            }
+            String text = row.get(index);
+            if (text == null || text.trim().isEmpty()) {
+                continue;
+            }
+            values++;
+            Object typed = row instanceof SheetRow sheetRow ? sheetRow.getValue(index) : text;
+            boolean parses;
+            if (column.getDataType() == String.class) {
+                parses = true;
+            } else if (column.getDataType() == LocalDate.class) {
+                parses = typed instanceof LocalDate || SalesRowMapper.parseLocalDate(text) != null;
+            } else {
+                parses = typed instanceof BigDecimal || SalesRowMapper.parseBigDecimal(text) != null;
+            }
+            if (parses) {
+                valid++;
+            }
+        }
+        return values == 0 ? 0 : (double) valid / values;
+    }
+
+    /**
+     * Dispatches one source by file name. Compressed sources are unwrapped recursively, so
+     * .csv.gz, .xlsx.gz and zips holding any of these all end up in {@link #ingestRows}.
+     *
+     * @param archiveMember true if the source is a zip member; unsupported members are skipped instead of failing the job.
+     */
+    private void ingestSource(InputStream inputStream, String fileName, IngestionJob job, boolean archiveMember) throws IOException, CsvValidationException, InterruptedException {
+        String fileExtension = getFileExtension(fileName);
+
+        if ("gz".equalsIgnoreCase(fileExtension)) {
+            String innerName = fileName.substring(0, fileName.length() - 3);
+            logger.info("Decompressing gzip stream {}", fileName);
+            ingestSource(new GZIPInputStream(new NonClosingInputStream(inputStream), STREAM_BUFFER_SIZE), innerName, job, archiveMember);
+        } else if ("zip".equalsIgnoreCase(fileExtension)) {
+            ingestZip(inputStream, fileName, job);
+        } else if ("xlsx".equalsIgnoreCase(fileExtension)) {
+            logger.info("Reading Excel file raw data.");
+            ingestWorkbook(inputStream, fileName, job);
+        } else if ("csv".equalsIgnoreCase(fileExtension)) {
+            logger.info("Reading CSV file raw data.");
+            try (RowReader reader = openCsvReader(inputStream)) {
+                ingestRows(reader, fileName, job);
+            }
+        } else if (archiveMember) {
+            logger.warn("Skipping unsupported archive member: {}", fileName);
+        } else {
+            logger.error("Unsupported file type: {}", fileExtension);
+            throw new IllegalArgumentException("Unsupported file type: " + fileExtension);
+        }
+    }
+
+    /**
+     * Streams the members of a zip archive. A ZipInputStream can only be inflated sequentially, so CSV
+     * members are parsed on this thread while their chunks are mapped and written concurrently on the
+     * writer pool. XLSX members have to be materialized in memory by POI anyway, so their inflated bytes
+     * are handed to the parse pool, where each of their sheets is parsed concurrently with the following members.
+     */
+    private void ingestZip(InputStream inputStream, String fileName, IngestionJob job) throws IOException, CsvValidationException, InterruptedException {
+        ZipInputStream zipInputStream = new ZipInputStream(new NonClosingInputStream(inputStream));
+        ZipEntry entry;
+        while ((entry = zipInputStream.getNextEntry()) != null) {
+            String memberName = entry.getName();
+            if (entry.isDirectory() || memberName.startsWith("__MACOSX/")) {
+                continue;
+            }
+            logger.info("Processing zip member {} of {}", memberName, fileName);
+            if ("xlsx".equalsIgnoreCase(getFileExtension(memberName))) {
+                byte[] workbookBytes = zipInputStream.readAllBytes();
+                job.addPending(CompletableFuture.runAsync(() -> {
                     try {
-                        salesDataRepository.saveAll(salesDataList);
-                    } catch (Exception e) {
-                        failedRowsCounter.addAndGet(salesDataList.size());
-                        processedRowsCounter.addAndGet(-salesDataList.size());
+                        ingestSource(new ByteArrayInputStream(workbookBytes), memberName, job, true);
+                    } catch (IOException | CsvValidationException e) {
+                        throw new IllegalStateException("Failed to read zip member " + memberName + ": " + e.getMessage(), e);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new IllegalStateException("Interrupted while reading zip member " + memberName, e);
                     }
-                }, taskExecutor);
-                
-                future.get();
-            }
-
-            long endTime = System.currentTimeMillis();
-            long duration = endTime - startTime;
-            String durationMessage = String.format(
-                "File processing completed in %d seconds. Processed %d rows, %d failed rows.",
-                duration / 1000,
-                processedRowsCounter.get(),
-                failedRowsCounter.get()
-            );
-            
-            fileTrackerService.updateFileStatus(fileStatusId, "COMPLETED", durationMessage);
-            logger.info(durationMessage);
-            
-        } catch (Exception e) {
-            long endTime = System.currentTimeMillis();
-            long duration = endTime - startTime;
-            String errorMessage = String.format(
-                "File processing failed after %d seconds. Error: %s",
-                duration / 1000,
-                e.getMessage()
-            );
-            
-            fileTrackerService.updateFileStatus(fileStatusId, "FAILED", errorMessage);
-            logger.error(errorMessage);
-            throw e;
+                }, parseExecutor));
+            } else {
+                ingestSource(new NonClosingInputStream(zipInputStream), memberName, job, true);
+            }
+            zipInputStream.closeEntry();
         }
     }
 
-    private void processChunk(List<List<String>> chunk, int startIndex, Map<Integer, SalesColumn> columnMapping) {
-        List<SalesData> salesDataList = new ArrayList<>();
-        
-        for (List<String> row : chunk) {
-            try {
-                SalesData salesData = mapRowToSalesData(row, columnMapping);
-                if (salesData != null) {
-                    salesDataList.add(salesData);
-                    totalProcessedRows.incrementAndGet();
-                    
-                    // Log progress every 500 rows
-                    int processed = totalProcessedRows.get();
-                    if (processed % 500 == 0) {
-                        logger.info("Processed {} rows", processed);
-                    }
-                } else {
-                    totalFailedRows.incrementAndGet();
-                    logger.warn("Failed to map row at index {}", startIndex + chunk.indexOf(row));
+    /**
+     * Parses every selected sheet of a workbook concurrently on the parse pool. Each sheet is its own
+     * source with its own header detection, column mapping and row counts; all of them report to the
+     * same job. Returns once the sheet tasks are submitted; the workbook is closed when the last one ends.
+     */
+    private void ingestWorkbook(InputStream inputStream, String fileName, IngestionJob job) throws IOException {
+        XlsxWorkbookReader workbook = new XlsxWorkbookReader(new NonClosingInputStream(inputStream));
+        List<CompletableFuture<Void>> sheetTasks = new ArrayList<>();
+        try {
+            for (XlsxWorkbookReader.SheetRef sheet : workbook.getSheets()) {
+                if (!job.isSheetSelected(sheet.getIndex(), sheet.getName())) {
+                    logger.info("Skipping sheet {} of {}", sheet.getName(), fileName);
+                    continue;
                 }
-            } catch (Exception e) {
-                totalFailedRows.incrementAndGet();
-                logger.error("Error processing row at index {}: {}", startIndex + chunk.indexOf(row), e.getMessage());
+                String sourceName = fileName + "[" + sheet.getName() + "]";
+                CompletableFuture<Void> task = CompletableFuture.runAsync(() -> {
+                    RowBatcher batcher = new RowBatcher(sourceName, job);
+                    try {
+                        workbook.parseSheet(sheet, batcher::accept);
+                        batcher.finish();
+                    } catch (IOException e) {
+                        throw new IllegalStateException("Failed to read sheet " + sourceName + ": " + e.getMessage(), e);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new IllegalStateException("Interrupted while reading sheet " + sourceName, e);
+                    }
+                }, parseExecutor);
+                sheetTasks.add(task);
+                job.addPending(task);
             }
+        } finally {
+            CompletableFuture.allOf(sheetTasks.toArray(new CompletableFuture<?>[0]))
+                .whenComplete((ignored, e) -> workbook.close());
         }
-        
-        try {
-            salesDataRepository.saveAll(salesDataList);
-        } catch (Exception e) {
-            totalFailedRows.addAndGet(salesDataList.size());
-            totalProcessedRows.addAndGet(-salesDataList.size());
-            logger.error("Error saving chunk starting at index {}: {}", startIndex, e.getMessage());
+    }
+
+    private void ingestRows(RowReader reader, String sourceName, IngestionJob job) throws IOException, CsvValidationException, InterruptedException {
+        RowBatcher batcher = new RowBatcher(sourceName, job);
+        List<String> row;
+        while ((row = reader.next()) != null) {
+            batcher.accept(row);
         }
+        batcher.finish();
     }
 
+    /**
+     * Cuts the rows of one source into chunks: the first rows are buffered for header detection and
+     * column guessing, after which rows are handed to the writer pool a chunk at a time as they arrive.
+     */
+    private final class RowBatcher {
+        private final String sourceName;
+        private final IngestionJob job;
+        private final IngestionJob.SourceStats source;
+        private List<List<String>> chunk = new ArrayList<>(CHUNK_SIZE);
+        private SalesRowMapper rowMapper;
+        // Source line of the first row in the current chunk, 1-based
+        private long chunkStartLine = 1;
 
-    private List<List<String>> readExcelFileRaw(MultipartFile file) throws IOException {
-        try (InputStream inputStream = file.getInputStream()) {
-            Workbook workbook = WorkbookFactory.create(inputStream);
-            Sheet sheet = workbook.getSheetAt(0);
-            List<List<String>> rows = new ArrayList<>();
-            
-            for (Row row : sheet) {
-                List<String> rowData = new ArrayList<>();
-                for (Cell cell : row) {
-                    String value = getCellValueAsString(cell);
-                    rowData.add(value);
+        RowBatcher(String sourceName, IngestionJob job) {
+            this.sourceName = sourceName;
+            this.job = job;
+            this.source = job.startSource(sourceName);
+        }
+
+        void accept(List<String> row) throws InterruptedException {
+            chunk.add(row);
+            if (rowMapper == null) {
+                if (chunk.size() > HEADER_SAMPLE_ROWS) {
+                    detectColumns();
                 }
-                rows.add(rowData);
+            } else if (chunk.size() == CHUNK_SIZE) {
+                submitCurrentChunk();
+            }
+        }
+
+        void finish() throws InterruptedException {
+            if (rowMapper == null) {
+                if (chunk.isEmpty()) {
+                    logger.warn("No data found in {}", sourceName);
+                    return;
+                }
+                detectColumns();
+            }
+            if (!chunk.isEmpty()) {
+                submitCurrentChunk();
+            }
+        }
+
+        private void detectColumns() {
+            ColumnLayout layout = detectLayout(chunk, sourceName, true);
+            rowMapper = new SalesRowMapper(layout.mapping);
+            if (layout.hasHeader) {
+                chunk = new ArrayList<>(chunk.subList(1, chunk.size()));
+                chunkStartLine = 2;
             }
-            logger.debug("Read {} rows from Excel file.", rows.size());
-            return rows;
+        }
+
+        private void submitCurrentChunk() throws InterruptedException {
+            submitChunk(chunk, chunkStartLine, rowMapper, job, source);
+            chunkStartLine += chunk.size();
+            chunk = new ArrayList<>(CHUNK_SIZE);
         }
     }
 
-    private List<List<String>> readCsvFileRaw(MultipartFile file) throws IOException, CsvValidationException {
-        List<List<String>> rows = new ArrayList<>();
-        try (BufferedReader reader = new BufferedReader(new InputStreamReader(file.getInputStream()));
-             CSVReader csvReader = new CSVReader(reader)) {
-            String[] line;
-            while ((line = csvReader.readNext()) != null) {
-                rows.add(Arrays.asList(line));
+    /**
+     * Whether a source starts with a header row, and how its columns map to SalesColumns.
+     */
+    private static final class ColumnLayout {
+        final boolean hasHeader;
+        final Map<Integer, SalesColumn> mapping;
+        final boolean fromProfile;
+
+        ColumnLayout(boolean hasHeader, Map<Integer, SalesColumn> mapping, boolean fromProfile) {
+            this.hasHeader = hasHeader;
+            this.mapping = mapping;
+            this.fromProfile = fromProfile;
+        }
+    }
+
+    /**
+     * Detects the header and column mapping from the first rows of a source.
+     *
+     * @param headRows The first rows, at most HEADER_SAMPLE_ROWS of them after the header are sampled.
+     * @param recordProfile Whether to count profile hits and store inferred mappings; false for previews.
+     */
+    private ColumnLayout detectLayout(List<List<String>> headRows, String sourceName, boolean recordProfile) {
+        List<String> firstRow = headRows.get(0);
+
+        // A known layout is mapped from its profile without any inference
+        Optional<Map<Integer, SalesColumn>> profileMapping = columnMappingProfileService.findMapping(firstRow);
+        if (profileMapping.isPresent()) {
+            logger.info("Mapping {} with the stored profile for its header", sourceName);
+            if (recordProfile) {
+                columnMappingProfileService.recordHit(firstRow);
             }
+            return new ColumnLayout(true, profileMapping.get(), true);
+        }
+
+        boolean hasHeader = false;
+        List<List<String>> dataHead = headRows;
+        if (columnGuessingService.isLikelyHeader(firstRow)) {
+            hasHeader = true;
+            dataHead = headRows.subList(1, headRows.size());
+        }
+
+        // Get column mapping
+        Map<Integer, SalesColumn> columnMapping = columnGuessingService.guessColumns(
+            dataHead.subList(0, Math.min(HEADER_SAMPLE_ROWS, dataHead.size())),
+            hasHeader ? Optional.of(firstRow) : Optional.empty()
+        );
+        if (hasHeader && recordProfile) {
+            columnMappingProfileService.learn(firstRow, columnMapping);
         }
-        logger.debug("Read {} rows from CSV file.", rows.size());
-        return rows;
+        return new ColumnLayout(hasHeader, columnMapping, false);
     }
 
-    private SalesData mapRowToSalesData(List<String> row, Map<Integer, SalesColumn> columnMapping) {
-        SalesData salesData = new SalesData();
-        boolean isEmptyRow = true;
+    private void submitChunk(List<List<String>> chunk, long chunkStartLine, SalesRowMapper rowMapper, IngestionJob job, IngestionJob.SourceStats source) throws InterruptedException {
+        if (job.isCancelled()) {
+            throw new CancellationException("Job of file " + job.getFileId() + " was cancelled");
+        }
+        job.getTotalRows().addAndGet(chunk.size());
+        source.getTotalRows().addAndGet(chunk.size());
+        job.acquireChunkSlot();
+        StagedRowChunk staged = null;
         try {
-            for (Map.Entry<Integer, SalesColumn> entry : columnMapping.entrySet()) {
-                Integer colIdx = entry.getKey();
-                SalesColumn salesColumn = entry.getValue();
-
-                if (colIdx < row.size()) {
-                    String cellValue = row.get(colIdx);
-                    if (cellValue != null && !cellValue.trim().isEmpty()) {
-                        isEmptyRow = false;
+            // Once staged, only the off-heap copy is referenced until the writer decodes it
+            staged = offHeapStaging ? StagedRowChunk.stage(chunk) : null;
+            StagedRowChunk stagedChunk = staged;
+            List<List<String>> rows = staged != null ? staged.rows() : chunk;
+            job.addPending(CompletableFuture.runAsync(() -> {
+                try {
+                    if (!job.isCancelled()) {
+                        processChunk(rows, chunkStartLine, rowMapper, job, source);
+                    }
+                } finally {
+                    if (stagedChunk != null) {
+                        stagedChunk.close();
                     }
-                    setSalesDataField(salesData, salesColumn, cellValue);
+                    job.releaseChunkSlot();
                 }
+            }, chunkExecutor));
+        } catch (RuntimeException e) {
+            if (staged != null) {
+                staged.close();
             }
-            return isEmptyRow ? null : salesData;
-        } catch (Exception e) {
-            logger.error("Error mapping row to SalesData: {}", e.getMessage());
-            return null;
+            job.releaseChunkSlot();
+            throw e;
         }
     }
 
-    private void setSalesDataField(SalesData salesData, SalesColumn column, String value) {
-        String trimmedValue = (value != null) ? value.trim() : null;
+    private void processChunk(List<List<String>> chunk, long chunkStartLine, SalesRowMapper rowMapper, IngestionJob job, IngestionJob.SourceStats source) {
+        RejectSink rejectSink = job.getRejectSink();
+        SalesRowMapper.RejectHandler rejectHandler = rejectSink::reject;
+        List<SalesData> salesDataList = new ArrayList<>();
+        Map<SalesData, Integer> chunkOffsets = new IdentityHashMap<>();
+        int failed = 0;
 
-        try {
-            switch (column) {
-                case SEGMENT:
-                    salesData.setSegment(trimmedValue);
-                    break;
-                case COUNTRY:
-                    salesData.setCountry(trimmedValue);
-                    break;
-                case PRODUCT:
-                    salesData.setProduct(trimmedValue);
-                    break;
-                case DISCOUNT_BAND:
-                    salesData.setDiscountBand(trimmedValue);
-                    break;
-                case UNITS_SOLD:
-                    BigDecimal unitsSold = parseBigDecimal(trimmedValue);
-                    salesData.setUnitsSold(unitsSold);
-                    break;
-                case MANUFACTURING_PRICE:
-                    BigDecimal manufacturingPrice = parseBigDecimal(trimmedValue);
-                    salesData.setManufacturingPrice(manufacturingPrice);
-                    break;
-                case SALE_PRICE:
-                    BigDecimal salePrice = parseBigDecimal(trimmedValue);
-                    salesData.setSalePrice(salePrice);
-                    break;
-                case GROSS_SALES:
-                    BigDecimal grossSales = parseBigDecimal(trimmedValue);
-                    salesData.setGrossSales(grossSales);
-                    break;
-                case DISCOUNTS:
-                    BigDecimal discounts = parseBigDecimal(trimmedValue);
-                    salesData.setDiscounts(discounts);
-                    break;
-                case SALES:
-                    BigDecimal sales = parseBigDecimal(trimmedValue);
-                    salesData.setSales(sales);
-                    break;
-                case COGS:
-                    BigDecimal cogs = parseBigDecimal(trimmedValue);
-                    salesData.setCogs(cogs);
-                    break;
-                case PROFIT:
-                    BigDecimal profit = parseBigDecimal(trimmedValue);
-                    salesData.setProfit(profit);
-                    break;
-                case DATE:
-                    LocalDate date = parseLocalDate(trimmedValue);
-                    if (date != null) {
-                        salesData.setDate(date);
-                        salesData.setMonthNumber(date.getMonthValue());
-                        salesData.setMonthName(date.getMonth().getDisplayName(TextStyle.FULL, Locale.ENGLISH));
-                        salesData.setYear(date.getYear());
+        for (int offset = 0; offset < chunk.size(); offset++) {
+            List<String> row = chunk.get(offset);
+            long lineNumber = chunkStartLine + offset;
+            try {
+                SalesData salesData = rowMapper.map(row, lineNumber, rejectHandler);
+                if (salesData != null) {
+                    salesData.setFileId(job.getFileId());
+                    salesData.setWorkUnitId(job.getWorkUnitId());
+                    salesDataList.add(salesData);
+                    chunkOffsets.put(salesData, offset);
+                } else {
+                    failed++;
+                }
+            } catch (Exception e) {
+                failed++;
+                rejectSink.reject(lineNumber, row, null, RejectReason.MAPPING_ERROR, e.getMessage());
+            }
+        }
+
+        // Cross-column rules run over the whole chunk at once
+        if (validationRulesService.hasRules() && !salesDataList.isEmpty()) {
+            int[] violations = validationRulesService.evaluate(salesDataList);
+            boolean rejectViolations = validationRulesService.getAction() == ValidationRulesService.Action.REJECT;
+            List<SalesData> validRows = rejectViolations ? new ArrayList<>(salesDataList.size()) : salesDataList;
+            for (int i = 0; i < violations.length; i++) {
+                SalesData salesData = salesDataList.get(i);
+                if (violations[i] == 0) {
+                    if (rejectViolations) {
+                        validRows.add(salesData);
                     }
-                    break;
+                } else if (rejectViolations) {
+                    int offset = chunkOffsets.get(salesData);
+                    failed++;
+                    rejectSink.reject(chunkStartLine + offset, chunk.get(offset), null, RejectReason.RULE_VIOLATION,
+                        validationRulesService.describe(violations[i]));
+                } else {
+                    salesData.setRuleViolations(violations[i]);
+                }
+            }
+            salesDataList = validRows;
+        }
+
+        // Sketched before deduplication: they describe what the upload contained
+        if (!salesDataList.isEmpty()) {
+            ColumnSketches chunkSketches = new ColumnSketches();
+            salesDataList.forEach(chunkSketches::add);
+            job.mergeColumnSketches(chunkSketches);
+        }
+
+        // Drop rows already present in sales_data from an earlier or overlapping upload
+        List<SalesData> newRows = rowDeduplicationService.filterNewRows(salesDataList);
+        int duplicates = salesDataList.size() - newRows.size();
+
+        // Retries transient errors, then bisects the chunk so only the offending rows are rejected.
+        // The rows and their zone map commit together, so a zone never outlives or misses its rows.
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        AtomicInteger racedDuplicates = new AtomicInteger();
+        int written = bisectingRetryWriter.write(newRows, batch -> transaction.executeWithoutResult(status -> {
+            if (job.getMode() == IngestionMode.UPSERT) {
+                // One set-based statement per chunk; the database decides insert vs update
+                salesDataJdbcRepository.upsertAll(batch, job.getNaturalKey());
+            } else {
+                // Ids assigned by a rolled-back attempt must not leak into the retry
+                batch.forEach(salesData -> salesData.setId(null));
+                salesDataRepository.saveAll(batch);
+            }
+            zoneMapService.recordWrittenRows(batch, job.getFileId(), job.getMode());
+            if (job.getWriteFence() != null && !job.getWriteFence().getAsBoolean()) {
+                // Rolls the chunk back; whoever holds the lease now writes these rows again
+                throw new CancellationException("Lease lost before the chunk committed");
+            }
+        }), (salesData, e) -> {
+            if (e instanceof CancellationException) {
+                return;
+            }
+            if (RowDeduplicationService.isDuplicateRow(e)) {
+                // Written by a concurrent chunk after the duplicate check ran
+                racedDuplicates.incrementAndGet();
+                return;
             }
-        } catch (Exception e) {
-            logger.error("Error setting field {}: {}", column, e.getMessage());
+            int offset = chunkOffsets.get(salesData);
+            rejectSink.reject(chunkStartLine + offset, chunk.get(offset), null, RejectReason.WRITE_FAILED, rootCauseMessage(e));
+        });
+        duplicates += racedDuplicates.get();
+        failed += newRows.size() - written - racedDuplicates.get();
+
+        job.getFailedRows().addAndGet(failed);
+        job.getDuplicateRows().addAndGet(duplicates);
+        int processed = job.getProcessedRows().addAndGet(written);
+        logProgress(job, processed - written, processed);
+        // Buffered in memory and merged; costs no database round trip per chunk.
+        // A partial job only sees its share of the file, so its caller settles the counters of the file.
+        if (!job.isPartial()) {
+            fileTrackerService.reportProgress(job.getFileId(), processed, job.getFailedRows().get());
         }
+
+        source.getFailedRows().addAndGet(failed);
+        source.getDuplicateRows().addAndGet(duplicates);
+        source.getProcessedRows().addAndGet(written);
+        source.chunkWritten();
     }
 
-    private BigDecimal parseBigDecimal(String value) {
-        if (value == null || value.trim().isEmpty()) {
-            return null;
+    private RowReader openCsvReader(InputStream inputStream) {
+        CSVReader csvReader = new CSVReader(new BufferedReader(
+            new InputStreamReader(new NonClosingInputStream(inputStream), StandardCharsets.UTF_8), STREAM_BUFFER_SIZE));
+        return new RowReader() {
+            @Override
+            public List<String> next() throws IOException, CsvValidationException {
+                String[] line = csvReader.readNext();
+                return line != null ? Arrays.asList(line) : null;
+            }
+
+            @Override
+            public void close() throws IOException {
+                csvReader.close();
+            }
+        };
+    }
+
+    /**
+     * Reads a fixed number of bytes of a work unit and fails as soon as its lease is gone, so a node that
+     * lost a unit stops parsing it while the new owner starts over.
+     */
+    private static final class LeasedRangeInputStream extends FilterInputStream {
+        private final BooleanSupplier leaseHeld;
+        private long remaining;
+
+        LeasedRangeInputStream(InputStream in, long length, BooleanSupplier leaseHeld) {
+            super(in);
+            this.remaining = length;
+            this.leaseHeld = leaseHeld;
         }
-        try {
-            // Remove currency symbols, commas, parentheses, and any non-numeric characters
-            // except for the leading minus sign and the decimal point.
-            String cleanValue = value.trim()
-                                   .replace("$", "")
-                                   .replace(",", "")
-                                   .replace("(", "")
-                                   .replace(")", "");
 
-            // Handle potential empty string after cleaning (e.g., if input was just "-")
-            if (cleanValue.isEmpty() || cleanValue.equals("-")) {
-                return BigDecimal.ZERO; // Treat empty or single hyphen as zero
+        @Override
+        public int read() throws IOException {
+            byte[] single = new byte[1];
+            return read(single, 0, 1) == -1 ? -1 : single[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            if (remaining <= 0) {
+                return -1;
             }
-            
-            return new BigDecimal(cleanValue);
-        } catch (NumberFormatException e) {
-            System.err.println("Error parsing BigDecimal from: " + value + ". Error: " + e.getMessage());
-            return null;
+            if (!leaseHeld.getAsBoolean()) {
+                throw new IOException("Lease on the range was lost");
+            }
+            int n = super.read(buffer, offset, (int) Math.min(length, remaining));
+            if (n > 0) {
+                remaining -= n;
+            }
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(Math.min(n, remaining));
+            remaining -= skipped;
+            return skipped;
+        }
+
+        @Override
+        public int available() throws IOException {
+            return (int) Math.min(super.available(), remaining);
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+    }
+
+    /**
+     * Counts the bytes read through it, to relate compressed and decompressed positions.
+     */
+    private static final class CountingInputStream extends FilterInputStream {
+        // Read by the progress sampler while the parser advances it
+        private volatile long count;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        long getCount() {
+            return count;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b != -1) {
+                count++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int n = super.read(buffer, offset, length);
+            if (n > 0) {
+                count += n;
+            }
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            count += skipped;
+            return skipped;
+        }
+    }
+
+    /**
+     * Keeps parsers from closing a shared stream (a zip archive or the request body) when they are done
+     * with their part of it.
+     */
+    private static final class NonClosingInputStream extends FilterInputStream {
+        NonClosingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public void close() {
+            // Owned by the caller
         }
     }
 
@@ -404,85 +1144,12 @@ public class FileProcessorService {
         }
     }
 
-    private LocalDate parseLocalDate(String value) {
-        if (value == null || value.trim().isEmpty()) {
-            return null;
-        }
-        String trimmedValue = value.trim();
-
-        // Try parsing with ISO_LOCAL_DATE_TIME first, as it handles 'YYYY-MM-DDTHH:mm'
-        try {
-            LocalDate date = LocalDate.parse(trimmedValue, DateTimeFormatter.ISO_LOCAL_DATE_TIME);
-            logger.debug("    Value '{}' is a LocalDate with ISO_LOCAL_DATE_TIME format.", value);
-            return date;
-        } catch (DateTimeParseException ignored) {
-            // Fallback to other formats if ISO_LOCAL_DATE_TIME fails
-        }
-
-        for (String format : ColumnGuessingService.getDateFormatStrings()) {
-            try {
-                LocalDate date = LocalDate.parse(trimmedValue, DateTimeFormatter.ofPattern(format));
-                logger.debug("    Value '{}' is a LocalDate with format {}", value, format);
-                return date;
-            } catch (DateTimeParseException ignored) {
-                // Try next format
-            }
-        }
-
-        // Also try to parse as Excel numeric date
-        try {
-            double excelDate = Double.parseDouble(trimmedValue);
-            // Check for a reasonable range for Excel dates (e.g., between 1900-01-01 and 2100-01-01)
-            // Excel's epoch is 1900-01-01, which is day 1. Max reasonable date around 2070 is ~70000.
-            if (excelDate > 0 && excelDate < 100000) { 
-                // Convert Excel numeric date to Java LocalDate
-                LocalDate date = LocalDate.of(1899, 12, 31).plusDays((long) excelDate);
-                logger.debug("    Value '{}' is an Excel numeric date, parsed to {}.", value, date);
-                return date;
-            }
-        } catch (NumberFormatException ignored) {
-            // Not an Excel date
-        }
-        logger.error("Could not parse date '{}' with any specified format or as Excel numeric.", value);
-        return null;
-    }
-
-    private String getCellValueAsString(Cell cell) {
-        if (cell == null) {
-            return "";
-        }
-        try {
-            switch (cell.getCellType()) {
-                case STRING:
-                    return cell.getStringCellValue();
-                case NUMERIC:
-                    if (DateUtil.isCellDateFormatted(cell)) {
-                        return cell.getLocalDateTimeCellValue()
-                                  .toLocalDate()
-                                  .format(DateTimeFormatter.ISO_LOCAL_DATE);
-                    }
-                    // Avoid scientific notation
-                    return new java.text.DecimalFormat("#.##########").format(cell.getNumericCellValue());
-                case BOOLEAN:
-                    return String.valueOf(cell.getBooleanCellValue());
-                case FORMULA:
-                    try {
-                        return new java.text.DecimalFormat("#.##########").format(cell.getNumericCellValue());
-                    } catch (Exception e) {
-                        try {
-                            return cell.getStringCellValue();
-                        } catch (Exception ex) {
-                            logger.error("Error evaluating formula: {}", ex.getMessage());
-                            return "";
-                        }
-                    }
-                default:
-                    return "";
-            }
-        } catch (Exception e) {
-            logger.error("Error getting cell value: {}", e.getMessage());
-            return "";
+    private String rootCauseMessage(Throwable e) {
+        Throwable root = e;
+        while (root.getCause() != null && root.getCause() != root) {
+            root = root.getCause();
         }
+        return root.getMessage();
     }
 
     private String getFileExtension(String fileName) {
@@ -2,12 +2,26 @@ package com.example.dataprocessor.service;
 
 import com.example.dataprocessor.model.FileProcessingStatus;
 import com.example.dataprocessor.model.ProcessingStats;
+import com.example.dataprocessor.model.SourceProcessingStats;
+import com.example.dataprocessor.repository.FileProcessingStatusJdbcRepository;
 import com.example.dataprocessor.repository.FileProcessingStatusRepository;
+import com.example.dataprocessor.repository.ProcessingStatsJdbcRepository;
 import com.example.dataprocessor.repository.ProcessingStatsRepository;
+import com.example.dataprocessor.repository.SourceProcessingStatsRepository;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
 import java.util.Optional;
 
 @Service
@@ -19,23 +33,120 @@ public class FileTrackerService {
     @Autowired
     private ProcessingStatsRepository processingStatsRepository;
 
+    @Autowired
+    private SourceProcessingStatsRepository sourceProcessingStatsRepository;
+
+    @Autowired
+    private FileProcessingStatusJdbcRepository fileProcessingStatusJdbcRepository;
+
+    @Autowired
+    private StatusUpdateBuffer statusUpdateBuffer;
+
+    @Autowired
+    private ProcessingStatsJdbcRepository processingStatsJdbcRepository;
+
     public FileProcessingStatus createFileProcessingStatus(String filename, String originalFilename) {
+        return createFileProcessingStatus(filename, originalFilename, null);
+    }
+
+    public FileProcessingStatus createFileProcessingStatus(String filename, String originalFilename, String contentHash) {
+        return createFileProcessingStatus(filename, originalFilename, contentHash, "PENDING", null);
+    }
+
+    /**
+     * Registers a file directly in its first state, saving the separate status update that would follow.
+     */
+    public FileProcessingStatus createFileProcessingStatus(String filename, String originalFilename, String contentHash,
+                                                           String initialStatus, String message) {
         FileProcessingStatus status = new FileProcessingStatus();
         status.setFilename(filename);
         status.setOriginalFilename(originalFilename);
+        status.setContentHash(contentHash);
         status.setUploadTime(LocalDateTime.now());
-        status.setStatus("PENDING");
+        status.setStatus(initialStatus);
+        status.setErrorMessage(message);
+        if (!"PENDING".equals(initialStatus)) {
+            status.setProcessTime(status.getUploadTime());
+        }
         return fileProcessingStatusRepository.save(status);
     }
 
+    /**
+     * Computes the SHA-256 of the uploaded bytes without buffering the whole file in memory.
+     *
+     * @param file The uploaded file.
+     * @return The digest as 64 lowercase hex characters.
+     */
+    public String computeContentHash(MultipartFile file) throws IOException {
+        try (InputStream inputStream = file.getInputStream()) {
+            return computeContentHash(inputStream);
+        }
+    }
+
+    /**
+     * Computes the SHA-256 of a file on disk, streaming it like {@link #computeContentHash(MultipartFile)}.
+     */
+    public String computeContentHash(Path file) throws IOException {
+        try (InputStream inputStream = Files.newInputStream(file)) {
+            return computeContentHash(inputStream);
+        }
+    }
+
+    private static String computeContentHash(InputStream inputStream) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+        byte[] buffer = new byte[64 * 1024];
+        int read;
+        while ((read = inputStream.read(buffer)) != -1) {
+            digest.update(buffer, 0, read);
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    /**
+     * Finds an earlier upload with identical content that was fully ingested.
+     */
+    public Optional<FileProcessingStatus> findCompletedByContentHash(String contentHash) {
+        return fileProcessingStatusRepository.findFirstByContentHashAndStatusOrderByIdAsc(contentHash, "COMPLETED");
+    }
+
+    /**
+     * Finds the latest upload of this name and content that is still PROCESSING.
+     */
+    public Optional<FileProcessingStatus> findProcessing(String filename, String contentHash) {
+        return fileProcessingStatusRepository.findFirstByFilenameAndContentHashAndStatusOrderByIdDesc(filename, contentHash, "PROCESSING");
+    }
+
+    /**
+     * Records a status change. Intermediate states are written behind, merged with other updates of the
+     * same file; COMPLETED, FAILED and DUPLICATE are written before this returns.
+     */
     public void updateFileStatus(Long fileId, String status, String errorMessage) {
-        Optional<FileProcessingStatus> optionalStatus = fileProcessingStatusRepository.findById(fileId);
-        optionalStatus.ifPresent(s -> {
-            s.setStatus(status);
-            s.setProcessTime(LocalDateTime.now());
-            s.setErrorMessage(errorMessage);
-            fileProcessingStatusRepository.save(s);
-        });
+        statusUpdateBuffer.updateStatus(fileId, status, errorMessage);
+    }
+
+    /**
+     * Records the row counters of a running job; written behind with the next flush.
+     */
+    public void reportProgress(Long fileId, int rowsProcessed, int rowsFailed) {
+        statusUpdateBuffer.updateProgress(fileId, rowsProcessed, rowsFailed);
+    }
+
+    /**
+     * Claims a file that is not being ingested for another run under the same id; false if a run is
+     * already PENDING or PROCESSING.
+     */
+    public boolean startReprocessing(Long fileId) {
+        // A final state is flushed as soon as it is recorded, so there is none pending to overwrite this
+        return fileProcessingStatusJdbcRepository.startUnlessProcessing(fileId);
+    }
+
+    public void updateContentHash(Long fileId, String contentHash) {
+        fileProcessingStatusJdbcRepository.updateContentHash(fileId, contentHash);
     }
 
     public void updateProcessingStats(FileProcessingStatus fileStatus, int totalRows, int processedRows, int failedRows, long durationSeconds) {
@@ -50,6 +161,61 @@ public class FileTrackerService {
         processingStatsRepository.save(stats);
     }
 
+    /**
+     * Stores the totals of a finished job and the row counts of each of its sources (sheets, zip members),
+     * replacing those of an earlier run of the same file.
+     */
+    public void saveProcessingStats(IngestionJob job) {
+        Optional<FileProcessingStatus> optionalStatus = fileProcessingStatusRepository.findById(job.getFileId());
+        if (optionalStatus.isEmpty()) {
+            return;
+        }
+        FileProcessingStatus fileStatus = optionalStatus.get();
+        long durationSeconds = (System.currentTimeMillis() - job.getStartTime()) / 1000;
+        updateProcessingStats(fileStatus, job.getTotalRows().get(), job.getProcessedRows().get(), job.getFailedRows().get(), durationSeconds);
+
+        sourceProcessingStatsRepository.deleteAll(sourceProcessingStatsRepository.findByFileProcessingStatusIdOrderByIdAsc(fileStatus.getId()));
+        List<SourceProcessingStats> sourceStats = new ArrayList<>();
+        for (IngestionJob.SourceStats source : job.getSources()) {
+            SourceProcessingStats stats = new SourceProcessingStats();
+            stats.setFileProcessingStatus(fileStatus);
+            stats.setSourceName(source.getSourceName());
+            stats.setTotalRows(source.getTotalRows().get());
+            stats.setProcessedRows(source.getProcessedRows().get());
+            stats.setFailedRows(source.getFailedRows().get());
+            stats.setDuplicateRows(source.getDuplicateRows().get());
+            stats.setDurationMillis(source.getDurationMillis());
+            sourceStats.add(stats);
+        }
+        sourceProcessingStatsRepository.saveAll(sourceStats);
+        saveColumnSketches(fileStatus.getId(), job.getColumnSketches());
+    }
+
+    /**
+     * Stores the column sketches of a file, replacing earlier ones; its processing stats must exist.
+     */
+    public void saveColumnSketches(Long fileId, ColumnSketches sketches) {
+        processingStatsJdbcRepository.updateColumnSketches(fileId, sketches.toByteArray());
+    }
+
+    /**
+     * Merges more rows into the column sketches of a file that is ingested a batch at a time,
+     * creating its processing stats if this is the first batch.
+     */
+    public void mergeColumnSketches(FileProcessingStatus fileStatus, ColumnSketches sketches) {
+        byte[] stored = processingStatsJdbcRepository.findColumnSketches(fileStatus.getId());
+        ColumnSketches merged = stored != null ? ColumnSketches.fromByteArray(stored) : new ColumnSketches();
+        merged.merge(sketches);
+        if (!processingStatsJdbcRepository.updateColumnSketches(fileStatus.getId(), merged.toByteArray())) {
+            updateProcessingStats(fileStatus, 0, 0, 0, 0);
+            processingStatsJdbcRepository.updateColumnSketches(fileStatus.getId(), merged.toByteArray());
+        }
+    }
+
+    public List<SourceProcessingStats> getSourceStatsByFileId(Long fileId) {
+        return sourceProcessingStatsRepository.findByFileProcessingStatusIdOrderByIdAsc(fileId);
+    }
+
     public Optional<FileProcessingStatus> getFileStatusById(Long fileId) {
         return fileProcessingStatusRepository.findById(fileId);
     }
@@ -0,0 +1,498 @@
+package com.example.dataprocessor.service;
+
+import com.example.dataprocessor.model.FileProcessingStatus;
+import com.example.dataprocessor.repository.FollowedFileJdbcRepository;
+import com.example.dataprocessor.repository.SalesDataJdbcRepository;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Incremental ingestion of CSV files that keep growing, such as a point-of-sale feed appended to all day.
+ * <p>
+ * Each followed file has a durable checkpoint: the byte offset of the first record not ingested yet. Every
+ * poll ingests the complete records appended since, in batches of at most max-batch-mb, under the file's
+ * header line, and moves the checkpoint past each batch once its rows are written. A record still being
+ * written (no newline yet, or one inside an open quoted field) waits for the next poll. All batches of a
+ * file count towards one upload.
+ * <p>
+ * A file that shrank below its checkpoint was truncated and is followed again from its start. A file
+ * replaced by another one (rotation, told apart by its inode) is too, after the lines appended to the old
+ * one since the last poll are read through the channel still open on it. Lines appended between the last
+ * poll and a truncation are lost, as they are for tail -F.
+ * <p>
+ * A batch that was interrupted before its checkpoint (the node died, the database went away) is rolled
+ * back by the next poll, by deleting the rows of the file written after the batch started, and then
+ * ingested again. Rejected rows of the interrupted batch are recorded a second time. Nodes that share the
+ * database take a lease on each followed file, so only one of them polls it at a time; a heartbeat renews
+ * it while a batch is written, and every chunk of the batch re-checks it before it commits.
+ */
+@Service
+public class FollowService {
+
+    private static final Logger logger = LoggerFactory.getLogger(FollowService.class);
+
+    private static final long MB = 1024L * 1024;
+    // How much of the head of a file is previewed to make sure it has a header row
+    private static final int HEADER_PREVIEW_BYTES = 64 * 1024;
+    private static final int SCAN_BUFFER_SIZE = 64 * 1024;
+
+    @Autowired
+    private FollowedFileJdbcRepository followedFileJdbcRepository;
+
+    @Autowired
+    private SalesDataJdbcRepository salesDataJdbcRepository;
+
+    @Autowired
+    private FileProcessorService fileProcessorService;
+
+    @Autowired
+    private FileTrackerService fileTrackerService;
+
+    @Autowired
+    private WorkUnitService workUnitService;
+
+    @Autowired
+    @Qualifier("taskExecutor")
+    private ExecutorService taskExecutor;
+
+    @Value("${dataprocessor.follow.enabled:false}")
+    private boolean enabled;
+
+    // Only files under this directory can be followed; blank allows none
+    @Value("${dataprocessor.follow.allowed-dir:}")
+    private String allowedDir;
+
+    @Value("${dataprocessor.follow.max-batch-mb:16}")
+    private long maxBatchMb;
+
+    @Value("${dataprocessor.follow.lease-ms:60000}")
+    private long leaseMillis;
+
+    @Value("${dataprocessor.follow.cleanup-batch-size:1000}")
+    private int cleanupBatchSize;
+
+    // Followed files being polled on this node right now
+    private final Set<Long> polling = ConcurrentHashMap.newKeySet();
+
+    // Leases of the followed files this node is polling, renewed by the heartbeat
+    private final Map<Long, HeldLease> leases = new ConcurrentHashMap<>();
+
+    private static final class HeldLease {
+        volatile boolean lost;
+    }
+
+    // The file each follow read last, kept open so the lines appended to it just before a rotation can
+    // still be read after it was renamed away
+    private final Map<Long, OpenFile> openFiles = new ConcurrentHashMap<>();
+
+    private static final class OpenFile {
+        final FileChannel channel;
+        final String fileKey;
+
+        OpenFile(FileChannel channel, String fileKey) {
+            this.channel = channel;
+            this.fileKey = fileKey;
+        }
+    }
+
+    // Why a followed file is read again from its start
+    enum Restart {
+        NONE, ROTATED, TRUNCATED
+    }
+
+    /**
+     * Starts following a CSV file from its first byte. The file does not need to exist yet.
+     *
+     * @throws IllegalArgumentException If the path is outside of allowed-dir, not a CSV, or already followed.
+     * @throws IllegalStateException If follow mode is disabled.
+     */
+    public FollowedFileJdbcRepository.FollowedFile follow(String path, IngestionMode mode) {
+        if (!enabled) {
+            throw new IllegalStateException("Follow mode is disabled (dataprocessor.follow.enabled)");
+        }
+        if (path == null || path.isBlank()) {
+            throw new IllegalArgumentException("path is required");
+        }
+        Path file = Paths.get(path).toAbsolutePath().normalize();
+        if (allowedDir == null || allowedDir.isBlank() || !file.startsWith(Paths.get(allowedDir).toAbsolutePath().normalize())) {
+            throw new IllegalArgumentException("Only files under dataprocessor.follow.allowed-dir can be followed");
+        }
+        String fileName = file.getFileName().toString();
+        if (!fileName.toLowerCase(Locale.ROOT).endsWith(".csv")) {
+            throw new IllegalArgumentException("Only CSV files can be followed");
+        }
+        if (followedFileJdbcRepository.isActivePath(file.toString())) {
+            throw new IllegalArgumentException("Already following " + file);
+        }
+        FileProcessingStatus status = fileTrackerService.createFileProcessingStatus(fileName, file.toString(), null,
+            "PROCESSING", "Following " + file);
+        long id = followedFileJdbcRepository.create(status.getId(), file.toString(), mode != null ? mode.name() : null);
+        logger.info("Following {} as file {}", file, status.getId());
+        submitPoll(id);
+        return followedFileJdbcRepository.findById(id);
+    }
+
+    /**
+     * Stops following a file and completes its upload with the rows ingested so far.
+     *
+     * @return false if the file is unknown or no longer followed.
+     */
+    public boolean unfollow(long id) {
+        FollowedFileJdbcRepository.FollowedFile followed = followedFileJdbcRepository.findById(id);
+        if (followed == null || !followedFileJdbcRepository.deactivate(id, null)) {
+            return false;
+        }
+        closeOpenFile(id);
+        String message = String.format("Stopped following after %d batches. Processed %d rows, %d failed rows.",
+            followed.getBatches(), followed.getRowsProcessed(), followed.getRowsFailed());
+        finishUpload(followed, "COMPLETED", message);
+        logger.info("Stopped following {} (file {})", followed.getPath(), followed.getFileId());
+        return true;
+    }
+
+    public List<FollowedFileJdbcRepository.FollowedFile> getFollowedFiles() {
+        return followedFileJdbcRepository.findAll();
+    }
+
+    public FollowedFileJdbcRepository.FollowedFile getFollowedFile(long id) {
+        return followedFileJdbcRepository.findById(id);
+    }
+
+    /**
+     * Whether the upload is a followed file still growing, which the retention purge must leave alone.
+     */
+    public boolean isFollowed(Long fileId) {
+        return followedFileJdbcRepository.isActiveFile(fileId);
+    }
+
+    /**
+     * Removes the checkpoints of an upload, for the retention purge.
+     */
+    public void deleteFollowedFiles(Long fileId) {
+        followedFileJdbcRepository.deleteByFileId(fileId);
+    }
+
+    /**
+     * Polls every followed file on the job pool, one poll per file at a time. The polls themselves decide,
+     * through the lease, whether this node is the one to read the file.
+     */
+    @Scheduled(fixedDelayString = "${dataprocessor.follow.poll-interval-ms:5000}")
+    public void pollAll() {
+        if (!enabled) {
+            return;
+        }
+        Set<Long> active = new HashSet<>(followedFileJdbcRepository.findActiveIds());
+        for (Long id : active) {
+            submitPoll(id);
+        }
+        for (Long id : openFiles.keySet()) {
+            if (!active.contains(id) && !polling.contains(id)) {
+                closeOpenFile(id);
+            }
+        }
+    }
+
+    /**
+     * Heartbeat: renews the lease of every followed file polled here, so a batch that takes longer than
+     * lease-ms keeps it. A batch whose lease could not be renewed stops at its next read.
+     */
+    @Scheduled(fixedDelayString = "${dataprocessor.follow.heartbeat-interval-ms:10000}")
+    public void renewLeases() {
+        String nodeId = workUnitService.getNodeId();
+        LocalDateTime expiresAt = LocalDateTime.now().plus(Duration.ofMillis(leaseMillis));
+        for (Map.Entry<Long, HeldLease> entry : leases.entrySet()) {
+            try {
+                if (!followedFileJdbcRepository.renewLease(entry.getKey(), nodeId, expiresAt)) {
+                    entry.getValue().lost = true;
+                    logger.warn("Lost the lease on followed file {}; stopping its batch", entry.getKey());
+                }
+            } catch (RuntimeException e) {
+                // The batch goes on: the chunk fence stops it if the lease really lapses meanwhile
+                logger.warn("Could not renew the lease on followed file {}: {}", entry.getKey(), e.getMessage());
+            }
+        }
+    }
+
+    @PreDestroy
+    void closeOpenFiles() {
+        for (Long id : openFiles.keySet()) {
+            closeOpenFile(id);
+        }
+    }
+
+    private void submitPoll(long id) {
+        if (!polling.add(id)) {
+            return;
+        }
+        try {
+            taskExecutor.execute(() -> {
+                try {
+                    poll(id);
+                } finally {
+                    polling.remove(id);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            polling.remove(id);
+        }
+    }
+
+    private void poll(long id) {
+        String nodeId = workUnitService.getNodeId();
+        LocalDateTime now = LocalDateTime.now();
+        FollowedFileJdbcRepository.FollowedFile followed = followedFileJdbcRepository.tryLease(id, nodeId, now, now.plus(Duration.ofMillis(leaseMillis)));
+        if (followed == null) {
+            // Unfollowed, or polled by another node; its open file here is stale either way
+            closeOpenFile(id);
+            return;
+        }
+        HeldLease lease = new HeldLease();
+        leases.put(id, lease);
+        try {
+            if (followed.getPendingEndOffset() != null) {
+                rollBackBatch(followed, nodeId);
+            }
+            catchUp(followed, nodeId, lease);
+        } catch (Exception e) {
+            if (e instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
+            // The checkpoint has not moved; the next poll starts over from it
+            logger.warn("Could not ingest the new lines of {}: {}", followed.getPath(), e.getMessage());
+            closeOpenFile(id);
+            followedFileJdbcRepository.recordError(id, nodeId, e.getMessage());
+        } finally {
+            leases.remove(id);
+        }
+    }
+
+    private void catchUp(FollowedFileJdbcRepository.FollowedFile followed, String nodeId, HeldLease lease) throws Exception {
+        long id = followed.getId();
+        Path file = Paths.get(followed.getPath());
+        OpenFile open = openFiles.get(id);
+        boolean exists = Files.exists(file);
+        // Null where the file system has no inodes; then only truncation can be told
+        String fileKey = exists ? fileKey(file) : null;
+
+        if (open != null && (!exists || (fileKey != null && !Objects.equals(open.fileKey, fileKey)))) {
+            // Renamed away or replaced: the lines appended to it since the last poll are still to be read
+            if (Objects.equals(open.fileKey, followed.getFileKey())
+                    && !ingestAvailable(followed, open.channel, followed.getByteOffset(), nodeId, lease)) {
+                return;
+            }
+            closeOpenFile(id);
+            open = null;
+            // Re-read for the counters and the lease of the drained batches
+            followed = followedFileJdbcRepository.findById(id);
+            if (followed == null || !followed.isActive()) {
+                return;
+            }
+        }
+        if (!exists) {
+            // Not there yet, or not again after a rotation
+            return;
+        }
+
+        if (open == null) {
+            open = new OpenFile(FileChannel.open(file, StandardOpenOption.READ), fileKey);
+            openFiles.put(id, open);
+        }
+        long offset = followed.getByteOffset();
+        Restart restart = restartReason(followed.getFileKey(), offset, fileKey, open.channel.size());
+        if (restart != Restart.NONE || (followed.getFileKey() == null && fileKey != null)) {
+            if (!followedFileJdbcRepository.restart(id, nodeId, fileKey, restart != Restart.NONE)) {
+                return;
+            }
+            if (restart != Restart.NONE) {
+                logger.info("{} was {}; following it again from the start", file, restart == Restart.ROTATED ? "rotated" : "truncated");
+                offset = 0;
+            }
+        }
+        ingestAvailable(followed, open.channel, offset, nodeId, lease);
+    }
+
+    /**
+     * Ingests the complete records after offset, one checkpointed batch at a time.
+     *
+     * @return false if the lease was lost or the file turned out not to be followable.
+     */
+    private boolean ingestAvailable(FollowedFileJdbcRepository.FollowedFile followed, FileChannel channel, long offset, String nodeId,
+                                    HeldLease lease) throws Exception {
+        long id = followed.getId();
+        IngestionMode mode = followed.getIngestionMode() != null ? IngestionMode.valueOf(followed.getIngestionMode()) : null;
+        String fileName = Paths.get(followed.getPath()).getFileName().toString();
+        long rowsProcessed = followed.getRowsProcessed();
+        long rowsFailed = followed.getRowsFailed();
+        long end;
+        while ((end = lastLineEnd(channel, offset, Math.max(1, maxBatchMb) * MB)) > offset) {
+            if (offset == 0 && !hasHeaderRow(channel, fileName)) {
+                // Every later batch is parsed under the first line, which would then be a data row
+                followedFileJdbcRepository.deactivate(id, "No header row; only CSV files with a header can be followed");
+                finishUpload(followed, "FAILED", "Stopped following " + followed.getPath() + ": it has no header row");
+                closeOpenFile(id);
+                return false;
+            }
+            if (lease.lost || !followedFileJdbcRepository.beginBatch(id, nodeId, end, salesDataJdbcRepository.findMaxId())) {
+                return false;
+            }
+            IngestionJob job = fileProcessorService.ingestRange(channel, fileName, followed.getFileId(), mode, null, offset, end,
+                () -> !lease.lost, () -> followedFileJdbcRepository.holdsLease(id, nodeId));
+            int processed = job.getProcessedRows().get();
+            int failed = job.getFailedRows().get();
+            if (!followedFileJdbcRepository.commitBatch(id, nodeId, end, processed, failed,
+                    LocalDateTime.now().plus(Duration.ofMillis(leaseMillis)))) {
+                // Unfollowed meanwhile, or taken over; a new owner rolls the batch back before going on
+                logger.warn("Lost the lease on {} while ingesting a batch", followed.getPath());
+                return false;
+            }
+            rowsProcessed += processed;
+            rowsFailed += failed;
+            mergeColumnSketches(followed.getFileId(), job.getColumnSketches());
+            fileTrackerService.reportProgress(followed.getFileId(), saturatedInt(rowsProcessed), saturatedInt(rowsFailed));
+            logger.debug("Ingested bytes {} to {} of {}: {} rows", offset, end, followed.getPath(), processed);
+            offset = end;
+        }
+        return true;
+    }
+
+    private void mergeColumnSketches(long fileId, ColumnSketches sketches) {
+        try {
+            fileTrackerService.getFileStatusById(fileId).ifPresent(fileStatus -> fileTrackerService.mergeColumnSketches(fileStatus, sketches));
+        } catch (RuntimeException e) {
+            // The batch is checkpointed already; its rows only go missing from the estimates
+            logger.warn("Could not merge the column sketches of file {}: {}", fileId, e.getMessage());
+        }
+    }
+
+    private void rollBackBatch(FollowedFileJdbcRepository.FollowedFile followed, String nodeId) {
+        Long afterId = followed.getPendingAfterRowId() != null ? followed.getPendingAfterRowId() : 0L;
+        long batches = 0;
+        while ((afterId = salesDataJdbcRepository.deleteNextBatchByFileId(followed.getFileId(), afterId, cleanupBatchSize)) != null) {
+            batches++;
+        }
+        followedFileJdbcRepository.clearPending(followed.getId(), nodeId);
+        logger.info("Rolled back an interrupted batch of {} ({} delete batches)", followed.getPath(), batches);
+    }
+
+    private void finishUpload(FollowedFileJdbcRepository.FollowedFile followed, String status, String message) {
+        fileTrackerService.updateFileStatus(followed.getFileId(), status, message);
+        fileTrackerService.getFileStatusById(followed.getFileId()).ifPresent(fileStatus -> fileTrackerService.updateProcessingStats(
+            fileStatus, saturatedInt(followed.getRowsProcessed() + followed.getRowsFailed()), saturatedInt(followed.getRowsProcessed()),
+            saturatedInt(followed.getRowsFailed()), Duration.between(followed.getCreatedAt(), LocalDateTime.now()).toSeconds()));
+    }
+
+    private boolean hasHeaderRow(FileChannel channel, String fileName) throws IOException {
+        ByteBuffer head = ByteBuffer.allocate((int) Math.min(HEADER_PREVIEW_BYTES, channel.size()));
+        // Positional reads leave the channel position alone
+        while (head.hasRemaining()) {
+            if (channel.read(head, head.position()) <= 0) {
+                break;
+            }
+        }
+        try {
+            FilePreview preview = fileProcessorService.preview(new ByteArrayInputStream(head.array(), 0, head.position()), fileName, -1, 1);
+            return !preview.getSources().isEmpty() && preview.getSources().get(0).isHasHeader();
+        } catch (Exception e) {
+            // Followed anyway: a head the preview cannot read fails the first batch, which records the error
+            return true;
+        }
+    }
+
+    /**
+     * Whether the file now at the followed path must be read from its start: it is another file than the
+     * checkpoint was taken on, or shorter than the checkpoint. Without file keys only truncation can be told.
+     */
+    static Restart restartReason(String checkpointFileKey, long checkpointOffset, String fileKey, long size) {
+        if (checkpointFileKey != null && fileKey != null && !checkpointFileKey.equals(fileKey)) {
+            return Restart.ROTATED;
+        }
+        return size < checkpointOffset ? Restart.TRUNCATED : Restart.NONE;
+    }
+
+    /**
+     * The end of the last complete record that starts at or after from, looking at most maxBytes ahead; from
+     * itself if no record is complete yet. A single record longer than maxBytes is taken whole. from is a
+     * record boundary (the start of the file or a checkpoint), so the file is scanned forward from there with
+     * the quote state tracked as in {@link WorkUnitService#splitAtRecords}: a newline inside a quoted field
+     * does not end a record.
+     */
+    static long lastLineEnd(FileChannel channel, long from, long maxBytes) throws IOException {
+        long size = channel.size();
+        long limit = from + maxBytes;
+        long end = from;
+        boolean quoted = false;
+        ByteBuffer buffer = ByteBuffer.allocate(SCAN_BUFFER_SIZE);
+        for (long position = from; position < size; ) {
+            // Bytes appended after size was taken wait for the next poll
+            buffer.clear().limit((int) Math.min(SCAN_BUFFER_SIZE, size - position));
+            int read = channel.read(buffer, position);
+            if (read <= 0) {
+                break;
+            }
+            for (int i = 0; i < read; i++) {
+                byte b = buffer.get(i);
+                if (b == '"') {
+                    quoted = !quoted;
+                } else if (b == '\n' && !quoted) {
+                    long recordEnd = position + i + 1;
+                    if (recordEnd > limit && end > from) {
+                        return end;
+                    }
+                    end = recordEnd;
+                    if (end >= limit) {
+                        return end;
+                    }
+                }
+            }
+            position += read;
+        }
+        return end;
+    }
+
+    private static String fileKey(Path file) throws IOException {
+        Object key = Files.readAttributes(file, BasicFileAttributes.class).fileKey();
+        return key != null ? key.toString() : null;
+    }
+
+    private void closeOpenFile(long id) {
+        OpenFile open = openFiles.remove(id);
+        if (open != null) {
+            try {
+                open.channel.close();
+            } catch (IOException e) {
+                logger.debug("Could not close followed file {}: {}", id, e.getMessage());
+            }
+        }
+    }
+
+    private static int saturatedInt(long value) {
+        return (int) Math.min(Integer.MAX_VALUE, value);
+    }
+}
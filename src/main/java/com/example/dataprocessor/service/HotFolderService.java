@@ -0,0 +1,456 @@
+package com.example.dataprocessor.service;
+
+import com.example.dataprocessor.model.FileProcessingStatus;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Ingests files dropped into a local directory, reading them straight from disk instead of through an
+ * HTTP upload.
+ * <p>
+ * A WatchService reports new and changed files as candidates; where it is unavailable (or misses events,
+ * as on some network mounts) the directory is rescanned on a timer. A candidate is ready once its marker
+ * file ({@code <name><marker-suffix>}) exists or, unless a marker is required, once its size and
+ * modification time have not changed for stable-ms. A ready file is claimed by an atomic move into this
+ * instance's own {@code .processing/<node-id>} directory, so instances sharing the folder never take the same
+ * file, registered as a FileProcessingStatus and streamed through the regular ingestion. Afterwards it is
+ * moved to the archive directory, or to the error directory with a .error note, prefixed by its file id.
+ * <p>
+ * An instance holds a lock on {@code .processing/<node-id>.lock} while it runs. A second instance that
+ * resolves the same node id, say on the same host without one configured, finds the lock taken and does
+ * not watch the folder, instead of recovering the first one's files in flight.
+ */
+@Service
+public class HotFolderService {
+
+    private static final Logger logger = LoggerFactory.getLogger(HotFolderService.class);
+
+    private static final String PROCESSING_DIR = ".processing";
+    private static final int READ_BUFFER_SIZE = 256 * 1024;
+
+    @Autowired
+    private FileProcessorService fileProcessorService;
+
+    @Autowired
+    private FileTrackerService fileTrackerService;
+
+    @Autowired
+    @Qualifier("taskExecutor")
+    private ExecutorService taskExecutor;
+
+    @Value("${dataprocessor.hot-folder.enabled:false}")
+    private boolean enabled;
+
+    @Value("${dataprocessor.hot-folder.dir:${java.io.tmpdir}/dataprocessor-inbox}")
+    private String inboxDir;
+
+    // Blank uses the archive and error subdirectories of the inbox
+    @Value("${dataprocessor.hot-folder.archive-dir:}")
+    private String archiveDirSetting;
+
+    @Value("${dataprocessor.hot-folder.error-dir:}")
+    private String errorDirSetting;
+
+    @Value("${dataprocessor.hot-folder.marker-suffix:.done}")
+    private String markerSuffix;
+
+    @Value("${dataprocessor.hot-folder.require-marker:false}")
+    private boolean requireMarker;
+
+    @Value("${dataprocessor.hot-folder.stable-ms:5000}")
+    private long stableMillis;
+
+    // Full rescans while the WatchService works; without it every check rescans
+    @Value("${dataprocessor.hot-folder.rescan-interval-ms:60000}")
+    private long rescanIntervalMillis;
+
+    @Value("${dataprocessor.hot-folder.max-concurrent-files:2}")
+    private int maxConcurrentFiles;
+
+    // Names this instance's claim directory, so it must survive restarts; blank uses the host name, which
+    // only one running instance per host can then hold
+    @Value("${dataprocessor.hot-folder.node-id:${dataprocessor.cluster.node-id:}}")
+    private String nodeIdSetting;
+
+    private Path inbox;
+    private Path processingDir;
+    private Path archiveDir;
+    private Path errorDir;
+    private FileChannel claimLockChannel;
+
+    private volatile WatchService watchService;
+    private volatile boolean started;
+    private volatile long lastScan;
+
+    // Files seen in the inbox and not yet claimed, with what they looked like when last checked
+    private final Map<Path, Candidate> candidates = new ConcurrentHashMap<>();
+    // Files claimed by this instance and still being ingested
+    private final Set<Path> inFlight = ConcurrentHashMap.newKeySet();
+
+    private static final class Candidate {
+        long size = -1;
+        long modified = -1;
+        long unchangedSince;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            inbox = Paths.get(inboxDir).toAbsolutePath();
+            processingDir = inbox.resolve(PROCESSING_DIR).resolve(resolveNodeId());
+            archiveDir = archiveDirSetting.isBlank() ? inbox.resolve("archive") : Paths.get(archiveDirSetting).toAbsolutePath();
+            errorDir = errorDirSetting.isBlank() ? inbox.resolve("error") : Paths.get(errorDirSetting).toAbsolutePath();
+            Files.createDirectories(processingDir);
+            Files.createDirectories(archiveDir);
+            Files.createDirectories(errorDir);
+            if (!lockClaimDirectory()) {
+                logger.error("Claim directory {} is held by another running instance; watcher not started. "
+                    + "Give each instance its own dataprocessor.hot-folder.node-id", processingDir);
+                return;
+            }
+        } catch (IOException e) {
+            logger.error("Hot folder {} is not usable; watcher not started: {}", inboxDir, e.getMessage());
+            return;
+        }
+        recoverInterrupted();
+        startWatching();
+        started = true;
+        logger.info("Watching hot folder {} ({})", inbox, watchService != null ? "WatchService" : "polling");
+    }
+
+    @PreDestroy
+    public void stop() {
+        WatchService service = watchService;
+        watchService = null;
+        if (service != null) {
+            try {
+                service.close();
+            } catch (IOException e) {
+                logger.warn("Could not close the hot folder watch service: {}", e.getMessage());
+            }
+        }
+        if (claimLockChannel != null) {
+            try {
+                // Releases the lock
+                claimLockChannel.close();
+            } catch (IOException e) {
+                logger.warn("Could not release the lock on {}: {}", processingDir, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Locks this instance's claim directory for as long as the process runs. The lock goes with the
+     * process, so a crashed instance leaves none behind.
+     *
+     * @return false if another running instance holds it.
+     */
+    private boolean lockClaimDirectory() throws IOException {
+        Path lockFile = processingDir.resolveSibling(processingDir.getFileName() + ".lock");
+        FileChannel channel = FileChannel.open(lockFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        FileLock lock;
+        try {
+            lock = channel.tryLock();
+        } catch (OverlappingFileLockException e) {
+            // Held within this JVM, by another application context
+            lock = null;
+        }
+        if (lock == null) {
+            channel.close();
+            return false;
+        }
+        claimLockChannel = channel;
+        return true;
+    }
+
+    /**
+     * Rescans when due, then claims every candidate that has become ready, up to the concurrency limit.
+     */
+    @Scheduled(fixedDelayString = "${dataprocessor.hot-folder.check-interval-ms:1000}")
+    public synchronized void checkCandidates() {
+        if (!started) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        if (watchService == null || now - lastScan >= rescanIntervalMillis) {
+            scanInbox();
+            lastScan = now;
+        }
+        for (Map.Entry<Path, Candidate> entry : candidates.entrySet()) {
+            if (inFlight.size() >= maxConcurrentFiles) {
+                return;
+            }
+            Path file = entry.getKey();
+            if (isReady(file, entry.getValue(), now)) {
+                candidates.remove(file);
+                claim(file);
+            }
+        }
+    }
+
+    private void startWatching() {
+        try {
+            WatchService service = inbox.getFileSystem().newWatchService();
+            inbox.register(service, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+            watchService = service;
+        } catch (IOException | UnsupportedOperationException e) {
+            logger.warn("WatchService unavailable for {}, polling instead: {}", inbox, e.getMessage());
+            return;
+        }
+        Thread watcher = new Thread(this::watchLoop, "hot-folder-watcher");
+        watcher.setDaemon(true);
+        watcher.start();
+    }
+
+    private void watchLoop() {
+        WatchService service;
+        while ((service = watchService) != null) {
+            WatchKey key;
+            try {
+                key = service.take();
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                return;
+            }
+            for (WatchEvent<?> event : key.pollEvents()) {
+                if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                    // Events were dropped; the next check rescans the whole folder
+                    lastScan = 0;
+                    continue;
+                }
+                Path file = inbox.resolve((Path) event.context());
+                offer(file);
+            }
+            if (!key.reset()) {
+                logger.warn("Hot folder {} is no longer watchable, polling instead", inbox);
+                watchService = null;
+                return;
+            }
+        }
+    }
+
+    private void scanInbox() {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(inbox)) {
+            for (Path file : files) {
+                offer(file);
+            }
+        } catch (IOException e) {
+            logger.warn("Could not scan hot folder {}: {}", inbox, e.getMessage());
+        }
+    }
+
+    /**
+     * Tracks a file as a candidate if it is something to ingest. A marker makes its data file a candidate.
+     */
+    private void offer(Path file) {
+        String name = file.getFileName().toString();
+        if (!markerSuffix.isEmpty() && name.endsWith(markerSuffix)) {
+            file = file.resolveSibling(name.substring(0, name.length() - markerSuffix.length()));
+            name = file.getFileName().toString();
+        }
+        // Hidden and partial files are skipped, so writers can use a temporary name and rename when done
+        if (name.startsWith(".") || !fileProcessorService.isSupportedFileName(name) || inFlight.contains(file)) {
+            return;
+        }
+        candidates.computeIfAbsent(file, path -> new Candidate());
+    }
+
+    private boolean isReady(Path file, Candidate candidate, long now) {
+        if (!Files.isRegularFile(file)) {
+            // Gone, or only its marker exists so far; a rescan brings it back if it appears
+            candidates.remove(file);
+            return false;
+        }
+        if (Files.exists(markerFor(file))) {
+            return true;
+        }
+        if (requireMarker) {
+            return false;
+        }
+        long size;
+        long modified;
+        try {
+            size = Files.size(file);
+            modified = Files.getLastModifiedTime(file).toMillis();
+        } catch (IOException e) {
+            return false;
+        }
+        if (size != candidate.size || modified != candidate.modified) {
+            candidate.size = size;
+            candidate.modified = modified;
+            candidate.unchangedSince = now;
+            return false;
+        }
+        return size > 0 && now - candidate.unchangedSince >= stableMillis;
+    }
+
+    /**
+     * Takes a ready file out of the inbox and starts ingesting it. Another instance sharing the folder may
+     * have moved it first; then there is nothing to do.
+     */
+    private void claim(Path file) {
+        Path claimed = processingDir.resolve(file.getFileName());
+        if (Files.exists(claimed)) {
+            // A file of the same name is still being ingested; a rename would replace it
+            candidates.putIfAbsent(file, new Candidate());
+            return;
+        }
+        try {
+            move(file, claimed);
+        } catch (NoSuchFileException | FileAlreadyExistsException e) {
+            return;
+        } catch (IOException e) {
+            logger.warn("Could not claim {} from the hot folder: {}", file, e.getMessage());
+            return;
+        }
+        inFlight.add(file);
+        taskExecutor.execute(() -> {
+            try {
+                ingest(file, claimed);
+            } finally {
+                inFlight.remove(file);
+            }
+        });
+    }
+
+    private void ingest(Path original, Path claimed) {
+        String fileName = claimed.getFileName().toString();
+        Path marker = markerFor(original);
+        FileProcessingStatus status = null;
+        boolean ingesting = false;
+        try {
+            String contentHash = fileTrackerService.computeContentHash(claimed);
+            Optional<FileProcessingStatus> previous = fileTrackerService.findCompletedByContentHash(contentHash);
+            if (previous.isPresent()) {
+                status = fileTrackerService.createFileProcessingStatus(fileName, fileName, contentHash,
+                    "DUPLICATE", "Identical to already processed file ID: " + previous.get().getId());
+                logger.info("Hot folder file {} is identical to file {}; archived without ingesting", fileName, previous.get().getId());
+                finish(status, claimed, marker, archiveDir, null);
+                return;
+            }
+            status = fileTrackerService.createFileProcessingStatus(fileName, fileName, contentHash, "PROCESSING", null);
+            try (InputStream in = new BufferedInputStream(Files.newInputStream(claimed), READ_BUFFER_SIZE)) {
+                ingesting = true;
+                fileProcessorService.processStream(in, fileName, status.getId(), null, null, Files.size(claimed));
+            }
+            finish(status, claimed, marker, archiveDir, null);
+        } catch (Exception e) {
+            if (e instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
+            logger.error("Hot folder file {} failed: {}", fileName, e.getMessage());
+            if (status != null && !ingesting) {
+                // Once ingesting, processStream marks the file as FAILED itself
+                fileTrackerService.updateFileStatus(status.getId(), "FAILED", e.getMessage());
+            }
+            finish(status, claimed, marker, errorDir, e.getMessage() != null ? e.getMessage() : e.toString());
+        }
+    }
+
+    /**
+     * Moves a handled file (and its marker) out of the way, prefixed with its file id so repeated drops of
+     * the same name do not collide. With an error message, a .error note is written next to it.
+     */
+    private void finish(FileProcessingStatus status, Path claimed, Path marker, Path targetDir, String errorMessage) {
+        String prefix = status != null ? status.getId() + "-" : System.currentTimeMillis() + "-";
+        Path target = targetDir.resolve(prefix + claimed.getFileName());
+        try {
+            move(claimed, target);
+            Files.deleteIfExists(marker);
+            if (errorMessage != null) {
+                Files.writeString(target.resolveSibling(target.getFileName() + ".error"), errorMessage, StandardCharsets.UTF_8);
+            }
+        } catch (IOException e) {
+            logger.error("Could not move {} to {}: {}", claimed, targetDir, e.getMessage());
+        }
+    }
+
+    /**
+     * Files left in this instance's claim directory by a previous run were cut off mid-ingestion; they go
+     * to the error directory rather than being ingested a second time on top of their partial rows, and
+     * their status, still PROCESSING, becomes FAILED. The claim directory is locked, so no running instance
+     * is ingesting them. Claims of other instances are theirs to recover, even while they are down.
+     */
+    private void recoverInterrupted() {
+        String message = "Ingestion was interrupted by a restart; check the file status before dropping it again.";
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(processingDir)) {
+            for (Path file : files) {
+                String fileName = file.getFileName().toString();
+                // Registered under its name and content hash; a restart before that left no status
+                fileTrackerService.findProcessing(fileName, fileTrackerService.computeContentHash(file))
+                    .ifPresent(status -> fileTrackerService.updateFileStatus(status.getId(), "FAILED", message));
+                Path target = errorDir.resolve(System.currentTimeMillis() + "-" + fileName);
+                move(file, target);
+                Files.writeString(target.resolveSibling(target.getFileName() + ".error"), message, StandardCharsets.UTF_8);
+                logger.warn("Hot folder file {} was interrupted by a restart; moved to {}", fileName, errorDir);
+            }
+        } catch (IOException e) {
+            logger.warn("Could not check {} for interrupted files: {}", processingDir, e.getMessage());
+        }
+    }
+
+    private String resolveNodeId() {
+        String nodeId = nodeIdSetting.trim();
+        if (nodeId.isEmpty()) {
+            try {
+                nodeId = InetAddress.getLocalHost().getHostName();
+            } catch (UnknownHostException e) {
+                nodeId = "unknown-host";
+            }
+        }
+        // Used as a directory name
+        return nodeId.replaceAll("[^A-Za-z0-9._-]", "_");
+    }
+
+    private Path markerFor(Path file) {
+        return file.resolveSibling(file.getFileName() + markerSuffix);
+    }
+
+    private static void move(Path source, Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            // Archive or error directory on another file system
+            Files.move(source, target);
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package com.example.dataprocessor.service;
+
+/**
+ * HyperLogLog distinct-count estimator with 2^precision one-byte registers; the standard error is about
+ * 1.04 / sqrt(2^precision), 1.6% at precision 12 (4 KB). Two sketches of the same precision merge by
+ * taking the larger register, so the estimate of a merge is that of the union of their inputs.
+ * Callers supply a well-mixed 64-bit hash per value (see {@link #hash(String)}).
+ * Not thread-safe: callers are expected to synchronize.
+ */
+public class HyperLogLog {
+
+    private final int precision;
+    private final byte[] registers;
+
+    public HyperLogLog(int precision) {
+        this(precision, new byte[1 << checkPrecision(precision)]);
+    }
+
+    private HyperLogLog(int precision, byte[] registers) {
+        this.precision = precision;
+        this.registers = registers;
+    }
+
+    /**
+     * Restores a sketch from the byte form produced by {@link #toByteArray()}.
+     */
+    public static HyperLogLog fromByteArray(byte[] data) {
+        int precision = checkPrecision(data[0]);
+        byte[] registers = new byte[1 << precision];
+        if (data.length != registers.length + 1) {
+            throw new IllegalArgumentException("Expected " + (registers.length + 1) + " bytes, got " + data.length);
+        }
+        System.arraycopy(data, 1, registers, 0, registers.length);
+        return new HyperLogLog(precision, registers);
+    }
+
+    /**
+     * FNV-1a over the characters, then the MurmurHash3 finalizer so every bit depends on every input bit.
+     */
+    public static long hash(String value) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < value.length(); i++) {
+            hash ^= value.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return mix(hash);
+    }
+
+    public static long hash(long value) {
+        return mix(value ^ 0x9e3779b97f4a7c15L);
+    }
+
+    public void add(long hash) {
+        int index = (int) (hash >>> (64 - precision));
+        // The guard bit caps the rank for hashes whose remaining bits are all zero
+        long remaining = (hash << precision) | (1L << (precision - 1));
+        byte rank = (byte) (Long.numberOfLeadingZeros(remaining) + 1);
+        if (rank > registers[index]) {
+            registers[index] = rank;
+        }
+    }
+
+    public void merge(HyperLogLog other) {
+        if (other.precision != precision) {
+            throw new IllegalArgumentException("Cannot merge precision " + other.precision + " into " + precision);
+        }
+        for (int i = 0; i < registers.length; i++) {
+            if (other.registers[i] > registers[i]) {
+                registers[i] = other.registers[i];
+            }
+        }
+    }
+
+    public long estimate() {
+        double m = registers.length;
+        double sum = 0;
+        int zeros = 0;
+        for (byte register : registers) {
+            sum += Math.scalb(1.0, -register);
+            if (register == 0) {
+                zeros++;
+            }
+        }
+        double alpha = 0.7213 / (1 + 1.079 / m);
+        double estimate = alpha * m * m / sum;
+        // Linear counting is more accurate while many registers are still empty
+        if (estimate <= 2.5 * m && zeros > 0) {
+            estimate = m * Math.log(m / zeros);
+        }
+        return Math.round(estimate);
+    }
+
+    public byte[] toByteArray() {
+        byte[] data = new byte[registers.length + 1];
+        data[0] = (byte) precision;
+        System.arraycopy(registers, 0, data, 1, registers.length);
+        return data;
+    }
+
+    public int getPrecision() {
+        return precision;
+    }
+
+    private static int checkPrecision(int precision) {
+        if (precision < 4 || precision > 18) {
+            throw new IllegalArgumentException("HyperLogLog precision must be between 4 and 18: " + precision);
+        }
+        return precision;
+    }
+
+    private static long mix(long k) {
+        k ^= k >>> 33;
+        k *= 0xff51afd7ed558ccdL;
+        k ^= k >>> 33;
+        k *= 0xc4ceb9fe1a85ec53L;
+        k ^= k >>> 33;
+        return k;
+    }
+}
@@ -0,0 +1,299 @@
+package com.example.dataprocessor.service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+import java.util.function.LongSupplier;
+
+/**
+ * Per-file state of one ingestion run: counters, the reject sink and the chunks still in flight.
+ * One instance is shared by every source (zip member, sheet) of the same upload, so concurrent
+ * uploads no longer share counters.
+ */
+public class IngestionJob {
+
+    private final Long fileId;
+    private final IngestionMode mode;
+    private final List<SalesColumn> naturalKey;
+    private final RejectSink rejectSink;
+    private final long startTime = System.currentTimeMillis();
+
+    private final AtomicInteger totalRows = new AtomicInteger();
+    private final AtomicInteger processedRows = new AtomicInteger();
+    private final AtomicInteger failedRows = new AtomicInteger();
+    private final AtomicInteger duplicateRows = new AtomicInteger();
+    // Every chunk merges the sketch of its valid rows in; guarded by itself
+    private final ColumnSketches columnSketches = new ColumnSketches();
+
+    // Bounds parsed-but-unwritten chunks so a fast reader cannot run ahead of the database
+    private final Semaphore inFlightChunks;
+    private final List<CompletableFuture<Void>> pending = new ArrayList<>();
+    private final List<SourceStats> sources = Collections.synchronizedList(new ArrayList<>());
+
+    // Lower-cased sheet names or 0-based indexes to ingest; null means every sheet
+    private final Set<String> sheetFilter;
+
+    private volatile Stage stage = Stage.PARSING;
+    // Bytes of the (possibly compressed) input consumed so far and its total size, for progress; -1 if unknown
+    private volatile LongSupplier bytesRead = () -> -1;
+    private volatile long expectedBytes = -1;
+    // Set when the job ingests one leased work unit of a larger file; stamped on every row it writes
+    private volatile Long workUnitId;
+    // Checked inside every chunk transaction before it commits; false rolls the chunk back. Null for none.
+    private volatile BooleanSupplier writeFence;
+    // Set when the job ingests only part of a file (a work unit, the new lines of a followed file);
+    // its counters are then settled by the caller instead of being reported as the file's progress
+    private volatile boolean partial;
+    // Set once the job failed: chunks not started yet are skipped instead of written
+    private volatile boolean cancelled;
+
+    /**
+     * Where a job is in its lifecycle, as reported to progress subscribers.
+     */
+    public enum Stage {
+        PARSING,    // Reading the input; chunks are written concurrently
+        WRITING,    // Input fully read; waiting for the remaining chunks
+        FINALIZING, // Every row written; saving stats
+        COMPLETED,
+        FAILED
+    }
+
+    public IngestionJob(Long fileId, IngestionMode mode, List<SalesColumn> naturalKey, RejectSink rejectSink, int maxInFlightChunks, Set<String> sheetFilter) {
+        this.fileId = fileId;
+        this.mode = mode;
+        this.naturalKey = naturalKey;
+        this.rejectSink = rejectSink;
+        this.inFlightChunks = new Semaphore(maxInFlightChunks);
+        this.sheetFilter = sheetFilter;
+    }
+
+    /**
+     * Row counts and timing of one source of the job: a CSV file, a zip member or a workbook sheet.
+     */
+    public static class SourceStats {
+        private final String sourceName;
+        private final long startTime = System.currentTimeMillis();
+        private final AtomicInteger totalRows = new AtomicInteger();
+        private final AtomicInteger processedRows = new AtomicInteger();
+        private final AtomicInteger failedRows = new AtomicInteger();
+        private final AtomicInteger duplicateRows = new AtomicInteger();
+        private final AtomicLong lastWriteTime = new AtomicLong(startTime);
+
+        SourceStats(String sourceName) {
+            this.sourceName = sourceName;
+        }
+
+        public String getSourceName() {
+            return sourceName;
+        }
+
+        public AtomicInteger getTotalRows() {
+            return totalRows;
+        }
+
+        public AtomicInteger getProcessedRows() {
+            return processedRows;
+        }
+
+        public AtomicInteger getFailedRows() {
+            return failedRows;
+        }
+
+        public AtomicInteger getDuplicateRows() {
+            return duplicateRows;
+        }
+
+        /**
+         * Records that a chunk of this source finished writing.
+         */
+        public void chunkWritten() {
+            lastWriteTime.accumulateAndGet(System.currentTimeMillis(), Math::max);
+        }
+
+        /**
+         * Time from the start of reading until the last chunk was written.
+         */
+        public long getDurationMillis() {
+            return lastWriteTime.get() - startTime;
+        }
+    }
+
+    public SourceStats startSource(String sourceName) {
+        SourceStats stats = new SourceStats(sourceName);
+        sources.add(stats);
+        return stats;
+    }
+
+    public void mergeColumnSketches(ColumnSketches chunkSketches) {
+        synchronized (columnSketches) {
+            columnSketches.merge(chunkSketches);
+        }
+    }
+
+    /**
+     * The sketches of every row merged so far; read once the job's chunks are done.
+     */
+    public ColumnSketches getColumnSketches() {
+        synchronized (columnSketches) {
+            return columnSketches;
+        }
+    }
+
+    public List<SourceStats> getSources() {
+        synchronized (sources) {
+            return new ArrayList<>(sources);
+        }
+    }
+
+    public boolean isSheetSelected(int index, String name) {
+        return sheetFilter == null
+            || sheetFilter.contains(String.valueOf(index))
+            || sheetFilter.contains(name.toLowerCase(Locale.ROOT));
+    }
+
+    public Stage getStage() {
+        return stage;
+    }
+
+    public void setStage(Stage stage) {
+        this.stage = stage;
+    }
+
+    public void trackInput(LongSupplier bytesRead, long expectedBytes) {
+        this.bytesRead = bytesRead;
+        this.expectedBytes = expectedBytes;
+    }
+
+    public long getBytesRead() {
+        return bytesRead.getAsLong();
+    }
+
+    public long getExpectedBytes() {
+        return expectedBytes;
+    }
+
+    public Long getFileId() {
+        return fileId;
+    }
+
+    public Long getWorkUnitId() {
+        return workUnitId;
+    }
+
+    public void setWorkUnitId(Long workUnitId) {
+        this.workUnitId = workUnitId;
+    }
+
+    public BooleanSupplier getWriteFence() {
+        return writeFence;
+    }
+
+    public void setWriteFence(BooleanSupplier writeFence) {
+        this.writeFence = writeFence;
+    }
+
+    public boolean isPartial() {
+        return partial;
+    }
+
+    public void setPartial(boolean partial) {
+        this.partial = partial;
+    }
+
+    public IngestionMode getMode() {
+        return mode;
+    }
+
+    public List<SalesColumn> getNaturalKey() {
+        return naturalKey;
+    }
+
+    public RejectSink getRejectSink() {
+        return rejectSink;
+    }
+
+    public long getStartTime() {
+        return startTime;
+    }
+
+    public AtomicInteger getTotalRows() {
+        return totalRows;
+    }
+
+    public AtomicInteger getProcessedRows() {
+        return processedRows;
+    }
+
+    public AtomicInteger getFailedRows() {
+        return failedRows;
+    }
+
+    public AtomicInteger getDuplicateRows() {
+        return duplicateRows;
+    }
+
+    /**
+     * Blocks until another chunk may be submitted.
+     */
+    public void acquireChunkSlot() throws InterruptedException {
+        inFlightChunks.acquire();
+    }
+
+    public void releaseChunkSlot() {
+        inFlightChunks.release();
+    }
+
+    public synchronized void addPending(CompletableFuture<Void> future) {
+        pending.add(future);
+    }
+
+    /**
+     * Waits for every submitted chunk and source task of this job.
+     */
+    public void awaitCompletion() throws InterruptedException, ExecutionException {
+        while (true) {
+            CompletableFuture<?>[] snapshot;
+            synchronized (this) {
+                if (pending.isEmpty()) {
+                    return;
+                }
+                snapshot = pending.toArray(new CompletableFuture<?>[0]);
+                pending.clear();
+            }
+            // Tasks may submit further chunks while we wait, hence the loop
+            CompletableFuture.allOf(snapshot).get();
+        }
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * Stops a failed job: chunks that have not started are skipped and no new ones are accepted. Returns
+     * once every task already running has ended, so nothing of the job is written after this returns.
+     */
+    public void cancelAndDrain() {
+        cancelled = true;
+        while (true) {
+            CompletableFuture<?>[] snapshot;
+            synchronized (this) {
+                if (pending.isEmpty()) {
+                    return;
+                }
+                snapshot = pending.toArray(new CompletableFuture<?>[0]);
+                pending.clear();
+            }
+            // Their failures do not matter any more; the job already failed
+            CompletableFuture.allOf(snapshot).handle((ignored, e) -> null).join();
+        }
+    }
+}
@@ -0,0 +1,8 @@
+package com.example.dataprocessor.service;
+
+public enum IngestionMode {
+    // Every mapped row is inserted as a new sales_data row
+    APPEND,
+    // Rows are merged on the configured natural key: new keys are inserted, existing keys are updated
+    UPSERT
+}
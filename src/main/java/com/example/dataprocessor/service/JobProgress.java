@@ -0,0 +1,94 @@
+package com.example.dataprocessor.service;
+
+/**
+ * One progress sample of an ingestion job, as sent to progress subscribers.
+ */
+public class JobProgress {
+
+    private final Long fileId;
+    private final String stage;
+    private final int totalRows;
+    private final int processedRows;
+    private final int failedRows;
+    private final int duplicateRows;
+    // Rows written per second, smoothed over the recent samples
+    private final double rowsPerSecond;
+    private final long bytesRead;
+    private final long expectedBytes;
+    // Null while it cannot be estimated yet
+    private final Double percentComplete;
+    private final Long etaSeconds;
+    private final long elapsedMillis;
+    // Final status message; set on the last event only
+    private final String message;
+
+    public JobProgress(Long fileId, String stage, int totalRows, int processedRows, int failedRows, int duplicateRows,
+                       double rowsPerSecond, long bytesRead, long expectedBytes, Double percentComplete, Long etaSeconds,
+                       long elapsedMillis, String message) {
+        this.fileId = fileId;
+        this.stage = stage;
+        this.totalRows = totalRows;
+        this.processedRows = processedRows;
+        this.failedRows = failedRows;
+        this.duplicateRows = duplicateRows;
+        this.rowsPerSecond = rowsPerSecond;
+        this.bytesRead = bytesRead;
+        this.expectedBytes = expectedBytes;
+        this.percentComplete = percentComplete;
+        this.etaSeconds = etaSeconds;
+        this.elapsedMillis = elapsedMillis;
+        this.message = message;
+    }
+
+    public Long getFileId() {
+        return fileId;
+    }
+
+    public String getStage() {
+        return stage;
+    }
+
+    public int getTotalRows() {
+        return totalRows;
+    }
+
+    public int getProcessedRows() {
+        return processedRows;
+    }
+
+    public int getFailedRows() {
+        return failedRows;
+    }
+
+    public int getDuplicateRows() {
+        return duplicateRows;
+    }
+
+    public double getRowsPerSecond() {
+        return rowsPerSecond;
+    }
+
+    public long getBytesRead() {
+        return bytesRead;
+    }
+
+    public long getExpectedBytes() {
+        return expectedBytes;
+    }
+
+    public Double getPercentComplete() {
+        return percentComplete;
+    }
+
+    public Long getEtaSeconds() {
+        return etaSeconds;
+    }
+
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+}
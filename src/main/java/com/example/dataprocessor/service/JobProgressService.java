@@ -0,0 +1,314 @@
+package com.example.dataprocessor.service;
+
+import com.example.dataprocessor.model.FileProcessingStatus;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Live progress of running ingestion jobs over Server-Sent Events.
+ * <p>
+ * Ingestion threads never talk to subscribers: they only register the job and flag stage changes. A
+ * single sampler thread reads the job's atomic counters on a fixed interval (and right after a stage
+ * change), turns them into one {@link JobProgress} per job, and offers it to every subscriber of that
+ * job. Each subscriber sends on its own virtual thread and keeps only the newest undelivered event, so
+ * a slow client skips samples instead of queueing them or holding up other clients.
+ */
+@Service
+public class JobProgressService {
+
+    private static final Logger logger = LoggerFactory.getLogger(JobProgressService.class);
+
+    // Weight of the newest sample in the smoothed throughput
+    private static final double RATE_SMOOTHING = 0.3;
+
+    private static final Set<String> TERMINAL_STATES = Set.of("COMPLETED", "FAILED", "DUPLICATE");
+
+    // Kept after the final event, so a subscriber racing the end of a job still gets the final state
+    private static final long FINISHED_RETENTION_MILLIS = 60_000;
+
+    @Autowired
+    @Qualifier("progressSampler")
+    private ScheduledExecutorService sampler;
+
+    @Autowired
+    @Qualifier("progressFanOutExecutor")
+    private ExecutorService fanOutExecutor;
+
+    @Value("${dataprocessor.progress.interval-ms:500}")
+    private long intervalMillis;
+
+    @Value("${dataprocessor.progress.emitter-timeout-ms:1800000}")
+    private long emitterTimeoutMillis;
+
+    private final Map<Long, TrackedJob> jobs = new ConcurrentHashMap<>();
+    private final Map<Long, Set<Subscriber>> subscribers = new ConcurrentHashMap<>();
+    // Sampler thread only
+    private final Map<Long, JobProgress> recentlyFinished = new HashMap<>();
+    private final Map<Long, Long> finishedAt = new HashMap<>();
+
+    /**
+     * Sampler-side state of a running job. Only touched on the sampler thread after registration.
+     */
+    private static final class TrackedJob {
+        final IngestionJob job;
+        long lastSampleTime;
+        int lastProcessedRows;
+        double rowsPerSecond = -1;
+
+        TrackedJob(IngestionJob job) {
+            this.job = job;
+            this.lastSampleTime = job.getStartTime();
+        }
+    }
+
+    @PostConstruct
+    void startSampling() {
+        sampler.scheduleWithFixedDelay(this::sampleAll, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Called by the ingestion thread when a job starts. Only a map insert; no I/O.
+     */
+    public void jobStarted(IngestionJob job) {
+        Long fileId = job.getFileId();
+        jobs.put(fileId, new TrackedJob(job));
+        sampler.execute(() -> {
+            // A replay of a file that finished earlier
+            recentlyFinished.remove(fileId);
+            finishedAt.remove(fileId);
+            sample(fileId, false, null);
+        });
+    }
+
+    /**
+     * Called by the ingestion thread after {@link IngestionJob#setStage}; subscribers hear of it
+     * without waiting for the next interval. Hands off to the sampler and returns at once.
+     */
+    public void stageChanged(IngestionJob job) {
+        sampler.execute(() -> sample(job.getFileId(), false, null));
+    }
+
+    /**
+     * Called by the ingestion thread when a job reaches COMPLETED or FAILED: subscribers get a last
+     * event with the final message and their streams are closed.
+     */
+    public void jobFinished(IngestionJob job, String message) {
+        sampler.execute(() -> {
+            JobProgress last = sample(job.getFileId(), true, message);
+            jobs.remove(job.getFileId());
+            if (last != null) {
+                recentlyFinished.put(job.getFileId(), last);
+                finishedAt.put(job.getFileId(), System.currentTimeMillis());
+            }
+        });
+    }
+
+    /**
+     * Opens a progress stream for a file. A file that already finished gets one final event built from
+     * its stored status; a file not yet started here waits for its job to start.
+     */
+    public SseEmitter subscribe(FileProcessingStatus status) {
+        Long fileId = status.getId();
+        SseEmitter emitter = new SseEmitter(emitterTimeoutMillis);
+        Subscriber subscriber = new Subscriber(fileId, emitter);
+        emitter.onCompletion(() -> unsubscribe(subscriber));
+        emitter.onTimeout(() -> unsubscribe(subscriber));
+        emitter.onError(e -> unsubscribe(subscriber));
+
+        if (!jobs.containsKey(fileId) && TERMINAL_STATES.contains(status.getStatus())) {
+            long elapsed = status.getUploadTime() != null && status.getProcessTime() != null
+                ? Duration.between(status.getUploadTime(), status.getProcessTime()).toMillis() : 0;
+            int processed = status.getRowsProcessed() != null ? status.getRowsProcessed() : 0;
+            int failed = status.getRowsFailed() != null ? status.getRowsFailed() : 0;
+            subscriber.offer(new JobProgress(fileId, status.getStatus(), processed + failed, processed, failed, 0,
+                0, -1, -1, 100.0, 0L, elapsed, status.getErrorMessage()), true);
+            return emitter;
+        }
+        subscribers.computeIfAbsent(fileId, id -> ConcurrentHashMap.newKeySet()).add(subscriber);
+        // Send the current state right away instead of after the next interval
+        sampler.execute(() -> {
+            JobProgress finished = recentlyFinished.get(fileId);
+            if (finished != null && !jobs.containsKey(fileId)) {
+                subscriber.offer(finished, true);
+            } else {
+                sample(fileId, false, null);
+            }
+        });
+        return emitter;
+    }
+
+    private void unsubscribe(Subscriber subscriber) {
+        subscribers.computeIfPresent(subscriber.fileId, (id, set) -> {
+            set.remove(subscriber);
+            return set.isEmpty() ? null : set;
+        });
+    }
+
+    private void sampleAll() {
+        try {
+            for (Long fileId : subscribers.keySet()) {
+                sample(fileId, false, null);
+            }
+            long expiry = System.currentTimeMillis() - FINISHED_RETENTION_MILLIS;
+            finishedAt.entrySet().removeIf(entry -> {
+                boolean expired = entry.getValue() < expiry;
+                if (expired) {
+                    recentlyFinished.remove(entry.getKey());
+                }
+                return expired;
+            });
+        } catch (RuntimeException e) {
+            // An exception would cancel the periodic task
+            logger.warn("Progress sampling failed: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Builds the current progress of one job and offers it to its subscribers. Sampler thread only.
+     *
+     * @param last Whether this is the final event of a finished job; message is its status message.
+     * @return The sample, or null if the job is not running here.
+     */
+    private JobProgress sample(Long fileId, boolean last, String message) {
+        TrackedJob tracked = jobs.get(fileId);
+        if (tracked == null) {
+            return null;
+        }
+        JobProgress progress = buildProgress(tracked, message);
+        Set<Subscriber> targets = subscribers.get(fileId);
+        if (targets != null) {
+            for (Subscriber subscriber : targets) {
+                subscriber.offer(progress, last);
+            }
+        }
+        return progress;
+    }
+
+    private JobProgress buildProgress(TrackedJob tracked, String message) {
+        IngestionJob job = tracked.job;
+        long now = System.currentTimeMillis();
+        int total = job.getTotalRows().get();
+        int processed = job.getProcessedRows().get();
+        int failed = job.getFailedRows().get();
+        int duplicates = job.getDuplicateRows().get();
+
+        long sinceLastSample = now - tracked.lastSampleTime;
+        if (sinceLastSample > 0) {
+            double current = (processed - tracked.lastProcessedRows) * 1000.0 / sinceLastSample;
+            tracked.rowsPerSecond = tracked.rowsPerSecond < 0
+                ? current
+                : RATE_SMOOTHING * current + (1 - RATE_SMOOTHING) * tracked.rowsPerSecond;
+            tracked.lastSampleTime = now;
+            tracked.lastProcessedRows = processed;
+        }
+        double rowsPerSecond = Math.max(0, tracked.rowsPerSecond);
+
+        long elapsed = now - job.getStartTime();
+        long bytesRead = job.getBytesRead();
+        long expectedBytes = job.getExpectedBytes();
+        IngestionJob.Stage stage = job.getStage();
+        Double percent = null;
+        Long etaSeconds = null;
+        int done = processed + failed + duplicates;
+        if (stage == IngestionJob.Stage.PARSING && expectedBytes > 0 && bytesRead > 0) {
+            // While reading, the share of input consumed is the best predictor of the remaining time
+            double fraction = Math.min(1.0, (double) bytesRead / expectedBytes);
+            percent = fraction * 100;
+            etaSeconds = Math.round(elapsed * (1 - fraction) / fraction / 1000);
+        } else if (stage == IngestionJob.Stage.WRITING && total > 0) {
+            // Every row is known; what is left is what the writers have not finished
+            percent = Math.min(100.0, done * 100.0 / total);
+            if (rowsPerSecond > 0) {
+                etaSeconds = Math.round(Math.max(0, total - done) / rowsPerSecond);
+            }
+        } else if (stage == IngestionJob.Stage.FINALIZING || stage == IngestionJob.Stage.COMPLETED) {
+            percent = 100.0;
+            etaSeconds = 0L;
+        }
+        return new JobProgress(job.getFileId(), stage.name(), total, processed, failed, duplicates, rowsPerSecond,
+            bytesRead, expectedBytes, percent, etaSeconds, elapsed, message);
+    }
+
+    private static final class PendingEvent {
+        final JobProgress progress;
+        final boolean last;
+
+        PendingEvent(JobProgress progress, boolean last) {
+            this.progress = progress;
+            this.last = last;
+        }
+    }
+
+    /**
+     * One SSE client. Holds at most one undelivered event: a newer sample replaces an unsent one.
+     */
+    private final class Subscriber {
+        final Long fileId;
+        final SseEmitter emitter;
+        final AtomicReference<PendingEvent> latest = new AtomicReference<>();
+        final AtomicBoolean sending = new AtomicBoolean();
+        volatile boolean closed;
+
+        Subscriber(Long fileId, SseEmitter emitter) {
+            this.fileId = fileId;
+            this.emitter = emitter;
+        }
+
+        void offer(JobProgress progress, boolean last) {
+            if (closed) {
+                return;
+            }
+            PendingEvent event = new PendingEvent(progress, last);
+            // The final event is never replaced by a later sample
+            latest.getAndUpdate(pending -> pending != null && pending.last ? pending : event);
+            if (sending.compareAndSet(false, true)) {
+                fanOutExecutor.execute(this::drain);
+            }
+        }
+
+        private void drain() {
+            while (true) {
+                PendingEvent event = latest.getAndSet(null);
+                if (event == null) {
+                    sending.set(false);
+                    // An offer may have slipped in between the empty read and the reset
+                    if (latest.get() == null || !sending.compareAndSet(false, true)) {
+                        return;
+                    }
+                    continue;
+                }
+                try {
+                    emitter.send(SseEmitter.event().name(event.last ? "complete" : "progress").data(event.progress));
+                    if (event.last) {
+                        closed = true;
+                        emitter.complete();
+                        return;
+                    }
+                } catch (IOException | IllegalStateException e) {
+                    // The client went away; Spring calls onError/onCompletion, which unsubscribes
+                    closed = true;
+                    emitter.completeWithError(e);
+                    return;
+                }
+            }
+        }
+    }
+}
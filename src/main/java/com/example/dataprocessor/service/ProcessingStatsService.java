@@ -1,11 +1,14 @@
 package com.example.dataprocessor.service;
 
 import com.example.dataprocessor.model.ProcessingStats;
+import com.example.dataprocessor.repository.ProcessingStatsJdbcRepository;
 import com.example.dataprocessor.repository.ProcessingStatsRepository;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
+import java.util.Optional;
 
 @Service
 public class ProcessingStatsService {
@@ -13,7 +16,31 @@ public class ProcessingStatsService {
     @Autowired
     private ProcessingStatsRepository processingStatsRepository;
 
+    @Autowired
+    private ProcessingStatsJdbcRepository processingStatsJdbcRepository;
+
+    @Transactional(readOnly = true)
     public List<ProcessingStats> getAllProcessingStats() {
         return processingStatsRepository.findAll();
     }
-} 
\ No newline at end of file
+
+    /**
+     * Column estimates of one upload; empty if it has no sketches (not finished, or from before they existed).
+     */
+    @Transactional(readOnly = true)
+    public Optional<ColumnSketches.Summary> getColumnSketches(Long fileId) {
+        byte[] stored = processingStatsJdbcRepository.findColumnSketches(fileId);
+        return stored != null ? Optional.of(ColumnSketches.fromByteArray(stored).summarize(1)) : Optional.empty();
+    }
+
+    /**
+     * Column estimates over several uploads, or over all of them if fileIds is null, by merging their
+     * sketches one at a time.
+     */
+    @Transactional(readOnly = true)
+    public ColumnSketches.Summary mergeColumnSketches(List<Long> fileIds) {
+        ColumnSketches merged = new ColumnSketches();
+        int files = processingStatsJdbcRepository.forEachColumnSketches(fileIds, stored -> merged.merge(ColumnSketches.fromByteArray(stored)));
+        return merged.summarize(files);
+    }
+}
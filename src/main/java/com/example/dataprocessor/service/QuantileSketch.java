@@ -0,0 +1,149 @@
+package com.example.dataprocessor.service;
+
+import java.nio.ByteBuffer;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Quantile sketch with a relative-error guarantee: values are counted in logarithmic buckets
+ * [gamma^(i-1), gamma^i) with gamma = (1 + a) / (1 - a), so every quantile it returns is within a
+ * relative error a of a value at that rank. Negative values get buckets of their own and values
+ * closer to zero than {@link #MIN_MAGNITUDE} count as zero. Sketches with the same accuracy merge
+ * exactly by adding bucket counts, in any order. The number of buckets grows with the logarithm of the
+ * value range, not with the number of values: about 700 per sign for 1 to 1,000,000 at a = 1%.
+ * Not thread-safe: callers are expected to synchronize.
+ */
+public class QuantileSketch {
+
+    private static final double MIN_MAGNITUDE = 1e-9;
+
+    private final double relativeAccuracy;
+    private final double gamma;
+    private final double logGamma;
+    private final TreeMap<Integer, Long> positive = new TreeMap<>();
+    private final TreeMap<Integer, Long> negative = new TreeMap<>();
+    private long zeroCount;
+    private long count;
+
+    public QuantileSketch(double relativeAccuracy) {
+        if (!(relativeAccuracy > 0 && relativeAccuracy < 1)) {
+            throw new IllegalArgumentException("Relative accuracy must be between 0 and 1: " + relativeAccuracy);
+        }
+        this.relativeAccuracy = relativeAccuracy;
+        this.gamma = (1 + relativeAccuracy) / (1 - relativeAccuracy);
+        this.logGamma = Math.log(gamma);
+    }
+
+    /**
+     * Restores a sketch from the byte form produced by {@link #toByteArray()}.
+     */
+    public static QuantileSketch fromByteArray(byte[] data) {
+        ByteBuffer buffer = ByteBuffer.wrap(data);
+        QuantileSketch sketch = new QuantileSketch(buffer.getDouble());
+        sketch.zeroCount = buffer.getLong();
+        sketch.count = sketch.zeroCount;
+        sketch.count += readBuckets(buffer, sketch.positive);
+        sketch.count += readBuckets(buffer, sketch.negative);
+        return sketch;
+    }
+
+    public void add(double value) {
+        if (Double.isNaN(value) || Double.isInfinite(value)) {
+            return;
+        }
+        if (value > MIN_MAGNITUDE) {
+            positive.merge(index(value), 1L, Long::sum);
+        } else if (value < -MIN_MAGNITUDE) {
+            negative.merge(index(-value), 1L, Long::sum);
+        } else {
+            zeroCount++;
+        }
+        count++;
+    }
+
+    public void merge(QuantileSketch other) {
+        if (other.relativeAccuracy != relativeAccuracy) {
+            throw new IllegalArgumentException("Cannot merge accuracy " + other.relativeAccuracy + " into " + relativeAccuracy);
+        }
+        other.positive.forEach((index, bucketCount) -> positive.merge(index, bucketCount, Long::sum));
+        other.negative.forEach((index, bucketCount) -> negative.merge(index, bucketCount, Long::sum));
+        zeroCount += other.zeroCount;
+        count += other.count;
+    }
+
+    /**
+     * The value at the given rank, e.g. 0.95 for the 95th percentile; NaN for an empty sketch.
+     */
+    public double quantile(double quantile) {
+        if (count == 0) {
+            return Double.NaN;
+        }
+        long rank = (long) (Math.max(0, Math.min(1, quantile)) * (count - 1));
+        long seen = 0;
+        // Ascending order: the largest negative magnitudes first
+        for (Map.Entry<Integer, Long> bucket : negative.descendingMap().entrySet()) {
+            seen += bucket.getValue();
+            if (seen > rank) {
+                return -bucketValue(bucket.getKey());
+            }
+        }
+        seen += zeroCount;
+        if (seen > rank) {
+            return 0;
+        }
+        for (Map.Entry<Integer, Long> bucket : positive.entrySet()) {
+            seen += bucket.getValue();
+            if (seen > rank) {
+                return bucketValue(bucket.getKey());
+            }
+        }
+        return bucketValue(positive.lastKey());
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public double getRelativeAccuracy() {
+        return relativeAccuracy;
+    }
+
+    public byte[] toByteArray() {
+        ByteBuffer buffer = ByteBuffer.allocate(Double.BYTES + Long.BYTES
+            + 2 * Integer.BYTES + (positive.size() + negative.size()) * (Integer.BYTES + Long.BYTES));
+        buffer.putDouble(relativeAccuracy);
+        buffer.putLong(zeroCount);
+        writeBuckets(buffer, positive);
+        writeBuckets(buffer, negative);
+        return buffer.array();
+    }
+
+    private int index(double magnitude) {
+        return (int) Math.ceil(Math.log(magnitude) / logGamma);
+    }
+
+    // The point of the bucket with the same relative distance to both of its bounds
+    private double bucketValue(int index) {
+        return 2 * Math.pow(gamma, index) / (gamma + 1);
+    }
+
+    private static void writeBuckets(ByteBuffer buffer, TreeMap<Integer, Long> buckets) {
+        buffer.putInt(buckets.size());
+        buckets.forEach((index, bucketCount) -> {
+            buffer.putInt(index);
+            buffer.putLong(bucketCount);
+        });
+    }
+
+    private static long readBuckets(ByteBuffer buffer, TreeMap<Integer, Long> buckets) {
+        int size = buffer.getInt();
+        long total = 0;
+        for (int i = 0; i < size; i++) {
+            int index = buffer.getInt();
+            long bucketCount = buffer.getLong();
+            buckets.put(index, bucketCount);
+            total += bucketCount;
+        }
+        return total;
+    }
+}
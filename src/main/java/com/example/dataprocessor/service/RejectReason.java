@@ -0,0 +1,9 @@
+package com.example.dataprocessor.service;
+
+public enum RejectReason {
+    INVALID_NUMBER,
+    INVALID_DATE,
+    MAPPING_ERROR,
+    WRITE_FAILED,
+    RULE_VIOLATION
+}
@@ -0,0 +1,145 @@
+package com.example.dataprocessor.service;
+
+import com.example.dataprocessor.model.RejectedRow;
+import com.example.dataprocessor.repository.RejectedRowJdbcRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Collects rejected rows for one ingestion job and writes them to rejected_rows in batches.
+ * Logging is sampled: the first few rejects are logged in full, after that at most one line per
+ * interval with the number of rejects suppressed in between, so a file full of bad rows does not
+ * turn the hot loop into a logging loop.
+ */
+public class RejectSink implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(RejectSink.class);
+
+    private static final int MAX_DETAIL_LENGTH = 500;
+
+    private final Long fileId;
+    private final Long workUnitId;
+    private final RejectedRowJdbcRepository rejectedRowJdbcRepository;
+    private final int batchSize;
+    private final int logFirst;
+    private final long logIntervalMillis;
+
+    private final List<RejectedRow> buffer;
+    private final AtomicLong rejectedCount = new AtomicLong();
+    private long suppressedSinceLastLog;
+    private long lastLogTime;
+
+    RejectSink(Long fileId, Long workUnitId, RejectedRowJdbcRepository rejectedRowJdbcRepository, int batchSize, int logFirst, long logIntervalMillis) {
+        this.fileId = fileId;
+        this.workUnitId = workUnitId;
+        this.rejectedRowJdbcRepository = rejectedRowJdbcRepository;
+        this.batchSize = batchSize;
+        this.logFirst = logFirst;
+        this.logIntervalMillis = logIntervalMillis;
+        this.buffer = new ArrayList<>(batchSize);
+    }
+
+    /**
+     * Records a rejected row.
+     *
+     * @param lineNumber 1-based line (or spreadsheet row) number in the source file.
+     * @param row The original cell values.
+     * @param column The offending column, or null if the whole row was rejected.
+     * @param reason Why the row was rejected.
+     * @param detail Free-text detail such as the unparseable value or exception message.
+     */
+    public void reject(long lineNumber, List<String> row, SalesColumn column, RejectReason reason, String detail) {
+        RejectedRow rejected = new RejectedRow();
+        rejected.setFileId(fileId);
+        rejected.setWorkUnitId(workUnitId);
+        rejected.setLineNumber(lineNumber);
+        rejected.setColumnName(column != null ? column.getColumnName() : null);
+        rejected.setReasonCode(reason.name());
+        rejected.setDetail(detail != null && detail.length() > MAX_DETAIL_LENGTH ? detail.substring(0, MAX_DETAIL_LENGTH) : detail);
+        rejected.setRawRow(encodeRow(row));
+
+        long count = rejectedCount.incrementAndGet();
+        List<RejectedRow> toWrite = null;
+        synchronized (this) {
+            buffer.add(rejected);
+            if (buffer.size() >= batchSize) {
+                toWrite = new ArrayList<>(buffer);
+                buffer.clear();
+            }
+            sampleLog(count, lineNumber, column, reason, detail);
+        }
+        if (toWrite != null) {
+            rejectedRowJdbcRepository.insertAll(toWrite);
+        }
+    }
+
+    public long getRejectedCount() {
+        return rejectedCount.get();
+    }
+
+    public void flush() {
+        List<RejectedRow> toWrite;
+        synchronized (this) {
+            if (buffer.isEmpty()) {
+                return;
+            }
+            toWrite = new ArrayList<>(buffer);
+            buffer.clear();
+        }
+        rejectedRowJdbcRepository.insertAll(toWrite);
+    }
+
+    @Override
+    public void close() {
+        flush();
+        if (suppressedSinceLastLog > 0 || rejectedCount.get() > logFirst) {
+            logger.warn("File {}: {} rows rejected in total", fileId, rejectedCount.get());
+        }
+    }
+
+    // Caller holds the monitor
+    private void sampleLog(long count, long lineNumber, SalesColumn column, RejectReason reason, String detail) {
+        long now = System.currentTimeMillis();
+        if (count <= logFirst || now - lastLogTime >= logIntervalMillis) {
+            if (suppressedSinceLastLog > 0) {
+                logger.warn("File {}: rejected line {} ({} {}): {} [{} similar rejects not logged]",
+                    fileId, lineNumber, reason, column, detail, suppressedSinceLastLog);
+            } else {
+                logger.warn("File {}: rejected line {} ({} {}): {}", fileId, lineNumber, reason, column, detail);
+            }
+            suppressedSinceLastLog = 0;
+            lastLogTime = now;
+        } else {
+            suppressedSinceLastLog++;
+        }
+    }
+
+    static String encodeRow(List<String> row) {
+        if (row == null) {
+            return null;
+        }
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < row.size(); i++) {
+            if (i > 0) {
+                sb.append(',');
+            }
+            appendCsvValue(sb, row.get(i));
+        }
+        return sb.toString();
+    }
+
+    static void appendCsvValue(StringBuilder sb, String value) {
+        if (value == null) {
+            return;
+        }
+        if (value.indexOf(',') >= 0 || value.indexOf('"') >= 0 || value.indexOf('\n') >= 0 || value.indexOf('\r') >= 0) {
+            sb.append('"').append(value.replace("\"", "\"\"")).append('"');
+        } else {
+            sb.append(value);
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package com.example.dataprocessor.service;
+
+import com.example.dataprocessor.model.RejectedRow;
+import com.example.dataprocessor.repository.RejectedRowJdbcRepository;
+import com.example.dataprocessor.repository.RejectedRowRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+@Service
+public class RejectSinkService {
+
+    @Autowired
+    private RejectedRowJdbcRepository rejectedRowJdbcRepository;
+
+    @Autowired
+    private RejectedRowRepository rejectedRowRepository;
+
+    @Value("${dataprocessor.rejects.batch-size:500}")
+    private int batchSize;
+
+    @Value("${dataprocessor.rejects.log-first:10}")
+    private int logFirst;
+
+    @Value("${dataprocessor.rejects.log-interval-ms:5000}")
+    private long logIntervalMillis;
+
+    /**
+     * Opens a reject sink for one ingestion job. The caller must close it to flush the last batch.
+     */
+    public RejectSink open(Long fileId) {
+        return open(fileId, null);
+    }
+
+    /**
+     * Opens a reject sink for one work unit of an upload; its rejects are stamped with the unit's id.
+     */
+    public RejectSink open(Long fileId, Long workUnitId) {
+        return new RejectSink(fileId, workUnitId, rejectedRowJdbcRepository, batchSize, logFirst, logIntervalMillis);
+    }
+
+    public long countRejects(Long fileId) {
+        return rejectedRowRepository.countByFileId(fileId);
+    }
+
+    /**
+     * Writes all rejects of a file as CSV, paging through rejected_rows by id so the export
+     * never holds more than one page in memory.
+     */
+    public void writeRejectsCsv(Long fileId, OutputStream outputStream) throws IOException {
+        Writer writer = new OutputStreamWriter(outputStream, StandardCharsets.UTF_8);
+        writer.write("line_number,column,reason_code,detail,raw_row\n");
+        long afterId = 0;
+        while (true) {
+            List<RejectedRow> page = rejectedRowRepository.findTop1000ByFileIdAndIdGreaterThanOrderByIdAsc(fileId, afterId);
+            if (page.isEmpty()) {
+                break;
+            }
+            StringBuilder sb = new StringBuilder();
+            for (RejectedRow row : page) {
+                sb.setLength(0);
+                sb.append(row.getLineNumber() != null ? row.getLineNumber() : "").append(',');
+                RejectSink.appendCsvValue(sb, row.getColumnName());
+                sb.append(',');
+                RejectSink.appendCsvValue(sb, row.getReasonCode());
+                sb.append(',');
+                RejectSink.appendCsvValue(sb, row.getDetail());
+                sb.append(',');
+                RejectSink.appendCsvValue(sb, row.getRawRow());
+                sb.append('\n');
+                writer.write(sb.toString());
+            }
+            afterId = page.get(page.size() - 1).getId();
+        }
+        writer.flush();
+    }
+}
@@ -0,0 +1,265 @@
+package com.example.dataprocessor.service;
+
+import com.example.dataprocessor.model.FileProcessingStatus;
+import com.example.dataprocessor.repository.FileProcessingStatusRepository;
+import com.example.dataprocessor.repository.ProcessingStatsRepository;
+import com.example.dataprocessor.repository.RejectedRowJdbcRepository;
+import com.example.dataprocessor.repository.SalesDataJdbcRepository;
+import com.example.dataprocessor.repository.SourceProcessingStatsRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Purges old data without holding long locks:
+ * <ul>
+ *   <li>sales rows dated more than sales-data-months back go by dropping their monthly partitions, or
+ *       by batched deletes where the table is not partitioned;</li>
+ *   <li>uploads older than upload-days are removed with their rows, rejects and stats, in small
+ *       keyset-ordered batches.</li>
+ * </ul>
+ * Every batch is its own short statement followed by a pause, which is longer while files are being
+ * ingested. Partition drops need the table's metadata lock and are put off while ingestion is running.
+ */
+@Service
+public class RetentionService {
+
+    private static final Logger logger = LoggerFactory.getLogger(RetentionService.class);
+
+    // partition_date of undated rows, and the upper bound of p_undated; see V2__partition_sales_data.sql
+    private static final LocalDate UNDATED = LocalDate.of(1000, 1, 1);
+    private static final LocalDate MONTHLY_PARTITIONS_FROM = LocalDate.of(1900, 1, 1);
+
+    @Autowired
+    private FileProcessingStatusRepository fileProcessingStatusRepository;
+
+    @Autowired
+    private ProcessingStatsRepository processingStatsRepository;
+
+    @Autowired
+    private SourceProcessingStatsRepository sourceProcessingStatsRepository;
+
+    @Autowired
+    private SalesDataJdbcRepository salesDataJdbcRepository;
+
+    @Autowired
+    private RejectedRowJdbcRepository rejectedRowJdbcRepository;
+
+    @Autowired
+    private SalesPartitionService salesPartitionService;
+
+    @Autowired
+    private FileProcessorService fileProcessorService;
+
+    @Autowired
+    private StreamingUploadService streamingUploadService;
+
+    @Autowired
+    private WorkUnitService workUnitService;
+
+    @Autowired
+    private FollowService followService;
+
+    @Autowired
+    private ZoneMapService zoneMapService;
+
+    @Value("${dataprocessor.retention.enabled:false}")
+    private boolean enabled;
+
+    // 0 keeps uploads forever
+    @Value("${dataprocessor.retention.upload-days:0}")
+    private int uploadDays;
+
+    // 0 keeps sales rows forever, whatever their date
+    @Value("${dataprocessor.retention.sales-data-months:0}")
+    private int salesDataMonths;
+
+    @Value("${dataprocessor.retention.batch-size:1000}")
+    private int batchSize;
+
+    @Value("${dataprocessor.retention.pause-ms:50}")
+    private long pauseMillis;
+
+    // Pause between batches while any file is being ingested
+    @Value("${dataprocessor.retention.busy-pause-ms:500}")
+    private long busyPauseMillis;
+
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    /**
+     * Deletes the batch of rows after afterId and returns its highest id, or null when none are left.
+     */
+    @FunctionalInterface
+    private interface BatchDelete {
+        Long deleteAfter(long afterId, int batchSize);
+    }
+
+    /**
+     * Applies both retention rules. Runs at most once at a time; an overlapping call returns at once.
+     */
+    public void purgeExpired() {
+        if (!enabled) {
+            return;
+        }
+        if (!running.compareAndSet(false, true)) {
+            logger.info("Retention purge already running; skipping this run");
+            return;
+        }
+        try {
+            if (salesDataMonths > 0) {
+                purgeSalesDataBefore(YearMonth.now().minusMonths(salesDataMonths).atDay(1));
+            }
+            if (uploadDays > 0) {
+                purgeUploadsBefore(LocalDateTime.now().minusDays(uploadDays));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            logger.warn("Retention purge interrupted");
+        } finally {
+            running.set(false);
+        }
+    }
+
+    /**
+     * Removes one upload with its sales rows, rejected rows, stats and staged copy.
+     *
+     * @return false if the upload does not exist or is still being processed.
+     */
+    public boolean purgeUpload(Long fileId) throws InterruptedException {
+        FileProcessingStatus status = fileProcessingStatusRepository.findById(fileId).orElse(null);
+        if (status == null || "PROCESSING".equals(status.getStatus()) || "PENDING".equals(status.getStatus())) {
+            return false;
+        }
+        purge(status);
+        return true;
+    }
+
+    /**
+     * {@link #purgeUpload(Long)} on the task executor, for the API.
+     */
+    @Async
+    public void purgeUploadInBackground(Long fileId) {
+        try {
+            if (!purgeUpload(fileId)) {
+                logger.warn("Upload {} was not purged: not found or still being processed", fileId);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            logger.warn("Purge of upload {} interrupted", fileId);
+        }
+    }
+
+    /**
+     * Deletes what an upload has written so far, its sales rows, rejected rows and zone maps, but keeps the
+     * upload. Used before an upload is ingested again from the start.
+     *
+     * @return The number of sales row batches deleted.
+     */
+    public long deleteWrittenRows(Long fileId) throws InterruptedException {
+        long salesBatches = deleteInBatches((afterId, size) -> salesDataJdbcRepository.deleteNextBatchByFileId(fileId, afterId, size));
+        deleteInBatches((afterId, size) -> rejectedRowJdbcRepository.deleteNextBatchByFileId(fileId, afterId, size));
+        zoneMapService.deleteZones(fileId);
+        return salesBatches;
+    }
+
+    private void purge(FileProcessingStatus status) throws InterruptedException {
+        Long fileId = status.getId();
+        long start = System.currentTimeMillis();
+        long salesBatches = deleteInBatches((afterId, size) -> salesDataJdbcRepository.deleteNextBatchByFileId(fileId, afterId, size));
+        long rejectBatches = deleteInBatches((afterId, size) -> rejectedRowJdbcRepository.deleteNextBatchByFileId(fileId, afterId, size));
+        zoneMapService.deleteZones(fileId);
+
+        sourceProcessingStatsRepository.deleteAll(sourceProcessingStatsRepository.findByFileProcessingStatusIdOrderByIdAsc(fileId));
+        processingStatsRepository.findByFileProcessingStatus(status).ifPresent(processingStatsRepository::delete);
+        try {
+            workUnitService.deleteWorkUnits(fileId);
+        } catch (IOException e) {
+            logger.warn("Could not delete the shared copy of file {}: {}", fileId, e.getMessage());
+        }
+        followService.deleteFollowedFiles(fileId);
+        fileProcessingStatusRepository.delete(status);
+        try {
+            streamingUploadService.deleteStagedCopy(fileId, status.getFilename());
+        } catch (IOException e) {
+            logger.warn("Could not delete the staged copy of file {}: {}", fileId, e.getMessage());
+        }
+        logger.info("Purged upload {} ({} sales row batches, {} rejected row batches) in {} ms",
+            fileId, salesBatches, rejectBatches, System.currentTimeMillis() - start);
+    }
+
+    private void purgeSalesDataBefore(LocalDate cutoff) throws InterruptedException {
+        List<SalesPartitionService.PartitionInfo> partitions = salesPartitionService.getPartitions();
+        if (!partitions.isEmpty()) {
+            if (fileProcessorService.getActiveJobCount() > 0) {
+                logger.info("Ingestion is running; dropping partitions before {} is put off to the next run", cutoff);
+                return;
+            }
+            try {
+                if (!salesPartitionService.dropMonthlyPartitionsBefore(cutoff).isEmpty()) {
+                    // Dated rows below the dropped months sat in p_undated and are still there
+                    partitions.stream()
+                        .filter(partition -> SalesPartitionService.isMonthly(partition.getName()))
+                        .map(SalesPartitionService.PartitionInfo::getUpperBound)
+                        .filter(upperBound -> !upperBound.isAfter(cutoff))
+                        .max(Comparator.naturalOrder())
+                        .ifPresent(droppedUpTo -> zoneMapService.deleteZonesDatedBetween(MONTHLY_PARTITIONS_FROM, droppedUpTo));
+                }
+            } catch (RuntimeException e) {
+                // Typically the lock wait timing out behind a long query; the next run tries again
+                logger.warn("Could not drop partitions before {}: {}", cutoff, e.getMessage());
+            }
+            return;
+        }
+        long batches = deleteInBatches((afterId, size) -> salesDataJdbcRepository.deleteNextBatchDatedBefore(cutoff, afterId, size));
+        // Rows without a date are not deleted, and their partition_date is the lowest date there is
+        zoneMapService.deleteZonesDatedBetween(UNDATED.plusDays(1), cutoff);
+        logger.info("Deleted {} batches of sales rows dated before {}", batches, cutoff);
+    }
+
+    private void purgeUploadsBefore(LocalDateTime cutoff) throws InterruptedException {
+        long afterId = 0;
+        int purged = 0;
+        List<FileProcessingStatus> expired;
+        while (!(expired = fileProcessingStatusRepository.findTop100ByIdGreaterThanAndUploadTimeBeforeOrderByIdAsc(afterId, cutoff)).isEmpty()) {
+            for (FileProcessingStatus status : expired) {
+                // Nothing legitimately stays in progress for days, so stale PROCESSING entries go too,
+                // except for files still being followed
+                afterId = status.getId();
+                if (followService.isFollowed(status.getId())) {
+                    continue;
+                }
+                purge(status);
+                purged++;
+            }
+        }
+        if (purged > 0) {
+            logger.info("Purged {} uploads from before {}", purged, cutoff);
+        }
+    }
+
+    /**
+     * Runs a keyset batch delete until no rows are left, pausing between batches.
+     *
+     * @return The number of batches deleted.
+     */
+    private long deleteInBatches(BatchDelete deleteBatch) throws InterruptedException {
+        long batches = 0;
+        Long afterId = 0L;
+        while ((afterId = deleteBatch.deleteAfter(afterId, batchSize)) != null) {
+            batches++;
+            Thread.sleep(fileProcessorService.getActiveJobCount() > 0 ? busyPauseMillis : pauseMillis);
+        }
+        return batches;
+    }
+}
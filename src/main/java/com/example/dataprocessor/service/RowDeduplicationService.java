@@ -0,0 +1,272 @@
+package com.example.dataprocessor.service;
+
+import com.example.dataprocessor.model.RowDedupFilter;
+import com.example.dataprocessor.model.SalesData;
+import com.example.dataprocessor.repository.RowDedupFilterRepository;
+import com.example.dataprocessor.repository.SalesDataRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Row-level deduplication for sales_data.
+ * Every mapped row gets a normalized content hash. A persistent Bloom filter answers "definitely new"
+ * for most rows without touching the database; only probable hits are verified exactly with one
+ * batched IN query per chunk. Rows of chunks still being written are not visible to that check, so the
+ * database has the last word: new rows carry their hash in dedup_key, under a unique index, and the copy
+ * that loses a race fails to insert (see {@link #isDuplicateRow}). For the same reason the filter only
+ * needs to be written back now and then, not after every job.
+ */
+@Service
+public class RowDeduplicationService {
+
+    private static final Logger logger = LoggerFactory.getLogger(RowDeduplicationService.class);
+
+    private static final int REBUILD_ID_RANGE = 50000;
+    private static final char FIELD_SEPARATOR = '\u001F';
+    private static final String DEDUP_KEY_INDEX = "uk_sales_data_dedup_key";
+    // MySQL: ER_DUP_ENTRY
+    private static final int MYSQL_DUPLICATE_ENTRY = 1062;
+
+    private static final ThreadLocal<MessageDigest> SHA_256 = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    });
+
+    @Autowired
+    private SalesDataRepository salesDataRepository;
+
+    @Autowired
+    private RowDedupFilterRepository rowDedupFilterRepository;
+
+    @Value("${dataprocessor.dedup.enabled:true}")
+    private boolean enabled;
+
+    @Value("${dataprocessor.dedup.expected-rows:10000000}")
+    private long expectedRows;
+
+    @Value("${dataprocessor.dedup.false-positive-rate:0.01}")
+    private double falsePositiveRate;
+
+    private BloomFilter bloomFilter;
+    private long insertions;
+    private boolean dirty;
+
+    @PostConstruct
+    public synchronized void loadFilter() {
+        if (!enabled) {
+            return;
+        }
+        RowDedupFilter stored = rowDedupFilterRepository.findById(RowDedupFilter.SINGLETON_ID).orElse(null);
+        if (stored != null && stored.getBits() != null) {
+            bloomFilter = BloomFilter.fromByteArray(stored.getBits(), stored.getHashFunctions());
+            insertions = stored.getInsertions() != null ? stored.getInsertions() : 0;
+            logger.info("Loaded row dedup filter: {} bits, {} insertions", bloomFilter.getBitCount(), insertions);
+            return;
+        }
+        bloomFilter = BloomFilter.create(expectedRows, falsePositiveRate);
+        rebuildFromExistingRows();
+    }
+
+    /**
+     * Removes rows that already exist in sales_data (or earlier in the same batch) and stamps the
+     * remaining rows with their row hash and dedup key. Rows are added to the filter immediately, so a save
+     * that later fails only leaves a false positive behind, which the exact check filters out. A row that
+     * another chunk is writing at the same time passes; its insert then fails on the dedup key.
+     *
+     * @param rows Mapped rows of one chunk.
+     * @return The rows that are actually new, in their original order.
+     */
+    public List<SalesData> filterNewRows(List<SalesData> rows) {
+        if (!enabled || rows.isEmpty()) {
+            for (SalesData row : rows) {
+                row.setRowHash(computeRowHash(row));
+            }
+            return rows;
+        }
+
+        List<SalesData> newRows = new ArrayList<>(rows.size());
+        List<SalesData> probableDuplicates = new ArrayList<>();
+        Set<String> seenInBatch = new HashSet<>();
+
+        synchronized (this) {
+            for (SalesData row : rows) {
+                String rowHash = computeRowHash(row);
+                row.setRowHash(rowHash);
+                row.setDedupKey(rowHash);
+                if (!seenInBatch.add(rowHash)) {
+                    continue; // Duplicate within the same chunk
+                }
+                long hash1 = Long.parseUnsignedLong(rowHash.substring(0, 16), 16);
+                long hash2 = Long.parseUnsignedLong(rowHash.substring(16, 32), 16);
+                if (bloomFilter.mightContain(hash1, hash2)) {
+                    probableDuplicates.add(row);
+                } else {
+                    bloomFilter.put(hash1, hash2);
+                    insertions++;
+                    dirty = true;
+                    newRows.add(row);
+                }
+            }
+        }
+
+        if (!probableDuplicates.isEmpty()) {
+            // Exact verification of Bloom hits with a single round trip per chunk
+            List<String> candidateHashes = new ArrayList<>(probableDuplicates.size());
+            for (SalesData row : probableDuplicates) {
+                candidateHashes.add(row.getRowHash());
+            }
+            Set<String> existing = new HashSet<>(salesDataRepository.findExistingRowHashes(candidateHashes));
+            for (SalesData row : probableDuplicates) {
+                if (!existing.contains(row.getRowHash())) {
+                    newRows.add(row); // Bloom false positive
+                }
+            }
+        }
+        return newRows;
+    }
+
+    /**
+     * Computes the normalized row hash: trimmed, case-folded text and scale-independent numbers,
+     * so "1,000.50" and "1000.5" hash identically once mapped.
+     *
+     * @return The first 128 bits of the SHA-256 digest as 32 hex characters.
+     */
+    public String computeRowHash(SalesData row) {
+        StringBuilder sb = new StringBuilder(160);
+        appendText(sb, row.getSegment());
+        appendText(sb, row.getCountry());
+        appendText(sb, row.getProduct());
+        appendText(sb, row.getDiscountBand());
+        appendNumber(sb, row.getUnitsSold());
+        appendNumber(sb, row.getManufacturingPrice());
+        appendNumber(sb, row.getSalePrice());
+        appendNumber(sb, row.getGrossSales());
+        appendNumber(sb, row.getDiscounts());
+        appendNumber(sb, row.getSales());
+        appendNumber(sb, row.getCogs());
+        appendNumber(sb, row.getProfit());
+        appendDate(sb, row.getDate());
+
+        byte[] digest = SHA_256.get().digest(sb.toString().getBytes(StandardCharsets.UTF_8));
+        return HexFormat.of().formatHex(digest, 0, 16);
+    }
+
+    /**
+     * Whether a failed write was a row that already exists, inserted by a chunk that ran concurrently.
+     */
+    public static boolean isDuplicateRow(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            boolean duplicate = cause instanceof DuplicateKeyException
+                || (cause instanceof SQLException sqlException && sqlException.getErrorCode() == MYSQL_DUPLICATE_ENTRY);
+            // The message names the violated index; H2 upper-cases it
+            if (duplicate && cause.getMessage() != null && cause.getMessage().toLowerCase(Locale.ROOT).contains(DEDUP_KEY_INDEX)) {
+                return true;
+            }
+            if (cause.getCause() == cause) {
+                break;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Writes the filter back to the database if it changed since the last flush. Runs on a timer: a filter
+     * that lost its latest rows in a crash only lets their duplicates reach the dedup key index.
+     */
+    @Scheduled(fixedDelayString = "${dataprocessor.dedup.flush-interval-ms:60000}",
+        initialDelayString = "${dataprocessor.dedup.flush-interval-ms:60000}")
+    public void flush() {
+        byte[] bits;
+        long currentInsertions;
+        int hashFunctions;
+        synchronized (this) {
+            if (!enabled || !dirty) {
+                return;
+            }
+            bits = bloomFilter.toByteArray();
+            currentInsertions = insertions;
+            hashFunctions = bloomFilter.getHashFunctions();
+            dirty = false;
+        }
+        RowDedupFilter stored = new RowDedupFilter();
+        stored.setId(RowDedupFilter.SINGLETON_ID);
+        stored.setBitCount((long) bits.length * 8);
+        stored.setHashFunctions(hashFunctions);
+        stored.setInsertions(currentInsertions);
+        stored.setBits(bits);
+        stored.setUpdatedAt(LocalDateTime.now());
+        rowDedupFilterRepository.save(stored);
+        if (currentInsertions > expectedRows) {
+            logger.warn("Row dedup filter holds {} rows, above the configured {}; false positive rate will rise",
+                currentInsertions, expectedRows);
+        }
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        flush();
+    }
+
+    private void rebuildFromExistingRows() {
+        Long maxId = salesDataRepository.findMaxId();
+        if (maxId == null) {
+            return;
+        }
+        logger.info("Rebuilding row dedup filter from existing sales_data rows up to id {}", maxId);
+        for (long fromId = 0; fromId < maxId; fromId += REBUILD_ID_RANGE) {
+            for (String rowHash : salesDataRepository.findRowHashesInIdRange(fromId, fromId + REBUILD_ID_RANGE)) {
+                ByteBuffer hash = ByteBuffer.wrap(HexFormat.of().parseHex(rowHash));
+                bloomFilter.put(hash.getLong(), hash.getLong());
+                insertions++;
+            }
+        }
+        dirty = true;
+        flush();
+    }
+
+    private void appendText(StringBuilder sb, String value) {
+        if (value != null) {
+            sb.append(value.trim().toLowerCase(Locale.ROOT));
+        }
+        sb.append(FIELD_SEPARATOR);
+    }
+
+    private void appendNumber(StringBuilder sb, BigDecimal value) {
+        if (value != null) {
+            sb.append(value.signum() == 0 ? "0" : value.stripTrailingZeros().toPlainString());
+        }
+        sb.append(FIELD_SEPARATOR);
+    }
+
+    private void appendDate(StringBuilder sb, LocalDate value) {
+        if (value != null) {
+            sb.append(value);
+        }
+        sb.append(FIELD_SEPARATOR);
+    }
+}
@@ -0,0 +1,62 @@
+package com.example.dataprocessor.service;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * The predicates of a sales_data row query: a half-open partition_date range, optional equality on
+ * country and product, and an optional inclusive range on one numeric column.
+ */
+public class SalesFilter {
+
+    private final LocalDate from;
+    private final LocalDate toExclusive;
+    private final String country;
+    private final String product;
+    private final SalesColumn rangeColumn;
+    private final BigDecimal min;
+    private final BigDecimal max;
+
+    public SalesFilter(LocalDate from, LocalDate toExclusive, String country, String product,
+                       SalesColumn rangeColumn, BigDecimal min, BigDecimal max) {
+        this.from = from;
+        this.toExclusive = toExclusive;
+        this.country = country;
+        this.product = product;
+        this.rangeColumn = rangeColumn;
+        this.min = min;
+        this.max = max;
+    }
+
+    public LocalDate getFrom() {
+        return from;
+    }
+
+    public LocalDate getToExclusive() {
+        return toExclusive;
+    }
+
+    public String getCountry() {
+        return country;
+    }
+
+    public String getProduct() {
+        return product;
+    }
+
+    public SalesColumn getRangeColumn() {
+        return rangeColumn;
+    }
+
+    public BigDecimal getMin() {
+        return min;
+    }
+
+    public BigDecimal getMax() {
+        return max;
+    }
+
+    public boolean hasRange() {
+        return rangeColumn != null && (min != null || max != null);
+    }
+}
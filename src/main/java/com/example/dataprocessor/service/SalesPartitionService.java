@@ -0,0 +1,200 @@
+package com.example.dataprocessor.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.sql.Date;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Maintains the monthly range partitions of sales_data (see the V2 migration).
+ * Partition pYYYYMM holds the rows of that month; p_undated holds rows without a date and p_future
+ * everything past the newest monthly partition. New months are split off p_future ahead of time, so
+ * incoming rows land in their own month and p_future normally stays empty, which keeps the split cheap.
+ */
+@Service
+public class SalesPartitionService {
+
+    private static final Logger logger = LoggerFactory.getLogger(SalesPartitionService.class);
+
+    static final String TABLE_NAME = "sales_data";
+    static final String FUTURE_PARTITION = "p_future";
+
+    private static final DateTimeFormatter PARTITION_NAME = DateTimeFormatter.ofPattern("'p'yyyyMM");
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Value("${dataprocessor.partitions.enabled:true}")
+    private boolean enabled;
+
+    @Value("${dataprocessor.partitions.months-ahead:3}")
+    private int monthsAhead;
+
+    @Value("${dataprocessor.partitions.drop-lock-wait-seconds:5}")
+    private int dropLockWaitSeconds;
+
+    /**
+     * One partition of sales_data, for the partitions endpoint.
+     */
+    public static class PartitionInfo {
+        private final String name;
+        // Exclusive upper bound of partition_date; null for MAXVALUE
+        private final LocalDate upperBound;
+        // InnoDB's estimate, not an exact count
+        private final long estimatedRows;
+
+        public PartitionInfo(String name, LocalDate upperBound, long estimatedRows) {
+            this.name = name;
+            this.upperBound = upperBound;
+            this.estimatedRows = estimatedRows;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public LocalDate getUpperBound() {
+            return upperBound;
+        }
+
+        public long getEstimatedRows() {
+            return estimatedRows;
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        ensurePartitions();
+    }
+
+    @Scheduled(cron = "${dataprocessor.partitions.maintenance-cron:0 15 0 * * ?}")
+    public void scheduledMaintenance() {
+        ensurePartitions();
+    }
+
+    /**
+     * Splits monthly partitions off p_future up to months-ahead past the current month.
+     * On the first run after partitioning the monthly range starts at the oldest month in the table;
+     * older rows added later fall into the oldest monthly partition.
+     */
+    public synchronized void ensurePartitions() {
+        if (!enabled) {
+            return;
+        }
+        List<PartitionInfo> partitions;
+        try {
+            partitions = getPartitions();
+        } catch (RuntimeException e) {
+            logger.warn("Could not read the partitions of {}: {}", TABLE_NAME, e.getMessage());
+            return;
+        }
+        if (partitions.isEmpty() || partitions.stream().noneMatch(p -> FUTURE_PARTITION.equals(p.getName()))) {
+            logger.debug("{} is not partitioned; skipping partition maintenance", TABLE_NAME);
+            return;
+        }
+
+        YearMonth target = YearMonth.now().plusMonths(monthsAhead);
+        YearMonth next = null;
+        for (PartitionInfo partition : partitions) {
+            if (isMonthly(partition.getName())) {
+                // The upper bound of pYYYYMM is the first day of the following month
+                next = YearMonth.from(partition.getUpperBound());
+            }
+        }
+        if (next == null) {
+            LocalDate oldest = jdbcTemplate.queryForObject(
+                "SELECT MIN(partition_date) FROM " + TABLE_NAME + " PARTITION (" + FUTURE_PARTITION + ")", LocalDate.class);
+            next = oldest != null ? YearMonth.from(oldest) : YearMonth.now();
+        }
+        if (next.isAfter(target)) {
+            return;
+        }
+
+        StringBuilder sql = new StringBuilder("ALTER TABLE ").append(TABLE_NAME)
+            .append(" REORGANIZE PARTITION ").append(FUTURE_PARTITION).append(" INTO (");
+        int created = 0;
+        for (YearMonth month = next; !month.isAfter(target); month = month.plusMonths(1)) {
+            sql.append("PARTITION ").append(month.format(PARTITION_NAME))
+                .append(" VALUES LESS THAN ('").append(month.plusMonths(1).atDay(1)).append("'), ");
+            created++;
+        }
+        sql.append("PARTITION ").append(FUTURE_PARTITION).append(" VALUES LESS THAN (MAXVALUE))");
+
+        long start = System.currentTimeMillis();
+        jdbcTemplate.execute(sql.toString());
+        logger.info("Created {} monthly partitions of {} from {} to {} in {} ms",
+            created, TABLE_NAME, next, target, System.currentTimeMillis() - start);
+    }
+
+    /**
+     * Drops every monthly partition whose rows are all dated before the cutoff. Dropping a partition is a
+     * metadata operation, so the months go without deleting row by row.
+     * The ALTER has to wait for the table's metadata lock, and statements arriving meanwhile queue
+     * behind it; a short lock_wait_timeout makes it give up instead of holding up live writes.
+     *
+     * @return The names of the dropped partitions.
+     */
+    public synchronized List<String> dropMonthlyPartitionsBefore(LocalDate cutoff) {
+        List<String> expired = new ArrayList<>();
+        for (PartitionInfo partition : getPartitions()) {
+            if (isMonthly(partition.getName()) && !partition.getUpperBound().isAfter(cutoff)) {
+                expired.add(partition.getName());
+            }
+        }
+        if (expired.isEmpty()) {
+            return expired;
+        }
+        String sql = "ALTER TABLE " + TABLE_NAME + " DROP PARTITION " + String.join(", ", expired);
+        jdbcTemplate.execute((ConnectionCallback<Void>) connection -> {
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("SET SESSION lock_wait_timeout = " + dropLockWaitSeconds);
+                try {
+                    statement.execute(sql);
+                } finally {
+                    statement.execute("SET SESSION lock_wait_timeout = DEFAULT");
+                }
+            }
+            return null;
+        });
+        logger.info("Dropped {} expired partitions of {}: {}", expired.size(), TABLE_NAME, expired);
+        return expired;
+    }
+
+    /**
+     * The partitions of sales_data in bound order; empty if the table is not partitioned.
+     */
+    public List<PartitionInfo> getPartitions() {
+        return jdbcTemplate.query(
+            "SELECT partition_name, partition_description, table_rows FROM information_schema.partitions "
+                + "WHERE table_schema = DATABASE() AND table_name = ? AND partition_name IS NOT NULL "
+                + "ORDER BY partition_ordinal_position",
+            (rs, rowNum) -> new PartitionInfo(rs.getString(1), parseBound(rs.getString(2)), rs.getLong(3)),
+            TABLE_NAME);
+    }
+
+    static boolean isMonthly(String partitionName) {
+        return partitionName != null && partitionName.matches("p\\d{6}");
+    }
+
+    private static LocalDate parseBound(String description) {
+        if (description == null || "MAXVALUE".equalsIgnoreCase(description)) {
+            return null;
+        }
+        // RANGE COLUMNS bounds are reported quoted, e.g. '2014-02-01'
+        return Date.valueOf(description.replace("'", "").trim()).toLocalDate();
+    }
+}
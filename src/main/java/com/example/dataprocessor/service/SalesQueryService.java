@@ -0,0 +1,114 @@
+package com.example.dataprocessor.service;
+
+import com.example.dataprocessor.model.SalesData;
+import com.example.dataprocessor.repository.SalesDataJdbcRepository;
+import com.example.dataprocessor.repository.SalesDataRepository;
+import com.example.dataprocessor.repository.ZoneMapJdbcRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Date-range reads of sales_data. Every query is bounded by a date range that is turned into a
+ * half-open partition_date predicate, so its cost follows the months queried and not the whole history.
+ */
+@Service
+public class SalesQueryService {
+
+    public static final int MAX_PAGE_SIZE = 5000;
+
+    private static final Set<SalesColumn> GROUPABLE_COLUMNS = EnumSet.of(
+        SalesColumn.SEGMENT, SalesColumn.COUNTRY, SalesColumn.PRODUCT, SalesColumn.DISCOUNT_BAND,
+        SalesColumn.YEAR, SalesColumn.MONTH_NUMBER);
+
+    @Autowired
+    private SalesDataRepository salesDataRepository;
+
+    @Autowired
+    private SalesDataJdbcRepository salesDataJdbcRepository;
+
+    @Autowired
+    private ZoneMapService zoneMapService;
+
+    /**
+     * Rows dated from..to (both inclusive), optionally filtered by country and product and by an
+     * inclusive min..max range on one numeric column. Pages by id: pass the last id of the previous
+     * page as afterId. Only the id ranges the zone maps cannot rule out are read.
+     */
+    @Transactional(readOnly = true)
+    public List<SalesData> findRows(LocalDate from, LocalDate to, String country, String product,
+                                    SalesColumn rangeColumn, BigDecimal min, BigDecimal max, Long afterId, int limit) {
+        SalesFilter filter = toFilter(from, to, country, product, rangeColumn, min, max);
+        int pageSize = Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+        long startId = afterId != null ? afterId : 0L;
+        if (!zoneMapService.isEnabled() && !filter.hasRange()) {
+            return salesDataRepository.findInDateRange(filter.getFrom(), filter.getToExclusive(), startId,
+                filter.getCountry(), filter.getProduct(), PageRequest.of(0, pageSize));
+        }
+        List<SalesData> rows = new ArrayList<>(pageSize);
+        for (long[] range : zoneMapService.plan(startId, filter).getRanges()) {
+            rows.addAll(salesDataJdbcRepository.findRows(filter, range[0], range[1], pageSize - rows.size()));
+            if (rows.size() >= pageSize) {
+                break;
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * How the zone maps would narrow a {@link #findRows} query: the id ranges it reads and the share
+     * of ids it skips.
+     */
+    @Transactional(readOnly = true)
+    public ZoneMapService.ScanPlan explain(LocalDate from, LocalDate to, String country, String product,
+                                          SalesColumn rangeColumn, BigDecimal min, BigDecimal max, Long afterId) {
+        SalesFilter filter = toFilter(from, to, country, product, rangeColumn, min, max);
+        return zoneMapService.plan(afterId != null ? afterId : 0L, filter);
+    }
+
+    @Transactional(readOnly = true)
+    public List<SalesSummary> summarize(LocalDate from, LocalDate to, SalesColumn groupBy) {
+        checkRange(from, to);
+        if (!GROUPABLE_COLUMNS.contains(groupBy)) {
+            throw new IllegalArgumentException("Cannot group by " + groupBy + "; use one of " + GROUPABLE_COLUMNS);
+        }
+        return salesDataJdbcRepository.summarize(from, to.plusDays(1), groupBy);
+    }
+
+    private static SalesFilter toFilter(LocalDate from, LocalDate to, String country, String product,
+                                        SalesColumn rangeColumn, BigDecimal min, BigDecimal max) {
+        checkRange(from, to);
+        if (rangeColumn != null && !ZoneMapJdbcRepository.RANGE_COLUMNS.contains(rangeColumn)) {
+            throw new IllegalArgumentException("Cannot filter a range of " + rangeColumn
+                + "; use one of " + ZoneMapJdbcRepository.RANGE_COLUMNS);
+        }
+        if ((min != null || max != null) && rangeColumn == null) {
+            throw new IllegalArgumentException("min and max need a rangeColumn");
+        }
+        if (min != null && max != null && min.compareTo(max) > 0) {
+            throw new IllegalArgumentException("min " + min + " is above max " + max);
+        }
+        return new SalesFilter(from, to.plusDays(1), blankToNull(country), blankToNull(product), rangeColumn, min, max);
+    }
+
+    private static void checkRange(LocalDate from, LocalDate to) {
+        if (from == null || to == null) {
+            throw new IllegalArgumentException("Both from and to dates are required");
+        }
+        if (to.isBefore(from)) {
+            throw new IllegalArgumentException("The to date " + to + " is before the from date " + from);
+        }
+    }
+
+    private static String blankToNull(String value) {
+        return value == null || value.isBlank() ? null : value.trim();
+    }
+}
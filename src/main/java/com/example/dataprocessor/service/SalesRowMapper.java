@@ -0,0 +1,252 @@
+package com.example.dataprocessor.service;
+
+import com.example.dataprocessor.model.SalesData;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.Month;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.time.format.TextStyle;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.BiConsumer;
+
+/**
+ * Row mapper compiled once per source from its column mapping.
+ * The mapping is flattened into parallel arrays of column indexes and binders, each binder holding the
+ * SalesData setter for its column as a method reference, so mapping a row is a plain loop without map
+ * iteration, boxing or a per-cell switch that the JIT could not see through.
+ */
+public class SalesRowMapper {
+
+    // Excel's day 1 is 1900-01-01, so day 0 is 1899-12-31
+    private static final LocalDate EXCEL_EPOCH = LocalDate.of(1899, 12, 31);
+
+    private static final DateTimeFormatter[] DATE_FORMATTERS = compileDateFormats();
+
+    // Indexed by month number
+    private static final String[] MONTH_NAMES = new String[13];
+
+    static {
+        for (Month month : Month.values()) {
+            MONTH_NAMES[month.getValue()] = month.getDisplayName(TextStyle.FULL, Locale.ENGLISH);
+        }
+    }
+
+    /**
+     * Receives values that could not be mapped; the ingestion pipeline passes its reject sink.
+     */
+    @FunctionalInterface
+    public interface RejectHandler {
+        void reject(long lineNumber, List<String> row, SalesColumn column, RejectReason reason, String detail);
+    }
+
+    /**
+     * Sets one field from a cell.
+     */
+    @FunctionalInterface
+    private interface CellBinder {
+        /**
+         * @return null on success, or the reason the value could not be used.
+         */
+        RejectReason bind(SalesData salesData, List<String> row, int index);
+    }
+
+    private final int[] columnIndexes;
+    private final SalesColumn[] columns;
+    private final CellBinder[] binders;
+
+    public SalesRowMapper(Map<Integer, SalesColumn> columnMapping) {
+        // Ascending column order walks each row front to back
+        Map<Integer, SalesColumn> ordered = new TreeMap<>(columnMapping);
+        columnIndexes = new int[ordered.size()];
+        columns = new SalesColumn[ordered.size()];
+        binders = new CellBinder[ordered.size()];
+        int i = 0;
+        for (Map.Entry<Integer, SalesColumn> entry : ordered.entrySet()) {
+            columnIndexes[i] = entry.getKey();
+            columns[i] = entry.getValue();
+            binders[i] = binderFor(entry.getValue());
+            i++;
+        }
+    }
+
+    /**
+     * Maps one row. Values that cannot be used are reported to the reject sink.
+     *
+     * @return The entity, or null if the row is empty or was rejected.
+     */
+    public SalesData map(List<String> row, long lineNumber, RejectHandler rejectHandler) {
+        SalesData salesData = new SalesData();
+        boolean isEmptyRow = true;
+        int rowSize = row.size();
+        for (int i = 0; i < columnIndexes.length; i++) {
+            int index = columnIndexes[i];
+            if (index >= rowSize) {
+                break; // Indexes ascend, so no later column is present either
+            }
+            if (isEmptyRow && !isBlank(row, index)) {
+                isEmptyRow = false;
+            }
+            RejectReason reason = binders[i].bind(salesData, row, index);
+            if (reason != null) {
+                rejectHandler.reject(lineNumber, row, columns[i], reason, row.get(index));
+                return null;
+            }
+        }
+        return isEmptyRow ? null : salesData;
+    }
+
+    private static CellBinder binderFor(SalesColumn column) {
+        switch (column) {
+            case SEGMENT:
+                return textBinder(SalesData::setSegment);
+            case COUNTRY:
+                return textBinder(SalesData::setCountry);
+            case PRODUCT:
+                return textBinder(SalesData::setProduct);
+            case DISCOUNT_BAND:
+                return textBinder(SalesData::setDiscountBand);
+            case UNITS_SOLD:
+                return numberBinder(SalesData::setUnitsSold);
+            case MANUFACTURING_PRICE:
+                return numberBinder(SalesData::setManufacturingPrice);
+            case SALE_PRICE:
+                return numberBinder(SalesData::setSalePrice);
+            case GROSS_SALES:
+                return numberBinder(SalesData::setGrossSales);
+            case DISCOUNTS:
+                return numberBinder(SalesData::setDiscounts);
+            case SALES:
+                return numberBinder(SalesData::setSales);
+            case COGS:
+                return numberBinder(SalesData::setCogs);
+            case PROFIT:
+                return numberBinder(SalesData::setProfit);
+            case DATE:
+                return SalesRowMapper::bindDate;
+            default:
+                // Month and year are derived from the date
+                return (salesData, row, index) -> null;
+        }
+    }
+
+    private static CellBinder textBinder(BiConsumer<SalesData, String> setter) {
+        return (salesData, row, index) -> {
+            String value = row.get(index);
+            setter.accept(salesData, value != null ? value.trim() : null);
+            return null;
+        };
+    }
+
+    private static CellBinder numberBinder(BiConsumer<SalesData, BigDecimal> setter) {
+        return (salesData, row, index) -> {
+            // Spreadsheet numbers arrive typed and are set without a round trip through text
+            if (row instanceof SheetRow sheetRow && sheetRow.getValue(index) instanceof BigDecimal number) {
+                setter.accept(salesData, number);
+                return null;
+            }
+            String value = row.get(index);
+            BigDecimal number = parseBigDecimal(value);
+            if (number == null && value != null && !value.trim().isEmpty()) {
+                return RejectReason.INVALID_NUMBER;
+            }
+            setter.accept(salesData, number);
+            return null;
+        };
+    }
+
+    private static RejectReason bindDate(SalesData salesData, List<String> row, int index) {
+        LocalDate date;
+        if (row instanceof SheetRow sheetRow && sheetRow.getValue(index) instanceof LocalDate typed) {
+            date = typed;
+        } else {
+            String value = row.get(index);
+            date = parseLocalDate(value);
+            if (date == null) {
+                return value != null && !value.trim().isEmpty() ? RejectReason.INVALID_DATE : null;
+            }
+        }
+        salesData.setDate(date);
+        salesData.setMonthNumber(date.getMonthValue());
+        salesData.setMonthName(MONTH_NAMES[date.getMonthValue()]);
+        salesData.setYear(date.getYear());
+        return null;
+    }
+
+    private static boolean isBlank(List<String> row, int index) {
+        if (row instanceof SheetRow sheetRow && (sheetRow.getValue(index) instanceof BigDecimal || sheetRow.getValue(index) instanceof LocalDate)) {
+            return false; // Typed cells are never blank
+        }
+        String value = row.get(index);
+        return value == null || value.trim().isEmpty();
+    }
+
+    static BigDecimal parseBigDecimal(String value) {
+        if (value == null || value.trim().isEmpty()) {
+            return null;
+        }
+        try {
+            // Remove currency symbols, commas, parentheses, and any non-numeric characters
+            // except for the leading minus sign and the decimal point.
+            String cleanValue = value.trim()
+                                   .replace("$", "")
+                                   .replace(",", "")
+                                   .replace("(", "")
+                                   .replace(")", "");
+
+            // Handle potential empty string after cleaning (e.g., if input was just "-")
+            if (cleanValue.isEmpty() || cleanValue.equals("-")) {
+                return BigDecimal.ZERO; // Treat empty or single hyphen as zero
+            }
+
+            return new BigDecimal(cleanValue);
+        } catch (NumberFormatException e) {
+            // Reported by the caller through the reject sink
+            return null;
+        }
+    }
+
+    static LocalDate parseLocalDate(String value) {
+        if (value == null || value.trim().isEmpty()) {
+            return null;
+        }
+        String trimmedValue = value.trim();
+
+        // ISO_LOCAL_DATE_TIME first, then the formats column guessing recognizes
+        for (DateTimeFormatter formatter : DATE_FORMATTERS) {
+            try {
+                return LocalDate.parse(trimmedValue, formatter);
+            } catch (DateTimeParseException ignored) {
+                // Try next format
+            }
+        }
+
+        // Also try to parse as Excel numeric date
+        try {
+            double excelDate = Double.parseDouble(trimmedValue);
+            // Check for a reasonable range for Excel dates (e.g., between 1900-01-01 and 2100-01-01)
+            // Excel's epoch is 1900-01-01, which is day 1. Max reasonable date around 2070 is ~70000.
+            if (excelDate > 0 && excelDate < 100000) {
+                return EXCEL_EPOCH.plusDays((long) excelDate);
+            }
+        } catch (NumberFormatException ignored) {
+            // Not an Excel date
+        }
+        // Reported by the caller through the reject sink
+        return null;
+    }
+
+    private static DateTimeFormatter[] compileDateFormats() {
+        List<DateTimeFormatter> formatters = new ArrayList<>();
+        formatters.add(DateTimeFormatter.ISO_LOCAL_DATE_TIME);
+        for (String format : ColumnGuessingService.getDateFormatStrings()) {
+            formatters.add(DateTimeFormatter.ofPattern(format));
+        }
+        return formatters.toArray(new DateTimeFormatter[0]);
+    }
+}
@@ -0,0 +1,43 @@
+package com.example.dataprocessor.service;
+
+import java.math.BigDecimal;
+
+/**
+ * Totals of the sales rows sharing one value of the grouping column.
+ */
+public class SalesSummary {
+
+    private final String groupKey;
+    private final long rowCount;
+    private final BigDecimal unitsSold;
+    private final BigDecimal sales;
+    private final BigDecimal profit;
+
+    public SalesSummary(String groupKey, long rowCount, BigDecimal unitsSold, BigDecimal sales, BigDecimal profit) {
+        this.groupKey = groupKey;
+        this.rowCount = rowCount;
+        this.unitsSold = unitsSold;
+        this.sales = sales;
+        this.profit = profit;
+    }
+
+    public String getGroupKey() {
+        return groupKey;
+    }
+
+    public long getRowCount() {
+        return rowCount;
+    }
+
+    public BigDecimal getUnitsSold() {
+        return unitsSold;
+    }
+
+    public BigDecimal getSales() {
+        return sales;
+    }
+
+    public BigDecimal getProfit() {
+        return profit;
+    }
+}
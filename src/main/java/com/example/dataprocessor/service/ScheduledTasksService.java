@@ -13,6 +13,9 @@ public class ScheduledTasksService {
     @Autowired
     private FileTrackerService fileTrackerService;
 
+    @Autowired
+    private RetentionService retentionService;
+
     // Commenting out scheduled tasks for now
     /*
     @Scheduled(fixedRate = 60000) // Run every minute
@@ -20,11 +23,11 @@ public class ScheduledTasksService {
         logger.info("Running scheduled task: processPendingFiles at {}", java.time.LocalDateTime.now());
         fileTrackerService.processPendingFiles();
     }
+    */
 
-    @Scheduled(cron = "0 0 0 * * ?") // Run at midnight every day
+    @Scheduled(cron = "${dataprocessor.retention.cron:0 0 0 * * ?}") // Run at midnight every day
     public void cleanupOldFiles() {
         logger.info("Running scheduled task: cleanupOldFiles at {}", java.time.LocalDateTime.now());
-        fileTrackerService.cleanupOldFiles();
+        retentionService.purgeExpired();
     }
-    */
 } 
\ No newline at end of file
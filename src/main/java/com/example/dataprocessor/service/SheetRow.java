@@ -0,0 +1,47 @@
+package com.example.dataprocessor.service;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.AbstractList;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * A spreadsheet row that keeps numeric cells as BigDecimal and date cells as LocalDate.
+ * The List view renders them as text only when asked (header detection, column guessing, rejects),
+ * so the mapper can take the typed values directly and skip the format-then-parse round trip.
+ * Rows decoded from a {@link StagedRowChunk} use the same type, whatever their source format.
+ */
+public final class SheetRow extends AbstractList<String> implements RandomAccess {
+
+    private final List<Object> values;
+
+    SheetRow(List<Object> values) {
+        this.values = values;
+    }
+
+    /**
+     * @return A String, BigDecimal or LocalDate; blank cells are "", missing CSV values null.
+     */
+    public Object getValue(int index) {
+        return values.get(index);
+    }
+
+    @Override
+    public String get(int index) {
+        Object value = values.get(index);
+        if (value instanceof BigDecimal number) {
+            return number.toPlainString();
+        }
+        if (value instanceof LocalDate date) {
+            return date.format(DateTimeFormatter.ISO_LOCAL_DATE);
+        }
+        return (String) value;
+    }
+
+    @Override
+    public int size() {
+        return values.size();
+    }
+}
@@ -0,0 +1,245 @@
+package com.example.dataprocessor.service;
+
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * A chunk of parsed rows held off-heap while it waits for the writer pool.
+ * Rows are encoded into one native memory segment: a row directory, then one fixed-width 16-byte slot
+ * per cell (numbers as unscaled long plus scale, dates as epoch day, text as a reference into a UTF-8
+ * string pool), then the pool itself. The writer decodes a row only when it maps it, so queued chunks
+ * no longer add to the heap, and the memory is released deterministically by {@link #close()}.
+ */
+public final class StagedRowChunk implements AutoCloseable {
+
+    private static final int DIRECTORY_ENTRY_BYTES = 8; // int firstSlot, int cellCount
+    private static final int SLOT_BYTES = 16;           // int tag, int aux, long value
+
+    private static final int TAG_NULL = 0;
+    private static final int TAG_TEXT = 1;          // aux = byte length, value = pool offset
+    private static final int TAG_DECIMAL = 2;       // aux = scale, value = unscaled value
+    private static final int TAG_DECIMAL_TEXT = 3;  // Too wide for a long; pooled like text
+    private static final int TAG_DATE = 4;          // value = epoch day
+
+    private final Arena arena;
+    private final MemorySegment segment;
+    private final int rowCount;
+    private final long slotsOffset;
+
+    private StagedRowChunk(Arena arena, MemorySegment segment, int rowCount, long slotsOffset) {
+        this.arena = arena;
+        this.segment = segment;
+        this.rowCount = rowCount;
+        this.slotsOffset = slotsOffset;
+    }
+
+    /**
+     * Copies rows into a new off-heap segment. Typed {@link SheetRow} cells keep their type.
+     */
+    public static StagedRowChunk stage(List<List<String>> rows) {
+        // First pass sizes the segment exactly, so nothing is reallocated while encoding
+        long cellCount = 0;
+        long poolBytes = 0;
+        for (List<String> row : rows) {
+            cellCount += row.size();
+            for (int i = 0; i < row.size(); i++) {
+                Object value = cellValue(row, i);
+                if (value instanceof String text) {
+                    poolBytes += utf8Length(text);
+                } else if (value instanceof BigDecimal number && !fitsLong(number)) {
+                    poolBytes += number.toPlainString().length();
+                }
+            }
+        }
+        long slotsOffset = (long) rows.size() * DIRECTORY_ENTRY_BYTES;
+        long poolOffset = slotsOffset + cellCount * SLOT_BYTES;
+
+        // Shared: staged on a parse thread, decoded and freed on a writer thread
+        Arena arena = Arena.ofShared();
+        try {
+            MemorySegment segment = arena.allocate(Math.max(1, poolOffset + poolBytes), Long.BYTES);
+            int slot = 0;
+            long poolPosition = poolOffset;
+            for (int r = 0; r < rows.size(); r++) {
+                List<String> row = rows.get(r);
+                long entry = (long) r * DIRECTORY_ENTRY_BYTES;
+                segment.set(ValueLayout.JAVA_INT, entry, slot);
+                segment.set(ValueLayout.JAVA_INT, entry + Integer.BYTES, row.size());
+                for (int i = 0; i < row.size(); i++, slot++) {
+                    long slotAddress = slotsOffset + (long) slot * SLOT_BYTES;
+                    Object value = cellValue(row, i);
+                    int tag;
+                    int aux = 0;
+                    long payload = 0;
+                    if (value == null) {
+                        tag = TAG_NULL;
+                    } else if (value instanceof LocalDate date) {
+                        tag = TAG_DATE;
+                        payload = date.toEpochDay();
+                    } else if (value instanceof BigDecimal number && fitsLong(number)) {
+                        tag = TAG_DECIMAL;
+                        aux = number.scale();
+                        payload = number.unscaledValue().longValue();
+                    } else {
+                        String text = value instanceof BigDecimal number ? number.toPlainString() : (String) value;
+                        tag = value instanceof BigDecimal ? TAG_DECIMAL_TEXT : TAG_TEXT;
+                        payload = poolPosition;
+                        long end = writeUtf8(segment, poolPosition, text);
+                        aux = (int) (end - poolPosition);
+                        poolPosition = end;
+                    }
+                    segment.set(ValueLayout.JAVA_INT, slotAddress, tag);
+                    segment.set(ValueLayout.JAVA_INT, slotAddress + Integer.BYTES, aux);
+                    segment.set(ValueLayout.JAVA_LONG, slotAddress + 8, payload);
+                }
+            }
+            return new StagedRowChunk(arena, segment, rows.size(), slotsOffset);
+        } catch (RuntimeException e) {
+            arena.close();
+            throw e;
+        }
+    }
+
+    public int size() {
+        return rowCount;
+    }
+
+    /**
+     * A list view of the rows; each get decodes a fresh {@link SheetRow} from the segment.
+     * Must not be used after {@link #close()}.
+     */
+    public List<List<String>> rows() {
+        return new RowsView();
+    }
+
+    /**
+     * Frees the native memory. Decoded rows stay valid, since they hold heap copies.
+     */
+    @Override
+    public void close() {
+        arena.close();
+    }
+
+    private SheetRow decodeRow(int rowIndex) {
+        long entry = (long) rowIndex * DIRECTORY_ENTRY_BYTES;
+        int firstSlot = segment.get(ValueLayout.JAVA_INT, entry);
+        int cellCount = segment.get(ValueLayout.JAVA_INT, entry + Integer.BYTES);
+        List<Object> values = new ArrayList<>(cellCount);
+        for (int i = 0; i < cellCount; i++) {
+            long slotAddress = slotsOffset + (long) (firstSlot + i) * SLOT_BYTES;
+            int tag = segment.get(ValueLayout.JAVA_INT, slotAddress);
+            int aux = segment.get(ValueLayout.JAVA_INT, slotAddress + Integer.BYTES);
+            long payload = segment.get(ValueLayout.JAVA_LONG, slotAddress + 8);
+            switch (tag) {
+                case TAG_TEXT:
+                    values.add(readUtf8(payload, aux));
+                    break;
+                case TAG_DECIMAL:
+                    values.add(BigDecimal.valueOf(payload, aux));
+                    break;
+                case TAG_DECIMAL_TEXT:
+                    values.add(new BigDecimal(readUtf8(payload, aux)));
+                    break;
+                case TAG_DATE:
+                    values.add(LocalDate.ofEpochDay(payload));
+                    break;
+                default:
+                    values.add(null);
+                    break;
+            }
+        }
+        return new SheetRow(values);
+    }
+
+    private String readUtf8(long offset, int length) {
+        byte[] bytes = new byte[length];
+        MemorySegment.copy(segment, ValueLayout.JAVA_BYTE, offset, bytes, 0, length);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static Object cellValue(List<String> row, int index) {
+        return row instanceof SheetRow sheetRow ? sheetRow.getValue(index) : row.get(index);
+    }
+
+    private static boolean fitsLong(BigDecimal number) {
+        return number.unscaledValue().bitLength() < Long.SIZE;
+    }
+
+    /**
+     * Byte length of the UTF-8 encoding, matching {@link String#getBytes} (an unpaired surrogate becomes '?').
+     */
+    private static long utf8Length(String text) {
+        long length = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c < 0x80) {
+                length += 1;
+            } else if (c < 0x800) {
+                length += 2;
+            } else if (Character.isSurrogate(c)) {
+                if (Character.isHighSurrogate(c) && i + 1 < text.length() && Character.isLowSurrogate(text.charAt(i + 1))) {
+                    length += 4;
+                    i++;
+                } else {
+                    length += 1;
+                }
+            } else {
+                length += 3;
+            }
+        }
+        return length;
+    }
+
+    /**
+     * Encodes text as UTF-8 straight into the segment, without an intermediate byte array.
+     *
+     * @return The offset just past the written bytes.
+     */
+    private static long writeUtf8(MemorySegment segment, long offset, String text) {
+        long position = offset;
+        for (int i = 0; i < text.length(); i++) {
+            int c = text.charAt(i);
+            if (c < 0x80) {
+                segment.set(ValueLayout.JAVA_BYTE, position++, (byte) c);
+            } else if (c < 0x800) {
+                segment.set(ValueLayout.JAVA_BYTE, position++, (byte) (0xC0 | (c >> 6)));
+                segment.set(ValueLayout.JAVA_BYTE, position++, (byte) (0x80 | (c & 0x3F)));
+            } else if (Character.isSurrogate((char) c)) {
+                if (Character.isHighSurrogate((char) c) && i + 1 < text.length() && Character.isLowSurrogate(text.charAt(i + 1))) {
+                    int codePoint = Character.toCodePoint((char) c, text.charAt(++i));
+                    segment.set(ValueLayout.JAVA_BYTE, position++, (byte) (0xF0 | (codePoint >> 18)));
+                    segment.set(ValueLayout.JAVA_BYTE, position++, (byte) (0x80 | ((codePoint >> 12) & 0x3F)));
+                    segment.set(ValueLayout.JAVA_BYTE, position++, (byte) (0x80 | ((codePoint >> 6) & 0x3F)));
+                    segment.set(ValueLayout.JAVA_BYTE, position++, (byte) (0x80 | (codePoint & 0x3F)));
+                } else {
+                    segment.set(ValueLayout.JAVA_BYTE, position++, (byte) '?');
+                }
+            } else {
+                segment.set(ValueLayout.JAVA_BYTE, position++, (byte) (0xE0 | (c >> 12)));
+                segment.set(ValueLayout.JAVA_BYTE, position++, (byte) (0x80 | ((c >> 6) & 0x3F)));
+                segment.set(ValueLayout.JAVA_BYTE, position++, (byte) (0x80 | (c & 0x3F)));
+            }
+        }
+        return position;
+    }
+
+    private final class RowsView extends AbstractList<List<String>> implements RandomAccess {
+        @Override
+        public List<String> get(int index) {
+            return decodeRow(index);
+        }
+
+        @Override
+        public int size() {
+            return rowCount;
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package com.example.dataprocessor.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.BitSet;
+
+/**
+ * In-memory view of a chunked upload session whose parts are staged on disk.
+ * {@link #openStream()} returns the concatenation of parts 1..N in order; a read blocks while the next
+ * part has not arrived yet, so ingestion can run on the contiguous prefix while later parts are still
+ * being uploaded. The stream ends once the session is completed and the last part has been read.
+ */
+public class StagedUpload {
+
+    private final String sessionId;
+    private final Path directory;
+    private final long partTimeoutMillis;
+
+    private final BitSet receivedParts = new BitSet();
+    private Integer totalParts;
+    private boolean aborted;
+    private boolean ingestionStarted;
+
+    public StagedUpload(String sessionId, Path directory, long partTimeoutMillis) {
+        this.sessionId = sessionId;
+        this.directory = directory;
+        this.partTimeoutMillis = partTimeoutMillis;
+    }
+
+    public String getSessionId() {
+        return sessionId;
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    public Path partPath(int partNumber) {
+        return directory.resolve(String.format("part-%06d", partNumber));
+    }
+
+    public synchronized void partReceived(int partNumber) {
+        receivedParts.set(partNumber);
+        notifyAll();
+    }
+
+    public synchronized boolean hasPart(int partNumber) {
+        return receivedParts.get(partNumber);
+    }
+
+    /**
+     * Marks the upload as complete.
+     *
+     * @return The first missing part number, or 0 if parts 1..totalParts are all present.
+     */
+    public synchronized int complete(int totalParts) {
+        int firstMissing = receivedParts.nextClearBit(1);
+        if (firstMissing <= totalParts) {
+            return firstMissing;
+        }
+        this.totalParts = totalParts;
+        notifyAll();
+        return 0;
+    }
+
+    public synchronized boolean isComplete() {
+        return totalParts != null;
+    }
+
+    public synchronized void abort() {
+        aborted = true;
+        notifyAll();
+    }
+
+    /**
+     * Claims the right to start ingestion for this session; true only for the first caller.
+     */
+    public synchronized boolean markIngestionStarted() {
+        if (ingestionStarted) {
+            return false;
+        }
+        ingestionStarted = true;
+        return true;
+    }
+
+    /**
+     * Waits until the given part is staged or the upload is known to end before it.
+     *
+     * @return true if the part can be read, false if the upload ended before this part.
+     */
+    private synchronized boolean awaitPart(int partNumber) throws IOException {
+        long deadline = System.currentTimeMillis() + partTimeoutMillis;
+        while (!receivedParts.get(partNumber)) {
+            if (aborted) {
+                throw new IOException("Upload session " + sessionId + " was aborted");
+            }
+            if (totalParts != null && partNumber > totalParts) {
+                return false;
+            }
+            long remaining = deadline - System.currentTimeMillis();
+            if (remaining <= 0) {
+                throw new IOException("Timed out waiting for part " + partNumber + " of upload session " + sessionId);
+            }
+            try {
+                wait(remaining);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted waiting for part " + partNumber);
+            }
+        }
+        return true;
+    }
+
+    public InputStream openStream() {
+        return new InputStream() {
+            private int nextPart = 1;
+            private InputStream current;
+            private boolean finished;
+
+            @Override
+            public int read() throws IOException {
+                byte[] single = new byte[1];
+                int n = read(single, 0, 1);
+                return n == -1 ? -1 : single[0] & 0xFF;
+            }
+
+            @Override
+            public int read(byte[] buffer, int offset, int length) throws IOException {
+                if (length == 0) {
+                    return 0;
+                }
+                while (!finished) {
+                    if (current == null) {
+                        if (!awaitPart(nextPart)) {
+                            finished = true;
+                            break;
+                        }
+                        current = Files.newInputStream(partPath(nextPart));
+                        nextPart++;
+                    }
+                    int n = current.read(buffer, offset, length);
+                    if (n != -1) {
+                        return n;
+                    }
+                    current.close();
+                    current = null;
+                }
+                return -1;
+            }
+
+            @Override
+            public void close() throws IOException {
+                finished = true;
+                if (current != null) {
+                    current.close();
+                    current = null;
+                }
+            }
+        };
+    }
+}
@@ -0,0 +1,154 @@
+package com.example.dataprocessor.service;
+
+import com.example.dataprocessor.repository.FileProcessingStatusJdbcRepository;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Write-behind buffer for file status and progress. Updates of the same file are merged in memory (the
+ * latest status and counters win) and all pending files are written by one batched UPDATE on each flush,
+ * so per-chunk progress costs no database round trip. Terminal states are written immediately.
+ */
+@Component
+public class StatusUpdateBuffer {
+
+    private static final Logger logger = LoggerFactory.getLogger(StatusUpdateBuffer.class);
+
+    private static final Set<String> TERMINAL_STATES = Set.of("COMPLETED", "FAILED", "DUPLICATE");
+
+    @Autowired
+    private FileProcessingStatusJdbcRepository fileProcessingStatusJdbcRepository;
+
+    private final Map<Long, PendingUpdate> pending = new ConcurrentHashMap<>();
+
+    // Flushes are serialized so an older drained update can never be written after a newer one
+    private final Object flushLock = new Object();
+
+    /**
+     * Changes of one file not yet written. Only mutated inside ConcurrentHashMap.compute, so a drained
+     * instance is never touched again.
+     */
+    private static final class PendingUpdate {
+        String status;
+        LocalDateTime processTime;
+        String errorMessage;
+        Integer rowsProcessed;
+        Integer rowsFailed;
+
+        void mergeFrom(PendingUpdate older) {
+            if (status == null) {
+                status = older.status;
+                processTime = older.processTime;
+                errorMessage = older.errorMessage;
+            }
+            if (rowsProcessed == null) {
+                rowsProcessed = older.rowsProcessed;
+                rowsFailed = older.rowsFailed;
+            }
+        }
+
+        FileProcessingStatusJdbcRepository.StatusUpdate toStatusUpdate(long fileId) {
+            return new FileProcessingStatusJdbcRepository.StatusUpdate(fileId, status, processTime, errorMessage, rowsProcessed, rowsFailed);
+        }
+    }
+
+    /**
+     * Records a status transition. A terminal state flushes this file at once.
+     */
+    public void updateStatus(Long fileId, String status, String errorMessage) {
+        LocalDateTime now = LocalDateTime.now();
+        pending.compute(fileId, (id, update) -> {
+            PendingUpdate merged = update != null ? update : new PendingUpdate();
+            merged.status = status;
+            merged.processTime = now;
+            merged.errorMessage = errorMessage;
+            return merged;
+        });
+        if (TERMINAL_STATES.contains(status)) {
+            flush(fileId);
+        }
+    }
+
+    /**
+     * Records the latest row counters of a running job; replaces any not yet written.
+     */
+    public void updateProgress(Long fileId, int rowsProcessed, int rowsFailed) {
+        pending.compute(fileId, (id, update) -> {
+            PendingUpdate merged = update != null ? update : new PendingUpdate();
+            // Chunks finish out of order; counters only move forward
+            if (merged.rowsProcessed == null || rowsProcessed >= merged.rowsProcessed) {
+                merged.rowsProcessed = rowsProcessed;
+                merged.rowsFailed = rowsFailed;
+            }
+            return merged;
+        });
+    }
+
+    @Scheduled(fixedDelayString = "${dataprocessor.status.flush-interval-ms:1000}")
+    public void flushAll() {
+        synchronized (flushLock) {
+            List<Long> fileIds = new ArrayList<>(pending.keySet());
+            List<FileProcessingStatusJdbcRepository.StatusUpdate> updates = new ArrayList<>(fileIds.size());
+            List<Long> drainedIds = new ArrayList<>(fileIds.size());
+            List<PendingUpdate> drained = new ArrayList<>(fileIds.size());
+            for (Long fileId : fileIds) {
+                PendingUpdate update = pending.remove(fileId);
+                if (update != null) {
+                    updates.add(update.toStatusUpdate(fileId));
+                    drainedIds.add(fileId);
+                    drained.add(update);
+                }
+            }
+            try {
+                fileProcessingStatusJdbcRepository.applyUpdates(updates);
+            } catch (RuntimeException e) {
+                logger.warn("Could not flush {} file status updates; retrying on the next flush: {}", updates.size(), e.getMessage());
+                for (int i = 0; i < drainedIds.size(); i++) {
+                    requeue(drainedIds.get(i), drained.get(i));
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes the pending changes of one file now.
+     */
+    public void flush(Long fileId) {
+        synchronized (flushLock) {
+            PendingUpdate update = pending.remove(fileId);
+            if (update == null) {
+                return;
+            }
+            try {
+                fileProcessingStatusJdbcRepository.applyUpdates(List.of(update.toStatusUpdate(fileId)));
+            } catch (RuntimeException e) {
+                requeue(fileId, update);
+                throw e;
+            }
+        }
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        flushAll();
+    }
+
+    private void requeue(Long fileId, PendingUpdate failed) {
+        // Anything recorded since the drain is newer and takes precedence
+        pending.merge(fileId, failed, (newer, older) -> {
+            newer.mergeFrom(older);
+            return newer;
+        });
+    }
+}
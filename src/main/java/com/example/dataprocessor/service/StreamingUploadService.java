@@ -0,0 +1,257 @@
+package com.example.dataprocessor.service;
+
+import com.example.dataprocessor.model.FileProcessingStatus;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Ingests a raw request body (no multipart) while it is still arriving.
+ * The servlet stream is read exactly once: every byte goes to the parser, into the content hash and,
+ * if enabled, into a staging file that can later be replayed without another upload. The staged copy
+ * only takes its final name once the whole body was read, so a replay never ingests a truncated one.
+ */
+@Service
+public class StreamingUploadService {
+
+    private static final Logger logger = LoggerFactory.getLogger(StreamingUploadService.class);
+
+    public static final String XLSX_MEDIA_TYPE = "application/vnd.openxmlformats-officedocument.spreadsheetml.sheet";
+
+    @Autowired
+    private FileProcessorService fileProcessorService;
+
+    @Autowired
+    private FileTrackerService fileTrackerService;
+
+    // Looked up on use: RetentionService deletes staged copies through this service
+    @Autowired
+    private ObjectProvider<RetentionService> retentionService;
+
+    @Autowired
+    @Qualifier("taskExecutor")
+    private ExecutorService taskExecutor;
+
+    @Value("${dataprocessor.upload.staging-dir:${java.io.tmpdir}/dataprocessor-staging}")
+    private String stagingDir;
+
+    @Value("${dataprocessor.upload.tee-enabled:true}")
+    private boolean teeEnabled;
+
+    /**
+     * Derives a file name the format detection understands from the request content type.
+     *
+     * @return The name, or null if the content type is not supported.
+     */
+    public String defaultFileName(String contentType) {
+        if (contentType == null) {
+            return null;
+        }
+        String mediaType = contentType.split(";")[0].trim().toLowerCase(Locale.ROOT);
+        switch (mediaType) {
+            case "text/csv":
+                return "upload.csv";
+            case XLSX_MEDIA_TYPE:
+                return "upload.xlsx";
+            case "application/gzip":
+                return "upload.csv.gz";
+            case "application/zip":
+                return "upload.zip";
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Registers the upload and ingests the body on the calling (request) thread; returns once every
+     * row has been written. Chunk writes still run concurrently on the writer pool.
+     */
+    public FileProcessingStatus ingestRequestBody(InputStream body, String fileName, IngestionMode mode) throws Exception {
+        FileProcessingStatus status = fileTrackerService.createFileProcessingStatus(fileName, fileName, null, "PROCESSING", null);
+
+        MessageDigest digest = sha256();
+        InputStream in = new DigestInputStream(body, digest);
+        Path stagedFile = null;
+        Path partialFile = null;
+        OutputStream tee = null;
+        if (teeEnabled) {
+            stagedFile = stagedFilePath(status.getId(), fileName);
+            partialFile = stagedFile.resolveSibling(stagedFile.getFileName() + ".part");
+            Files.createDirectories(stagedFile.getParent());
+            tee = Files.newOutputStream(partialFile);
+            in = new TeeInputStream(in, tee);
+        }
+        boolean complete = false;
+        try {
+            fileProcessorService.processStream(in, fileName, status.getId(), mode);
+            // Consume whatever the parser did not need so the hash and the staged copy are complete
+            in.transferTo(OutputStream.nullOutputStream());
+            complete = true;
+        } finally {
+            if (tee != null) {
+                tee.close();
+                if (complete) {
+                    Files.move(partialFile, stagedFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                } else {
+                    deleteQuietly(partialFile);
+                }
+            }
+        }
+        fileTrackerService.updateContentHash(status.getId(), HexFormat.of().formatHex(digest.digest()));
+        return status;
+    }
+
+    /**
+     * Size of the staged copy of a streamed upload, for admission control.
+     *
+     * @return -1 if no staged copy exists for the file.
+     */
+    public long stagedCopySize(FileProcessingStatus status) {
+        Path stagedFile = stagedFilePath(status.getId(), status.getFilename());
+        try {
+            return Files.isRegularFile(stagedFile) ? Files.size(stagedFile) : -1;
+        } catch (IOException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Re-ingests a previously streamed upload from its staged copy, asynchronously. The rows, rejects and
+     * zone maps of the earlier run are deleted first; rows an UPSERT updated belong to the upload that
+     * inserted them and stay. The permit is closed when the replay ends.
+     *
+     * @return false if the file is still PENDING or PROCESSING, or no staged copy exists; the caller still
+     *         owns the permit then.
+     */
+    public boolean replay(FileProcessingStatus status, IngestionMode mode, AdmissionControlService.Permit permit) {
+        Path stagedFile = stagedFilePath(status.getId(), status.getFilename());
+        if (!Files.isRegularFile(stagedFile) || !fileTrackerService.startReprocessing(status.getId())) {
+            return false;
+        }
+        CompletableFuture.runAsync(() -> {
+            boolean started = false;
+            try (permit; InputStream in = Files.newInputStream(stagedFile)) {
+                if (retentionService.getObject().deleteWrittenRows(status.getId()) > 0) {
+                    logger.info("Deleted the rows of an earlier run of file {} before replaying it", status.getId());
+                }
+                started = true;
+                fileProcessorService.processStream(in, status.getFilename(), status.getId(), mode);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                fileTrackerService.updateFileStatus(status.getId(), "FAILED", "Replay interrupted");
+            } catch (Exception e) {
+                if (!started) {
+                    fileTrackerService.updateFileStatus(status.getId(), "FAILED", "Replay failed: " + e.getMessage());
+                }
+                // Otherwise processStream has already marked the file as FAILED
+                logger.error("Replay of file {} failed: {}", status.getId(), e.getMessage());
+            }
+        }, taskExecutor);
+        return true;
+    }
+
+    /**
+     * Removes the staged copy of a streamed upload, if one was kept.
+     */
+    public void deleteStagedCopy(Long fileId, String fileName) throws IOException {
+        if (fileName == null) {
+            return;
+        }
+        Path stagedFile = stagedFilePath(fileId, fileName);
+        Files.deleteIfExists(stagedFile);
+        Files.deleteIfExists(stagedFile.getParent());
+    }
+
+    private static void deleteQuietly(Path partialFile) {
+        try {
+            Files.deleteIfExists(partialFile);
+            Files.deleteIfExists(partialFile.getParent());
+        } catch (IOException e) {
+            logger.warn("Could not delete partial staged copy {}: {}", partialFile, e.getMessage());
+        }
+    }
+
+    private Path stagedFilePath(Long fileId, String fileName) {
+        // Only the last path segment of the client-supplied name is used
+        String safeName = Paths.get(fileName).getFileName().toString();
+        return Paths.get(stagingDir, "raw", String.valueOf(fileId), safeName);
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    /**
+     * Copies every byte read from the wrapped stream to a side output.
+     */
+    private static final class TeeInputStream extends FilterInputStream {
+        private final OutputStream branch;
+
+        TeeInputStream(InputStream in, OutputStream branch) {
+            super(in);
+            this.branch = branch;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b != -1) {
+                branch.write(b);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int n = super.read(buffer, offset, length);
+            if (n > 0) {
+                branch.write(buffer, offset, n);
+            }
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            // Skipped bytes must still reach the branch
+            byte[] buffer = new byte[(int) Math.min(n, 8192)];
+            long skipped = 0;
+            while (skipped < n) {
+                int read = read(buffer, 0, (int) Math.min(buffer.length, n - skipped));
+                if (read == -1) {
+                    break;
+                }
+                skipped += read;
+            }
+            return skipped;
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,321 @@
+package com.example.dataprocessor.service;
+
+import com.example.dataprocessor.model.SalesData;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * Cross-column consistency rules, declared in configuration against SalesColumn names and checked on
+ * every chunk inside the ingestion pipeline.
+ * <p>
+ * Rules are separated by ';' and take one of these forms:
+ * <ul>
+ *   <li>{@code PROFIT = SALES - COGS}: equal within dataprocessor.validation.absolute-tolerance</li>
+ *   <li>{@code GROSS_SALES ~ UNITS_SOLD * SALE_PRICE}: equal within dataprocessor.validation.relative-tolerance</li>
+ *   <li>{@code DISCOUNT_BAND in None|Low|Medium|High}: value in the set, ignoring case</li>
+ * </ul>
+ * Numeric rules are compiled once into loops over primitive double columns: a chunk's referenced
+ * columns are extracted once and every rule runs over the whole chunk, instead of per row and per
+ * BigDecimal. A row with a missing operand is not checked by that rule.
+ */
+@Service
+public class ValidationRulesService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ValidationRulesService.class);
+
+    // Violations are reported as a bitmask, one bit per rule
+    private static final int MAX_RULES = Integer.SIZE - 1;
+
+    private static final Map<SalesColumn, Function<SalesData, BigDecimal>> NUMBER_GETTERS = new EnumMap<>(SalesColumn.class);
+    private static final Map<SalesColumn, Function<SalesData, String>> TEXT_GETTERS = new EnumMap<>(SalesColumn.class);
+
+    static {
+        NUMBER_GETTERS.put(SalesColumn.UNITS_SOLD, SalesData::getUnitsSold);
+        NUMBER_GETTERS.put(SalesColumn.MANUFACTURING_PRICE, SalesData::getManufacturingPrice);
+        NUMBER_GETTERS.put(SalesColumn.SALE_PRICE, SalesData::getSalePrice);
+        NUMBER_GETTERS.put(SalesColumn.GROSS_SALES, SalesData::getGrossSales);
+        NUMBER_GETTERS.put(SalesColumn.DISCOUNTS, SalesData::getDiscounts);
+        NUMBER_GETTERS.put(SalesColumn.SALES, SalesData::getSales);
+        NUMBER_GETTERS.put(SalesColumn.COGS, SalesData::getCogs);
+        NUMBER_GETTERS.put(SalesColumn.PROFIT, SalesData::getProfit);
+        TEXT_GETTERS.put(SalesColumn.SEGMENT, SalesData::getSegment);
+        TEXT_GETTERS.put(SalesColumn.COUNTRY, SalesData::getCountry);
+        TEXT_GETTERS.put(SalesColumn.PRODUCT, SalesData::getProduct);
+        TEXT_GETTERS.put(SalesColumn.DISCOUNT_BAND, SalesData::getDiscountBand);
+        TEXT_GETTERS.put(SalesColumn.MONTH_NAME, SalesData::getMonthName);
+    }
+
+    /**
+     * What happens to a row that breaks a rule.
+     */
+    public enum Action {
+        REJECT, // Sent to the reject sink instead of sales_data
+        FLAG    // Written with the violated rules in sales_data.rule_violations
+    }
+
+    @Value("${dataprocessor.validation.rules:}")
+    private String ruleDefinitions;
+
+    @Value("${dataprocessor.validation.action:FLAG}")
+    private Action action;
+
+    @Value("${dataprocessor.validation.absolute-tolerance:0.01}")
+    private double absoluteTolerance;
+
+    @Value("${dataprocessor.validation.relative-tolerance:0.0001}")
+    private double relativeTolerance;
+
+    private final List<CompiledRule> rules = new ArrayList<>();
+    private final Set<SalesColumn> numericColumns = new HashSet<>();
+
+    @PostConstruct
+    void compileRules() {
+        for (String definition : ruleDefinitions.split(";")) {
+            if (definition.isBlank()) {
+                continue;
+            }
+            if (rules.size() == MAX_RULES) {
+                throw new IllegalStateException("At most " + MAX_RULES + " validation rules are supported");
+            }
+            rules.add(compile(definition.trim()));
+        }
+        if (!rules.isEmpty()) {
+            logger.info("Compiled {} validation rules; violations are handled as {}", rules.size(), action);
+        }
+    }
+
+    public boolean hasRules() {
+        return !rules.isEmpty();
+    }
+
+    public Action getAction() {
+        return action;
+    }
+
+    /**
+     * Checks every rule against a chunk of mapped rows.
+     *
+     * @return Per row, a bitmask of the violated rules (bit i for rule i); 0 if the row passes.
+     */
+    public int[] evaluate(List<SalesData> rows) {
+        int[] violations = new int[rows.size()];
+        if (rules.isEmpty() || rows.isEmpty()) {
+            return violations;
+        }
+        // Each referenced numeric column is converted once per chunk and shared by all rules
+        Map<SalesColumn, double[]> columns = new EnumMap<>(SalesColumn.class);
+        for (SalesColumn column : numericColumns) {
+            columns.put(column, extract(rows, NUMBER_GETTERS.get(column)));
+        }
+        for (int i = 0; i < rules.size(); i++) {
+            rules.get(i).evaluate(rows, columns, violations, 1 << i);
+        }
+        return violations;
+    }
+
+    /**
+     * Lists the rules set in a violation bitmask, for reject details and logs.
+     */
+    public String describe(int violationMask) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < rules.size(); i++) {
+            if ((violationMask & (1 << i)) != 0) {
+                if (sb.length() > 0) {
+                    sb.append("; ");
+                }
+                sb.append(rules.get(i).definition);
+            }
+        }
+        return sb.toString();
+    }
+
+    private static double[] extract(List<SalesData> rows, Function<SalesData, BigDecimal> getter) {
+        double[] values = new double[rows.size()];
+        for (int i = 0; i < values.length; i++) {
+            BigDecimal value = getter.apply(rows.get(i));
+            values[i] = value != null ? value.doubleValue() : Double.NaN;
+        }
+        return values;
+    }
+
+    private CompiledRule compile(String definition) {
+        String[] tokens = definition.split("\\s+");
+        if (tokens.length < 3) {
+            throw invalidRule(definition, "expected '<column> <operator> <expression>'");
+        }
+        SalesColumn target = parseColumn(tokens[0], definition);
+        String operator = tokens[1].toLowerCase(Locale.ROOT);
+
+        if ("in".equals(operator)) {
+            if (!TEXT_GETTERS.containsKey(target)) {
+                throw invalidRule(definition, target + " is not a text column");
+            }
+            String values = definition.split("\\s+", 3)[2];
+            Set<String> allowed = new HashSet<>();
+            for (String value : values.split("\\|")) {
+                allowed.add(value.trim().toLowerCase(Locale.ROOT));
+            }
+            return new AllowedValuesRule(definition, TEXT_GETTERS.get(target), allowed);
+        }
+
+        boolean relative;
+        if ("=".equals(operator)) {
+            relative = false;
+        } else if ("~".equals(operator)) {
+            relative = true;
+        } else {
+            throw invalidRule(definition, "unknown operator " + tokens[1]);
+        }
+        SalesColumn left = parseNumericColumn(tokens[2], definition);
+        SalesColumn right = null;
+        char arithmetic = 0;
+        if (tokens.length == 5) {
+            if (tokens[3].length() != 1 || "+-*".indexOf(tokens[3].charAt(0)) < 0) {
+                throw invalidRule(definition, "unknown operator " + tokens[3]);
+            }
+            arithmetic = tokens[3].charAt(0);
+            right = parseNumericColumn(tokens[4], definition);
+        } else if (tokens.length != 3) {
+            throw invalidRule(definition, "expected '<column> " + operator + " <column> [+|-|* <column>]'");
+        }
+        if (!NUMBER_GETTERS.containsKey(target)) {
+            throw invalidRule(definition, target + " is not a numeric column");
+        }
+        numericColumns.add(target);
+        numericColumns.add(left);
+        if (right != null) {
+            numericColumns.add(right);
+        }
+        return new ArithmeticRule(definition, target, left, arithmetic, right,
+            relative ? 0 : absoluteTolerance, relative ? relativeTolerance : 0);
+    }
+
+    private static SalesColumn parseNumericColumn(String token, String definition) {
+        SalesColumn column = parseColumn(token, definition);
+        if (!NUMBER_GETTERS.containsKey(column)) {
+            throw invalidRule(definition, column + " is not a numeric column");
+        }
+        return column;
+    }
+
+    private static SalesColumn parseColumn(String token, String definition) {
+        try {
+            return SalesColumn.valueOf(token.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw invalidRule(definition, "unknown column " + token);
+        }
+    }
+
+    private static IllegalStateException invalidRule(String definition, String problem) {
+        return new IllegalStateException("Invalid validation rule '" + definition + "': " + problem);
+    }
+
+    private abstract static class CompiledRule {
+        final String definition;
+
+        CompiledRule(String definition) {
+            this.definition = definition;
+        }
+
+        /**
+         * Sets bit in violations[i] for every row i that breaks the rule.
+         */
+        abstract void evaluate(List<SalesData> rows, Map<SalesColumn, double[]> columns, int[] violations, int bit);
+    }
+
+    /**
+     * {@code target = left [op right]}, checked as |target - expected| <= max(absolute, relative * |expected|).
+     */
+    private static final class ArithmeticRule extends CompiledRule {
+        private final SalesColumn target;
+        private final SalesColumn left;
+        private final char operator;
+        private final SalesColumn right;
+        private final double absoluteTolerance;
+        private final double relativeTolerance;
+
+        ArithmeticRule(String definition, SalesColumn target, SalesColumn left, char operator, SalesColumn right,
+                       double absoluteTolerance, double relativeTolerance) {
+            super(definition);
+            this.target = target;
+            this.left = left;
+            this.operator = operator;
+            this.right = right;
+            this.absoluteTolerance = absoluteTolerance;
+            this.relativeTolerance = relativeTolerance;
+        }
+
+        @Override
+        void evaluate(List<SalesData> rows, Map<SalesColumn, double[]> columns, int[] violations, int bit) {
+            double[] actual = columns.get(target);
+            double[] a = columns.get(left);
+            double[] expected;
+            if (right == null) {
+                expected = a;
+            } else {
+                // One tight loop per operator; NaN (a missing operand) propagates
+                double[] b = columns.get(right);
+                expected = new double[a.length];
+                switch (operator) {
+                    case '+':
+                        for (int i = 0; i < a.length; i++) {
+                            expected[i] = a[i] + b[i];
+                        }
+                        break;
+                    case '-':
+                        for (int i = 0; i < a.length; i++) {
+                            expected[i] = a[i] - b[i];
+                        }
+                        break;
+                    default:
+                        for (int i = 0; i < a.length; i++) {
+                            expected[i] = a[i] * b[i];
+                        }
+                        break;
+                }
+            }
+            for (int i = 0; i < actual.length; i++) {
+                double difference = Math.abs(actual[i] - expected[i]);
+                double tolerance = Math.max(absoluteTolerance, relativeTolerance * Math.abs(expected[i]));
+                // A NaN difference compares false, so rows with missing values pass
+                if (difference > tolerance) {
+                    violations[i] |= bit;
+                }
+            }
+        }
+    }
+
+    private static final class AllowedValuesRule extends CompiledRule {
+        private final Function<SalesData, String> getter;
+        private final Set<String> allowed;
+
+        AllowedValuesRule(String definition, Function<SalesData, String> getter, Set<String> allowed) {
+            super(definition);
+            this.getter = getter;
+            this.allowed = allowed;
+        }
+
+        @Override
+        void evaluate(List<SalesData> rows, Map<SalesColumn, double[]> columns, int[] violations, int bit) {
+            for (int i = 0; i < violations.length; i++) {
+                String value = getter.apply(rows.get(i));
+                if (value != null && !value.isEmpty() && !allowed.contains(value.toLowerCase(Locale.ROOT))) {
+                    violations[i] |= bit;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,393 @@
+package com.example.dataprocessor.service;
+
+import com.example.dataprocessor.model.FileProcessingStatus;
+import com.example.dataprocessor.repository.FileProcessingStatusJdbcRepository;
+import com.example.dataprocessor.repository.RejectedRowJdbcRepository;
+import com.example.dataprocessor.repository.SalesDataJdbcRepository;
+import com.example.dataprocessor.repository.WorkUnitJdbcRepository;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Cooperative ingestion of large CSV uploads across every node that shares the database.
+ * <p>
+ * The receiving node copies the upload to the shared directory and records it as byte-range work units.
+ * Every node polls for claimable units and leases them with a conditional UPDATE; while a unit runs, its
+ * lease is renewed by a heartbeat. A node that dies stops renewing, its leases expire and other nodes
+ * take the units over, first deleting whatever rows and rejects the dead attempt had written. The node
+ * that finishes the last unit sums the unit counters and completes the file.
+ * <p>
+ * Workbooks, compressed files and CSVs without a header row are not splittable and stay on the node that
+ * received them. Node clocks are assumed to be in sync to well within the lease duration.
+ */
+@Service
+public class WorkUnitService {
+
+    private static final Logger logger = LoggerFactory.getLogger(WorkUnitService.class);
+
+    private static final long MB = 1024L * 1024;
+
+    @Autowired
+    private WorkUnitJdbcRepository workUnitJdbcRepository;
+
+    @Autowired
+    private FileProcessingStatusJdbcRepository fileProcessingStatusJdbcRepository;
+
+    @Autowired
+    private SalesDataJdbcRepository salesDataJdbcRepository;
+
+    @Autowired
+    private RejectedRowJdbcRepository rejectedRowJdbcRepository;
+
+    @Autowired
+    private ZoneMapService zoneMapService;
+
+    @Autowired
+    private AdmissionControlService admissionControlService;
+
+    @Autowired
+    private FileProcessorService fileProcessorService;
+
+    @Autowired
+    private FileTrackerService fileTrackerService;
+
+    @Autowired
+    @Qualifier("taskExecutor")
+    private ExecutorService taskExecutor;
+
+    @Value("${dataprocessor.cluster.enabled:false}")
+    private boolean enabled;
+
+    // Blank uses host name and process id, so several instances on one machine are told apart
+    @Value("${dataprocessor.cluster.node-id:}")
+    private String configuredNodeId;
+
+    // Must be reachable under the same path from every node
+    @Value("${dataprocessor.cluster.shared-dir:${dataprocessor.upload.staging-dir:${java.io.tmpdir}/dataprocessor-staging}/shared}")
+    private String sharedDir;
+
+    @Value("${dataprocessor.cluster.split-threshold-mb:256}")
+    private long splitThresholdMb;
+
+    @Value("${dataprocessor.cluster.unit-size-mb:64}")
+    private long unitSizeMb;
+
+    @Value("${dataprocessor.cluster.lease-ms:60000}")
+    private long leaseMillis;
+
+    @Value("${dataprocessor.cluster.max-local-units:2}")
+    private int maxLocalUnits;
+
+    @Value("${dataprocessor.cluster.max-attempts:3}")
+    private int maxAttempts;
+
+    @Value("${dataprocessor.cluster.cleanup-batch-size:1000}")
+    private int cleanupBatchSize;
+
+    private String nodeId;
+
+    // Units leased by this node and still running
+    private final Map<Long, RunningUnit> running = new ConcurrentHashMap<>();
+
+    private static final class RunningUnit {
+        final WorkUnitJdbcRepository.WorkUnit unit;
+        final AdmissionControlService.Permit permit;
+        volatile boolean leaseLost;
+
+        RunningUnit(WorkUnitJdbcRepository.WorkUnit unit, AdmissionControlService.Permit permit) {
+            this.unit = unit;
+            this.permit = permit;
+        }
+    }
+
+    @PostConstruct
+    void resolveNodeId() {
+        if (configuredNodeId != null && !configuredNodeId.isBlank()) {
+            nodeId = configuredNodeId.trim();
+            return;
+        }
+        String host;
+        try {
+            host = InetAddress.getLocalHost().getHostName();
+        } catch (UnknownHostException e) {
+            host = "unknown-host";
+        }
+        nodeId = host + ":" + ProcessHandle.current().pid();
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    /**
+     * Splits an upload into work units if it is worth it: cluster mode on, a plain CSV with a header row,
+     * at least split-threshold-mb. Otherwise leaves it to the caller to ingest locally.
+     *
+     * @return true if the upload was staged and its units recorded.
+     */
+    public boolean trySubmit(MultipartFile file, FileProcessingStatus status, IngestionMode mode) throws IOException {
+        String fileName = file.getOriginalFilename();
+        if (!enabled || fileName == null || !fileName.toLowerCase(Locale.ROOT).endsWith(".csv")
+                || file.getSize() < splitThresholdMb * MB || !hasHeaderRow(file)) {
+            return false;
+        }
+        Path target = Paths.get(sharedDir, String.valueOf(status.getId()), Paths.get(fileName).getFileName().toString());
+        Files.createDirectories(target.getParent());
+        file.transferTo(target);
+
+        long size = Files.size(target);
+        List<long[]> ranges = splitAtRecords(target, Math.max(1, unitSizeMb) * MB);
+        workUnitJdbcRepository.createUnits(status.getId(), target.toAbsolutePath().toString(), mode != null ? mode.name() : null, ranges);
+        logger.info("File {} ({} MB) split into {} work units", status.getId(), size / MB, ranges.size());
+        // Start on this node right away instead of at the next poll
+        taskExecutor.execute(this::claimAndRun);
+        return true;
+    }
+
+    public List<WorkUnitJdbcRepository.WorkUnit> getWorkUnits(Long fileId) {
+        return workUnitJdbcRepository.findByFileId(fileId);
+    }
+
+    /**
+     * Leases as many claimable units as this node has free slots and starts them on the job pool. Each
+     * unit is admitted like an upload of unit-size-mb before it is leased; once admission sheds one, the
+     * rest are left to other nodes and the next poll.
+     */
+    @Scheduled(fixedDelayString = "${dataprocessor.cluster.poll-interval-ms:2000}")
+    public synchronized void claimAndRun() {
+        if (!enabled || running.size() >= maxLocalUnits) {
+            return;
+        }
+        LocalDateTime now = LocalDateTime.now();
+        // A few more candidates than free slots, since other nodes race for the same ones
+        for (Long id : workUnitJdbcRepository.findClaimable(now, (maxLocalUnits - running.size()) * 4)) {
+            if (running.size() >= maxLocalUnits) {
+                break;
+            }
+            AdmissionControlService.Permit permit;
+            try {
+                permit = admissionControlService.admit("work unit " + id, Math.max(1, unitSizeMb) * MB);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            if (permit == null) {
+                break;
+            }
+            // Leases run from now, not from when the admission queue let the unit through
+            now = LocalDateTime.now();
+            WorkUnitJdbcRepository.WorkUnit unit = workUnitJdbcRepository.tryLease(id, nodeId, now, now.plus(Duration.ofMillis(leaseMillis)));
+            if (unit == null) {
+                permit.close();
+                continue;
+            }
+            RunningUnit runningUnit = new RunningUnit(unit, permit);
+            running.put(unit.getId(), runningUnit);
+            taskExecutor.execute(() -> runUnit(runningUnit));
+        }
+    }
+
+    /**
+     * Heartbeat: renews the lease of every unit running here. A unit whose lease could not be renewed
+     * has been taken over and is stopped at its next read.
+     */
+    @Scheduled(fixedDelayString = "${dataprocessor.cluster.heartbeat-interval-ms:10000}")
+    public void renewLeases() {
+        LocalDateTime expiresAt = LocalDateTime.now().plus(Duration.ofMillis(leaseMillis));
+        for (RunningUnit runningUnit : running.values()) {
+            WorkUnitJdbcRepository.WorkUnit unit = runningUnit.unit;
+            try {
+                if (!workUnitJdbcRepository.renewLease(unit.getId(), nodeId, unit.getAttempts(), expiresAt)) {
+                    runningUnit.leaseLost = true;
+                    logger.warn("Lost the lease on work unit {} of file {}; stopping it", unit.getId(), unit.getFileId());
+                }
+            } catch (RuntimeException e) {
+                // Other units are still renewed; this one keeps its lease unless renewals fail for lease-ms
+                logger.warn("Could not renew the lease on work unit {}: {}", unit.getId(), e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Removes the work units and the shared copy of a file, for the retention purge.
+     */
+    public void deleteWorkUnits(Long fileId) throws IOException {
+        List<WorkUnitJdbcRepository.WorkUnit> units = workUnitJdbcRepository.findByFileId(fileId);
+        workUnitJdbcRepository.deleteByFileId(fileId);
+        if (!units.isEmpty()) {
+            deleteSharedCopy(Paths.get(units.get(0).getSourcePath()));
+        }
+    }
+
+    private void runUnit(RunningUnit runningUnit) {
+        WorkUnitJdbcRepository.WorkUnit unit = runningUnit.unit;
+        try {
+            if (unit.getAttempts() > 1) {
+                removePartialOutput(unit);
+            }
+            IngestionMode mode = unit.getIngestionMode() != null ? IngestionMode.valueOf(unit.getIngestionMode()) : null;
+            IngestionJob job = fileProcessorService.ingestWorkUnit(Paths.get(unit.getSourcePath()), unit.getFileId(), mode,
+                unit.getId(), unit.getStartOffset(), unit.getEndOffset(), () -> !runningUnit.leaseLost,
+                () -> workUnitJdbcRepository.holdsLease(unit.getId(), nodeId, unit.getAttempts()));
+            if (!workUnitJdbcRepository.complete(unit.getId(), nodeId, unit.getAttempts(), job.getTotalRows().get(),
+                    job.getProcessedRows().get(), job.getFailedRows().get(), job.getDuplicateRows().get(),
+                    job.getColumnSketches().toByteArray())) {
+                // The new owner removes what this attempt wrote before running the unit again
+                logger.warn("Work unit {} of file {} finished after its lease was lost; discarded", unit.getId(), unit.getFileId());
+                return;
+            }
+            finishFileIfDone(unit);
+        } catch (Exception e) {
+            if (e instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
+            if (runningUnit.leaseLost) {
+                return;
+            }
+            String message = e.getMessage();
+            if (unit.getAttempts() < maxAttempts) {
+                logger.warn("Work unit {} of file {} failed on attempt {}, releasing it: {}", unit.getId(), unit.getFileId(), unit.getAttempts(), message);
+                workUnitJdbcRepository.release(unit.getId(), nodeId, unit.getAttempts(), message);
+            } else if (workUnitJdbcRepository.fail(unit.getId(), nodeId, unit.getAttempts(), message)) {
+                failFile(unit, "Work unit " + unit.getUnitIndex() + " failed after " + unit.getAttempts() + " attempts. Error: " + message);
+            }
+        } finally {
+            running.remove(unit.getId());
+            runningUnit.permit.close();
+        }
+    }
+
+    /**
+     * Deletes what earlier attempts of a unit wrote: its rows, its rejects, and the zones describing the
+     * deleted rows, by rebuilding the blocks of ids those rows lay in.
+     */
+    private void removePartialOutput(WorkUnitJdbcRepository.WorkUnit unit) {
+        long[] idRange = salesDataJdbcRepository.findIdRangeByWorkUnit(unit.getFileId(), unit.getId());
+        Long afterId = 0L;
+        long batches = 0;
+        while ((afterId = salesDataJdbcRepository.deleteNextBatchByWorkUnit(unit.getFileId(), unit.getId(), afterId, cleanupBatchSize)) != null) {
+            batches++;
+        }
+        afterId = 0L;
+        while ((afterId = rejectedRowJdbcRepository.deleteNextBatchByWorkUnit(unit.getFileId(), unit.getId(), afterId, cleanupBatchSize)) != null) {
+            batches++;
+        }
+        if (idRange != null) {
+            zoneMapService.rebuildBlocks(idRange[0], idRange[1]);
+        }
+        if (batches > 0) {
+            logger.info("Removed {} batches written by an earlier attempt of work unit {}", batches, unit.getId());
+        }
+    }
+
+    /**
+     * Completes the file once none of its units is left. Several nodes may get here at the same time;
+     * the conditional status update lets exactly one of them write the totals.
+     */
+    private void finishFileIfDone(WorkUnitJdbcRepository.WorkUnit unit) {
+        if (workUnitJdbcRepository.countNotDone(unit.getFileId()) > 0) {
+            return;
+        }
+        WorkUnitJdbcRepository.UnitTotals totals = workUnitJdbcRepository.sumTotals(unit.getFileId());
+        long durationSeconds = totals.getFirstCreatedAt() != null
+            ? Duration.between(totals.getFirstCreatedAt(), LocalDateTime.now()).toSeconds() : 0;
+        String message = String.format(
+            "File processing completed in %d seconds. Processed %d rows, %d failed rows, %d duplicate rows skipped.",
+            durationSeconds, totals.getProcessedRows(), totals.getFailedRows(), totals.getDuplicateRows());
+        if (!fileProcessingStatusJdbcRepository.finishIfProcessing(unit.getFileId(), "COMPLETED", message,
+                totals.getProcessedRows(), totals.getFailedRows())) {
+            return;
+        }
+        fileTrackerService.getFileStatusById(unit.getFileId()).ifPresent(status -> fileTrackerService.updateProcessingStats(
+            status, totals.getTotalRows(), totals.getProcessedRows(), totals.getFailedRows(), durationSeconds));
+        ColumnSketches sketches = new ColumnSketches();
+        workUnitJdbcRepository.forEachColumnSketches(unit.getFileId(), unitSketches -> sketches.merge(ColumnSketches.fromByteArray(unitSketches)));
+        fileTrackerService.saveColumnSketches(unit.getFileId(), sketches);
+        try {
+            deleteSharedCopy(Paths.get(unit.getSourcePath()));
+        } catch (IOException e) {
+            logger.warn("Could not delete the shared copy of file {}: {}", unit.getFileId(), e.getMessage());
+        }
+        logger.info("File {}: {}", unit.getFileId(), message);
+    }
+
+    private void failFile(WorkUnitJdbcRepository.WorkUnit unit, String message) {
+        WorkUnitJdbcRepository.UnitTotals totals = workUnitJdbcRepository.sumTotals(unit.getFileId());
+        if (fileProcessingStatusJdbcRepository.finishIfProcessing(unit.getFileId(), "FAILED", message,
+                totals.getProcessedRows(), totals.getFailedRows())) {
+            int cancelled = workUnitJdbcRepository.cancelUnfinished(unit.getFileId());
+            logger.error("File {} failed; {} remaining work units cancelled. {}", unit.getFileId(), cancelled, message);
+        }
+    }
+
+    private boolean hasHeaderRow(MultipartFile file) {
+        try (InputStream inputStream = file.getInputStream()) {
+            FilePreview preview = fileProcessorService.preview(inputStream, file.getOriginalFilename(), file.getSize(), 1);
+            return !preview.getSources().isEmpty() && preview.getSources().get(0).isHasHeader();
+        } catch (Exception e) {
+            // Not split then; the ingestion on this node reports what the preview tripped over
+            return false;
+        }
+    }
+
+    /**
+     * Splits a CSV into ranges of at least unitSize bytes (the last one may be shorter) that start and end
+     * on record boundaries. A newline inside a quoted field does not end a record, so the file is scanned
+     * from its start with the quote state tracked; an escaped quote ("") flips it twice and leaves it as it was.
+     */
+    static List<long[]> splitAtRecords(Path file, long unitSize) throws IOException {
+        List<long[]> ranges = new ArrayList<>();
+        byte[] buffer = new byte[64 * 1024];
+        long position = 0;
+        long start = 0;
+        boolean quoted = false;
+        try (InputStream inputStream = Files.newInputStream(file)) {
+            int read;
+            while ((read = inputStream.read(buffer)) > 0) {
+                for (int i = 0; i < read; i++) {
+                    byte b = buffer[i];
+                    if (b == '"') {
+                        quoted = !quoted;
+                    } else if (b == '\n' && !quoted && position + i + 1 - start >= unitSize) {
+                        long end = position + i + 1;
+                        ranges.add(new long[] {start, end});
+                        start = end;
+                    }
+                }
+                position += read;
+            }
+        }
+        if (position > start) {
+            ranges.add(new long[] {start, position});
+        }
+        return ranges;
+    }
+
+    private static void deleteSharedCopy(Path file) throws IOException {
+        Files.deleteIfExists(file);
+        Files.deleteIfExists(file.getParent());
+    }
+}
@@ -0,0 +1,323 @@
+package com.example.dataprocessor.service;
+
+import org.apache.poi.openxml4j.exceptions.OpenXML4JException;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.ss.usermodel.DateUtil;
+import org.apache.poi.util.XMLHelper;
+import org.apache.poi.xssf.eventusermodel.ReadOnlySharedStringsTable;
+import org.apache.poi.xssf.eventusermodel.XSSFReader;
+import org.apache.poi.xssf.model.SharedStrings;
+import org.apache.poi.xssf.model.StylesTable;
+import org.apache.poi.xssf.usermodel.XSSFCellStyle;
+import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
+import org.xml.sax.helpers.DefaultHandler;
+
+import javax.xml.parsers.ParserConfigurationException;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads XLSX workbooks with SAX instead of the POI usermodel.
+ * Each sheet is an independent XML part, so sheets can be parsed on different threads; the shared
+ * strings and styles tables are loaded once and only read afterwards. Cells are placed by their column
+ * reference, so blank cells no longer shift the following values to the left.
+ * Rows are {@link SheetRow}s: numeric and date cells are converted straight from the sheet XML to
+ * BigDecimal and LocalDate, and only textual cells become Strings.
+ */
+public class XlsxWorkbookReader implements Closeable {
+
+    /**
+     * Receives parsed rows in sheet order.
+     */
+    public interface RowConsumer {
+        void accept(SheetRow row) throws InterruptedException;
+
+        /**
+         * Checked after each row; returning false stops parsing the sheet early.
+         */
+        default boolean wantsMoreRows() {
+            return true;
+        }
+
+        /**
+         * Called with the last row number of the sheet's declared dimension, if the sheet has one.
+         */
+        default void dimension(int lastRowNumber) {
+        }
+    }
+
+    /**
+     * A sheet of the workbook; its XML part is parsed lazily by {@link #parseSheet}.
+     */
+    public static class SheetRef {
+        private final int index;
+        private final String name;
+        private final InputStream data;
+
+        SheetRef(int index, String name, InputStream data) {
+            this.index = index;
+            this.name = name;
+            this.data = data;
+        }
+
+        public int getIndex() {
+            return index;
+        }
+
+        public String getName() {
+            return name;
+        }
+    }
+
+    private final OPCPackage opcPackage;
+    private final SharedStrings sharedStrings;
+    private final StylesTable stylesTable;
+    // Dates count days from 1904-01-01 instead of 1900-01-01 (workbooks from older Mac Excel)
+    private final boolean date1904;
+    private final List<SheetRef> sheets = new ArrayList<>();
+
+    public XlsxWorkbookReader(InputStream inputStream) throws IOException {
+        try {
+            this.opcPackage = OPCPackage.open(inputStream);
+            XSSFReader xssfReader = new XSSFReader(opcPackage);
+            this.sharedStrings = new ReadOnlySharedStringsTable(opcPackage);
+            this.stylesTable = xssfReader.getStylesTable();
+            this.date1904 = readDate1904(xssfReader);
+            XSSFReader.SheetIterator iterator = (XSSFReader.SheetIterator) xssfReader.getSheetsData();
+            int index = 0;
+            while (iterator.hasNext()) {
+                InputStream data = iterator.next();
+                sheets.add(new SheetRef(index++, iterator.getSheetName(), data));
+            }
+        } catch (OpenXML4JException | SAXException e) {
+            throw new IOException("Could not open workbook: " + e.getMessage(), e);
+        }
+    }
+
+    public List<SheetRef> getSheets() {
+        return sheets;
+    }
+
+    /**
+     * Parses one sheet, handing each row to the consumer. Safe to call concurrently for different sheets.
+     */
+    public void parseSheet(SheetRef sheet, RowConsumer consumer) throws IOException, InterruptedException {
+        try (InputStream data = sheet.data) {
+            XMLReader xmlReader = XMLHelper.newXMLReader();
+            xmlReader.setContentHandler(new SheetHandler(consumer));
+            xmlReader.parse(new InputSource(data));
+        } catch (ParserConfigurationException e) {
+            throw new IOException("Could not create XML parser: " + e.getMessage(), e);
+        } catch (StopParsing e) {
+            // The consumer has all the rows it wants
+        } catch (SAXException e) {
+            if (e.getException() instanceof InterruptedException interrupted) {
+                throw interrupted;
+            }
+            throw new IOException("Could not parse sheet " + sheet.getName() + ": " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Reads workbookPr/@date1904 from the workbook part.
+     */
+    private static boolean readDate1904(XSSFReader xssfReader) throws IOException, OpenXML4JException, SAXException {
+        boolean[] date1904 = {false};
+        try (InputStream workbookData = xssfReader.getWorkbookData()) {
+            XMLReader xmlReader = XMLHelper.newXMLReader();
+            xmlReader.setContentHandler(new DefaultHandler() {
+                @Override
+                public void startElement(String uri, String localName, String qName, Attributes attributes) throws SAXException {
+                    if ("workbookPr".equals(localName)) {
+                        String value = attributes.getValue("date1904");
+                        date1904[0] = "1".equals(value) || "true".equalsIgnoreCase(value);
+                        throw new StopParsing();
+                    }
+                    if ("sheets".equals(localName)) {
+                        // workbookPr comes before sheets, so the workbook has none
+                        throw new StopParsing();
+                    }
+                }
+            });
+            xmlReader.parse(new InputSource(workbookData));
+        } catch (StopParsing e) {
+            // Found what we were looking for
+        } catch (ParserConfigurationException e) {
+            throw new IOException("Could not create XML parser: " + e.getMessage(), e);
+        }
+        return date1904[0];
+    }
+
+    @Override
+    public void close() {
+        // Opened read-only from a stream; revert discards without writing anything back
+        opcPackage.revert();
+    }
+
+    /**
+     * Converts a cell reference such as "AB12" to a 0-based column index.
+     */
+    static int columnIndex(String cellReference) {
+        int column = 0;
+        for (int i = 0; i < cellReference.length(); i++) {
+            char c = cellReference.charAt(i);
+            if (c < 'A' || c > 'Z') {
+                break;
+            }
+            column = column * 26 + (c - 'A' + 1);
+        }
+        return column - 1;
+    }
+
+    /**
+     * Thrown from the handler to abandon the rest of a sheet.
+     */
+    private static final class StopParsing extends SAXException {
+        StopParsing() {
+            super("Parsing stopped by the consumer");
+        }
+    }
+
+    /**
+     * Extracts the row number of a cell reference such as "AB12".
+     */
+    static int rowNumber(String cellReference) {
+        int start = 0;
+        while (start < cellReference.length() && !Character.isDigit(cellReference.charAt(start))) {
+            start++;
+        }
+        return start < cellReference.length() ? Integer.parseInt(cellReference.substring(start)) : 0;
+    }
+
+    private final class SheetHandler extends DefaultHandler {
+        private final RowConsumer consumer;
+        private final Map<Integer, Boolean> dateStyles = new HashMap<>();
+        private final StringBuilder value = new StringBuilder();
+
+        private List<Object> row;
+        private int nextColumn;
+        private int column;
+        private String cellType;
+        private String cellStyle;
+        private boolean capturing;
+
+        SheetHandler(RowConsumer consumer) {
+            this.consumer = consumer;
+        }
+
+        @Override
+        public void startElement(String uri, String localName, String qName, Attributes attributes) {
+            switch (localName) {
+                case "dimension":
+                    // e.g. "A1:P701"; the last row is an upper bound, it may include blank formatted rows
+                    String ref = attributes.getValue("ref");
+                    if (ref != null && !ref.isEmpty()) {
+                        consumer.dimension(rowNumber(ref.substring(ref.indexOf(':') + 1)));
+                    }
+                    break;
+                case "row":
+                    row = new ArrayList<>();
+                    nextColumn = 0;
+                    break;
+                case "c":
+                    String reference = attributes.getValue("r");
+                    column = reference != null ? columnIndex(reference) : nextColumn;
+                    cellType = attributes.getValue("t");
+                    cellStyle = attributes.getValue("s");
+                    value.setLength(0);
+                    break;
+                case "v":
+                case "t":
+                    capturing = true;
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        @Override
+        public void characters(char[] ch, int start, int length) {
+            if (capturing) {
+                value.append(ch, start, length);
+            }
+        }
+
+        @Override
+        public void endElement(String uri, String localName, String qName) throws SAXException {
+            switch (localName) {
+                case "v":
+                case "t":
+                    capturing = false;
+                    break;
+                case "c":
+                    while (row.size() < column) {
+                        row.add("");
+                    }
+                    row.add(cellValue());
+                    nextColumn = column + 1;
+                    break;
+                case "row":
+                    try {
+                        consumer.accept(new SheetRow(row));
+                    } catch (InterruptedException e) {
+                        throw new SAXException(e);
+                    }
+                    if (!consumer.wantsMoreRows()) {
+                        throw new StopParsing();
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        private Object cellValue() {
+            String raw = value.toString();
+            if (cellType == null || "n".equals(cellType)) {
+                return raw.isEmpty() ? "" : numericValue(raw);
+            }
+            switch (cellType) {
+                case "s":
+                    return sharedStrings.getItemAt(Integer.parseInt(raw)).getString();
+                case "inlineStr":
+                case "str":
+                    return raw;
+                case "b":
+                    return String.valueOf("1".equals(raw));
+                default:
+                    return ""; // Error cells
+            }
+        }
+
+        private Object numericValue(String raw) {
+            if (cellStyle != null && isDateStyle(Integer.parseInt(cellStyle))) {
+                return DateUtil.getLocalDateTime(Double.parseDouble(raw), date1904).toLocalDate();
+            }
+            // The XML holds the shortest decimal form of the double, so it can be taken as is
+            BigDecimal number = new BigDecimal(raw);
+            if (number.scale() > 10) {
+                number = number.setScale(10, RoundingMode.HALF_EVEN);
+            }
+            number = number.stripTrailingZeros();
+            // Same scale as parsing the plain text, e.g. 100 rather than 1E+2
+            return number.scale() < 0 ? number.setScale(0) : number;
+        }
+
+        private boolean isDateStyle(int styleIndex) {
+            return dateStyles.computeIfAbsent(styleIndex, index -> {
+                XSSFCellStyle style = stylesTable.getStyleAt(index);
+                return style != null && DateUtil.isADateFormat(style.getDataFormat(), style.getDataFormatString());
+            });
+        }
+    }
+}
@@ -0,0 +1,434 @@
+package com.example.dataprocessor.service;
+
+import com.example.dataprocessor.model.SalesData;
+import com.example.dataprocessor.repository.SalesDataJdbcRepository;
+import com.example.dataprocessor.repository.ZoneMapJdbcRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.text.Normalizer;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Zone maps for skip-scan reads of sales_data.
+ * <p>
+ * Every chunk written records zones in the same transaction as its rows, one per block of block-ids ids
+ * its rows fell into: the ids the rows got there, the min/max of their partition_date and numeric
+ * columns, and a Bloom filter of their dimension values. A query first reads the zones and works out
+ * which id ranges may hold a match, then reads sales_data only within those ranges.
+ * <p>
+ * Concurrent chunks interleave their auto-increment ids, and an UPSERT chunk updates rows anywhere, so a
+ * zone's id range can also hold rows of other chunks, described by their own zones. An id is therefore
+ * only skipped if it lies in at least one zone and every zone around it rules the query out. Once ids
+ * past a block were handed out, {@link #compact()} rebuilds it into one zone read back from sales_data,
+ * so there are about as many zones as blocks. The rows up to the legacy end, written before zone maps,
+ * are always read until {@link #backfill()} has described them. Zones of deleted rows only make queries
+ * read ids that are gone, so they are dropped after their rows, never before.
+ */
+@Service
+public class ZoneMapService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ZoneMapService.class);
+
+    // partition_date of undated rows, see V2__partition_sales_data.sql
+    private static final LocalDate UNDATED = LocalDate.of(1000, 1, 1);
+    private static final char KEY_SEPARATOR = '\u001F';
+    private static final int COMPACT_BATCH_BLOCKS = 100;
+
+    @Autowired
+    private ZoneMapJdbcRepository zoneMapJdbcRepository;
+
+    @Autowired
+    private SalesDataJdbcRepository salesDataJdbcRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Value("${dataprocessor.zone-map.enabled:true}")
+    private boolean enabled;
+
+    @Value("${dataprocessor.zone-map.bloom-false-positive-rate:0.01}")
+    private double bloomFalsePositiveRate;
+
+    // Skipping fewer ids than this is not worth another query
+    @Value("${dataprocessor.zone-map.min-skip-ids:10000}")
+    private long minSkipIds;
+
+    // Ids per block: no zone spans two blocks, and a compacted block has one zone
+    @Value("${dataprocessor.zone-map.block-ids:10000}")
+    private long blockIds;
+
+    private final AtomicBoolean backfilling = new AtomicBoolean();
+
+    /**
+     * The id ranges a query reads and how much of the id space they skip.
+     */
+    public static class ScanPlan {
+        private final int zones;
+        private final List<long[]> ranges;
+        private final long scannedIds;
+        private final long totalIds;
+
+        ScanPlan(int zones, List<long[]> ranges, long scannedIds, long totalIds) {
+            this.zones = zones;
+            this.ranges = ranges;
+            this.scannedIds = scannedIds;
+            this.totalIds = totalIds;
+        }
+
+        public int getZones() {
+            return zones;
+        }
+
+        // [from, to] inclusive; the last one is open-ended (Long.MAX_VALUE) to include rows written meanwhile
+        public List<long[]> getRanges() {
+            return ranges;
+        }
+
+        public long getScannedIds() {
+            return scannedIds;
+        }
+
+        public long getTotalIds() {
+            return totalIds;
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Records the zones of rows just written, in the transaction that wrote them, so a zone exists exactly
+     * when its rows do: one per block the rows fell into, spanning the lowest to the highest id there.
+     * UPSERT rows carry the ids of the rows they inserted or updated; rows they updated stay with the
+     * upload that inserted them, so their zones belong to no upload and outlive a purge of either.
+     */
+    public void recordWrittenRows(List<SalesData> rows, Long fileId, IngestionMode mode) {
+        if (!enabled || rows.isEmpty()) {
+            return;
+        }
+        Map<Long, List<SalesData>> blocks = new TreeMap<>();
+        for (SalesData row : rows) {
+            blocks.computeIfAbsent((row.getId() - 1) / blockIds, block -> new ArrayList<>()).add(row);
+        }
+        for (List<SalesData> blockRows : blocks.values()) {
+            long idFrom = Long.MAX_VALUE;
+            long idTo = Long.MIN_VALUE;
+            for (SalesData row : blockRows) {
+                idFrom = Math.min(idFrom, row.getId());
+                idTo = Math.max(idTo, row.getId());
+            }
+            zoneMapJdbcRepository.insert(buildZone(blockRows, mode == IngestionMode.UPSERT ? null : fileId, mode.name(), idFrom, idTo));
+        }
+    }
+
+    /**
+     * The id ranges after afterId that may hold rows matching the filter, in id order, with ranges closer
+     * than min-skip-ids merged. Without zone maps that is everything after afterId.
+     */
+    public ScanPlan plan(long afterId, SalesFilter filter) {
+        long maxId = salesDataJdbcRepository.findMaxId();
+        long totalIds = Math.max(0, maxId - afterId);
+        if (!enabled) {
+            return new ScanPlan(0, List.of(new long[] {afterId + 1, Long.MAX_VALUE}), totalIds, totalIds);
+        }
+        List<String> keys = new ArrayList<>(2);
+        if (filter.getCountry() != null) {
+            keys.add(dimensionKey(SalesColumn.COUNTRY, filter.getCountry()));
+        }
+        if (filter.getProduct() != null) {
+            keys.add(dimensionKey(SalesColumn.PRODUCT, filter.getProduct()));
+        }
+        long legacyEnd = zoneMapJdbcRepository.findLegacyEnd();
+        List<ZoneMapJdbcRepository.ZoneMatch> zones = zoneMapJdbcRepository.findZones(afterId, filter);
+        List<long[]> ranges = new ArrayList<>();
+        long firstDescribedId = afterId + 1;
+        if (legacyEnd > afterId) {
+            addRange(ranges, afterId + 1, legacyEnd);
+            firstDescribedId = legacyEnd + 1;
+        }
+        for (long[] range : sweep(zones, keys, afterId)) {
+            if (range[1] >= firstDescribedId) {
+                addRange(ranges, Math.max(range[0], firstDescribedId), range[1]);
+            }
+        }
+        long scannedIds = 0;
+        for (long[] range : ranges) {
+            scannedIds += Math.max(0, Math.min(range[1], maxId) - range[0] + 1);
+        }
+        return new ScanPlan(zones.size(), ranges, scannedIds, totalIds);
+    }
+
+    /**
+     * Rebuilds every block that holds zones of chunks and ends at or below the highest id into one zone.
+     * A block still being written into would only be rebuilt again with every chunk.
+     */
+    @Scheduled(fixedDelayString = "${dataprocessor.zone-map.compact-interval-ms:60000}",
+        initialDelayString = "${dataprocessor.zone-map.compact-interval-ms:60000}")
+    public void compact() {
+        if (!enabled) {
+            return;
+        }
+        long closedEnd = salesDataJdbcRepository.findMaxId() / blockIds * blockIds;
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        int compacted = 0;
+        List<Long> blocks;
+        do {
+            blocks = zoneMapJdbcRepository.findBlocksWithChunkZones(blockIds, closedEnd, COMPACT_BATCH_BLOCKS);
+            for (long block : blocks) {
+                transaction.executeWithoutResult(status -> rebuildBlock(block));
+                compacted++;
+            }
+        } while (blocks.size() == COMPACT_BATCH_BLOCKS);
+        if (compacted > 0) {
+            logger.info("Compacted the zone maps of {} blocks of sales_data ids", compacted);
+        }
+    }
+
+    /**
+     * Describes the rows up to the legacy end block by block, read back from sales_data, working down from
+     * the highest such id. An interrupted run leaves the ids below its last block to be read on every
+     * query, and the next run picks up there.
+     */
+    @Async
+    public void backfill() {
+        if (!enabled || !backfilling.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            long legacyEnd = zoneMapJdbcRepository.findLegacyEnd();
+            TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+            // The blocks holding ids 1 to legacyEnd
+            long blocks = (legacyEnd + blockIds - 1) / blockIds;
+            for (long block = blocks - 1; block >= 0; block--) {
+                long rebuilt = block;
+                transaction.executeWithoutResult(status -> {
+                    rebuildBlock(rebuilt);
+                    zoneMapJdbcRepository.lowerLegacyEnd(rebuilt * blockIds);
+                });
+            }
+            logger.info("Backfilled zone maps of {} blocks for sales_data ids up to {}", blocks, legacyEnd);
+        } catch (RuntimeException e) {
+            logger.error("Zone map backfill failed", e);
+        } finally {
+            backfilling.set(false);
+        }
+    }
+
+    /**
+     * Rebuilds every block holding ids in [idFrom, idTo] from the rows left in it, so no zone keeps
+     * describing rows deleted there.
+     */
+    public void rebuildBlocks(long idFrom, long idTo) {
+        if (!enabled) {
+            return;
+        }
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        for (long block = (idFrom - 1) / blockIds; block <= (idTo - 1) / blockIds; block++) {
+            long rebuilt = block;
+            transaction.executeWithoutResult(status -> rebuildBlock(rebuilt));
+        }
+    }
+
+    /**
+     * Drops the zones of an upload whose rows were deleted.
+     */
+    public void deleteZones(Long fileId) {
+        zoneMapJdbcRepository.deleteByFileId(fileId);
+    }
+
+    /**
+     * Drops the zones of rows dated within [from, toExclusive), once all such rows were deleted.
+     */
+    public void deleteZonesDatedBetween(LocalDate from, LocalDate toExclusive) {
+        int deleted = zoneMapJdbcRepository.deleteDatedBetween(from, toExclusive);
+        if (deleted > 0) {
+            logger.info("Dropped {} zone maps of sales rows dated from {} to before {}", deleted, from, toExclusive);
+        }
+    }
+
+    /**
+     * Replaces the zones within a block by one describing every row in it. The zones are listed before the
+     * rows are read, so the rows of every listed zone are among them; zones committed meanwhile are kept.
+     */
+    private void rebuildBlock(long block) {
+        long idFrom = block * blockIds + 1;
+        long idTo = idFrom + blockIds - 1;
+        List<Long> zoneIds = zoneMapJdbcRepository.findZoneIdsWithin(idFrom, idTo);
+        List<SalesData> rows = salesDataJdbcRepository.findInIdRange(idFrom, idTo);
+        if (!rows.isEmpty()) {
+            zoneMapJdbcRepository.insert(buildZone(rows, null, "BLOCK", idFrom, idTo));
+        }
+        zoneMapJdbcRepository.deleteByIds(zoneIds);
+    }
+
+    private ZoneMapJdbcRepository.ZoneMap buildZone(List<SalesData> rows, Long fileId, String kind, long idFrom, long idTo) {
+        LocalDate minDate = null;
+        LocalDate maxDate = null;
+        Map<SalesColumn, BigDecimal[]> ranges = new EnumMap<>(SalesColumn.class);
+        Set<String> keys = new HashSet<>();
+        for (SalesData row : rows) {
+            LocalDate partitionDate = row.getDate() != null ? row.getDate() : UNDATED;
+            minDate = minDate == null || partitionDate.isBefore(minDate) ? partitionDate : minDate;
+            maxDate = maxDate == null || partitionDate.isAfter(maxDate) ? partitionDate : maxDate;
+            for (SalesColumn column : ZoneMapJdbcRepository.RANGE_COLUMNS) {
+                BigDecimal value = numericValue(column, row);
+                if (value != null) {
+                    BigDecimal[] range = ranges.computeIfAbsent(column, c -> new BigDecimal[] {value, value});
+                    range[0] = range[0].min(value);
+                    range[1] = range[1].max(value);
+                }
+            }
+            addKey(keys, SalesColumn.SEGMENT, row.getSegment());
+            addKey(keys, SalesColumn.COUNTRY, row.getCountry());
+            addKey(keys, SalesColumn.PRODUCT, row.getProduct());
+            addKey(keys, SalesColumn.DISCOUNT_BAND, row.getDiscountBand());
+        }
+        BloomFilter bloom = BloomFilter.create(keys.size(), bloomFalsePositiveRate);
+        for (String key : keys) {
+            long hash = HyperLogLog.hash(key);
+            bloom.put(hash, HyperLogLog.hash(hash));
+        }
+        return new ZoneMapJdbcRepository.ZoneMap(fileId, kind, idFrom, idTo, rows.size(), minDate, maxDate, ranges,
+            bloom.toByteArray(), bloom.getHashFunctions());
+    }
+
+    /**
+     * Splits [afterId + 1, ∞) at every zone boundary and keeps the pieces that lie in no zone or in at
+     * least one zone that may match.
+     */
+    List<long[]> sweep(List<ZoneMapJdbcRepository.ZoneMatch> zones, List<String> keys, long afterId) {
+        List<long[]> ranges = new ArrayList<>();
+        // Zones covering the current position, the one ending first on top, and how many of them may match
+        PriorityQueue<ZoneMapJdbcRepository.ZoneMatch> active = new PriorityQueue<>(
+            Comparator.comparingLong(ZoneMapJdbcRepository.ZoneMatch::getIdTo));
+        int matching = 0;
+        long cursor = afterId + 1;
+        for (ZoneMapJdbcRepository.ZoneMatch zone : zones) {
+            long start = Math.max(zone.getIdFrom(), afterId + 1);
+            while (!active.isEmpty() && active.peek().getIdTo() < start) {
+                long end = active.peek().getIdTo();
+                if (cursor <= end && matching > 0) {
+                    addRange(ranges, cursor, end);
+                }
+                cursor = Math.max(cursor, end + 1);
+                while (!active.isEmpty() && active.peek().getIdTo() == end) {
+                    if (mayMatch(active.poll(), keys)) {
+                        matching--;
+                    }
+                }
+            }
+            if (cursor < start) {
+                if (active.isEmpty() || matching > 0) {
+                    addRange(ranges, cursor, start - 1);
+                }
+                cursor = start;
+            }
+            active.add(zone);
+            if (mayMatch(zone, keys)) {
+                matching++;
+            }
+        }
+        while (!active.isEmpty()) {
+            long end = active.peek().getIdTo();
+            if (cursor <= end && matching > 0) {
+                addRange(ranges, cursor, end);
+            }
+            cursor = Math.max(cursor, end + 1);
+            while (!active.isEmpty() && active.peek().getIdTo() == end) {
+                if (mayMatch(active.poll(), keys)) {
+                    matching--;
+                }
+            }
+        }
+        // Past every zone: rows written after the zones were read
+        addRange(ranges, cursor, Long.MAX_VALUE);
+        return ranges;
+    }
+
+    private boolean mayMatch(ZoneMapJdbcRepository.ZoneMatch zone, List<String> keys) {
+        if (!zone.isInRange()) {
+            return false;
+        }
+        if (keys.isEmpty()) {
+            return true;
+        }
+        BloomFilter bloom = BloomFilter.fromByteArray(zone.getDimensionBloom(), zone.getBloomHashFunctions());
+        for (String key : keys) {
+            long hash = HyperLogLog.hash(key);
+            if (!bloom.mightContain(hash, HyperLogLog.hash(hash))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void addRange(List<long[]> ranges, long from, long to) {
+        if (!ranges.isEmpty()) {
+            long[] last = ranges.get(ranges.size() - 1);
+            if (from - last[1] <= minSkipIds) {
+                last[1] = Math.max(last[1], to);
+                return;
+            }
+        }
+        ranges.add(new long[] {from, to});
+    }
+
+    private static void addKey(Set<String> keys, SalesColumn column, String value) {
+        if (value != null) {
+            keys.add(dimensionKey(column, value));
+        }
+    }
+
+    /**
+     * Folds a dimension value at least as far as the database collation compares it: case, accents,
+     * compatibility forms, spaces and punctuation are ignored. Folding further than the collation only
+     * costs false positives; folding less would skip rows that match.
+     */
+    static String dimensionKey(SalesColumn column, String value) {
+        String decomposed = Normalizer.normalize(value, Normalizer.Form.NFKD).toLowerCase(Locale.ROOT)
+            .replace("ß", "ss").replace("æ", "ae").replace("œ", "oe").replace("ø", "o")
+            .replace("đ", "d").replace("ł", "l").replace("þ", "th");
+        StringBuilder key = new StringBuilder(column.name()).append(KEY_SEPARATOR);
+        decomposed.codePoints()
+            .filter(Character::isLetterOrDigit)
+            .forEach(key::appendCodePoint);
+        return key.toString();
+    }
+
+    private static BigDecimal numericValue(SalesColumn column, SalesData row) {
+        return switch (column) {
+            case UNITS_SOLD -> row.getUnitsSold();
+            case MANUFACTURING_PRICE -> row.getManufacturingPrice();
+            case SALE_PRICE -> row.getSalePrice();
+            case GROSS_SALES -> row.getGrossSales();
+            case DISCOUNTS -> row.getDiscounts();
+            case SALES -> row.getSales();
+            case COGS -> row.getCogs();
+            case PROFIT -> row.getProfit();
+            case MONTH_NUMBER -> row.getMonthNumber() != null ? BigDecimal.valueOf(row.getMonthNumber()) : null;
+            case YEAR -> row.getYear() != null ? BigDecimal.valueOf(row.getYear()) : null;
+            default -> null;
+        };
+    }
+}
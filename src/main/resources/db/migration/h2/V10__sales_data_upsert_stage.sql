@@ -0,0 +1,35 @@
+-- See mysql/V10
+DROP INDEX IF EXISTS uk_sales_data_natural_key;
+
+-- Non-unique: serves the key match of UPSERT. It assumes the default dataprocessor.ingest.natural-key
+-- (DATE, COUNTRY, PRODUCT, SEGMENT). With another key, add an index over that key's columns, with
+-- partition_date in place of DATE.
+CREATE INDEX idx_sales_data_natural_key ON sales_data (country, product, segment, partition_date);
+
+-- Rows of one chunk live here only within the transaction that writes the chunk
+CREATE TABLE sales_data_upsert_stage (
+    batch_id VARCHAR(36) NOT NULL,
+    row_index INT NOT NULL,
+    segment VARCHAR(255),
+    country VARCHAR(255),
+    product VARCHAR(255),
+    discount_band VARCHAR(255),
+    units_sold DECIMAL(38, 2),
+    manufacturing_price DECIMAL(38, 2),
+    sale_price DECIMAL(38, 2),
+    gross_sales DECIMAL(38, 2),
+    discounts DECIMAL(38, 2),
+    sales DECIMAL(38, 2),
+    cogs DECIMAL(38, 2),
+    profit DECIMAL(38, 2),
+    date DATE,
+    month_number INT,
+    month_name VARCHAR(255),
+    year INT,
+    row_hash VARCHAR(32),
+    dedup_key VARCHAR(32),
+    rule_violations INT,
+    file_id BIGINT,
+    work_unit_id BIGINT,
+    PRIMARY KEY (batch_id, row_index)
+);
@@ -0,0 +1,13 @@
+-- See mysql/V11
+TRUNCATE TABLE sales_zone_map;
+
+CREATE TABLE sales_zone_map_state (
+    id INT NOT NULL,
+    legacy_end BIGINT NOT NULL,
+    PRIMARY KEY (id)
+);
+
+INSERT INTO sales_zone_map_state (id, legacy_end) SELECT 1, COALESCE(MAX(id), 0) FROM sales_data;
+
+CREATE INDEX idx_zone_map_id_from ON sales_zone_map (id_from, id_to);
+CREATE INDEX idx_zone_map_kind ON sales_zone_map (kind, id_from);
@@ -0,0 +1,2 @@
+-- See mysql/V12
+ALTER TABLE sales_data_upsert_stage ADD COLUMN target_id BIGINT;
@@ -0,0 +1,2 @@
+-- See mysql/V13
+ALTER TABLE rejected_rows ADD COLUMN work_unit_id BIGINT;
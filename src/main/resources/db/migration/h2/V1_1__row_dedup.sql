@@ -0,0 +1,17 @@
+-- See mysql/V1_1
+
+ALTER TABLE file_processing_status ADD COLUMN content_hash VARCHAR(64);
+CREATE INDEX idx_file_status_content_hash ON file_processing_status (content_hash);
+
+ALTER TABLE sales_data ADD COLUMN row_hash VARCHAR(32);
+CREATE INDEX idx_sales_data_row_hash ON sales_data (row_hash);
+
+CREATE TABLE row_dedup_filter (
+    id BIGINT NOT NULL,
+    bit_count BIGINT,
+    hash_functions INT,
+    insertions BIGINT,
+    bits BLOB,
+    updated_at TIMESTAMP(6),
+    PRIMARY KEY (id)
+);
@@ -0,0 +1,13 @@
+-- See mysql/V1_2
+
+CREATE TABLE rejected_rows (
+    id BIGINT GENERATED BY DEFAULT AS IDENTITY,
+    file_id BIGINT NOT NULL,
+    line_number BIGINT,
+    column_name VARCHAR(255),
+    reason_code VARCHAR(255),
+    detail VARCHAR(500),
+    raw_row CLOB,
+    PRIMARY KEY (id)
+);
+CREATE INDEX idx_rejected_rows_file_id ON rejected_rows (file_id, id);
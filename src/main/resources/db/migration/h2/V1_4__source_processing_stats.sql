@@ -0,0 +1,14 @@
+-- See mysql/V1_4
+
+CREATE TABLE source_processing_stats (
+    id BIGINT GENERATED BY DEFAULT AS IDENTITY,
+    file_id BIGINT,
+    source_name VARCHAR(255),
+    total_rows INT,
+    processed_rows INT,
+    failed_rows INT,
+    duplicate_rows INT,
+    duration_millis BIGINT,
+    PRIMARY KEY (id),
+    CONSTRAINT fk_source_processing_stats_file FOREIGN KEY (file_id) REFERENCES file_processing_status (id)
+);
@@ -0,0 +1,3 @@
+-- See mysql/V1_5
+
+ALTER TABLE sales_data ADD COLUMN rule_violations INT;
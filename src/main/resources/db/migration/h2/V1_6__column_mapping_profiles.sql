@@ -0,0 +1,14 @@
+-- See mysql/V1_6
+
+CREATE TABLE column_mapping_profiles (
+    id BIGINT GENERATED BY DEFAULT AS IDENTITY,
+    signature VARCHAR(64) NOT NULL,
+    header CLOB,
+    mapping CLOB,
+    source VARCHAR(255),
+    hit_count BIGINT,
+    created_at TIMESTAMP(6),
+    updated_at TIMESTAMP(6),
+    PRIMARY KEY (id),
+    CONSTRAINT uk_mapping_profile_signature UNIQUE (signature)
+);
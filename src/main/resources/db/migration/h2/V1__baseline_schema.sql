@@ -0,0 +1,47 @@
+-- H2 counterpart of mysql/V1 for embedded and test databases. The versions of both directories match, so
+-- a schema change is one file in each. The connection URL needs NON_KEYWORDS=YEAR, since sales_data has a
+-- year column and the application queries it unquoted.
+
+CREATE TABLE file_processing_status (
+    id BIGINT GENERATED BY DEFAULT AS IDENTITY,
+    filename VARCHAR(255),
+    original_filename VARCHAR(255),
+    upload_time TIMESTAMP(6),
+    status VARCHAR(255),
+    process_time TIMESTAMP(6),
+    error_message VARCHAR(255),
+    PRIMARY KEY (id)
+);
+
+CREATE TABLE processing_stats (
+    id BIGINT GENERATED BY DEFAULT AS IDENTITY,
+    file_id BIGINT,
+    total_rows INT,
+    processed_rows INT,
+    failed_rows INT,
+    processing_duration_seconds DECIMAL(38, 2),
+    PRIMARY KEY (id),
+    CONSTRAINT uk_processing_stats_file_id UNIQUE (file_id),
+    CONSTRAINT fk_processing_stats_file FOREIGN KEY (file_id) REFERENCES file_processing_status (id)
+);
+
+CREATE TABLE sales_data (
+    id BIGINT GENERATED BY DEFAULT AS IDENTITY,
+    segment VARCHAR(255),
+    country VARCHAR(255),
+    product VARCHAR(255),
+    discount_band VARCHAR(255),
+    units_sold DECIMAL(38, 2),
+    manufacturing_price DECIMAL(38, 2),
+    sale_price DECIMAL(38, 2),
+    gross_sales DECIMAL(38, 2),
+    discounts DECIMAL(38, 2),
+    sales DECIMAL(38, 2),
+    cogs DECIMAL(38, 2),
+    profit DECIMAL(38, 2),
+    date DATE,
+    month_number INT,
+    month_name VARCHAR(255),
+    year INT,
+    PRIMARY KEY (id)
+);
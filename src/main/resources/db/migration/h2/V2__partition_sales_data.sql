@@ -0,0 +1,10 @@
+-- H2 has no table partitioning. sales_data gets the same generated partition_date column as on MySQL, so
+-- entity mappings and queries that filter on it work unchanged, but the primary key stays (id) and
+-- SalesPartitionService finds no partitions to maintain.
+
+ALTER TABLE sales_data
+    ADD COLUMN partition_date DATE GENERATED ALWAYS AS (COALESCE(date, DATE '1000-01-01')) NOT NULL;
+
+CREATE INDEX idx_sales_data_partition_date ON sales_data (partition_date);
+CREATE INDEX idx_sales_data_country_date ON sales_data (country, partition_date);
+CREATE INDEX idx_sales_data_product_date ON sales_data (product, partition_date);
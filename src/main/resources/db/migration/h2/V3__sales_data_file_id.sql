@@ -0,0 +1,4 @@
+-- See mysql/V3
+ALTER TABLE sales_data ADD COLUMN file_id BIGINT;
+
+CREATE INDEX idx_sales_data_file_id ON sales_data (file_id, id);
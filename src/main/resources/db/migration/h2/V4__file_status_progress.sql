@@ -0,0 +1,3 @@
+-- See mysql/V4
+ALTER TABLE file_processing_status ADD COLUMN rows_processed INT;
+ALTER TABLE file_processing_status ADD COLUMN rows_failed INT;
@@ -0,0 +1,27 @@
+-- See mysql/V5
+CREATE TABLE ingestion_work_unit (
+    id BIGINT GENERATED BY DEFAULT AS IDENTITY,
+    file_id BIGINT NOT NULL,
+    unit_index INT NOT NULL,
+    source_path VARCHAR(1024) NOT NULL,
+    ingestion_mode VARCHAR(16),
+    start_offset BIGINT NOT NULL,
+    end_offset BIGINT NOT NULL,
+    status VARCHAR(16) NOT NULL,
+    lease_owner VARCHAR(255),
+    lease_expires_at TIMESTAMP(3),
+    attempts INT DEFAULT 0 NOT NULL,
+    total_rows INT,
+    processed_rows INT,
+    failed_rows INT,
+    duplicate_rows INT,
+    error_message VARCHAR(1024),
+    created_at TIMESTAMP(3) NOT NULL,
+    finished_at TIMESTAMP(3),
+    PRIMARY KEY (id),
+    CONSTRAINT uk_work_unit_file_index UNIQUE (file_id, unit_index),
+    CONSTRAINT fk_work_unit_file FOREIGN KEY (file_id) REFERENCES file_processing_status (id)
+);
+CREATE INDEX idx_work_unit_claim ON ingestion_work_unit (status, lease_expires_at);
+
+ALTER TABLE sales_data ADD COLUMN work_unit_id BIGINT;
@@ -0,0 +1,24 @@
+-- See mysql/V6
+CREATE TABLE followed_file (
+    id BIGINT GENERATED BY DEFAULT AS IDENTITY,
+    file_id BIGINT NOT NULL,
+    path VARCHAR(1024) NOT NULL,
+    ingestion_mode VARCHAR(16),
+    active BOOLEAN NOT NULL,
+    file_key VARCHAR(255),
+    byte_offset BIGINT DEFAULT 0 NOT NULL,
+    pending_end_offset BIGINT,
+    pending_after_row_id BIGINT,
+    rows_processed BIGINT DEFAULT 0 NOT NULL,
+    rows_failed BIGINT DEFAULT 0 NOT NULL,
+    batches BIGINT DEFAULT 0 NOT NULL,
+    restarts INT DEFAULT 0 NOT NULL,
+    lease_owner VARCHAR(255),
+    lease_expires_at TIMESTAMP(3),
+    last_batch_at TIMESTAMP(3),
+    error_message VARCHAR(1024),
+    created_at TIMESTAMP(3) NOT NULL,
+    PRIMARY KEY (id),
+    CONSTRAINT fk_followed_file_file FOREIGN KEY (file_id) REFERENCES file_processing_status (id)
+);
+CREATE INDEX idx_followed_file_active ON followed_file (active);
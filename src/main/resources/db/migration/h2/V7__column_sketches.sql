@@ -0,0 +1,3 @@
+-- See mysql/V7
+ALTER TABLE processing_stats ADD COLUMN column_sketches BLOB;
+ALTER TABLE ingestion_work_unit ADD COLUMN column_sketches BLOB;
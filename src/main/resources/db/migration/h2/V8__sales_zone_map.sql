@@ -0,0 +1,38 @@
+-- See mysql/V8
+CREATE TABLE sales_zone_map (
+    id BIGINT GENERATED BY DEFAULT AS IDENTITY,
+    file_id BIGINT,
+    kind VARCHAR(16) NOT NULL,
+    id_from BIGINT NOT NULL,
+    id_to BIGINT NOT NULL,
+    row_count INT NOT NULL,
+    min_date DATE,
+    max_date DATE,
+    units_sold_min DECIMAL(38, 2),
+    units_sold_max DECIMAL(38, 2),
+    manufacturing_price_min DECIMAL(38, 2),
+    manufacturing_price_max DECIMAL(38, 2),
+    sale_price_min DECIMAL(38, 2),
+    sale_price_max DECIMAL(38, 2),
+    gross_sales_min DECIMAL(38, 2),
+    gross_sales_max DECIMAL(38, 2),
+    discounts_min DECIMAL(38, 2),
+    discounts_max DECIMAL(38, 2),
+    sales_min DECIMAL(38, 2),
+    sales_max DECIMAL(38, 2),
+    cogs_min DECIMAL(38, 2),
+    cogs_max DECIMAL(38, 2),
+    profit_min DECIMAL(38, 2),
+    profit_max DECIMAL(38, 2),
+    month_number_min INT,
+    month_number_max INT,
+    year_min INT,
+    year_max INT,
+    dimension_bloom BLOB NOT NULL,
+    bloom_hash_functions INT NOT NULL,
+    created_at TIMESTAMP(3) NOT NULL,
+    PRIMARY KEY (id)
+);
+CREATE INDEX idx_zone_map_id_to ON sales_zone_map (id_to);
+CREATE INDEX idx_zone_map_file ON sales_zone_map (file_id);
+CREATE INDEX idx_zone_map_max_date ON sales_zone_map (max_date);
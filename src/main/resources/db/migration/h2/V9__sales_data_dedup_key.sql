@@ -0,0 +1,4 @@
+-- See mysql/V9
+ALTER TABLE sales_data ADD COLUMN dedup_key VARCHAR(32);
+
+CREATE UNIQUE INDEX uk_sales_data_dedup_key ON sales_data (dedup_key, partition_date);
@@ -0,0 +1,19 @@
+-- Zone maps in fixed id blocks (see ZoneMapService). A chunk records one zone per block its rows fell into,
+-- spanning only the ids it wrote there, UPSERT chunks included; closed blocks are compacted into one zone.
+-- Zones of the old layout are dropped: their UPSERT zones spanned every id from 0. Until
+-- POST /api/sales/zone-maps/backfill has rebuilt them, the ids up to legacy_end are read on every query.
+TRUNCATE TABLE sales_zone_map;
+
+-- One row: every sales_data id above legacy_end lies in a zone that describes it
+CREATE TABLE sales_zone_map_state (
+    id INT NOT NULL,
+    legacy_end BIGINT NOT NULL,
+    PRIMARY KEY (id)
+) ENGINE = InnoDB;
+
+INSERT INTO sales_zone_map_state (id, legacy_end) SELECT 1, COALESCE(MAX(id), 0) FROM sales_data;
+
+-- Serves the id_from order of a query's zones and the zones within a block
+CREATE INDEX idx_zone_map_id_from ON sales_zone_map (id_from, id_to);
+-- Serves compaction's search for chunk zones, which it keeps few
+CREATE INDEX idx_zone_map_kind ON sales_zone_map (kind, id_from);
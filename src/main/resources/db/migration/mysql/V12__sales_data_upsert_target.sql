@@ -0,0 +1,3 @@
+-- The oldest sales_data row with the staged row's natural key, resolved before the chunk is written: an
+-- UPSERT updates only that row, even where APPEND uploads repeated the key
+ALTER TABLE sales_data_upsert_stage ADD COLUMN target_id BIGINT;
@@ -0,0 +1,3 @@
+-- The work unit that rejected the row, so a unit taken over from a failed attempt can remove that
+-- attempt's rejects along with its rows. Deletes walk idx_rejected_rows_file_id, as for sales_data.
+ALTER TABLE rejected_rows ADD COLUMN work_unit_id BIGINT;
@@ -0,0 +1,18 @@
+-- Identical re-uploads are found by the hash of their content, repeated rows by their row hash and a
+-- persistent Bloom filter of the hashes seen so far
+
+ALTER TABLE file_processing_status ADD COLUMN content_hash VARCHAR(64);
+CREATE INDEX idx_file_status_content_hash ON file_processing_status (content_hash);
+
+ALTER TABLE sales_data ADD COLUMN row_hash VARCHAR(32);
+CREATE INDEX idx_sales_data_row_hash ON sales_data (row_hash);
+
+CREATE TABLE row_dedup_filter (
+    id BIGINT NOT NULL,
+    bit_count BIGINT,
+    hash_functions INT,
+    insertions BIGINT,
+    bits LONGBLOB,
+    updated_at DATETIME(6),
+    PRIMARY KEY (id)
+) ENGINE = InnoDB;
@@ -0,0 +1,13 @@
+-- Rows an upload could not ingest, with the reason, for the rejects download
+
+CREATE TABLE rejected_rows (
+    id BIGINT NOT NULL AUTO_INCREMENT,
+    file_id BIGINT NOT NULL,
+    line_number BIGINT,
+    column_name VARCHAR(255),
+    reason_code VARCHAR(255),
+    detail VARCHAR(500),
+    raw_row TEXT,
+    PRIMARY KEY (id),
+    INDEX idx_rejected_rows_file_id (file_id, id)
+) ENGINE = InnoDB;
@@ -0,0 +1,24 @@
+-- Resumable chunked uploads: one session per upload, one row per part received
+
+CREATE TABLE upload_sessions (
+    id VARCHAR(255) NOT NULL,
+    file_id BIGINT,
+    file_name VARCHAR(255),
+    ingestion_mode VARCHAR(255),
+    status VARCHAR(255),
+    total_parts INT,
+    created_at DATETIME(6),
+    completed_at DATETIME(6),
+    PRIMARY KEY (id)
+) ENGINE = InnoDB;
+
+CREATE TABLE upload_parts (
+    id BIGINT NOT NULL AUTO_INCREMENT,
+    session_id VARCHAR(255) NOT NULL,
+    part_number INT NOT NULL,
+    size BIGINT,
+    sha256 VARCHAR(64),
+    received_at DATETIME(6),
+    PRIMARY KEY (id),
+    CONSTRAINT uk_upload_parts_session_part UNIQUE (session_id, part_number)
+) ENGINE = InnoDB;
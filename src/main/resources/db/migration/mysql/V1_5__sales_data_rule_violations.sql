@@ -0,0 +1,3 @@
+-- Validation rules that flag a row without rejecting it
+
+ALTER TABLE sales_data ADD COLUMN rule_violations INT;
@@ -0,0 +1,14 @@
+-- Column mappings remembered per header signature
+
+CREATE TABLE column_mapping_profiles (
+    id BIGINT NOT NULL AUTO_INCREMENT,
+    signature VARCHAR(64) NOT NULL,
+    header TEXT,
+    mapping TEXT,
+    source VARCHAR(255),
+    hit_count BIGINT,
+    created_at DATETIME(6),
+    updated_at DATETIME(6),
+    PRIMARY KEY (id),
+    CONSTRAINT uk_mapping_profile_signature UNIQUE (signature)
+) ENGINE = InnoDB;
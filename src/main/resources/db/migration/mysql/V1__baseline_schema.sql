@@ -0,0 +1,47 @@
+-- Schema as previously created by spring.jpa.hibernate.ddl-auto=update, before any of the later tables and
+-- columns. Databases that already have these tables are baselined at version 1 and skip this script;
+-- V1_1 onwards add what came after.
+
+CREATE TABLE file_processing_status (
+    id BIGINT NOT NULL AUTO_INCREMENT,
+    filename VARCHAR(255),
+    original_filename VARCHAR(255),
+    upload_time DATETIME(6),
+    status VARCHAR(255),
+    process_time DATETIME(6),
+    error_message VARCHAR(255),
+    PRIMARY KEY (id)
+) ENGINE = InnoDB;
+
+CREATE TABLE processing_stats (
+    id BIGINT NOT NULL AUTO_INCREMENT,
+    file_id BIGINT,
+    total_rows INT,
+    processed_rows INT,
+    failed_rows INT,
+    processing_duration_seconds DECIMAL(38, 2),
+    PRIMARY KEY (id),
+    CONSTRAINT uk_processing_stats_file_id UNIQUE (file_id),
+    CONSTRAINT fk_processing_stats_file FOREIGN KEY (file_id) REFERENCES file_processing_status (id)
+) ENGINE = InnoDB;
+
+CREATE TABLE sales_data (
+    id BIGINT NOT NULL AUTO_INCREMENT,
+    segment VARCHAR(255),
+    country VARCHAR(255),
+    product VARCHAR(255),
+    discount_band VARCHAR(255),
+    units_sold DECIMAL(38, 2),
+    manufacturing_price DECIMAL(38, 2),
+    sale_price DECIMAL(38, 2),
+    gross_sales DECIMAL(38, 2),
+    discounts DECIMAL(38, 2),
+    sales DECIMAL(38, 2),
+    cogs DECIMAL(38, 2),
+    profit DECIMAL(38, 2),
+    date DATE,
+    month_number INT,
+    month_name VARCHAR(255),
+    year INT,
+    PRIMARY KEY (id)
+) ENGINE = InnoDB;
@@ -0,0 +1,34 @@
+-- Range-partitions sales_data by month so date-range queries and retention only touch the partitions
+-- they need. MySQL requires the partitioning column in every unique key and does not allow NULL in
+-- primary key columns, so rows are partitioned on partition_date: the row's date, or 1000-01-01 when
+-- the source had no date. Queries filter on partition_date to get partition pruning.
+
+ALTER TABLE sales_data
+    ADD COLUMN partition_date DATE GENERATED ALWAYS AS (COALESCE(date, DATE '1000-01-01')) STORED NOT NULL;
+
+-- id stays first so AUTO_INCREMENT keeps working
+ALTER TABLE sales_data DROP PRIMARY KEY, ADD PRIMARY KEY (id, partition_date);
+
+-- A unique natural key index added by earlier versions lacks partition_date, which a partitioned table
+-- requires in every unique key, so it is dropped. Nothing recreates it here; V10 adds a non-unique index
+-- for the default natural key.
+SET @drop_natural_key = (
+    SELECT IF(COUNT(*) > 0, 'ALTER TABLE sales_data DROP INDEX uk_sales_data_natural_key', 'DO 0')
+    FROM information_schema.statistics
+    WHERE table_schema = DATABASE() AND table_name = 'sales_data' AND index_name = 'uk_sales_data_natural_key');
+PREPARE drop_natural_key FROM @drop_natural_key;
+EXECUTE drop_natural_key;
+DEALLOCATE PREPARE drop_natural_key;
+
+-- Within a partition: sub-month date ranges, and the country/product filters of the query API
+CREATE INDEX idx_sales_data_partition_date ON sales_data (partition_date);
+CREATE INDEX idx_sales_data_country_date ON sales_data (country, partition_date);
+CREATE INDEX idx_sales_data_product_date ON sales_data (product, partition_date);
+
+-- Monthly partitions are split off p_future by SalesPartitionService, starting at the oldest month
+-- present, and kept a few months ahead of the current date
+ALTER TABLE sales_data
+    PARTITION BY RANGE COLUMNS (partition_date) (
+        PARTITION p_undated VALUES LESS THAN ('1900-01-01'),
+        PARTITION p_future VALUES LESS THAN (MAXVALUE)
+    );
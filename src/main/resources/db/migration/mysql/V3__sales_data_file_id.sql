@@ -0,0 +1,6 @@
+-- Records which upload each row came from, so an upload's rows can be purged on their own.
+-- No foreign key: MySQL does not support foreign keys on partitioned tables.
+ALTER TABLE sales_data ADD COLUMN file_id BIGINT;
+
+-- Keyset-ordered batch deletes of one upload: WHERE file_id = ? AND id > ? ORDER BY id
+CREATE INDEX idx_sales_data_file_id ON sales_data (file_id, id);
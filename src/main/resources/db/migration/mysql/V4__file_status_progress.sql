@@ -0,0 +1,3 @@
+-- Live progress of an upload, written by the status write-behind buffer while it is being ingested
+ALTER TABLE file_processing_status ADD COLUMN rows_processed INT;
+ALTER TABLE file_processing_status ADD COLUMN rows_failed INT;
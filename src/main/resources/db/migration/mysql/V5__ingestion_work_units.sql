@@ -0,0 +1,31 @@
+-- Byte ranges of a large staged CSV, leased by any node of the cluster (see WorkUnitService).
+-- A unit is claimable while PENDING, or while LEASED with an expired lease (its node died).
+-- attempts is bumped on every lease and fences the heartbeat and completion of a stale owner.
+CREATE TABLE ingestion_work_unit (
+    id BIGINT NOT NULL AUTO_INCREMENT,
+    file_id BIGINT NOT NULL,
+    unit_index INT NOT NULL,
+    source_path VARCHAR(1024) NOT NULL,
+    ingestion_mode VARCHAR(16),
+    start_offset BIGINT NOT NULL,
+    end_offset BIGINT NOT NULL,
+    status VARCHAR(16) NOT NULL,
+    lease_owner VARCHAR(255),
+    lease_expires_at DATETIME(3),
+    attempts INT NOT NULL DEFAULT 0,
+    total_rows INT,
+    processed_rows INT,
+    failed_rows INT,
+    duplicate_rows INT,
+    error_message VARCHAR(1024),
+    created_at DATETIME(3) NOT NULL,
+    finished_at DATETIME(3),
+    PRIMARY KEY (id),
+    CONSTRAINT uk_work_unit_file_index UNIQUE (file_id, unit_index),
+    INDEX idx_work_unit_claim (status, lease_expires_at),
+    CONSTRAINT fk_work_unit_file FOREIGN KEY (file_id) REFERENCES file_processing_status (id)
+) ENGINE = InnoDB;
+
+-- The work unit that wrote each row, so a unit re-leased after a crash can remove its partial output.
+-- Rows of files ingested on a single node leave it null. Added last, so it is an instant change.
+ALTER TABLE sales_data ADD COLUMN work_unit_id BIGINT;
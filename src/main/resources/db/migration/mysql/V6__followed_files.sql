@@ -0,0 +1,28 @@
+-- CSV files that keep growing, ingested incrementally from a durable byte-offset checkpoint (see FollowService).
+-- byte_offset is always at a line start. file_key (the inode where the file system has one) tells a rotated
+-- file from the one that was followed; a file smaller than byte_offset has been truncated.
+-- pending_end_offset and pending_after_row_id are set while a batch is being written: rows of file_id above
+-- pending_after_row_id belong to that batch and are removed if it never reached its checkpoint.
+CREATE TABLE followed_file (
+    id BIGINT NOT NULL AUTO_INCREMENT,
+    file_id BIGINT NOT NULL,
+    path VARCHAR(1024) NOT NULL,
+    ingestion_mode VARCHAR(16),
+    active BOOLEAN NOT NULL,
+    file_key VARCHAR(255),
+    byte_offset BIGINT NOT NULL DEFAULT 0,
+    pending_end_offset BIGINT,
+    pending_after_row_id BIGINT,
+    rows_processed BIGINT NOT NULL DEFAULT 0,
+    rows_failed BIGINT NOT NULL DEFAULT 0,
+    batches BIGINT NOT NULL DEFAULT 0,
+    restarts INT NOT NULL DEFAULT 0,
+    lease_owner VARCHAR(255),
+    lease_expires_at DATETIME(3),
+    last_batch_at DATETIME(3),
+    error_message VARCHAR(1024),
+    created_at DATETIME(3) NOT NULL,
+    PRIMARY KEY (id),
+    INDEX idx_followed_file_active (active),
+    CONSTRAINT fk_followed_file_file FOREIGN KEY (file_id) REFERENCES file_processing_status (id)
+) ENGINE = InnoDB;
@@ -0,0 +1,4 @@
+-- Mergeable column sketches (distinct counts, quantiles, null/min/max) of each upload; see ColumnSketches.
+-- Work units keep their own until the file is finished and the sketches of its units are merged.
+ALTER TABLE processing_stats ADD COLUMN column_sketches LONGBLOB;
+ALTER TABLE ingestion_work_unit ADD COLUMN column_sketches LONGBLOB;
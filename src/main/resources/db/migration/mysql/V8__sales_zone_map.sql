@@ -0,0 +1,42 @@
+-- Zone maps of sales_data for skip-scan queries (see ZoneMapService). Each zone describes the rows one chunk
+-- wrote: the id range they fell into, min/max of partition_date and of every numeric column, and a Bloom
+-- filter of their dimension values. Concurrent chunks interleave ids, so zones overlap; an id range is only
+-- skipped when every zone overlapping it rules the query out.
+-- UPSERT chunks may update rows anywhere below the ids they inserted, so their zones start at id 0.
+CREATE TABLE sales_zone_map (
+    id BIGINT NOT NULL AUTO_INCREMENT,
+    file_id BIGINT,
+    kind VARCHAR(16) NOT NULL,
+    id_from BIGINT NOT NULL,
+    id_to BIGINT NOT NULL,
+    row_count INT NOT NULL,
+    min_date DATE,
+    max_date DATE,
+    units_sold_min DECIMAL(38, 2),
+    units_sold_max DECIMAL(38, 2),
+    manufacturing_price_min DECIMAL(38, 2),
+    manufacturing_price_max DECIMAL(38, 2),
+    sale_price_min DECIMAL(38, 2),
+    sale_price_max DECIMAL(38, 2),
+    gross_sales_min DECIMAL(38, 2),
+    gross_sales_max DECIMAL(38, 2),
+    discounts_min DECIMAL(38, 2),
+    discounts_max DECIMAL(38, 2),
+    sales_min DECIMAL(38, 2),
+    sales_max DECIMAL(38, 2),
+    cogs_min DECIMAL(38, 2),
+    cogs_max DECIMAL(38, 2),
+    profit_min DECIMAL(38, 2),
+    profit_max DECIMAL(38, 2),
+    month_number_min INT,
+    month_number_max INT,
+    year_min INT,
+    year_max INT,
+    dimension_bloom BLOB NOT NULL,
+    bloom_hash_functions INT NOT NULL,
+    created_at DATETIME(3) NOT NULL,
+    PRIMARY KEY (id),
+    INDEX idx_zone_map_id_to (id_to),
+    INDEX idx_zone_map_file (file_id),
+    INDEX idx_zone_map_max_date (max_date)
+) ENGINE = InnoDB;
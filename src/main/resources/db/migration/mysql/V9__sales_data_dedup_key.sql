@@ -0,0 +1,7 @@
+-- Row deduplication is enforced by the database: rows written while dedup is enabled carry their row hash
+-- in dedup_key, and a second row with the same content fails on the unique index, however many chunks or
+-- nodes raced to write it. Rows written with dedup disabled keep dedup_key NULL, which the index allows
+-- any number of times. A unique index of a partitioned table must contain the partitioning column.
+ALTER TABLE sales_data ADD COLUMN dedup_key VARCHAR(32);
+
+CREATE UNIQUE INDEX uk_sales_data_dedup_key ON sales_data (dedup_key, partition_date);
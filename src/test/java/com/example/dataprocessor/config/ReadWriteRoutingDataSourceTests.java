@@ -0,0 +1,95 @@
+package com.example.dataprocessor.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+
+class ReadWriteRoutingDataSourceTests {
+
+	private DataSource primary;
+	private DataSource replica;
+
+	@BeforeEach
+	void createDatabases() {
+		primary = embeddedDatabase("primary");
+		replica = embeddedDatabase("replica");
+	}
+
+	@Test
+	void readOnlyTransactionsUseTheReplica() {
+		JdbcTemplate jdbcTemplate = routed(replica);
+		TransactionTemplate readOnly = transactionTemplate(jdbcTemplate, true);
+		TransactionTemplate readWrite = transactionTemplate(jdbcTemplate, false);
+
+		assertEquals("replica", readOnly.execute(status -> whichDatabase(jdbcTemplate)));
+		assertEquals("primary", readWrite.execute(status -> whichDatabase(jdbcTemplate)));
+		assertEquals("primary", whichDatabase(jdbcTemplate));
+	}
+
+	@Test
+	void readsFallBackToThePrimaryWhenTheReplicaIsDown() {
+		DataSource unreachable = new DriverManagerDataSource("jdbc:h2:tcp://localhost:1/unreachable", "sa", "");
+		ReadWriteRoutingDataSource routing = new ReadWriteRoutingDataSource(primary, unreachable, 60_000);
+		JdbcTemplate jdbcTemplate = new JdbcTemplate(new LazyConnectionDataSourceProxy(routing));
+
+		assertEquals("primary", transactionTemplate(jdbcTemplate, true).execute(status -> whichDatabase(jdbcTemplate)));
+		assertFalse(routing.isReplicaAvailable());
+	}
+
+	@Test
+	void fallbackFromAnUnreachableReplicaPoolIsFast() {
+		DataSourceProperties properties = new DataSourceProperties();
+		properties.setDriverClassName("org.h2.Driver");
+		try (HikariDataSource pool = new DataSourceConfig().replicaDataSource(properties,
+				"jdbc:h2:tcp://localhost:1/unreachable", "sa", "", 2, 1000)) {
+			ReadWriteRoutingDataSource routing = new ReadWriteRoutingDataSource(primary, pool, 60_000);
+			JdbcTemplate jdbcTemplate = new JdbcTemplate(new LazyConnectionDataSourceProxy(routing));
+			TransactionTemplate readOnly = transactionTemplate(jdbcTemplate, true);
+
+			// Bounded by the replica's connection timeout, not Hikari's 30 s default
+			assertTimeoutPreemptively(Duration.ofSeconds(5),
+				() -> assertEquals("primary", readOnly.execute(status -> whichDatabase(jdbcTemplate))));
+			assertFalse(routing.isReplicaAvailable());
+			// Later reads skip the replica without waiting at all
+			assertTimeoutPreemptively(Duration.ofMillis(500),
+				() -> assertEquals("primary", readOnly.execute(status -> whichDatabase(jdbcTemplate))));
+		}
+	}
+
+	private JdbcTemplate routed(DataSource replica) {
+		return new JdbcTemplate(new LazyConnectionDataSourceProxy(new ReadWriteRoutingDataSource(primary, replica, 60_000)));
+	}
+
+	private static TransactionTemplate transactionTemplate(JdbcTemplate jdbcTemplate, boolean readOnly) {
+		TransactionTemplate template = new TransactionTemplate(new DataSourceTransactionManager(jdbcTemplate.getDataSource()));
+		template.setReadOnly(readOnly);
+		return template;
+	}
+
+	private static String whichDatabase(JdbcTemplate jdbcTemplate) {
+		return jdbcTemplate.queryForObject("SELECT name FROM which_database", String.class);
+	}
+
+	private static DataSource embeddedDatabase(String name) {
+		DataSource dataSource = new DriverManagerDataSource("jdbc:h2:mem:" + name + ";DB_CLOSE_DELAY=-1", "sa", "");
+		JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+		jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS which_database (name VARCHAR(16))");
+		jdbcTemplate.update("DELETE FROM which_database");
+		jdbcTemplate.update("INSERT INTO which_database (name) VALUES (?)", name);
+		return dataSource;
+	}
+
+}
@@ -0,0 +1,95 @@
+package com.example.dataprocessor.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.TransientDataAccessResourceException;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BisectingRetryWriterTests {
+
+	private static final int MAX_RETRIES = 3;
+
+	private BisectingRetryWriter writer;
+	private final List<Integer> written = new ArrayList<>();
+	private final List<Integer> rejected = new ArrayList<>();
+	private final AtomicInteger attempts = new AtomicInteger();
+
+	@BeforeEach
+	void createWriter() {
+		writer = new BisectingRetryWriter();
+		ReflectionTestUtils.setField(writer, "maxRetries", MAX_RETRIES);
+		ReflectionTestUtils.setField(writer, "initialBackoffMillis", 0L);
+		ReflectionTestUtils.setField(writer, "maxBackoffMillis", 0L);
+	}
+
+	@Test
+	void retriesTransientFailuresWithoutSplittingTheBatch() {
+		int count = writer.write(rows(10), batch -> {
+			if (attempts.incrementAndGet() <= 2) {
+				throw new TransientDataAccessResourceException("lock wait timeout");
+			}
+			written.addAll(batch);
+		}, (row, e) -> rejected.add(row));
+
+		assertEquals(10, count);
+		assertEquals(3, attempts.get());
+		assertEquals(rows(10), written);
+		assertTrue(rejected.isEmpty());
+	}
+
+	@Test
+	void bisectsToIsolateRowsThatViolateConstraints() {
+		int count = writer.write(rows(16), batch -> {
+			attempts.incrementAndGet();
+			if (batch.contains(5) || batch.contains(11)) {
+				throw new DataIntegrityViolationException("bad row", new SQLException("Duplicate entry", "23000"));
+			}
+			written.addAll(batch);
+		}, (row, e) -> rejected.add(row));
+
+		assertEquals(14, count);
+		assertEquals(List.of(5, 11), rejected);
+		assertEquals(14, written.size());
+		// Two bad rows in 16 cost at most two root-to-leaf paths of the bisection
+		assertTrue(attempts.get() <= 1 + 2 * 2 * 4, "attempts: " + attempts.get());
+	}
+
+	@Test
+	void rejectsTheWholeBatchAtOnceWhenTheFailureIsNotAboutARow() {
+		int count = writer.write(rows(500), batch -> {
+			attempts.incrementAndGet();
+			throw new IllegalStateException("write failed", new SQLException("Communications link failure", "08S01"));
+		}, (row, e) -> rejected.add(row));
+
+		assertEquals(0, count);
+		assertEquals(1, attempts.get());
+		assertEquals(rows(500), rejected);
+	}
+
+	@Test
+	void doesNotBisectWhenRetriesAreExhausted() {
+		int count = writer.write(rows(500), batch -> {
+			attempts.incrementAndGet();
+			throw new IllegalStateException("deadlock", new SQLException("Deadlock found", "40001", 1213));
+		}, (row, e) -> rejected.add(row));
+
+		assertEquals(0, count);
+		assertEquals(MAX_RETRIES + 1, attempts.get());
+		assertEquals(500, rejected.size());
+	}
+
+	private static List<Integer> rows(int count) {
+		return IntStream.range(0, count).boxed().toList();
+	}
+
+}
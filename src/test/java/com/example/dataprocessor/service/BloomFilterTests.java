@@ -0,0 +1,32 @@
+package com.example.dataprocessor.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BloomFilterTests {
+
+	@Test
+	void insertedValuesAreAlwaysFound() {
+		BloomFilter filter = BloomFilter.create(1000, 0.01);
+		for (long i = 0; i < 1000; i++) {
+			filter.put(i * 0x9E3779B97F4A7C15L, i * 0xC2B2AE3D27D4EB4FL + 1);
+		}
+		for (long i = 0; i < 1000; i++) {
+			assertTrue(filter.mightContain(i * 0x9E3779B97F4A7C15L, i * 0xC2B2AE3D27D4EB4FL + 1));
+		}
+	}
+
+	@Test
+	void roundTripsThroughByteArray() {
+		BloomFilter filter = BloomFilter.create(100, 0.01);
+		filter.put(42L, 7L);
+		BloomFilter restored = BloomFilter.fromByteArray(filter.toByteArray(), filter.getHashFunctions());
+		assertEquals(filter.getBitCount(), restored.getBitCount());
+		assertTrue(restored.mightContain(42L, 7L));
+		assertFalse(restored.put(42L, 7L));
+	}
+
+}
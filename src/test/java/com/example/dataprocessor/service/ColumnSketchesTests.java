@@ -0,0 +1,134 @@
+package com.example.dataprocessor.service;
+
+import com.example.dataprocessor.model.SalesData;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ColumnSketchesTests {
+
+	private static final int ROWS = 20_000;
+	private static final LocalDate FIRST_DAY = LocalDate.of(2014, 1, 1);
+	// Three standard errors of the precision-12 HyperLogLog the sketches use
+	private static final double THREE_SIGMA = 3 * 1.04 / Math.sqrt(1 << 12);
+
+	@Test
+	void summarizesCountsDistinctValuesRangesAndQuantiles() {
+		ColumnSketches.Summary summary = sketchOf(0, ROWS).summarize(1);
+
+		assertEquals(1, summary.getFiles());
+		assertEquals(ROWS, summary.getRows());
+
+		ColumnSketches.ColumnSummary product = column(summary, SalesColumn.PRODUCT);
+		assertEquals(ROWS, product.getValues());
+		assertEquals(0, product.getNulls());
+		// Case and surrounding blanks are folded, as for the row hash
+		assertWithinThreeSigma(5_000, product.getDistinct());
+
+		ColumnSketches.ColumnSummary country = column(summary, SalesColumn.COUNTRY);
+		// Missing and blank both count as null
+		assertEquals(ROWS / 5, country.getNulls());
+		assertEquals(ROWS - ROWS / 5, country.getValues());
+		assertEquals(Long.valueOf(7), country.getDistinct());
+
+		ColumnSketches.ColumnSummary date = column(summary, SalesColumn.DATE);
+		assertWithinThreeSigma(365, date.getDistinct());
+		assertEquals(FIRST_DAY, date.getMin());
+		assertEquals(FIRST_DAY.plusDays(364), date.getMax());
+
+		ColumnSketches.ColumnSummary sales = column(summary, SalesColumn.SALES);
+		assertNull(sales.getDistinct());
+		assertEquals(1.0, sales.getMin());
+		assertEquals((double) ROWS, sales.getMax());
+		// Sales are 1..ROWS, so the exact value at rank q * (ROWS - 1) is that rank plus one
+		for (double quantile : new double[] {0.5, 0.9, 0.95, 0.99}) {
+			double exact = (long) (quantile * (ROWS - 1)) + 1;
+			double estimate = sales.getQuantiles().get("p" + Math.round(quantile * 100));
+			assertEquals(exact, estimate, 0.01 * exact, "quantile " + quantile);
+		}
+
+		ColumnSketches.ColumnSummary profit = column(summary, SalesColumn.PROFIT);
+		assertEquals(0, profit.getValues());
+		assertEquals(ROWS, profit.getNulls());
+		assertNull(profit.getQuantiles());
+	}
+
+	@Test
+	void mergeEqualsTheSketchesOfTheUnion() {
+		ColumnSketches merged = sketchOf(0, 12_000);
+		merged.merge(sketchOf(12_000, ROWS));
+
+		ColumnSketches union = sketchOf(0, ROWS);
+		assertEquals(union.getRows(), merged.getRows());
+		assertArrayEquals(union.toByteArray(), merged.toByteArray());
+	}
+
+	@Test
+	void roundTripsThroughBytes() {
+		ColumnSketches sketches = sketchOf(0, 5_000);
+
+		ColumnSketches restored = ColumnSketches.fromByteArray(sketches.toByteArray());
+
+		assertEquals(sketches.getRows(), restored.getRows());
+		assertArrayEquals(sketches.toByteArray(), restored.toByteArray());
+		ColumnSketches.ColumnSummary original = column(sketches.summarize(1), SalesColumn.SALES);
+		ColumnSketches.ColumnSummary copy = column(restored.summarize(1), SalesColumn.SALES);
+		assertEquals(original.getQuantiles(), copy.getQuantiles());
+		assertEquals(original.getMin(), copy.getMin());
+	}
+
+	@Test
+	void roundTripsEmptySketches() {
+		ColumnSketches empty = new ColumnSketches();
+
+		ColumnSketches restored = ColumnSketches.fromByteArray(empty.toByteArray());
+
+		assertEquals(0, restored.getRows());
+		assertArrayEquals(empty.toByteArray(), restored.toByteArray());
+		assertNull(column(restored.summarize(0), SalesColumn.DATE).getMin());
+	}
+
+	@Test
+	void rejectsAnUnknownFormat() {
+		byte[] data = new ColumnSketches().toByteArray();
+		data[0] = 99;
+
+		assertThrows(IllegalArgumentException.class, () -> ColumnSketches.fromByteArray(data));
+	}
+
+	private static ColumnSketches sketchOf(int from, int to) {
+		ColumnSketches sketches = new ColumnSketches();
+		for (int i = from; i < to; i++) {
+			sketches.add(row(i));
+		}
+		return sketches;
+	}
+
+	private static SalesData row(int i) {
+		SalesData row = new SalesData();
+		row.setProduct(i % 2 == 0 ? "Product " + (i % 5_000) : "  PRODUCT " + (i % 5_000) + " ");
+		row.setCountry(i % 10 == 0 ? null : i % 10 == 1 ? "   " : "Country " + (i % 7));
+		row.setSales(BigDecimal.valueOf(i + 1));
+		row.setDate(FIRST_DAY.plusDays(i % 365));
+		return row;
+	}
+
+	private static ColumnSketches.ColumnSummary column(ColumnSketches.Summary summary, SalesColumn column) {
+		return summary.getColumns().stream()
+			.filter(candidate -> candidate.getColumn() == column)
+			.findFirst()
+			.orElseThrow();
+	}
+
+	private static void assertWithinThreeSigma(long expected, Long estimate) {
+		assertTrue(Math.abs(estimate - expected) <= THREE_SIGMA * expected, "expected about " + expected + ", estimate " + estimate);
+	}
+
+}
@@ -0,0 +1,117 @@
+package com.example.dataprocessor.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class FollowServiceTests {
+
+	private static final String HEADER = "Segment,Country,Product\n";
+
+	private Path dir;
+	private Path file;
+
+	@BeforeEach
+	void createFile() throws IOException {
+		dir = Files.createTempDirectory("follow");
+		file = dir.resolve("feed.csv");
+	}
+
+	@AfterEach
+	void deleteFiles() throws IOException {
+		Files.deleteIfExists(dir.resolve("feed.csv.1"));
+		Files.deleteIfExists(file);
+		Files.deleteIfExists(dir);
+	}
+
+	@Test
+	void endsAtTheLastCompleteLineWithinMaxBytes() throws IOException {
+		String first = "Government,Germany,Carretera\n";
+		String second = "Midmarket,France,Montana\n";
+		write(HEADER + first + second + "Enterprise,Can");
+
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			long headerEnd = HEADER.length();
+			assertEquals(headerEnd + first.length() + second.length(), FollowService.lastLineEnd(channel, headerEnd, 1024));
+			assertEquals(headerEnd + first.length(), FollowService.lastLineEnd(channel, headerEnd, first.length() + 1));
+		}
+	}
+
+	@Test
+	void doesNotCutAQuotedFieldAtItsNewlines() throws IOException {
+		String quoted = "Government,\"Ger\nmany\",\"Paseo \"\"XL\"\"\n\n\"\n";
+		String plain = "Midmarket,France,Montana\n";
+		write(HEADER + quoted + plain);
+
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			long headerEnd = HEADER.length();
+			// Newlines inside the quotes fall within maxBytes, yet the record only ends after its closing quote
+			assertEquals(headerEnd + quoted.length(), FollowService.lastLineEnd(channel, headerEnd, quoted.length() + 1));
+			assertEquals(headerEnd + quoted.length(), FollowService.lastLineEnd(channel, headerEnd, 5));
+		}
+	}
+
+	@Test
+	void waitsForARecordWhoseQuotedFieldIsStillOpen() throws IOException {
+		write(HEADER + "Government,\"Ger\nma");
+
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			assertEquals(HEADER.length(), FollowService.lastLineEnd(channel, HEADER.length(), 1024));
+		}
+	}
+
+	@Test
+	void takesARecordLongerThanMaxBytesWhole() throws IOException {
+		String longLine = "Government," + "x".repeat(200_000) + ",Carretera\n";
+		write(HEADER + longLine + "Midmarket,France,Montana\n");
+
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			assertEquals(HEADER.length() + longLine.length(), FollowService.lastLineEnd(channel, HEADER.length(), 1024));
+		}
+	}
+
+	@Test
+	void restartsATruncatedFile() {
+		assertEquals(FollowService.Restart.TRUNCATED, FollowService.restartReason("inode-1", 500, "inode-1", 100));
+		// No file keys on this file system
+		assertEquals(FollowService.Restart.TRUNCATED, FollowService.restartReason(null, 500, null, 100));
+		assertEquals(FollowService.Restart.NONE, FollowService.restartReason("inode-1", 500, "inode-1", 500));
+	}
+
+	@Test
+	void restartsARotatedFileEvenIfItIsLonger() {
+		assertEquals(FollowService.Restart.ROTATED, FollowService.restartReason("inode-1", 500, "inode-2", 800));
+		// First poll: nothing to compare with yet
+		assertEquals(FollowService.Restart.NONE, FollowService.restartReason(null, 0, "inode-2", 800));
+	}
+
+	@Test
+	void readsTheLinesAppendedBeforeARotationThroughTheOpenChannel() throws IOException {
+		String first = "Government,Germany,Carretera\n";
+		String late = "Midmarket,France,Montana\n";
+		write(HEADER + first);
+
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			long checkpoint = FollowService.lastLineEnd(channel, 0, 1024);
+			Files.write(file, late.getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+			Files.move(file, dir.resolve("feed.csv.1"));
+			write(HEADER);
+
+			assertEquals(checkpoint + late.length(), FollowService.lastLineEnd(channel, checkpoint, 1024));
+		}
+	}
+
+	private void write(String content) throws IOException {
+		Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+	}
+
+}
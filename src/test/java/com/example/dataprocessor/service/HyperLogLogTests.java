@@ -0,0 +1,83 @@
+package com.example.dataprocessor.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HyperLogLogTests {
+
+	private static final int PRECISION = 12;
+	// Standard error 1.04 / sqrt(2^12), about 1.6%
+	private static final double THREE_SIGMA = 3 * 1.04 / Math.sqrt(1 << PRECISION);
+
+	@Test
+	void estimatesKnownCardinalitiesWithinThreeStandardErrors() {
+		for (int cardinality : new int[] {100, 1_000, 10_000, 100_000, 1_000_000}) {
+			HyperLogLog sketch = sketchOf(0, cardinality);
+			long estimate = sketch.estimate();
+			assertTrue(Math.abs(estimate - cardinality) <= THREE_SIGMA * cardinality,
+				"cardinality " + cardinality + ", estimate " + estimate);
+		}
+	}
+
+	@Test
+	void repeatedValuesDoNotChangeTheEstimate() {
+		HyperLogLog once = sketchOf(0, 5_000);
+		HyperLogLog repeated = sketchOf(0, 5_000);
+		for (int i = 0; i < 5_000; i++) {
+			repeated.add(HyperLogLog.hash("value-" + i));
+		}
+
+		assertArrayEquals(once.toByteArray(), repeated.toByteArray());
+	}
+
+	@Test
+	void mergeEqualsTheSketchOfTheUnion() {
+		HyperLogLog left = sketchOf(0, 60_000);
+		HyperLogLog right = sketchOf(40_000, 100_000);
+
+		left.merge(right);
+
+		HyperLogLog union = sketchOf(0, 100_000);
+		assertArrayEquals(union.toByteArray(), left.toByteArray());
+		assertEquals(union.estimate(), left.estimate());
+	}
+
+	@Test
+	void refusesToMergeAnotherPrecision() {
+		assertThrows(IllegalArgumentException.class, () -> new HyperLogLog(12).merge(new HyperLogLog(14)));
+	}
+
+	@Test
+	void roundTripsThroughBytes() {
+		HyperLogLog sketch = sketchOf(0, 25_000);
+
+		HyperLogLog restored = HyperLogLog.fromByteArray(sketch.toByteArray());
+
+		assertEquals(PRECISION, restored.getPrecision());
+		assertEquals(sketch.estimate(), restored.estimate());
+		assertArrayEquals(sketch.toByteArray(), restored.toByteArray());
+	}
+
+	@Test
+	void rejectsBytesOfTheWrongLength() {
+		byte[] data = new HyperLogLog(PRECISION).toByteArray();
+		byte[] truncated = Arrays.copyOf(data, data.length - 1);
+
+		assertThrows(IllegalArgumentException.class, () -> HyperLogLog.fromByteArray(truncated));
+	}
+
+	private static HyperLogLog sketchOf(int from, int to) {
+		HyperLogLog sketch = new HyperLogLog(PRECISION);
+		for (int i = from; i < to; i++) {
+			sketch.add(HyperLogLog.hash("value-" + i));
+		}
+		return sketch;
+	}
+
+}
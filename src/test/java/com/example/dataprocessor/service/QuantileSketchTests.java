@@ -0,0 +1,114 @@
+package com.example.dataprocessor.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class QuantileSketchTests {
+
+	private static final double ACCURACY = 0.01;
+	private static final double[] QUANTILES = {0, 0.01, 0.25, 0.5, 0.75, 0.9, 0.95, 0.99, 1};
+
+	@Test
+	void quantilesAreWithinTheRelativeAccuracyOfTheExactValue() {
+		Random random = new Random(42);
+		double[] values = new double[100_000];
+		for (int i = 0; i < values.length; i++) {
+			// Log-normal, like prices and amounts: spans several orders of magnitude
+			values[i] = Math.exp(random.nextGaussian() * 2 + 5);
+		}
+
+		assertQuantilesWithinAccuracy(values);
+	}
+
+	@Test
+	void handlesNegativeValuesAndZero() {
+		double[] values = new double[20_001];
+		for (int i = 0; i < values.length; i++) {
+			// Losses, zero and profits
+			values[i] = (i - 10_000) * 1.5;
+		}
+
+		assertQuantilesWithinAccuracy(values);
+		assertEquals(0, sketchOf(values).quantile(0.5), 0);
+	}
+
+	@Test
+	void skipsValuesThatAreNotFinite() {
+		QuantileSketch sketch = new QuantileSketch(ACCURACY);
+		sketch.add(Double.NaN);
+		sketch.add(Double.POSITIVE_INFINITY);
+		sketch.add(7);
+
+		assertEquals(1, sketch.getCount());
+		assertEquals(7, sketch.quantile(0.5), 7 * ACCURACY);
+	}
+
+	@Test
+	void emptySketchHasNoQuantiles() {
+		assertTrue(Double.isNaN(new QuantileSketch(ACCURACY).quantile(0.5)));
+	}
+
+	@Test
+	void mergeEqualsTheSketchOfTheUnion() {
+		double[] values = new Random(7).doubles(50_000, -1_000, 100_000).toArray();
+		QuantileSketch left = sketchOf(Arrays.copyOfRange(values, 0, 20_000));
+		QuantileSketch right = sketchOf(Arrays.copyOfRange(values, 20_000, values.length));
+
+		left.merge(right);
+
+		QuantileSketch union = sketchOf(values);
+		assertEquals(union.getCount(), left.getCount());
+		assertArrayEquals(union.toByteArray(), left.toByteArray());
+		for (double quantile : QUANTILES) {
+			assertEquals(union.quantile(quantile), left.quantile(quantile), 0);
+		}
+	}
+
+	@Test
+	void refusesToMergeAnotherAccuracy() {
+		assertThrows(IllegalArgumentException.class, () -> new QuantileSketch(0.01).merge(new QuantileSketch(0.02)));
+	}
+
+	@Test
+	void roundTripsThroughBytes() {
+		double[] values = new Random(3).doubles(10_000, -50, 5_000).toArray();
+		values[0] = 0;
+		QuantileSketch sketch = sketchOf(values);
+
+		QuantileSketch restored = QuantileSketch.fromByteArray(sketch.toByteArray());
+
+		assertEquals(sketch.getCount(), restored.getCount());
+		assertEquals(sketch.getRelativeAccuracy(), restored.getRelativeAccuracy(), 0);
+		assertArrayEquals(sketch.toByteArray(), restored.toByteArray());
+		for (double quantile : QUANTILES) {
+			assertEquals(sketch.quantile(quantile), restored.quantile(quantile), 0);
+		}
+	}
+
+	private static void assertQuantilesWithinAccuracy(double[] values) {
+		QuantileSketch sketch = sketchOf(values);
+		double[] sorted = values.clone();
+		Arrays.sort(sorted);
+		for (double quantile : QUANTILES) {
+			double exact = sorted[(int) (quantile * (sorted.length - 1))];
+			double estimate = sketch.quantile(quantile);
+			assertEquals(exact, estimate, ACCURACY * Math.abs(exact) + 1e-9, "quantile " + quantile);
+		}
+	}
+
+	private static QuantileSketch sketchOf(double[] values) {
+		QuantileSketch sketch = new QuantileSketch(ACCURACY);
+		for (double value : values) {
+			sketch.add(value);
+		}
+		return sketch;
+	}
+
+}
@@ -0,0 +1,74 @@
+package com.example.dataprocessor.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class StagedRowChunkTests {
+
+	@Test
+	void roundTripsTextRowsIncludingNullsAndMultiByteCharacters() {
+		List<List<String>> rows = List.of(
+			Arrays.asList("Government", "Germany", null, "", "1,618.50"),
+			Arrays.asList("Müller", "東京", "😀 emoji", "naïve café", "Ωmega"),
+			List.of("single"));
+		try (StagedRowChunk staged = StagedRowChunk.stage(rows)) {
+			assertEquals(3, staged.size());
+			assertEquals(rows, new ArrayList<>(staged.rows()));
+		}
+	}
+
+	@Test
+	void replacesUnpairedSurrogatesLikeStringGetBytes() {
+		String broken = "a\uD800b";
+		try (StagedRowChunk staged = StagedRowChunk.stage(List.of(List.of(broken)))) {
+			assertEquals("a?b", staged.rows().get(0).get(0));
+		}
+	}
+
+	@Test
+	void roundTripsTypedCellsWithTheirTypes() {
+		List<Object> values = Arrays.asList(
+			new BigDecimal("1618.50"), new BigDecimal("-0.000001"), BigDecimal.ZERO,
+			new BigDecimal("123456789012345678901234567890.125"),
+			LocalDate.of(2014, 1, 31), LocalDate.of(1000, 1, 1), LocalDate.of(9999, 12, 31),
+			null, "", "Carretera");
+		try (StagedRowChunk staged = StagedRowChunk.stage(List.of(new SheetRow(values)))) {
+			SheetRow decoded = (SheetRow) staged.rows().get(0);
+			assertEquals(values.size(), decoded.size());
+			for (int i = 0; i < values.size(); i++) {
+				// Same value and scale, not just numerically equal
+				assertEquals(values.get(i), decoded.getValue(i), "cell " + i);
+			}
+			assertNull(decoded.getValue(7));
+			assertEquals("1618.50", decoded.get(0));
+			assertEquals("2014-01-31", decoded.get(4));
+		}
+	}
+
+	@Test
+	void stagesAnEmptyChunk() {
+		try (StagedRowChunk staged = StagedRowChunk.stage(List.of())) {
+			assertEquals(0, staged.size());
+			assertTrue(staged.rows().isEmpty());
+		}
+	}
+
+	@Test
+	void decodedRowsOutliveTheChunk() {
+		List<String> decoded;
+		try (StagedRowChunk staged = StagedRowChunk.stage(List.of(List.of("Paseo", "Canada")))) {
+			decoded = staged.rows().get(0);
+		}
+		assertEquals(List.of("Paseo", "Canada"), decoded);
+	}
+
+}
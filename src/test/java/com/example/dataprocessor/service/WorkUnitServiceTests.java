@@ -0,0 +1,77 @@
+package com.example.dataprocessor.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class WorkUnitServiceTests {
+
+	private Path file;
+
+	@BeforeEach
+	void createFile() throws IOException {
+		file = Files.createTempFile("work-units", ".csv");
+	}
+
+	@AfterEach
+	void deleteFile() throws IOException {
+		Files.deleteIfExists(file);
+	}
+
+	@Test
+	void splitsOnlyAtNewlinesOutsideQuotes() throws IOException {
+		String header = "Segment,Country,Product\n";
+		String quoted = "Government,\"Ger\nmany\",\"Paseo \"\"XL\"\"\n\n\"\n";
+		String plain = "Midmarket,France,Montana\n";
+		write(header + quoted + plain);
+
+		List<long[]> ranges = WorkUnitService.splitAtRecords(file, 1);
+
+		long headerEnd = header.length();
+		long quotedEnd = headerEnd + quoted.length();
+		assertEquals(3, ranges.size());
+		assertArrayEquals(new long[] {0, headerEnd}, ranges.get(0));
+		assertArrayEquals(new long[] {headerEnd, quotedEnd}, ranges.get(1));
+		assertArrayEquals(new long[] {quotedEnd, quotedEnd + plain.length()}, ranges.get(2));
+	}
+
+	@Test
+	void rangesCoverTheFileWithoutGapsAndKeepAnUnterminatedLastLine() throws IOException {
+		StringBuilder content = new StringBuilder("Segment,Country\n");
+		for (int i = 0; i < 1000; i++) {
+			content.append("Government,\"Line ").append(i).append("\nstill line ").append(i).append("\"\n");
+		}
+		content.append("Enterprise,Canada");
+		write(content.toString());
+
+		List<long[]> ranges = WorkUnitService.splitAtRecords(file, 4096);
+
+		long expectedStart = 0;
+		for (long[] range : ranges) {
+			assertEquals(expectedStart, range[0]);
+			expectedStart = range[1];
+		}
+		assertEquals(Files.size(file), expectedStart);
+		byte[] bytes = Files.readAllBytes(file);
+		for (int i = 1; i < ranges.size(); i++) {
+			// Every later range starts on a record, i.e. right after a record's closing quote and newline
+			int start = (int) ranges.get(i)[0];
+			assertEquals('\n', bytes[start - 1]);
+			assertEquals('"', bytes[start - 2]);
+		}
+	}
+
+	private void write(String content) throws IOException {
+		Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+	}
+
+}
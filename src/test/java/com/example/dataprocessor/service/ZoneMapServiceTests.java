@@ -0,0 +1,90 @@
+package com.example.dataprocessor.service;
+
+import com.example.dataprocessor.repository.ZoneMapJdbcRepository.ZoneMatch;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ZoneMapServiceTests {
+
+	private static final String FRANCE = ZoneMapService.dimensionKey(SalesColumn.COUNTRY, "France");
+
+	private ZoneMapService service;
+
+	@BeforeEach
+	void createService() {
+		service = new ZoneMapService();
+		// Only adjacent ranges are merged
+		ReflectionTestUtils.setField(service, "minSkipIds", 1L);
+	}
+
+	@Test
+	void readsEverythingAfterAfterIdWithoutZones() {
+		assertRanges(List.of(new long[] {6, Long.MAX_VALUE}), service.sweep(List.of(), List.of(), 5));
+	}
+
+	@Test
+	void skipsZonesThatCannotMatchAndReadsTheIdsInNoZone() {
+		List<ZoneMatch> zones = List.of(zone(1, 100, true), zone(101, 200, false), zone(301, 400, false));
+
+		assertRanges(List.of(new long[] {1, 100}, new long[] {201, 300}, new long[] {401, Long.MAX_VALUE}),
+			service.sweep(zones, List.of(), 0));
+	}
+
+	@Test
+	void readsOverlappingIdsWhenAnyZoneThereMayMatch() {
+		List<ZoneMatch> zones = List.of(zone(1, 100, false), zone(50, 150, true), zone(120, 300, false));
+
+		assertRanges(List.of(new long[] {50, 150}, new long[] {301, Long.MAX_VALUE}),
+			service.sweep(zones, List.of(), 0));
+	}
+
+	@Test
+	void skipsZonesWhoseBloomFilterLacksAKey() {
+		List<ZoneMatch> zones = List.of(zone(1, 100, "Canada"), zone(101, 200, "france"), zone(201, 300, "Germany"));
+
+		assertRanges(List.of(new long[] {101, 200}, new long[] {301, Long.MAX_VALUE}),
+			service.sweep(zones, List.of(FRANCE), 0));
+	}
+
+	@Test
+	void startsAfterAfterId() {
+		List<ZoneMatch> zones = List.of(zone(1, 100, true), zone(101, 200, false));
+
+		assertRanges(List.of(new long[] {51, 100}, new long[] {201, Long.MAX_VALUE}),
+			service.sweep(zones, List.of(), 50));
+	}
+
+	@Test
+	void readsSkipsShorterThanMinSkipIds() {
+		ReflectionTestUtils.setField(service, "minSkipIds", 1000L);
+		List<ZoneMatch> zones = List.of(zone(1, 100, true), zone(101, 200, false), zone(5001, 6000, false));
+
+		assertRanges(List.of(new long[] {1, 5000}, new long[] {6001, Long.MAX_VALUE}),
+			service.sweep(zones, List.of(), 0));
+	}
+
+	private static ZoneMatch zone(long idFrom, long idTo, boolean inRange) {
+		return new ZoneMatch(idFrom, idTo, inRange, null, 0);
+	}
+
+	private static ZoneMatch zone(long idFrom, long idTo, String country) {
+		BloomFilter bloom = BloomFilter.create(1, 0.01);
+		long hash = HyperLogLog.hash(ZoneMapService.dimensionKey(SalesColumn.COUNTRY, country));
+		bloom.put(hash, HyperLogLog.hash(hash));
+		return new ZoneMatch(idFrom, idTo, true, bloom.toByteArray(), bloom.getHashFunctions());
+	}
+
+	private static void assertRanges(List<long[]> expected, List<long[]> actual) {
+		assertEquals(expected.size(), actual.size(), "ranges");
+		for (int i = 0; i < expected.size(); i++) {
+			assertArrayEquals(expected.get(i), actual.get(i), "range " + i);
+		}
+	}
+
+}